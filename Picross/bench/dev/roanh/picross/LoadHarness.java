@@ -0,0 +1,303 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dev.roanh.picross.Board.StateChange;
+
+/**
+ * Load generator that finds out how many game sessions a single JVM can
+ * host. Headless boards are created from random seeds and played on a
+ * fixed thread pool with a mix of random and solution guided moves,
+ * rectangles, test mode and undo/redo. New sessions are added in steps
+ * and after every step the throughput, move latency and heap use per
+ * session are reported. The run stops when the heap or the move latency
+ * crosses its threshold, or when the maximum number of sessions is reached.
+ * <p>
+ * Usage: <code>LoadHarness [sessions] [threads] [heap] [latency]</code>
+ * where sessions is the maximum number of sessions, threads the size of
+ * the thread pool, heap the fraction of the maximum heap that may be used
+ * and latency the 99th percentile move latency in milliseconds to stop at.
+ * @author Roan
+ */
+public class LoadHarness{
+	/**
+	 * Default maximum number of sessions.
+	 */
+	private static final int SESSIONS = 20000;
+	/**
+	 * Default fraction of the maximum heap that may be in use.
+	 */
+	private static final double HEAP_THRESHOLD = 0.8D;
+	/**
+	 * Default 99th percentile move latency to stop at in milliseconds.
+	 */
+	private static final double LATENCY_THRESHOLD = 50.0D;
+	/**
+	 * Number of sessions added per step.
+	 */
+	private static final int STEP_SESSIONS = 500;
+	/**
+	 * Duration of a step in milliseconds.
+	 */
+	private static final long STEP_MILLIS = 2000;
+	/**
+	 * Number of moves a session makes before yielding its thread.
+	 */
+	private static final int BATCH = 10;
+	/**
+	 * Board sizes sessions are created with.
+	 */
+	private static final int[] SIZES = {10, 15, 20, 25, 30, 50, 100};
+	/**
+	 * Largest width and height of a rectangle move.
+	 */
+	private static final int MAX_RECTANGLE = 5;
+	/**
+	 * Latencies of the moves made during the current step.
+	 */
+	private static final AtomicReference<LatencyHistogram> latencies = new AtomicReference<LatencyHistogram>(new LatencyHistogram());
+	/**
+	 * Number of moves made during the current step.
+	 */
+	private static final AtomicLong moves = new AtomicLong();
+	/**
+	 * Number of boards solved so far.
+	 */
+	private static final AtomicLong solved = new AtomicLong();
+	/**
+	 * Whether the sessions should stop playing.
+	 */
+	private static volatile boolean stopped = false;
+	
+	/**
+	 * Runs the load generator.
+	 * @param args The maximum number of sessions, number of
+	 *        threads, heap threshold and latency threshold.
+	 * @throws InterruptedException When interrupted.
+	 */
+	public static void main(String[] args) throws InterruptedException{
+		System.setProperty("java.awt.headless", "true");
+		int maxSessions = args.length > 0 ? Integer.parseInt(args[0]) : SESSIONS;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		double heapThreshold = args.length > 2 ? Double.parseDouble(args[2]) : HEAP_THRESHOLD;
+		double latencyThreshold = args.length > 3 ? Double.parseDouble(args[3]) : LATENCY_THRESHOLD;
+		
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long maxHeap = memory.getHeapMemoryUsage().getMax();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Session> sessions = new ArrayList<Session>();
+		
+		System.out.println(String.format("Threads: %d, max heap: %d MiB", threads, maxHeap / (1024 * 1024)));
+		System.out.println(String.format("%8s %10s %8s %8s %8s %10s %12s %8s", "Sessions", "moves/s", "p50 ms", "p99 ms", "max ms", "heap MiB", "KiB/session", "Solved"));
+		String reason = "reached " + maxSessions + " sessions";
+		while(sessions.size() < maxSessions){
+			for(int i = 0; i < STEP_SESSIONS && sessions.size() < maxSessions; i++){
+				Session session = new Session(executor);
+				sessions.add(session);
+				executor.execute(session);
+			}
+			
+			latencies.set(new LatencyHistogram());
+			moves.set(0);
+			long start = System.nanoTime();
+			Thread.sleep(STEP_MILLIS);
+			LatencyHistogram step = latencies.get();
+			double throughput = moves.get() / ((System.nanoTime() - start) / 1e9D);
+			
+			//collect garbage such that only the heap used by live sessions is reported
+			System.gc();
+			long heap = memory.getHeapMemoryUsage().getUsed();
+			double p99 = step.getPercentile(0.99D) / 1e6D;
+			System.out.println(String.format(
+				"%8d %10.0f %8.3f %8.3f %8.3f %10d %12d %8d",
+				sessions.size(),
+				throughput,
+				step.getPercentile(0.5D) / 1e6D,
+				p99,
+				step.getPercentile(1.0D) / 1e6D,
+				heap / (1024 * 1024),
+				heap / sessions.size() / 1024,
+				solved.get()
+			));
+			
+			if(heap > heapThreshold * maxHeap){
+				reason = String.format("heap use above %.0f%% of the maximum heap", heapThreshold * 100.0D);
+				break;
+			}
+			if(p99 > latencyThreshold){
+				reason = String.format("p99 move latency above %.1f ms", latencyThreshold);
+				break;
+			}
+		}
+		
+		stopped = true;
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		System.out.println("Stopped at " + sessions.size() + " sessions: " + reason);
+		System.exit(0);
+	}
+	
+	/**
+	 * A single headless game session that plays its board until
+	 * it is solved, after which it continues on a new board.
+	 * @author Roan
+	 */
+	private static final class Session implements Runnable{
+		/**
+		 * The executor that runs this session.
+		 */
+		private final ExecutorService executor;
+		/**
+		 * Random number generator used to pick moves.
+		 */
+		private final Random random = new Random(ThreadLocalRandom.current().nextLong());
+		/**
+		 * The board being played.
+		 */
+		private Board board;
+		/**
+		 * The grid of the board being played.
+		 */
+		private Grid grid;
+		/**
+		 * The solution of the board being played.
+		 */
+		private Puzzle puzzle;
+		/**
+		 * Index of the next tile to mark from the solution.
+		 */
+		private int next;
+		
+		/**
+		 * Constructs a new session on a random board.
+		 * @param executor The executor that runs this session.
+		 */
+		private Session(ExecutorService executor){
+			this.executor = executor;
+			newBoard();
+		}
+		
+		/**
+		 * Starts playing a new board with a random seed.
+		 */
+		private void newBoard(){
+			int size = SIZES[random.nextInt(SIZES.length)];
+			Seed seed = new Seed(random.nextLong(), size, size, 0.3D + random.nextDouble() * 0.6D);
+			board = new Board(seed);
+			grid = board.getGrid();
+			puzzle = Board.createPuzzle(seed);
+			next = 0;
+		}
+		
+		@Override
+		public void run(){
+			LatencyHistogram histogram = latencies.get();
+			for(int i = 0; i < BATCH && !stopped; i++){
+				long start = System.nanoTime();
+				move();
+				histogram.record(System.nanoTime() - start);
+				
+				if(board.isSolved()){
+					solved.incrementAndGet();
+					newBoard();
+				}
+			}
+			
+			moves.addAndGet(BATCH);
+			if(!stopped){
+				executor.execute(this);
+			}
+		}
+		
+		/**
+		 * Makes a single random move.
+		 */
+		private void move(){
+			int roll = random.nextInt(100);
+			if(roll < 60){
+				markFromSolution();
+			}else if(roll < 70){
+				board.setNextState(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight()), random.nextBoolean() ? Tile.FILL : Tile.CROSS);
+			}else if(roll < 75){
+				markRectangle();
+			}else if(roll < 80){
+				if(board.isTestMode()){
+					board.leaveTestMode(random.nextBoolean());
+				}else{
+					board.enterTestMode();
+				}
+			}else if(roll < 92){
+				board.undo();
+			}else{
+				board.redo();
+			}
+		}
+		
+		/**
+		 * Marks the next tile that does not match the solution
+		 * yet, such that the board is eventually solved.
+		 */
+		private void markFromSolution(){
+			int tiles = grid.getWidth() * grid.getHeight();
+			for(int i = 0; i < tiles; i++){
+				int x = next % grid.getWidth();
+				int y = next / grid.getWidth();
+				next = (next + 1) % tiles;
+				Tile target = puzzle.isFilled(x, y) ? Tile.FILL : Tile.CROSS;
+				if(grid.get(x, y).toReal() != target){
+					if(grid.get(x, y) != Tile.EMPTY){
+						board.setNextState(x, y, grid.get(x, y).toReal());
+					}
+					board.setNextState(x, y, target);
+					return;
+				}
+			}
+		}
+		
+		/**
+		 * Fills a random rectangle of tiles.
+		 */
+		private void markRectangle(){
+			int x = random.nextInt(grid.getWidth());
+			int y = random.nextInt(grid.getHeight());
+			int w = Math.min(1 + random.nextInt(MAX_RECTANGLE), grid.getWidth() - x);
+			int h = Math.min(1 + random.nextInt(MAX_RECTANGLE), grid.getHeight() - y);
+			boolean test = board.isTestMode();
+			List<StateChange> changes = new ArrayList<StateChange>(w * h);
+			for(int dy = 0; dy < h; dy++){
+				for(int dx = 0; dx < w; dx++){
+					changes.add(board.createStateChange(x + dx, y + dy, grid.get(x + dx, y + dy), test ? Tile.TRY_FILL : Tile.FILL, test));
+				}
+			}
+			board.replayMove(changes);
+		}
+	}
+}
@@ -0,0 +1,444 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import dev.roanh.picross.Board.StateChange;
+import dev.roanh.picross.Solver.Status;
+
+/**
+ * Performance regression check for the game engine. A number of fixed
+ * workloads is run and for each workload the throughput and the number
+ * of bytes allocated per operation are compared against a stored
+ * baseline. The check fails if the throughput dropped or the allocation
+ * rate grew by more than a configurable tolerance. Throughput is stored
+ * and compared relative to a calibration workload that does not use the
+ * engine, such that the baseline carries over to other machines. It is
+ * still affected by other load on the machine though, so it can be left
+ * out with <code>--allocation-only</code>.
+ * <p>
+ * The workloads are:
+ * <ul>
+ * <li>Generating a fixed corpus of puzzles and their hints.</li>
+ * <li>Playing a scripted sequence of moves on a 500x500 board, consisting
+ * of single tiles, rectangles, test mode and undo/redo.</li>
+ * <li>Solving the hints of puzzles with fixed seeds with the {@link Solver}.</li>
+ * </ul>
+ * <p>
+ * Usage: <code>PerformanceCheck [baseline] [--update] [--allocation-only]</code>
+ * where baseline is the baseline file to compare with, <code>--update</code>
+ * stores the measured results as the new baseline instead and
+ * <code>--allocation-only</code> only checks the allocation rates. The tolerances can be set
+ * with the {@value #THROUGHPUT_TOLERANCE} and {@value #ALLOCATION_TOLERANCE}
+ * system properties as a fraction of the baseline.
+ * @author Roan
+ */
+public class PerformanceCheck{
+	/**
+	 * Default location of the baseline file.
+	 */
+	private static final Path BASELINE = Paths.get("bench", "perf-baseline.properties");
+	/**
+	 * System property with the fraction the throughput is allowed to drop.
+	 */
+	private static final String THROUGHPUT_TOLERANCE = "picross.perf.throughputTolerance";
+	/**
+	 * System property with the fraction the allocation rate is allowed to grow.
+	 */
+	private static final String ALLOCATION_TOLERANCE = "picross.perf.allocationTolerance";
+	/**
+	 * Number of bytes per operation the allocation rate may always grow
+	 * by, such that workloads that barely allocate do not fail on noise.
+	 */
+	private static final long ALLOCATION_SLACK = 64;
+	/**
+	 * Number of rounds to run before measuring.
+	 */
+	private static final int WARMUP_ROUNDS = 5;
+	/**
+	 * Number of rounds to measure.
+	 */
+	private static final int ROUNDS = 10;
+	/**
+	 * Size of the board moves are played on.
+	 */
+	private static final int MOVE_BOARD_SIZE = 500;
+	/**
+	 * Number of moves played per round.
+	 */
+	private static final int MOVES = 2000;
+	/**
+	 * Largest width and height of a rectangle move.
+	 */
+	private static final int MAX_RECTANGLE = 20;
+	/**
+	 * Number of integers sorted by the calibration workload.
+	 */
+	private static final int CALIBRATION_SIZE = 1 << 16;
+	
+	/**
+	 * Runs the performance check.
+	 * @param args The baseline file, <code>--update</code> to store the
+	 *        results as the new baseline and <code>--allocation-only</code>
+	 *        to only check the allocation rates.
+	 */
+	public static void main(String[] args){
+		System.setProperty("java.awt.headless", "true");
+		Path file = BASELINE;
+		boolean update = false;
+		boolean allocationOnly = false;
+		for(String arg : args){
+			if(arg.equals("--update")){
+				update = true;
+			}else if(arg.equals("--allocation-only")){
+				allocationOnly = true;
+			}else{
+				file = Paths.get(arg);
+			}
+		}
+		
+		Result calibration = measure("calibration", createCalibrationWorkload(), null);
+		List<Result> results = new ArrayList<Result>();
+		results.add(measure("generation", createGenerationWorkload(), calibration));
+		results.add(measure("moves", createMoveWorkload(), calibration));
+		results.add(measure("solve", createSolveWorkload(), calibration));
+		
+		if(update){
+			writeBaseline(file, results);
+			results.forEach(result->System.out.println(String.format("%-12s %12.1f ops/s %12.6f relative %12d B/op", result.name, result.throughput, result.relative, result.allocated)));
+			System.out.println("Baseline written to " + file);
+			System.exit(0);
+		}else{
+			System.exit(check(readBaseline(file), results, allocationOnly) ? 0 : 1);
+		}
+	}
+	
+	/**
+	 * Creates the workload that throughput is measured relative to.
+	 * It sorts a fixed array of integers and does not use the engine,
+	 * so it only measures how fast the machine is at the moment.
+	 * @return The calibration workload.
+	 */
+	private static Workload createCalibrationWorkload(){
+		int[] data = new Random(CALIBRATION_SIZE).ints(CALIBRATION_SIZE).toArray();
+		int[] work = new int[CALIBRATION_SIZE];
+		return new Workload(1, ()->{
+			System.arraycopy(data, 0, work, 0, CALIBRATION_SIZE);
+			return ()->Arrays.sort(work);
+		});
+	}
+	
+	/**
+	 * Creates the workload that generates a fixed corpus of puzzles
+	 * of various sizes and densities together with all of their hints.
+	 * @return The generation workload.
+	 */
+	private static Workload createGenerationWorkload(){
+		List<Seed> corpus = new ArrayList<Seed>();
+		long rng = 0;
+		for(int size : new int[]{10, 25, 50, 100, 250, 500}){
+			for(double density : new double[]{0.3D, 0.6D, 0.8D}){
+				corpus.add(new Seed(rng++, size, size, density));
+			}
+		}
+		
+		return new Workload(corpus.size(), ()->()->{
+			for(Seed seed : corpus){
+				Puzzle puzzle = Board.generatePuzzle(seed);
+				for(int y = 0; y < seed.height; y++){
+					puzzle.getRowHints(y);
+				}
+				for(int x = 0; x < seed.width; x++){
+					puzzle.getColHints(x);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Creates the workload that plays a scripted sequence of moves on a
+	 * large board. Every round uses the same script on a new board.
+	 * @return The move workload.
+	 */
+	private static Workload createMoveWorkload(){
+		return new Workload(MOVES, ()->{
+			Board board = new Board(new Seed(0, MOVE_BOARD_SIZE, MOVE_BOARD_SIZE, 0.6D));
+			Grid grid = board.getGrid();
+			Random random = new Random(MOVE_BOARD_SIZE);
+			return ()->{
+				for(int i = 0; i < MOVES; i++){
+					int roll = random.nextInt(100);
+					int x = random.nextInt(MOVE_BOARD_SIZE);
+					int y = random.nextInt(MOVE_BOARD_SIZE);
+					if(roll < 40){
+						board.setNextState(x, y, random.nextBoolean() ? Tile.FILL : Tile.CROSS);
+					}else if(roll < 65){
+						int w = Math.min(1 + random.nextInt(MAX_RECTANGLE), MOVE_BOARD_SIZE - x);
+						int h = Math.min(1 + random.nextInt(MAX_RECTANGLE), MOVE_BOARD_SIZE - y);
+						Tile next = board.isTestMode() ? Tile.TRY_FILL : Tile.FILL;
+						List<StateChange> changes = new ArrayList<StateChange>(w * h);
+						for(int dy = 0; dy < h; dy++){
+							for(int dx = 0; dx < w; dx++){
+								changes.add(board.createStateChange(x + dx, y + dy, grid.get(x + dx, y + dy), next, board.isTestMode()));
+							}
+						}
+						board.replayMove(changes);
+					}else if(roll < 70){
+						if(board.isTestMode()){
+							board.leaveTestMode(random.nextBoolean());
+						}else{
+							board.enterTestMode();
+						}
+					}else if(roll < 85){
+						board.undo();
+					}else{
+						board.redo();
+					}
+				}
+			};
+		});
+	}
+	
+	/**
+	 * Creates the workload that solves the hints of puzzles with fixed
+	 * seeds. The seeds are chosen such that the solver decides all of
+	 * them well within its step budget, covering both puzzles with a
+	 * unique solution and puzzles that require guessing.
+	 * @return The solve workload.
+	 */
+	private static Workload createSolveWorkload(){
+		Seed[] seeds = new Seed[]{
+			new Seed(1, 30, 30, 0.7D),
+			new Seed(2, 25, 25, 0.7D),
+			new Seed(1, 25, 25, 0.8D),
+			new Seed(1, 30, 30, 0.8D),
+			new Seed(1, 40, 40, 0.8D)
+		};
+		
+		HintSet[] hints = new HintSet[seeds.length];
+		for(int i = 0; i < seeds.length; i++){
+			hints[i] = new HintSet(seeds[i].toString(), Board.generatePuzzle(seeds[i]));
+		}
+		
+		return new Workload(seeds.length, ()->()->{
+			for(HintSet puzzle : hints){
+				Status status = Solver.solve(puzzle).getStatus();
+				if(status != Status.UNIQUE && status != Status.MULTIPLE){
+					throw new IllegalStateException("Puzzle was not solved: " + puzzle.getName() + " (" + status + ")");
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Measures the throughput and allocation rate of a workload. The
+	 * throughput of the fastest round and the allocation rate of the
+	 * least allocating round are reported, as these are the least
+	 * affected by other activity on the machine.
+	 * @param name The name of the workload.
+	 * @param workload The workload to measure.
+	 * @param calibration The result of the calibration workload or
+	 *        <code>null</code> when measuring the calibration workload.
+	 * @return The measured result.
+	 */
+	private static Result measure(String name, Workload workload, Result calibration){
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean)){
+			throw new IllegalStateException("Thread allocation counters are not supported by this JVM");
+		}
+		
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean)threads;
+		long thread = Thread.currentThread().getId();
+		double throughput = 0.0D;
+		long allocated = Long.MAX_VALUE;
+		for(int i = -WARMUP_ROUNDS; i < ROUNDS; i++){
+			Runnable round = workload.round.get();
+			long bytes = allocation.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			round.run();
+			long time = System.nanoTime() - start;
+			bytes = allocation.getThreadAllocatedBytes(thread) - bytes;
+			
+			if(i >= 0){
+				throughput = Math.max(throughput, workload.ops / (time / 1e9D));
+				allocated = Math.min(allocated, bytes / workload.ops);
+			}
+		}
+		
+		return new Result(name, throughput, calibration == null ? 1.0D : throughput / calibration.throughput, allocated);
+	}
+	
+	/**
+	 * Compares the measured results with the baseline and prints a report.
+	 * @param baseline The baseline to compare with.
+	 * @param results The measured results.
+	 * @param allocationOnly True to only compare the allocation rates.
+	 * @return True if none of the workloads regressed.
+	 */
+	private static boolean check(Properties baseline, List<Result> results, boolean allocationOnly){
+		double throughputTolerance = Double.parseDouble(System.getProperty(THROUGHPUT_TOLERANCE, "0.3"));
+		double allocationTolerance = Double.parseDouble(System.getProperty(ALLOCATION_TOLERANCE, "0.1"));
+		
+		boolean passed = true;
+		System.out.println(String.format("%-12s %12s %12s %12s %12s  %s", "Workload", "ops/s", "floor", "B/op", "ceiling", "Status"));
+		for(Result result : results){
+			String ops = baseline.getProperty(result.name + ".relativeThroughput");
+			String bytes = baseline.getProperty(result.name + ".bytesPerOp");
+			if(ops == null || bytes == null){
+				System.out.println(String.format("%-12s %12.1f %12s %12d %12s  %s", result.name, result.throughput, "-", result.allocated, "-", "NO BASELINE"));
+				continue;
+			}
+			
+			//the floor is expressed in operations per second on this machine right now
+			double floor = Double.parseDouble(ops) * (result.throughput / result.relative) * (1.0D - throughputTolerance);
+			long ceiling = (long)(Long.parseLong(bytes) * (1.0D + allocationTolerance)) + ALLOCATION_SLACK;
+			String status;
+			if(!allocationOnly && result.throughput < floor){
+				status = "SLOWER";
+			}else if(result.allocated > ceiling){
+				status = "ALLOCATES MORE";
+			}else{
+				status = "OK";
+			}
+			
+			passed &= status.equals("OK");
+			System.out.println(String.format("%-12s %12.1f %12.1f %12d %12d  %s", result.name, result.throughput, floor, result.allocated, ceiling, status));
+		}
+		
+		return passed;
+	}
+	
+	/**
+	 * Reads the baseline from the given file.
+	 * @param file The baseline file.
+	 * @return The baseline.
+	 * @throws UncheckedIOException When an IOException occurs.
+	 */
+	private static Properties readBaseline(Path file) throws UncheckedIOException{
+		Properties baseline = new Properties();
+		if(Files.exists(file)){
+			try(InputStream in = Files.newInputStream(file)){
+				baseline.load(in);
+			}catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+		return baseline;
+	}
+	
+	/**
+	 * Writes the given results as the new baseline.
+	 * @param file The baseline file to write.
+	 * @param results The results to store.
+	 * @throws UncheckedIOException When an IOException occurs.
+	 */
+	private static void writeBaseline(Path file, List<Result> results) throws UncheckedIOException{
+		Properties baseline = new Properties();
+		for(Result result : results){
+			baseline.setProperty(result.name + ".relativeThroughput", String.format(Locale.ROOT, "%.6f", result.relative));
+			baseline.setProperty(result.name + ".bytesPerOp", String.valueOf(result.allocated));
+		}
+		
+		try(OutputStream out = Files.newOutputStream(file)){
+			baseline.store(out, "Performance baseline, regenerate with the updatePerformanceBaseline task");
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * A fixed amount of work that is measured in rounds.
+	 * @author Roan
+	 */
+	private static final class Workload{
+		/**
+		 * Number of operations performed per round.
+		 */
+		private final int ops;
+		/**
+		 * Prepares a new round without it being measured
+		 * and returns the work to measure for the round.
+		 */
+		private final Supplier<Runnable> round;
+		
+		/**
+		 * Constructs a new workload.
+		 * @param ops The number of operations performed per round.
+		 * @param round Function that prepares a round and
+		 *        returns the work to measure for the round.
+		 */
+		private Workload(int ops, Supplier<Runnable> round){
+			this.ops = ops;
+			this.round = round;
+		}
+	}
+	
+	/**
+	 * The measured performance of a workload.
+	 * @author Roan
+	 */
+	private static final class Result{
+		/**
+		 * The name of the workload.
+		 */
+		private final String name;
+		/**
+		 * The number of operations per second.
+		 */
+		private final double throughput;
+		/**
+		 * The throughput relative to the calibration workload.
+		 */
+		private final double relative;
+		/**
+		 * The number of bytes allocated per operation.
+		 */
+		private final long allocated;
+		
+		/**
+		 * Constructs a new result.
+		 * @param name The name of the workload.
+		 * @param throughput The number of operations per second.
+		 * @param relative The throughput relative to the calibration workload.
+		 * @param allocated The number of bytes allocated per operation.
+		 */
+		private Result(String name, double throughput, double relative, long allocated){
+			this.name = name;
+			this.throughput = throughput;
+			this.relative = relative;
+			this.allocated = allocated;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Benchmark that measures how long it takes to paint a board and how
+ * much memory is allocated while doing so. Boards of several sizes are
+ * painted into an offscreen image in headless mode while the view is
+ * moved or zoomed a bit between frames, such that every frame has to
+ * paint the entire board like it would while the player is panning.
+ * <p>
+ * Usage: <code>RenderBenchmark [sizes] [frames]</code> where sizes is
+ * a comma separated list of board sizes and frames is the number of
+ * frames to measure for each scenario.
+ * @author Roan
+ */
+public class RenderBenchmark{
+	/**
+	 * Default board sizes to measure.
+	 */
+	private static final int[] SIZES = {10, 100, 500, 1000, 2000};
+	/**
+	 * Default number of frames to measure per scenario.
+	 */
+	private static final int FRAMES = 200;
+	/**
+	 * Width of the offscreen image the board is painted to.
+	 */
+	private static final int WIDTH = 1000;
+	/**
+	 * Height of the offscreen image the board is painted to.
+	 */
+	private static final int HEIGHT = 800;
+	/**
+	 * Distance in pixels the view is moved between frames.
+	 */
+	private static final int PAN_STEP = 7;
+	
+	/**
+	 * Runs the benchmark.
+	 * @param args The board sizes and number of frames to measure.
+	 * @throws InvocationTargetException When the benchmark failed.
+	 * @throws InterruptedException When interrupted.
+	 */
+	public static void main(String[] args) throws InvocationTargetException, InterruptedException{
+		System.setProperty("java.awt.headless", "true");
+		int[] sizes = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray() : SIZES;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : FRAMES;
+		
+		//boards are only ever painted on the EDT
+		SwingUtilities.invokeAndWait(()->{
+			System.out.println(String.format("%-11s %-10s %8s %8s %8s %8s %12s", "Board", "Scenario", "p50 ms", "p90 ms", "p99 ms", "max ms", "alloc/frame"));
+			for(int size : sizes){
+				Board board = createBoard(size);
+				double fit = Math.min(WIDTH, HEIGHT) / (size * 50.0D);
+				run(board, size, "pan 1.0", frames, 1.0D, false);
+				run(board, size, "pan 0.25", frames, 0.25D, false);
+				run(board, size, "pan fit", frames, fit, false);
+				run(board, size, "zoom", frames, Math.min(1.0D, fit * 4.0D), true);
+			}
+		});
+		System.exit(0);
+	}
+	
+	/**
+	 * Creates a board of the given size with about
+	 * half of its tiles filled in or crossed out.
+	 * @param size The width and height of the board.
+	 * @return The created board.
+	 */
+	private static Board createBoard(int size){
+		Board board = new Board(new Seed(size, size, size, 0.6D));
+		board.setSize(WIDTH, HEIGHT);
+		Grid grid = board.getGrid();
+		Random random = new Random(size);
+		for(int x = 0; x < size; x++){
+			for(int y = 0; y < size; y++){
+				int roll = random.nextInt(4);
+				grid.set(x, y, roll == 0 ? Tile.FILL : (roll == 1 ? Tile.CROSS : Tile.EMPTY));
+			}
+		}
+		return board;
+	}
+	
+	/**
+	 * Measures a single scenario and prints the results.
+	 * @param board The board to paint.
+	 * @param size The width and height of the board.
+	 * @param name The name of the scenario.
+	 * @param frames The number of frames to measure.
+	 * @param zoom The zoom level to paint the board at.
+	 * @param zooming True to change the zoom level between frames,
+	 *        false to move the view between frames.
+	 */
+	private static void run(Board board, int size, String name, int frames, double zoom, boolean zooming){
+		BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		boolean allocation = threads instanceof com.sun.management.ThreadMXBean;
+		long thread = Thread.currentThread().getId();
+		
+		board.changeZoom(zoom);
+		board.centerView(size / 2.0D, size / 2.0D);
+		long[] times = new long[frames];
+		long allocated = 0;
+		for(int i = -frames / 4; i < frames; i++){
+			if(zooming){
+				board.changeZoom(zoom * (i % 2 == 0 ? 1.0D : 1.05D));
+			}else{
+				double cell = 50.0D * zoom;
+				board.centerView(size / 2.0D + (i * PAN_STEP) / cell, size / 2.0D + (i * PAN_STEP) / (2.0D * cell));
+			}
+			
+			long bytes = allocation ? ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(thread) : 0L;
+			long start = System.nanoTime();
+			Graphics2D g = img.createGraphics();
+			board.paintComponent(g);
+			g.dispose();
+			long time = System.nanoTime() - start;
+			
+			//the first frames warm up the caches and the JIT
+			if(i >= 0){
+				times[i] = time;
+				if(allocation){
+					allocated += ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(thread) - bytes;
+				}
+			}
+		}
+		
+		Arrays.sort(times);
+		System.out.println(String.format(
+			"%-11s %-10s %8.2f %8.2f %8.2f %8.2f %12s",
+			size + "x" + size,
+			name,
+			percentile(times, 0.5D),
+			percentile(times, 0.9D),
+			percentile(times, 0.99D),
+			times[frames - 1] / 1e6D,
+			allocation ? (allocated / frames / 1024) + " KiB" : "n/a"
+		));
+	}
+	
+	/**
+	 * Gets a percentile from a sorted array of frame times.
+	 * @param times The sorted frame times in nanoseconds.
+	 * @param p The percentile to get between 0 and 1.
+	 * @return The requested percentile in milliseconds.
+	 */
+	private static double percentile(long[] times, double p){
+		return times[Math.min(times.length - 1, (int)Math.ceil(p * times.length) - 1)] / 1e6D;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark that measures how long it takes to generate
+ * a new puzzle and to set up a new board for it.
+ * @author Roan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GenerationBenchmark{
+	/**
+	 * The width and height of the board.
+	 */
+	@Param({"10", "100", "1000", "2000"})
+	public int size;
+	/**
+	 * The tile density of the board.
+	 */
+	@Param({"0.3", "0.6", "0.9"})
+	public double density;
+	/**
+	 * The seed to generate puzzles for.
+	 */
+	private Seed seed;
+	
+	/**
+	 * Creates the seed for the current parameters.
+	 */
+	@Setup
+	public void setup(){
+		seed = new Seed(size, size, size, density);
+	}
+	
+	/**
+	 * Generates the puzzle and its hints.
+	 * @return The generated puzzle.
+	 */
+	@Benchmark
+	public Puzzle createPuzzle(){
+		return Board.generatePuzzle(seed);
+	}
+	
+	/**
+	 * Opens the puzzle for a seed that was opened before,
+	 * which is served from the shared puzzle cache.
+	 * @return The cached puzzle.
+	 */
+	@Benchmark
+	public Puzzle openPuzzle(){
+		return Board.createPuzzle(seed);
+	}
+	
+	/**
+	 * Creates an empty grid for the game state.
+	 * @return The created grid.
+	 */
+	@Benchmark
+	public Grid createGrid(){
+		return Board.createGrid(seed);
+	}
+	
+	/**
+	 * Sets up an entire new board, including its puzzle and grid.
+	 * @return The created board.
+	 */
+	@Benchmark
+	public Board createBoard(){
+		return new Board(seed);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dev.roanh.picross.Board.StateChange;
+
+/**
+ * Benchmark that measures how long it takes to undo and
+ * redo a single move that changed a large number of tiles.
+ * @author Roan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HistoryBenchmark{
+	/**
+	 * The width and height of the board.
+	 */
+	@Param({"100", "1000", "2000"})
+	public int size;
+	/**
+	 * The tile density of the board.
+	 */
+	@Param({"0.3", "0.6", "0.9"})
+	public double density;
+	/**
+	 * The width and height of the rectangle of tiles the move changed.
+	 */
+	@Param({"100", "250"})
+	public int batch;
+	/**
+	 * The board the move was made on.
+	 */
+	private Board board;
+	
+	/**
+	 * Creates the board and makes the move to undo and redo.
+	 */
+	@Setup
+	public void setup(){
+		board = new Board(new Seed(size, size, size, density));
+		batch = Math.min(batch, size);
+		List<StateChange> changes = new ArrayList<StateChange>(batch * batch);
+		for(int y = 0; y < batch; y++){
+			for(int x = 0; x < batch; x++){
+				changes.add(board.createStateChange(x, y, Tile.EMPTY, Tile.CROSS, false));
+			}
+		}
+		board.replayMove(changes);
+	}
+	
+	/**
+	 * Undoes the move and then redoes it again.
+	 */
+	@Benchmark
+	public void undoRedo(){
+		board.undo();
+		board.redo();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark that measures how long it takes to judge which hints
+ * of a row are satisfied. Rows are taken from a generated puzzle
+ * and marked in one of several representative ways.
+ * @author Roan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JudgementBenchmark{
+	/**
+	 * Number of different rows to cycle through.
+	 */
+	private static final int ROWS = 16;
+	/**
+	 * The length of a row.
+	 */
+	@Param({"10", "100", "1000", "10000"})
+	public int size;
+	/**
+	 * The tile density of the puzzle.
+	 */
+	@Param({"0.3", "0.6", "0.9"})
+	public double density;
+	/**
+	 * How the rows are marked, either empty, with the left half of the
+	 * solution filled in, with the entire solution marked, or randomly.
+	 */
+	@Param({"empty", "partial", "solved", "random"})
+	public String line;
+	/**
+	 * The hints for each row.
+	 */
+	private int[][] hints;
+	/**
+	 * The marked tiles for each row.
+	 */
+	private Tile[][] tiles;
+	/**
+	 * The judgement for each row.
+	 */
+	private Boolean[][] results;
+	/**
+	 * The index of the next row to judge.
+	 */
+	private int row = 0;
+	
+	/**
+	 * Generates and marks the rows to judge.
+	 */
+	@Setup
+	public void setup(){
+		Puzzle puzzle = Board.createPuzzle(new Seed(size, size, ROWS, density));
+		Random random = new Random(size);
+		hints = new int[ROWS][];
+		tiles = new Tile[ROWS][size];
+		results = new Boolean[ROWS][];
+		for(int y = 0; y < ROWS; y++){
+			hints[y] = puzzle.getRowHints(y);
+			results[y] = new Boolean[hints[y].length];
+			for(int x = 0; x < size; x++){
+				switch(line){
+				case "empty":
+					tiles[y][x] = Tile.EMPTY;
+					break;
+				case "partial":
+					tiles[y][x] = x < size / 2 && puzzle.isFilled(x, y) ? Tile.FILL : Tile.EMPTY;
+					break;
+				case "solved":
+					tiles[y][x] = puzzle.isFilled(x, y) ? Tile.FILL : Tile.CROSS;
+					break;
+				case "random":
+					tiles[y][x] = Tile.values()[random.nextInt(Tile.values().length)];
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown line type: " + line);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Judges a single row.
+	 * @return The judgement for the row.
+	 */
+	@Benchmark
+	public Boolean[] judgeRow(){
+		int y = row;
+		row = (row + 1) % ROWS;
+		Tile[] marked = tiles[y];
+		Board.computeJudgement(results[y], hints[y], size, x->marked[x]);
+		return results[y];
+	}
+}
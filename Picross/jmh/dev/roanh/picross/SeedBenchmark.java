@@ -0,0 +1,98 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark that measures how long it takes to
+ * encode a seed to its string form and back. The size
+ * and density only affect the length of the string form
+ * of custom seeds, which carry their solution in the
+ * {@link SeedFormat}, random seeds are always 24 bytes.
+ * @author Roan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SeedBenchmark{
+	/**
+	 * The width and height of the board.
+	 */
+	@Param({"10", "1000"})
+	public int size;
+	/**
+	 * The tile density of the board.
+	 */
+	@Param({"0.3", "0.6", "0.9"})
+	public double density;
+	/**
+	 * True to measure the seed of a custom puzzle with the
+	 * solution of a random puzzle of the given size and density.
+	 */
+	@Param({"false", "true"})
+	public boolean custom;
+	/**
+	 * The seed to encode.
+	 */
+	private Seed seed;
+	/**
+	 * The string form of the seed to decode.
+	 */
+	private String data;
+	
+	/**
+	 * Creates the seed and its string form.
+	 */
+	@Setup
+	public void setup(){
+		seed = new Seed(size, size, size, density);
+		if(custom){
+			seed = new Seed(size, size, PackedPuzzle.generate(seed));
+		}
+		data = seed.toString();
+	}
+	
+	/**
+	 * Encodes the seed to its string form.
+	 * @return The encoded seed.
+	 */
+	@Benchmark
+	public String encode(){
+		return seed.toString();
+	}
+	
+	/**
+	 * Decodes the seed from its string form.
+	 * @return The decoded seed.
+	 */
+	@Benchmark
+	public Seed decode(){
+		return new Seed(data);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dev.roanh.picross.Board.StateChange;
+
+/**
+ * Benchmark that measures how long it takes to apply a move to a
+ * board, both for a single tile and for a rectangle of tiles like
+ * the player would select by dragging. Every move is undone again
+ * right after it was made such that the undo stack does not keep
+ * growing while the benchmark runs.
+ * @author Roan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StateChangeBenchmark{
+	/**
+	 * The width and height of the board.
+	 */
+	@Param({"100", "1000", "2000"})
+	public int size;
+	/**
+	 * The tile density of the board.
+	 */
+	@Param({"0.3", "0.6", "0.9"})
+	public double density;
+	/**
+	 * The width and height of the rectangle of tiles to apply.
+	 */
+	@Param({"10", "100"})
+	public int area;
+	/**
+	 * The board to apply moves to.
+	 */
+	private Board board;
+	/**
+	 * The grid of the board.
+	 */
+	private Grid grid;
+	/**
+	 * The position of the next move, moves are spread
+	 * over the board to avoid only hitting the same rows.
+	 */
+	private int pos = 0;
+	
+	/**
+	 * Creates the board to apply moves to.
+	 */
+	@Setup
+	public void setup(){
+		board = new Board(new Seed(size, size, size, density));
+		grid = board.getGrid();
+		area = Math.min(area, size);
+	}
+	
+	/**
+	 * Fills a single tile and undoes this move again.
+	 */
+	@Benchmark
+	public void applySingle(){
+		int x = pos % size;
+		int y = (pos * 31) % size;
+		pos = (pos + 1) % (size * size);
+		board.setNextState(x, y, Tile.FILL);
+		board.undo();
+	}
+	
+	/**
+	 * Fills a rectangle of tiles and undoes this move again.
+	 */
+	@Benchmark
+	public void applyRectangle(){
+		int x0 = pos % (size - area + 1);
+		int y0 = (pos * 31) % (size - area + 1);
+		pos = (pos + 1) % (size * size);
+		List<StateChange> changes = new ArrayList<StateChange>(area * area);
+		for(int y = y0; y < y0 + area; y++){
+			for(int x = x0; x < x0 + area; x++){
+				changes.add(board.createStateChange(x, y, grid.get(x, y), Tile.FILL, false));
+			}
+		}
+		board.replayMove(changes);
+		board.undo();
+	}
+}
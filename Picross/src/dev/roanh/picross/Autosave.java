@@ -0,0 +1,655 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Incremental autosave for boards that keep their state in a
+ * {@link PackedGrid}. Saving takes a snapshot on the calling thread,
+ * normally the EDT, that only copies the pages of the grid that changed
+ * since they were last saved. These pages are then written in place to
+ * the autosave file on a background thread. The autosave file has a
+ * fixed layout with a header followed by two slots that each hold the
+ * fill, cross and test bitplanes and finally the seed of the board,
+ * which can be too large to fit in the header. Saves alternate between
+ * the two slots, such that the slot with the last complete save is never
+ * written to. Each slot has its own header with the epoch of the save it
+ * holds, which is only written once the pages of the slot are on disk.
+ * The first save of a board writes a new file that replaces the old
+ * file once it is complete. The undo and redo history is not part of
+ * an autosave.
+ * @author Roan
+ * @see PackedGrid#takeDirtyPages()
+ */
+public final class Autosave implements Closeable{
+	/**
+	 * Magic number at the start of an autosave file.
+	 */
+	private static final int MAGIC = 0x50435241;
+	/**
+	 * Version of the autosave format, version 1 stored the seed in
+	 * the header limiting its length and version 2 had a single slot.
+	 */
+	private static final int VERSION = 3;
+	/**
+	 * Size of the header at the start of an autosave file.
+	 */
+	private static final int HEADER_SIZE = 256;
+	/**
+	 * Offset of the header of the first slot in an autosave file.
+	 */
+	private static final int SLOT_HEADER_OFFSET = 64;
+	/**
+	 * Size of the header of a single slot.
+	 */
+	private static final int SLOT_HEADER_SIZE = 32;
+	/**
+	 * Number of bytes of a slot header covered by its checksum,
+	 * the epoch, the elapsed time and the test mode flag.
+	 */
+	private static final int SLOT_HEADER_DATA = 17;
+	/**
+	 * Number of slots in an autosave file.
+	 */
+	private static final int SLOTS = 2;
+	/**
+	 * Number of bitplanes stored in an autosave file.
+	 */
+	private static final int PLANES = 3;
+	/**
+	 * Size of the buffer used to load an autosave.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The file the board is saved to.
+	 */
+	private final Path file;
+	/**
+	 * The board that is saved.
+	 */
+	private final Board board;
+	/**
+	 * The grid of the board that is saved.
+	 */
+	private final PackedGrid grid;
+	/**
+	 * The serialized seed of the board.
+	 */
+	private final byte[] seed;
+	/**
+	 * Executor that writes the snapshots, shared by all autosaves
+	 * so that a new autosave cannot replace a file that an older
+	 * autosave is still writing to.
+	 */
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(r->{
+		Thread thread = new Thread(r, "Autosave");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * Number of snapshots that are waiting to be written.
+	 */
+	private final AtomicInteger pending = new AtomicInteger(0);
+	/**
+	 * Whether the next save has to write the complete grid.
+	 */
+	private boolean full = true;
+	/**
+	 * The epoch of the most recent snapshot.
+	 */
+	private long epoch = 0;
+	/**
+	 * The slot the next save is written to.
+	 */
+	private int slot = 0;
+	/**
+	 * For each slot the pages that changed since the slot was last written.
+	 */
+	private final long[][] stale;
+	/**
+	 * The channel for the autosave file, only used by the writer.
+	 */
+	private FileChannel channel = null;
+	/**
+	 * Time in nanoseconds the last snapshot took on the saving thread.
+	 */
+	private volatile long snapshotTime = 0;
+	/**
+	 * Time in nanoseconds from the start of the last
+	 * snapshot until it was completely written.
+	 */
+	private volatile long latency = 0;
+	/**
+	 * Number of bytes written by the last save.
+	 */
+	private volatile long lastBytes = 0;
+	/**
+	 * Total number of bytes written by this autosave.
+	 */
+	private volatile long totalBytes = 0;
+	/**
+	 * The first exception encountered by the writer, once set
+	 * no further snapshots are written.
+	 */
+	private volatile IOException failure = null;
+	/**
+	 * Task that completes once this autosave is closed.
+	 */
+	private volatile Future<?> closed = null;
+	
+	/**
+	 * Constructs a new autosave for the given board. Any
+	 * existing autosave in the given file is replaced
+	 * when the board is saved for the first time.
+	 * @param file The file to save the board to.
+	 * @param board The board to save, this board has
+	 *        to keep its state in a {@link PackedGrid}.
+	 * @throws IllegalArgumentException When the given
+	 *         board does not use a {@link PackedGrid}.
+	 */
+	public Autosave(Path file, Board board) throws IllegalArgumentException{
+		if(!(board.getGrid() instanceof PackedGrid)){
+			throw new IllegalArgumentException("Only packed grids can be autosaved");
+		}
+		this.file = file;
+		this.board = board;
+		this.grid = (PackedGrid)board.getGrid();
+		this.seed = board.getSeed().toString().getBytes(StandardCharsets.US_ASCII);
+		stale = new long[SLOTS][(int)BitPlane.wordCount(grid.getPageCount())];
+	}
+	
+	/**
+	 * Saves the board if the previous save finished. The pages
+	 * that changed are copied on the calling thread and then
+	 * written on a background thread.
+	 * @return True if a save was started, false if the previous
+	 *         save is still in progress or failed.
+	 */
+	public boolean save(){
+		if(failure != null || pending.get() != 0){
+			return false;
+		}
+		snapshot();
+		return true;
+	}
+	
+	/**
+	 * Takes a snapshot of the pages that changed since the
+	 * last snapshot and queues it to be written.
+	 */
+	private void snapshot(){
+		pending.incrementAndGet();
+		long start = System.nanoTime();
+		long[] dirty = grid.takeDirtyPages();
+		int count = grid.getPageCount();
+		if(full){
+			//the other slot is empty in the new file
+			slot = 0;
+			Arrays.fill(stale[0], 0L);
+			for(int i = 0; i < count; i++){
+				stale[1][i >>> 6] |= 1L << i;
+			}
+		}else{
+			for(long[] pages : stale){
+				for(int i = 0; i < pages.length; i++){
+					pages[i] |= dirty[i];
+				}
+			}
+		}
+		
+		long[] write = stale[slot].clone();
+		Arrays.fill(stale[slot], 0L);
+		long[][] planes = new long[][]{grid.getFillPlane().words(), grid.getCrossPlane().words(), grid.getTestPlane().words()};
+		List<Page> pages = new ArrayList<Page>();
+		for(int i = 0; i < count; i++){
+			if(full || (write[i >>> 6] & (1L << i)) != 0){
+				int from = i * PackedGrid.PAGE_WORDS;
+				int length = Math.min(PackedGrid.PAGE_WORDS, planes[0].length - from);
+				long[] words = new long[PLANES * length];
+				for(int p = 0; p < PLANES; p++){
+					System.arraycopy(planes[p], from, words, p * length, length);
+				}
+				pages.add(new Page(from, words));
+			}
+		}
+		Header header = new Header(++epoch, slot, board.getPassedTime(), board.isTestMode(), full);
+		full = false;
+		slot = (slot + 1) % SLOTS;
+		snapshotTime = System.nanoTime() - start;
+		
+		executor.execute(()->{
+			try{
+				if(failure == null){
+					write(header, pages, planes[0].length);
+					latency = System.nanoTime() - start;
+				}
+			}catch(IOException e){
+				failure = e;
+			}finally{
+				pending.decrementAndGet();
+			}
+		});
+	}
+	
+	/**
+	 * Writes a snapshot to the autosave file. First all the changed
+	 * pages are written to the slot of the snapshot and forced to disk,
+	 * after which the header of the slot is written with the new epoch.
+	 * A snapshot that replaces the file is written to a new file that
+	 * is moved over the old file once it is complete.
+	 * @param header The header of the snapshot.
+	 * @param pages The pages that changed.
+	 * @param wordCount The number of words in each bitplane.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private void write(Header header, List<Page> pages, int wordCount) throws IOException{
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		if(header.truncate){
+			if(channel != null){
+				channel.close();
+				channel = null;
+			}
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		}
+		
+		long bytes = 0;
+		long base = HEADER_SIZE + (long)header.slot * PLANES * wordCount * Long.BYTES;
+		ByteBuffer buffer = ByteBuffer.allocate(PackedGrid.PAGE_WORDS * Long.BYTES);
+		for(Page page : pages){
+			int length = page.words.length / PLANES;
+			for(int p = 0; p < PLANES; p++){
+				buffer.clear();
+				buffer.asLongBuffer().put(page.words, p * length, length);
+				buffer.limit(length * Long.BYTES);
+				bytes += writeFully(buffer, base + ((long)p * wordCount + page.offset) * Long.BYTES);
+			}
+		}
+		if(header.truncate){
+			ByteArrayOutputStream data = new ByteArrayOutputStream(HEADER_SIZE);
+			DataOutputStream out = new DataOutputStream(data);
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(grid.getWidth());
+			out.writeInt(grid.getHeight());
+			out.writeInt(seed.length);
+			bytes += writeFully(ByteBuffer.wrap(data.toByteArray()), 0);
+			bytes += writeFully(ByteBuffer.wrap(seed), HEADER_SIZE + (long)SLOTS * PLANES * wordCount * Long.BYTES);
+		}
+		channel.force(false);
+		
+		ByteBuffer slotHeader = ByteBuffer.allocate(SLOT_HEADER_SIZE);
+		slotHeader.putLong(header.epoch);
+		slotHeader.putLong(header.passed);
+		slotHeader.put((byte)(header.testMode ? 1 : 0));
+		CRC32 crc = new CRC32();
+		crc.update(slotHeader.array(), 0, SLOT_HEADER_DATA);
+		slotHeader.putInt((int)crc.getValue());
+		slotHeader.rewind();
+		bytes += writeFully(slotHeader, SLOT_HEADER_OFFSET + (long)header.slot * SLOT_HEADER_SIZE);
+		channel.force(false);
+		
+		if(header.truncate){
+			channel.close();
+			channel = null;
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(file, StandardOpenOption.WRITE);
+		}
+		
+		lastBytes = bytes;
+		totalBytes += bytes;
+	}
+	
+	/**
+	 * Reads the seed stored after the bitplanes of an autosave file.
+	 * @param channel The channel to read from.
+	 * @param pos The position of the seed in the file.
+	 * @param length The length of the seed in bytes.
+	 * @return The seed in its string form.
+	 * @throws IOException When an IOException occurs or
+	 *         when the file is truncated.
+	 */
+	private static String readSeed(FileChannel channel, long pos, int length) throws IOException{
+		if(length < 0 || length > SeedFormat.MAX_LENGTH){
+			throw new IOException("Invalid seed length in autosave file");
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, pos + buffer.position());
+			if(read < 0){
+				throw new IOException("Autosave file is truncated");
+			}
+		}
+		return new String(buffer.array(), StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * Writes all the remaining data in the given buffer
+	 * to the autosave file at the given position.
+	 * @param buffer The data to write.
+	 * @param pos The position in the file to write at.
+	 * @return The number of bytes written.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private int writeFully(ByteBuffer buffer, long pos) throws IOException{
+		int written = 0;
+		while(buffer.hasRemaining()){
+			written += channel.write(buffer, pos + written);
+		}
+		return written;
+	}
+	
+	/**
+	 * Gets the time the last snapshot took on the thread
+	 * that started the save, normally the EDT.
+	 * @return The time the last snapshot took in nanoseconds.
+	 */
+	public long getSnapshotTime(){
+		return snapshotTime;
+	}
+	
+	/**
+	 * Gets the time it took from starting the last completed
+	 * save until it was completely written to disk.
+	 * @return The latency of the last save in nanoseconds.
+	 */
+	public long getLatency(){
+		return latency;
+	}
+	
+	/**
+	 * Gets the number of bytes written by the last completed save.
+	 * @return The number of bytes written by the last save.
+	 */
+	public long getLastBytesWritten(){
+		return lastBytes;
+	}
+	
+	/**
+	 * Gets the total number of bytes written by this autosave.
+	 * @return The total number of bytes written.
+	 */
+	public long getTotalBytesWritten(){
+		return totalBytes;
+	}
+	
+	/**
+	 * Stops the autosave. When called on the EDT, which changes the
+	 * board, the board is saved one final time after any save that is
+	 * still pending. On any other thread only the saves that were
+	 * already started are written, since a snapshot taken there could
+	 * race with moves that are being made. This method does not wait
+	 * for the saves to finish and does nothing if already closed.
+	 * @throws IOException When an earlier save failed.
+	 * @see #await()
+	 */
+	@Override
+	public synchronized void close() throws IOException{
+		if(closed != null){
+			return;
+		}
+		
+		if(failure == null && SwingUtilities.isEventDispatchThread()){
+			snapshot();
+		}
+		closed = executor.submit(()->{
+			try{
+				if(channel != null){
+					channel.close();
+				}
+			}catch(IOException e){
+				//pity
+			}
+		});
+		if(failure != null){
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Waits for all saves that were started before
+	 * this autosave was closed to finish.
+	 * @throws InterruptedException When the current thread
+	 *         is interrupted while waiting.
+	 * @see #close()
+	 */
+	public void await() throws InterruptedException{
+		try{
+			closed.get();
+		}catch(ExecutionException e){
+			//the task only closes the channel
+		}
+	}
+	
+	/**
+	 * Loads the board stored in the given autosave file.
+	 * @param file The autosave file to load.
+	 * @return The board that was loaded.
+	 * @throws IOException When an IOException occurs or when
+	 *         the given file is not a valid autosave.
+	 */
+	public static Board load(Path file) throws IOException{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			if(in.readInt() != MAGIC){
+				throw new IOException("Not a supported autosave file");
+			}
+			int version = in.readUnsignedByte();
+			if(version != 1 && version != 2 && version != VERSION){
+				throw new IOException("Not a supported autosave file");
+			}
+			
+			boolean testMode;
+			int width;
+			int height;
+			long passed;
+			int slot = 0;
+			String seedData;
+			if(version == VERSION){
+				width = in.readInt();
+				height = in.readInt();
+				int seedLength = in.readInt();
+				if(width <= 0 || height <= 0 || seedLength < 0 || seedLength > SeedFormat.MAX_LENGTH){
+					throw new IOException("Invalid board size in autosave file");
+				}
+				
+				long planes = PLANES * BitPlane.wordCount((long)width * height) * Long.BYTES;
+				if(channel.size() != HEADER_SIZE + SLOTS * planes + seedLength){
+					throw new IOException("Autosave file is truncated");
+				}
+				
+				//use the slot with the newest complete save
+				long epoch = 0L;
+				passed = 0L;
+				testMode = false;
+				ByteBuffer header = ByteBuffer.allocate(SLOT_HEADER_SIZE);
+				CRC32 crc = new CRC32();
+				for(int i = 0; i < SLOTS; i++){
+					header.clear();
+					readFully(channel, header, SLOT_HEADER_OFFSET + (long)i * SLOT_HEADER_SIZE);
+					crc.reset();
+					crc.update(header.array(), 0, SLOT_HEADER_DATA);
+					if(header.getInt(SLOT_HEADER_DATA) == (int)crc.getValue() && header.getLong(0) > epoch){
+						epoch = header.getLong(0);
+						passed = header.getLong(8);
+						testMode = header.get(16) != 0;
+						slot = i;
+					}
+				}
+				if(epoch == 0L){
+					throw new IOException("The autosave was never completed");
+				}
+				
+				seedData = readSeed(channel, HEADER_SIZE + SLOTS * planes, seedLength);
+			}else{
+				testMode = in.readBoolean();
+				width = in.readInt();
+				height = in.readInt();
+				if(in.readLong() == 0L){
+					throw new IOException("The autosave was never completed");
+				}
+				passed = in.readLong();
+				seedData = version == 1 ? in.readUTF() : readSeed(channel, HEADER_SIZE + PLANES * BitPlane.wordCount((long)width * height) * Long.BYTES, in.readInt());
+			}
+			
+			Seed seed;
+			try{
+				seed = new Seed(seedData);
+			}catch(IllegalArgumentException e){
+				throw new IOException("Invalid seed in autosave file");
+			}
+			if(seed.width != width || seed.height != height){
+				throw new IOException("Board size does not match the seed");
+			}
+			
+			PackedGrid grid = new PackedGrid(width, height);
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long pos = HEADER_SIZE + (long)slot * PLANES * grid.getFillPlane().words().length * Long.BYTES;
+			for(BitPlane plane : new BitPlane[]{grid.getFillPlane(), grid.getCrossPlane(), grid.getTestPlane()}){
+				long[] words = plane.words();
+				for(int i = 0; i < words.length; i += buffer.capacity() / Long.BYTES){
+					buffer.clear();
+					buffer.limit(Math.min(buffer.capacity(), (words.length - i) * Long.BYTES));
+					readFully(channel, buffer, pos);
+					pos += buffer.limit();
+					buffer.flip();
+					buffer.asLongBuffer().get(words, i, buffer.remaining() / Long.BYTES);
+				}
+			}
+			grid.recount();
+			
+			Board board = new Board(seed, Board.createPuzzle(seed), grid);
+			board.setPassedTime(passed);
+			if(testMode){
+				board.enterTestMode();
+			}
+			return board;
+		}
+	}
+	
+	/**
+	 * Fills the given buffer with data from the given channel.
+	 * @param channel The channel to read from.
+	 * @param buffer The buffer to fill.
+	 * @param pos The position in the file to read from.
+	 * @throws IOException When an IOException occurs or
+	 *         when the file is truncated.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException{
+		int start = buffer.position();
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, pos + buffer.position() - start) < 0){
+				throw new IOException("Autosave file is truncated");
+			}
+		}
+	}
+	
+	/**
+	 * Header data of a snapshot.
+	 * @author Roan
+	 */
+	private static final class Header{
+		/**
+		 * The epoch of the snapshot.
+		 */
+		private final long epoch;
+		/**
+		 * The slot the snapshot is written to.
+		 */
+		private final int slot;
+		/**
+		 * The time passed in the game in milliseconds.
+		 */
+		private final long passed;
+		/**
+		 * Whether the board was in test mode.
+		 */
+		private final boolean testMode;
+		/**
+		 * Whether the autosave file has to be replaced.
+		 */
+		private final boolean truncate;
+		
+		/**
+		 * Constructs a new snapshot header.
+		 * @param epoch The epoch of the snapshot.
+		 * @param slot The slot the snapshot is written to.
+		 * @param passed The time passed in the game in milliseconds.
+		 * @param testMode Whether the board was in test mode.
+		 * @param truncate Whether the autosave file has to be replaced.
+		 */
+		private Header(long epoch, int slot, long passed, boolean testMode, boolean truncate){
+			this.epoch = epoch;
+			this.slot = slot;
+			this.passed = passed;
+			this.testMode = testMode;
+			this.truncate = truncate;
+		}
+	}
+	
+	/**
+	 * A copy of a single page of the grid.
+	 * @author Roan
+	 */
+	private static final class Page{
+		/**
+		 * Index of the first word of the page in each bitplane.
+		 */
+		private final int offset;
+		/**
+		 * The words of the page for each of the bitplanes in order.
+		 */
+		private final long[] words;
+		
+		/**
+		 * Constructs a new page copy.
+		 * @param offset Index of the first word of the page.
+		 * @param words The words of the page for each bitplane.
+		 */
+		private Page(int offset, long[] words){
+			this.offset = offset;
+			this.words = words;
+		}
+	}
+}
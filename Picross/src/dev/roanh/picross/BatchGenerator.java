@@ -0,0 +1,150 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import dev.roanh.picross.PuzzleDatabase.BulkLoader;
+import dev.roanh.picross.Solver.Result;
+import dev.roanh.picross.Solver.Status;
+
+/**
+ * Headless command that generates random puzzles, grades them
+ * in parallel and bulk loads them into a puzzle database. Puzzles
+ * the solver gives up on are not stored and neither are puzzles with
+ * the same hints as a puzzle that is already in the database, which
+ * are recognised by their {@link Fingerprint} before being solved.
+ * <p>
+ * Usage: <code>BatchGenerator &lt;database directory&gt; &lt;count&gt;
+ * &lt;sizes&gt; [min density] [max density] [threads]</code> where sizes
+ * is a comma separated list of sizes such as <code>10x10,15x20</code>
+ * and the given number of puzzles is generated for each size.
+ * @author Roan
+ * @see PuzzleDatabase
+ * @see Solver
+ */
+public class BatchGenerator{
+	/**
+	 * Stack size of the generator threads, the search of the
+	 * solver recurses once for every guess it makes.
+	 */
+	private static final long STACK_SIZE = 256L * 1024L * 1024L;
+	/**
+	 * Default lowest tile density of generated puzzles.
+	 */
+	private static final double MIN_DENSITY = 0.5D;
+	/**
+	 * Default highest tile density of generated puzzles.
+	 */
+	private static final double MAX_DENSITY = 0.8D;
+	
+	/**
+	 * Generates puzzles and adds them to a puzzle database.
+	 * @param args The database directory, number of puzzles, sizes
+	 *        and optionally the density range and number of threads.
+	 * @throws IOException When an IOException occurs.
+	 * @throws InterruptedException When interrupted.
+	 * @throws ExecutionException When generating a puzzle failed.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException{
+		if(args.length < 3){
+			System.err.println("Usage: BatchGenerator <database directory> <count> <sizes> [min density] [max density] [threads]");
+			System.exit(2);
+		}
+		
+		long count = Long.parseLong(args[1]);
+		double minDensity = args.length > 3 ? Double.parseDouble(args[3]) : MIN_DENSITY;
+		double maxDensity = args.length > 4 ? Double.parseDouble(args[4]) : MAX_DENSITY;
+		int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r->{
+			Thread thread = new Thread(null, r, "BatchGenerator", STACK_SIZE);
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		try(PuzzleDatabase db = PuzzleDatabase.open(Paths.get(args[0]))){
+			for(String size : args[2].split(",")){
+				String[] dims = size.trim().split("x");
+				int width = Integer.parseInt(dims[0]);
+				int height = Integer.parseInt(dims[dims.length - 1]);
+				
+				long start = System.nanoTime();
+				AtomicLong remaining = new AtomicLong(count);
+				AtomicLongArray grades = new AtomicLongArray(Difficulty.values().length * 2 + 1);
+				AtomicLong duplicates = new AtomicLong();
+				BulkLoader loader = db.bulkLoad(count);
+				try{
+					List<Future<?>> workers = new ArrayList<Future<?>>();
+					for(int i = 0; i < threads; i++){
+						workers.add(executor.submit(()->{
+							ThreadLocalRandom random = ThreadLocalRandom.current();
+							while(remaining.getAndDecrement() > 0){
+								Seed seed = new Seed(random.nextLong(), width, height, minDensity + random.nextDouble() * (maxDensity - minDensity));
+								HintSet hints = new HintSet(seed.toString(), Board.generatePuzzle(seed));
+								Fingerprint fingerprint = Fingerprint.of(hints);
+								if(db.contains(fingerprint)){
+									duplicates.incrementAndGet();
+									continue;
+								}
+								
+								Result result = Solver.solve(hints);
+								if(result.getStatus() == Status.UNIQUE || result.getStatus() == Status.MULTIPLE){
+									boolean unique = result.getStatus() == Status.UNIQUE;
+									loader.add(seed, fingerprint, result.getDifficulty(), unique);
+									grades.incrementAndGet(result.getDifficulty().ordinal() * 2 + (unique ? 1 : 0));
+								}else{
+									grades.incrementAndGet(grades.length() - 1);
+								}
+							}
+							return null;
+						}));
+					}
+					
+					for(Future<?> worker : workers){
+						worker.get();
+					}
+				}finally{
+					loader.close();
+				}
+				
+				StringBuilder report = new StringBuilder();
+				report.append(String.format("%dx%d: %d puzzles in %.1f s,", width, height, count, (System.nanoTime() - start) / 1e9D));
+				for(Difficulty difficulty : Difficulty.values()){
+					report.append(String.format(" %s %d (%d unique),", difficulty.getName(), grades.get(difficulty.ordinal() * 2) + grades.get(difficulty.ordinal() * 2 + 1), grades.get(difficulty.ordinal() * 2 + 1)));
+				}
+				report.append(String.format(" %d undecided, %d duplicates", grades.get(grades.length() - 1), duplicates.get() + loader.getRejectedCount()));
+				System.out.println(report);
+			}
+			
+			System.out.println("The database now holds " + db.size() + " puzzles");
+		}
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dev.roanh.picross.Solver.Result;
+import dev.roanh.picross.Solver.Status;
+
+/**
+ * Headless command that solves and grades every puzzle in a
+ * directory of puzzle files in parallel. Files are read one
+ * puzzle at a time and solved while the rest is still being
+ * read, the results are printed in the order the puzzles were
+ * read in. Puzzles that have no solution or more than one
+ * solution are flagged and make the command exit with status 1.
+ * <p>
+ * Usage: <code>BatchSolver &lt;directory&gt; [threads]</code>
+ * @author Roan
+ * @see HintFormat
+ * @see Solver
+ */
+public class BatchSolver{
+	/**
+	 * Stack size of the solver threads, the search of the
+	 * solver recurses once for every guess it makes.
+	 */
+	private static final long STACK_SIZE = 256L * 1024L * 1024L;
+	/**
+	 * Maximum number of puzzles per thread that are read but not yet reported.
+	 */
+	private static final int BACKLOG = 16;
+	/**
+	 * Format of a single line in the report.
+	 */
+	private static final String FORMAT = "%-48s %11s %-10s %-10s %8s %10s";
+	/**
+	 * Number of puzzles with each status, failed files are counted at the end.
+	 */
+	private static final AtomicLongArray counts = new AtomicLongArray(Status.values().length + 1);
+	
+	/**
+	 * Solves all puzzles in the given directory.
+	 * @param args The directory to solve and optionally the number of threads.
+	 * @throws IOException When an IOException occurs while listing the files.
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length == 0){
+			System.err.println("Usage: BatchSolver <directory> [threads]");
+			System.exit(2);
+		}
+		
+		Path dir = Paths.get(args[0]);
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		List<Path> files;
+		try(Stream<Path> stream = Files.walk(dir)){
+			files = stream.filter(Files::isRegularFile).filter(HintFormat::isSupported).sorted().collect(Collectors.toList());
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r->{
+			Thread thread = new Thread(null, r, "BatchSolver", STACK_SIZE);
+			thread.setDaemon(true);
+			return thread;
+		});
+		Semaphore backlog = new Semaphore(threads * BACKLOG);
+		Deque<Future<String>> pending = new ArrayDeque<Future<String>>();
+		
+		long start = System.nanoTime();
+		System.out.println(String.format(FORMAT, "Puzzle", "Size", "Status", "Difficulty", "Guesses", "Time (ms)"));
+		for(Path file : files){
+			String name = dir.relativize(file).toString();
+			String fileName = file.getFileName().toString();
+			try{
+				HintFormat.read(file, hints->{
+					backlog.acquireUninterruptibly();
+					pending.add(executor.submit(()->{
+						try{
+							return solve(name, fileName, hints);
+						}finally{
+							backlog.release();
+						}
+					}));
+					report(pending, false);
+				});
+			}catch(IOException e){
+				counts.incrementAndGet(Status.values().length);
+				pending.add(executor.submit(()->String.format("%-48s FAILED: %s", name, e.getMessage())));
+			}
+		}
+		report(pending, true);
+		executor.shutdown();
+		
+		long failed = counts.get(Status.values().length);
+		System.out.println(String.format(
+			"Checked %d puzzles in %.1f s: %d unique, %d multiple, %d unsolvable, %d undecided, %d files failed to load",
+			counts.get(Status.UNIQUE.ordinal()) + counts.get(Status.MULTIPLE.ordinal()) + counts.get(Status.UNSOLVABLE.ordinal()) + counts.get(Status.UNDECIDED.ordinal()),
+			(System.nanoTime() - start) / 1e9D,
+			counts.get(Status.UNIQUE.ordinal()),
+			counts.get(Status.MULTIPLE.ordinal()),
+			counts.get(Status.UNSOLVABLE.ordinal()),
+			counts.get(Status.UNDECIDED.ordinal()),
+			failed
+		));
+		System.exit(counts.get(Status.MULTIPLE.ordinal()) + counts.get(Status.UNSOLVABLE.ordinal()) + failed == 0 ? 0 : 1);
+	}
+	
+	/**
+	 * Solves a single puzzle.
+	 * @param path The relative path of the file the puzzle was read from.
+	 * @param file The name of the file the puzzle was read from.
+	 * @param hints The hints of the puzzle.
+	 * @return The report line for the puzzle.
+	 */
+	private static String solve(String path, String file, HintSet hints){
+		long start = System.nanoTime();
+		Result result = Solver.solve(hints);
+		long time = System.nanoTime() - start;
+		counts.incrementAndGet(result.getStatus().ordinal());
+		
+		//puzzles without a title are named after their file
+		String name = hints.getName().startsWith(file) ? (path + hints.getName().substring(file.length())) : (path + ": " + hints.getName());
+		return String.format(
+			FORMAT,
+			name.length() > 48 ? name.substring(0, 45) + "..." : name,
+			hints.getWidth() + "x" + hints.getHeight(),
+			result.getStatus(),
+			result.getStatus() == Status.UNIQUE ? result.getDifficulty().getName() : "-",
+			result.getGuesses(),
+			String.format("%.2f", time / 1e6D)
+		);
+	}
+	
+	/**
+	 * Prints the report lines of solved puzzles in the order they were read.
+	 * @param pending The puzzles that were not reported yet.
+	 * @param wait True to wait for all puzzles to be solved, false
+	 *        to only report the puzzles that are already solved.
+	 */
+	private static void report(Deque<Future<String>> pending, boolean wait){
+		while(!pending.isEmpty() && (wait || pending.peek().isDone())){
+			try{
+				System.out.println(pending.poll().get());
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				return;
+			}catch(ExecutionException e){
+				counts.incrementAndGet(Status.values().length);
+				System.out.println("FAILED: " + e.getCause());
+			}
+		}
+	}
+}
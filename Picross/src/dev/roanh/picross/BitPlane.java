@@ -0,0 +1,234 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size set of bits stored in row major
+ * order with one bit per grid cell.
+ * @author Roan
+ */
+public final class BitPlane{
+	/**
+	 * The words holding the bits of this plane.
+	 */
+	private final long[] words;
+	/**
+	 * The number of bits in this plane.
+	 */
+	private final long size;
+	
+	/**
+	 * Constructs a new bitplane with the given
+	 * number of bits that are all unset.
+	 * @param size The number of bits.
+	 * @throws IllegalArgumentException When the plane
+	 *         would be too large to store.
+	 */
+	public BitPlane(long size){
+		if(size < 0 || wordCount(size) > Integer.MAX_VALUE - 8){
+			throw new IllegalArgumentException("Bitplane too large: " + size);
+		}
+		this.size = size;
+		words = new long[(int)wordCount(size)];
+	}
+	
+	/**
+	 * Gets the bit at the given index.
+	 * @param index The index of the bit.
+	 * @return True if the bit is set.
+	 */
+	public boolean get(long index){
+		return (words[(int)(index >>> 6)] & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Sets the bit at the given index.
+	 * @param index The index of the bit.
+	 * @param value The new value of the bit.
+	 */
+	public void set(long index, boolean value){
+		if(value){
+			words[(int)(index >>> 6)] |= 1L << index;
+		}else{
+			words[(int)(index >>> 6)] &= ~(1L << index);
+		}
+	}
+	
+	/**
+	 * Sets all the bits in the given range.
+	 * @param from The index of the first bit to set, inclusive.
+	 * @param to The index of the last bit to set, exclusive.
+	 */
+	public void set(long from, long to){
+		if(from >= to){
+			return;
+		}
+		
+		int first = (int)(from >>> 6);
+		int last = (int)((to - 1) >>> 6);
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+		if(first == last){
+			words[first] |= firstMask & lastMask;
+		}else{
+			words[first] |= firstMask;
+			Arrays.fill(words, first + 1, last, -1L);
+			words[last] |= lastMask;
+		}
+	}
+	
+	/**
+	 * Finds the first set bit at or after the given index.
+	 * @param from The index to start searching at.
+	 * @return The index of the first set bit or the
+	 *         size of this plane if there is none.
+	 */
+	public long nextSetBit(long from){
+		if(from >= size){
+			return size;
+		}
+		
+		int i = (int)(from >>> 6);
+		long word = words[i] & (-1L << from);
+		while(word == 0){
+			if(++i == words.length){
+				return size;
+			}
+			word = words[i];
+		}
+		return Math.min(size, ((long)i << 6) + Long.numberOfTrailingZeros(word));
+	}
+	
+	/**
+	 * Finds the first unset bit at or after the given index.
+	 * @param from The index to start searching at.
+	 * @return The index of the first unset bit or the
+	 *         size of this plane if there is none.
+	 */
+	public long nextClearBit(long from){
+		if(from >= size){
+			return size;
+		}
+		
+		int i = (int)(from >>> 6);
+		long word = ~words[i] & (-1L << from);
+		while(word == 0){
+			if(++i == words.length){
+				return size;
+			}
+			word = ~words[i];
+		}
+		return Math.min(size, ((long)i << 6) + Long.numberOfTrailingZeros(word));
+	}
+	
+	/**
+	 * Gets the 64 bits starting at the given index, bits
+	 * past the end of this plane are returned as zero.
+	 * @param index The index of the first bit.
+	 * @return The 64 bits starting at the given index,
+	 *         the lowest bit is the bit at the given index.
+	 */
+	public long getWord(long index){
+		int word = (int)(index >>> 6);
+		int shift = (int)(index & 63);
+		long bits = words[word] >>> shift;
+		if(shift != 0 && word + 1 < words.length){
+			bits |= words[word + 1] << (64 - shift);
+		}
+		return bits;
+	}
+	
+	/**
+	 * Sets all the bits that are set in the given word
+	 * at an arbitrary bit offset in this plane.
+	 * @param index The index of the lowest bit of the word.
+	 * @param bits The bits to set, bits that would fall
+	 *        past the end of this plane must not be set.
+	 */
+	public void orWord(long index, long bits){
+		int word = (int)(index >>> 6);
+		int shift = (int)(index & 63);
+		words[word] |= bits << shift;
+		if(shift != 0 && (bits >>> (64 - shift)) != 0){
+			words[word + 1] |= bits >>> (64 - shift);
+		}
+	}
+	
+	/**
+	 * Unsets all bits in this plane.
+	 */
+	public void clear(){
+		Arrays.fill(words, 0L);
+	}
+	
+	/**
+	 * Counts the number of set bits in this plane.
+	 * @return The number of set bits.
+	 */
+	public long cardinality(){
+		long n = 0;
+		for(long word : words){
+			n += Long.bitCount(word);
+		}
+		return n;
+	}
+	
+	/**
+	 * Gets the number of bits in this plane.
+	 * @return The number of bits in this plane.
+	 */
+	public long size(){
+		return size;
+	}
+	
+	/**
+	 * Gets the raw words backing this plane. Changes
+	 * to the returned array are reflected in this plane.
+	 * @return The words backing this plane.
+	 */
+	public long[] words(){
+		return words;
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if(other instanceof BitPlane){
+			BitPlane plane = (BitPlane)other;
+			return size == plane.size && Arrays.equals(words, plane.words);
+		}
+		return false;
+	}
+	
+	@Override
+	public int hashCode(){
+		return 31 * Long.hashCode(size) + Arrays.hashCode(words);
+	}
+	
+	/**
+	 * Computes the number of words required
+	 * to store the given number of bits.
+	 * @param bits The number of bits.
+	 * @return The number of 64 bit words required.
+	 */
+	public static long wordCount(long bits){
+		return (bits + 63) >>> 6;
+	}
+}
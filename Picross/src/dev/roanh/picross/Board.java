@@ -18,16 +18,21 @@
  */
 package dev.roanh.picross;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
-import java.awt.Composite;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -35,17 +40,22 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
-import java.util.function.Function;
+import java.util.Map.Entry;
+import java.util.function.IntFunction;
 
 import javax.swing.JPanel;
 
+import dev.roanh.picross.Profiler.Probe;
+
 /**
  * Board class that keeps track of the game state
  * and displays the puzzle.
@@ -79,17 +89,39 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	private static final Font NUMBERS = new Font("Dialog", Font.BOLD, 15);
 	/**
-	 * Composite to draw area actions with.
+	 * Color to draw filled and crossed tiles of area actions with.
+	 */
+	private static final Color FADE_COLOR = new Color(0.0F, 0.0F, 0.0F, 0.2F);
+	/**
+	 * Color to draw test mode tiles of area actions with.
 	 */
-	private static final Composite FADE_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.2F);
+	private static final Color FADE_TEST_COLOR = new Color(0.0F, 0.0F, 1.0F, 0.2F);
 	/**
 	 * Size in pixels of the grid cells.
 	 */
 	private static final int SIZE = 50;
+	/**
+	 * Size in pixels of a grid cell below which the board is
+	 * drawn as an overview instead of with full detail.
+	 * @see #paintOverviewRegion(Graphics2D, Rectangle)
+	 */
+	private static final int LOD_THRESHOLD = 4;
 	/**
 	 * Number of pixels to move by when moving the view.
 	 */
 	private static final int DELTA = 20;
+	/**
+	 * Boards with more tiles than this are generated and stored in chunks.
+	 * @see ChunkedPuzzle
+	 * @see ChunkedGrid
+	 */
+	static final long CHUNKED_THRESHOLD = 4000L * 4000L;
+	/**
+	 * Shared cache of recently generated puzzles. Chunked puzzles
+	 * generate their contents lazily and are never cached.
+	 * @see #createPuzzle(Seed)
+	 */
+	static final PuzzleCache PUZZLES = new PuzzleCache(64L * 1024L * 1024L, Board::generatePuzzle);
 	/**
 	 * The time at which this board was created.
 	 */
@@ -104,26 +136,15 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	private final Seed seed;
 	/**
-	 * Random number generator for this board.
-	 */
-	private final Random random;
-	/**
-	 * Solution this puzzle is based on.
-	 */
-	private final boolean[][] solution;
-	/**
-	 * Hint numbers for each row.
-	 */
-	private final int[][] rowHints;
-	/**
-	 * Hint numbers for each column.
+	 * The puzzle with the solution and hints for this board.
+	 * @see Puzzle
 	 */
-	private final int[][] colHints;
+	private final Puzzle puzzle;
 	/**
 	 * Current state of each grid cell.
-	 * @see Tile
+	 * @see Grid
 	 */
-	private final Tile[][] state;
+	private final Grid state;
 	/**
 	 * Number of columns in the grid.
 	 */
@@ -167,11 +188,15 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	private int y = 0;
 	/**
-	 * Current marking judgement for all the rows.
+	 * Current marking judgement for all the rows. The judgement
+	 * for a row is <code>null</code> until it is first needed.
+	 * @see #getRowJudgement(int)
 	 */
 	private Boolean[][] rowJudgement;
 	/**
-	 * Current marking judgement for all the columns.
+	 * Current marking judgement for all the columns. The judgement
+	 * for a column is <code>null</code> until it is first needed.
+	 * @see #getColJudgement(int)
 	 */
 	private Boolean[][] colJudgement;
 	/**
@@ -196,6 +221,11 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * Current tile type of the tile an area selection was started from.
 	 */
 	private Tile baseType = null;
+	/**
+	 * Tiles that would change if the area that is currently being
+	 * selected is applied or <code>null</code> if there is no selection.
+	 */
+	private SelectionOverlay selection = null;
 	/**
 	 * Current zoom level.
 	 */
@@ -208,6 +238,106 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * Redo stack of moves that can be redone.
 	 */
 	private Deque<List<StateChange>> redoStack = new ArrayDeque<List<StateChange>>();
+	/**
+	 * Listeners notified of changes to this board.
+	 */
+	private final List<BoardListener> listeners = new ArrayList<BoardListener>();
+	/**
+	 * Regions of the board that still have to be repainted.
+	 * @see #repaintRegion(Rectangle)
+	 */
+	private final List<Rectangle> dirtyRegions = new ArrayList<Rectangle>();
+	/**
+	 * Scheduler that paints the dirty regions of the board at most
+	 * once per display frame, so bursts of input events such as drags
+	 * and key repeats are coalesced into a single repaint.
+	 */
+	private final FrameScheduler frames = new FrameScheduler(this::paintDirtyRegions);
+	/**
+	 * Whether the view was moved since the last frame.
+	 */
+	private boolean viewMoved = false;
+	/**
+	 * Cached layer with the grid lines and settled tiles.
+	 * @see #paintBoardRegion(Graphics2D, Rectangle)
+	 */
+	private final TileLayer boardLayer = new TileLayer(this::paintBoardRegion);
+	/**
+	 * Cached hint strips for the rows.
+	 */
+	private final StripCache rowStrips = new StripCache();
+	/**
+	 * Cached hint strips for the columns.
+	 */
+	private final StripCache colStrips = new StripCache();
+	/**
+	 * The zoom level the cached layers were rendered at.
+	 */
+	private double layerZoom = 1.0D;
+	/**
+	 * Cached layer with the overview of the board shown when zoomed out.
+	 * @see #paintOverviewRegion(Graphics2D, Rectangle)
+	 */
+	private final TileLayer overviewLayer = new TileLayer(this::paintOverviewRegion);
+	/**
+	 * Base two logarithm of the zoom level the overview layer is rendered at.
+	 * @see #getOverviewLevel()
+	 */
+	private int overviewLevel = 0;
+	/**
+	 * Sprites for the current zoom bucket.
+	 * @see #getAtlas()
+	 */
+	private SpriteAtlas atlas = null;
+	/**
+	 * Offscreen copy of the entire board component. When the view
+	 * is panned the contents of this image are shifted so only the
+	 * newly exposed parts of the board have to be painted.
+	 * @see #scrollBuffer()
+	 */
+	private BufferedImage backbuffer = null;
+	/**
+	 * The on screen x-coordinate of the grid origin the backbuffer was painted for.
+	 */
+	private int bufferX = 0;
+	/**
+	 * The on screen y-coordinate of the grid origin the backbuffer was painted for.
+	 */
+	private int bufferY = 0;
+	/**
+	 * The zoom level the backbuffer was painted for.
+	 */
+	private double bufferZoom = Double.NaN;
+	/**
+	 * Regions of the backbuffer that have to be painted after its
+	 * contents were shifted or <code>null</code> if it was not shifted.
+	 */
+	private List<Rectangle> scrolled = null;
+	/**
+	 * Bounds of the statistics drawn in the top left corner.
+	 */
+	private Rectangle statsBounds = new Rectangle();
+	/**
+	 * Bounds of the tile statistics at their widest or
+	 * <code>null</code> if not computed yet.
+	 * @see #getStatsLimit()
+	 */
+	private Rectangle statsLimit = null;
+	/**
+	 * Whether the latencies recorded by the {@link Profiler}
+	 * are shown below the statistics.
+	 */
+	private boolean showTimings = false;
+	/**
+	 * Number of hints for each row plus one, zero if not known yet.
+	 * @see #getRowHintCount(int)
+	 */
+	private final int[] rowHintCounts;
+	/**
+	 * Number of hints for each column plus one, zero if not known yet.
+	 * @see #getColHintCount(int)
+	 */
+	private final int[] colHintCounts;
 	
 	/**
 	 * Constructs a new board from
@@ -217,6 +347,20 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @see Seed
 	 */
 	public Board(Seed seed){
+		this(seed, createPuzzle(seed), createGrid(seed));
+	}
+	
+	/**
+	 * Constructs a new board from the given
+	 * seed, puzzle and grid state.
+	 * @param seed The seed the puzzle was generated from.
+	 * @param puzzle The puzzle to play.
+	 * @param state The grid to store the game state in.
+	 * @see Seed
+	 * @see Puzzle
+	 * @see Grid
+	 */
+	public Board(Seed seed, Puzzle puzzle, Grid state){
 		this.setFocusable(true);
 		this.addMouseListener(this);
 		this.addMouseMotionListener(this);
@@ -224,21 +368,62 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		this.addMouseWheelListener(this);
 		
 		this.seed = seed;
-		random = new Random(seed.seed);
-		this.width = seed.width;
-		this.height = seed.height;
+		this.puzzle = puzzle;
+		this.state = state;
+		this.width = puzzle.getWidth();
+		this.height = puzzle.getHeight();
 		
-		solution = new boolean[width][height];
-		state = new Tile[width][height];
-		for(int i = 0; i < width; i++){
-			Arrays.fill(state[i], Tile.EMPTY);
-		}
-		rowHints = new int[height][];
-		colHints = new int[width][];
 		rowJudgement = new Boolean[height][];
 		colJudgement = new Boolean[width][];
-		
-		initialiseGrid();
+		rowHintCounts = new int[height];
+		colHintCounts = new int[width];
+		checkSolution();
+	}
+	
+	/**
+	 * Gets the puzzle for the given seed. Puzzles that are not
+	 * chunked are immutable and shared through the puzzle cache
+	 * such that reopening a recent seed does not generate the
+	 * puzzle again.
+	 * @param seed The seed to get the puzzle for.
+	 * @return The puzzle for the given seed.
+	 * @see #PUZZLES
+	 * @see #generatePuzzle(Seed)
+	 */
+	static Puzzle createPuzzle(Seed seed){
+		return seed.isChunked() ? generatePuzzle(seed) : PUZZLES.get(seed);
+	}
+	
+	/**
+	 * Generates the puzzle for the given seed without consulting
+	 * the puzzle cache, random puzzles with a chunked seed are
+	 * generated in chunks. Custom puzzles already carry their
+	 * solution and are never chunked.
+	 * @param seed The seed to generate the puzzle for.
+	 * @return The puzzle for the given seed.
+	 * @see Seed#isChunked()
+	 */
+	static Puzzle generatePuzzle(Seed seed){
+		long start = Profiler.start();
+		Puzzle puzzle;
+		if(seed.isCustom()){
+			puzzle = new PackedPuzzle(seed.width, seed.height, seed.getSolution());
+		}else{
+			puzzle = seed.isChunked() ? new ChunkedPuzzle(seed) : new PackedPuzzle(seed);
+		}
+		Profiler.stop(Probe.GENERATION, start);
+		return puzzle;
+	}
+	
+	/**
+	 * Creates an empty grid to store the game state for
+	 * the given seed in, very large grids are chunked.
+	 * @param seed The seed to create the grid for.
+	 * @return An empty grid for the given seed.
+	 * @see #CHUNKED_THRESHOLD
+	 */
+	static Grid createGrid(Seed seed){
+		return (long)seed.width * seed.height > CHUNKED_THRESHOLD ? new ChunkedGrid(seed.width, seed.height) : new PackedGrid(seed.width, seed.height);
 	}
 	
 	/**
@@ -251,6 +436,21 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		return (endTime == -1 ? System.currentTimeMillis() : endTime) - startTime;
 	}
 	
+	/**
+	 * Sets the number of milliseconds that have passed
+	 * since this board was created, used when a saved
+	 * game is restored.
+	 * @param passed The number of milliseconds that
+	 *        have passed since this board was created.
+	 */
+	void setPassedTime(long passed){
+		long now = System.currentTimeMillis();
+		startTime = now - passed;
+		if(endTime != -1){
+			endTime = now;
+		}
+	}
+	
 	/**
 	 * Check whether or not test mode
 	 * is currently enabled.
@@ -277,16 +477,60 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @return The total number of tiles in the grid
 	 *         of the given type.
 	 */
-	public int getTileCount(Tile type){
-		int n = 0;
-		for(int x = 0; x < width; x++){
-			for(int y = 0; y < height; y++){
-				if(state[x][y] == type){
-					n++;
-				}
-			}
+	public long getTileCount(Tile type){
+		return state.getTileCount(type);
+	}
+	
+	/**
+	 * Releases any resources held by the grid storing
+	 * the state of this board, such as mapped files.
+	 * The board should not be used afterwards.
+	 * @throws IOException When an IOException occurs.
+	 */
+	public void close() throws IOException{
+		if(state instanceof Closeable){
+			((Closeable)state).close();
 		}
-		return n;
+	}
+	
+	/**
+	 * Gets the grid storing the state of this board.
+	 * @return The grid for this board.
+	 */
+	Grid getGrid(){
+		return state;
+	}
+	
+	/**
+	 * Gets the stack of moves that can be undone,
+	 * the most recent move is at the head.
+	 * @return The undo stack for this board.
+	 */
+	Deque<List<StateChange>> getUndoStack(){
+		return undoStack;
+	}
+	
+	/**
+	 * Gets the stack of moves that can be redone,
+	 * the most recently undone move is at the head.
+	 * @return The redo stack for this board.
+	 */
+	Deque<List<StateChange>> getRedoStack(){
+		return redoStack;
+	}
+	
+	/**
+	 * Constructs a new state change event for this board
+	 * without applying it, used to restore saved history.
+	 * @param x The x-coordinate.
+	 * @param y The y-coordinate.
+	 * @param old The old tile state.
+	 * @param next The new tile state.
+	 * @param test Whether test mode was enabled.
+	 * @return The newly constructed change event.
+	 */
+	StateChange createStateChange(int x, int y, Tile old, Tile next, boolean test){
+		return new StateChange(x, y, old, next, test);
 	}
 	
 	/**
@@ -332,8 +576,54 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void setNextState(int x, int y, Tile newState){
 		Tile nextState = nextTileState(x, y, newState);
-		if(state[x][y].canOverride(nextState, testMode, state[x][y])){
-			undoStack.push(Collections.singletonList(applyStateChange(x, y, nextState)));
+		if(state.get(x, y).canOverride(nextState, testMode, state.get(x, y))){
+			pushMove(Collections.singletonList(applyStateChange(x, y, nextState)));
+		}
+	}
+	
+	/**
+	 * Pushes a newly made move on the undo stack
+	 * and notifies all listeners of the move.
+	 * @param changes The changes that make up the move.
+	 */
+	private void pushMove(List<StateChange> changes){
+		undoStack.push(changes);
+		for(BoardListener listener : listeners){
+			listener.moveMade(changes);
+		}
+		repaintChanges(changes);
+	}
+	
+	/**
+	 * Adds a listener to be notified of changes to this board.
+	 * @param listener The listener to add.
+	 */
+	public void addBoardListener(BoardListener listener){
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener from this board.
+	 * @param listener The listener to remove.
+	 */
+	public void removeBoardListener(BoardListener listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Applies a move that was made before, for example
+	 * when replaying a journal. The move is applied and
+	 * handled as if it was made by the player.
+	 * @param changes The changes that make up the move.
+	 */
+	void replayMove(List<StateChange> changes){
+		if(!solved){
+			changes.forEach(StateChange::apply);
+			redoStack.clear();
+			pushMove(changes);
+			if(!testMode){
+				checkSolution();
+			}
 		}
 	}
 	
@@ -347,14 +637,15 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	private StateChange applyStateChange(int x, int y, Tile set){
 		if(isWithinGridBounds(x, y) && !solved){
-			StateChange event = new StateChange(x, y, state[x][y], set, testMode);
+			long start = Profiler.start();
+			StateChange event = new StateChange(x, y, state.get(x, y), set, testMode);
 			event.apply();
 			if(!testMode){
 				checkSolution();
 			}
 			
-			this.repaint();
 			redoStack.clear();
+			Profiler.stop(Probe.STATE_CHANGE, start);
 			return event;
 		}else{
 			return null;
@@ -373,12 +664,17 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @see #solved
 	 */
 	private void checkSolution(){
+		long start = Profiler.start();
 		if(isGridComplete()){
 			if(isSolutionValid()){
 				endTime = System.currentTimeMillis();
 				solved = true;
+				rowStrips.clear();
+				colStrips.clear();
+				this.repaint();
 			}
 		}
+		Profiler.stop(Probe.SOLUTION_CHECK, start);
 	}
 	
 	/**
@@ -392,14 +688,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @see Tile
 	 */
 	public boolean isGridComplete(){
-		for(int x = 0; x < width; x++){
-			for(int y = 0; y < height; y++){
-				if(state[x][y] == Tile.EMPTY || state[x][y].isTest()){
-					return false;
-				}
-			}
-		}
-		return true;
+		return state.getTileCount(Tile.FILL) + state.getTileCount(Tile.CROSS) == state.getTileCount();
 	}
 	
 	/**
@@ -413,17 +702,27 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public boolean isSolutionValid(){
 		for(int y = 0; y < height; y++){
-			for(int i = 0; i < rowJudgement[y].length; i++){
-				if(rowJudgement[y][i] != Boolean.TRUE){
-					return false;
-				}
+			if(!isLineValid(getRowJudgement(y))){
+				return false;
 			}
 		}
 		for(int x = 0; x < width; x++){
-			for(int i = 0; i < colJudgement[x].length; i++){
-				if(colJudgement[x][i] != Boolean.TRUE){
-					return false;
-				}
+			if(!isLineValid(getColJudgement(x))){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks if all hints of a single line are met.
+	 * @param judgement The judgement for the line.
+	 * @return True if all hints for the line are met.
+	 */
+	private static boolean isLineValid(Boolean[] judgement){
+		for(int i = 0; i < judgement.length; i++){
+			if(judgement[i] != Boolean.TRUE){
+				return false;
 			}
 		}
 		return true;
@@ -435,6 +734,31 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	public void enterTestMode(){
 		if(!solved){
 			testMode = true;
+			fireTestModeChanged();
+			this.repaint();
+		}
+	}
+	
+	/**
+	 * Notifies all listeners of a change to test mode.
+	 */
+	private void fireTestModeChanged(){
+		for(BoardListener listener : listeners){
+			listener.testModeChanged(testMode);
+		}
+	}
+	
+	/**
+	 * Leaves test mode without changing any tiles, used
+	 * when replaying a journal. The changes made when test
+	 * mode was originally left are replayed separately.
+	 * @see #replayMove(List)
+	 */
+	void replayLeaveTestMode(){
+		if(testMode){
+			checkSolution();
+			testMode = false;
+			fireTestModeChanged();
 			this.repaint();
 		}
 	}
@@ -450,8 +774,9 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			if(save){
 				for(int x = 0; x < width; x++){
 					for(int y = 0; y < height; y++){
-						if(state[x][y].isTest()){
-							changes.add(applyStateChange(x, y, state[x][y].toReal()));
+						Tile tile = state.get(x, y);
+						if(tile.isTest()){
+							changes.add(applyStateChange(x, y, tile.toReal()));
 						}
 					}
 				}
@@ -459,16 +784,17 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			}else{
 				for(int x = 0; x < width; x++){
 					for(int y = 0; y < height; y++){
-						if(state[x][y].isTest()){
+						if(state.get(x, y).isTest()){
 							changes.add(applyStateChange(x, y, Tile.EMPTY));
 						}
 					}
 				}
 			}
 			if(!changes.isEmpty()){
-				undoStack.push(changes);
+				pushMove(changes);
 			}
 			testMode = false;
+			fireTestModeChanged();
 			this.repaint();
 		}
 	}
@@ -491,7 +817,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		dx = (((dx - SIZE * (width / 2.0D)) * newZoom) / zoom) + SIZE * (width / 2.0D);
 		dy = (((dy - SIZE * (height / 2.0D)) * newZoom) / zoom) + SIZE * (height / 2.0D);
 		zoom = newZoom;
-		this.repaint();
+		markViewMoved();
 	}
 	
 	/**
@@ -507,7 +833,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void moveViewDown(){
 		dy -= DELTA;
-		this.repaint();
+		markViewMoved();
 	}
 	
 	/**
@@ -515,7 +841,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void moveViewUp(){
 		dy += DELTA;
-		this.repaint();
+		markViewMoved();
 	}
 	
 	/**
@@ -523,7 +849,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void moveViewRight(){
 		dx -= DELTA;
-		this.repaint();
+		markViewMoved();
 	}
 	
 	/**
@@ -531,7 +857,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void moveViewLeft(){
 		dx += DELTA;
-		this.repaint();
+		markViewMoved();
 	}
 	
 	/**
@@ -540,14 +866,92 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	public void resetTranslation(){
 		dx = 0;
 		dy = 0;
+		markViewMoved();
+	}
+	
+	/**
+	 * Moves the view such that the given point of the grid
+	 * is in the center of the board component.
+	 * @param cx The x-coordinate to center on in tiles.
+	 * @param cy The y-coordinate to center on in tiles.
+	 */
+	public void centerView(double cx, double cy){
+		dx = SIZE * (width / 2.0D) - cx * SIZE * zoom;
+		dy = SIZE * (height / 2.0D) - cy * SIZE * zoom;
+		markViewMoved();
+	}
+	
+	/**
+	 * Gets the part of the grid that is currently visible.
+	 * @return The visible region of the grid in tiles, this region
+	 *         can extend beyond the bounds of the grid.
+	 */
+	public Rectangle2D getVisibleTiles(){
+		double cell = SIZE * zoom;
+		return new Rectangle2D.Double(-getOriginX() / cell, -getOriginY() / cell, this.getWidth() / cell, this.getHeight() / cell);
+	}
+	
+	/**
+	 * Notifies all listeners that the visible part of the board changed.
+	 */
+	private void fireViewChanged(){
+		for(BoardListener listener : listeners){
+			listener.viewChanged();
+		}
+	}
+	
+	/**
+	 * Marks the view as moved, the board is repainted
+	 * and listeners are notified on the next frame.
+	 * @see #scrollBuffer()
+	 */
+	private void markViewMoved(){
+		viewMoved = true;
+		frames.request();
+	}
+	
+	/**
+	 * Gets the scheduler that paints this board, which can be used
+	 * to inspect or change the frame budget and to see how many
+	 * repaint requests were coalesced.
+	 * @return The frame scheduler for this board.
+	 */
+	public FrameScheduler getFrameScheduler(){
+		return frames;
+	}
+	
+	/**
+	 * Shows or hides the latencies recorded by the {@link Profiler}
+	 * below the statistics in the top left corner of the board.
+	 * @param visible True to show the latencies.
+	 * @see #repaintTimings()
+	 */
+	public void setTimingsVisible(boolean visible){
+		showTimings = visible;
 		this.repaint();
 	}
 	
+	/**
+	 * Repaints the statistics in the top left corner of the board
+	 * if the recorded latencies are shown, such that they reflect
+	 * the latest measurements.
+	 * @see #setTimingsVisible(boolean)
+	 */
+	public void repaintTimings(){
+		if(showTimings){
+			repaintRegion(statsBounds);
+		}
+	}
+	
 	/**
 	 * Resets the board to its initial cleared state.
 	 */
 	public void reset(){
 		x = -1;
+		lastPress = null;
+		selection = null;
+		hx = 0;
+		hy = 0;
 		testMode = false;
 		reveal = false;
 		dx = 0;
@@ -556,17 +960,15 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		solved = false;
 		endTime = -1;
 		startTime = System.currentTimeMillis();
-		for(int x = 0; x < width; x++){
-			for(int y = 0; y < height; y++){
-				state[x][y] = Tile.EMPTY;
-			}
-			Arrays.fill(colJudgement[x], Boolean.FALSE);
-		}
-		for(int y = 0; y < height; y++){
-			Arrays.fill(rowJudgement[y], Boolean.FALSE);
-		}
+		state.clear();
+		clearLayers();
+		Arrays.fill(colJudgement, null);
+		Arrays.fill(rowJudgement, null);
 		undoStack.clear();
 		redoStack.clear();
+		for(BoardListener listener : listeners){
+			listener.boardReset();
+		}
 		this.repaint();
 	}
 	
@@ -579,18 +981,19 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			List<StateChange> changes = new ArrayList<StateChange>();
 			for(int x = 0; x < width; x++){
 				for(int y = 0; y < height; y++){
-					if(state[x][y].isReal() && testMode){
+					Tile tile = state.get(x, y);
+					if(tile.isReal() && testMode){
 						continue;
 					}
 					
-					if(state[x][y].toReal() == Tile.FILL && !solution[x][y] || state[x][y].toReal() == Tile.CROSS && solution[x][y]){
+					if(tile.toReal() == Tile.FILL && !puzzle.isFilled(x, y) || tile.toReal() == Tile.CROSS && puzzle.isFilled(x, y)){
 						changes.add(applyStateChange(x, y, Tile.EMPTY));
 					}
 				}
 			}
 			
 			if(!changes.isEmpty()){
-				undoStack.push(changes);
+				pushMove(changes);
 			}
 		}
 	}
@@ -599,68 +1002,15 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * Returns the total number of tiles in the grid.
 	 * @return The total number of tiles in the grid.
 	 */
-	public int getTileCount(){
-		return width * height;
-	}
-	
-	/**
-	 * Initialises the gird by computing the hints from the seed.
-	 * @see #seed
-	 * @see #rowHints
-	 * @see #colHints
-	 */
-	private final void initialiseGrid(){
-		for(int n = 0; n < seed.density * (width * height); n++){
-			solution[random.nextInt(width)][random.nextInt(height)] = true;
-		}
-		
-		int[] buffer = new int[Math.max(width, height)];
-		
-		//row numbers
-		int nums = 0;
-		for(int y = 0; y < height; y++){
-			int n = 0;
-			for(int x = 0; x <= width; x++){
-				if(x != width && solution[x][y]){
-					n++;
-				}else if(n != 0){
-					buffer[nums] = n;
-					nums++;
-					n = 0;
-				}
-			}
-			rowHints[y] = Arrays.copyOf(buffer, nums);
-			rowJudgement[y] = new Boolean[nums];
-			Arrays.fill(rowJudgement[y], Boolean.FALSE);
-			Arrays.fill(buffer, 0);
-			nums = 0;
-		}
-				
-		//column numbers
-		for(int x = 0; x < width; x++){
-			int n = 0;
-			for(int y = 0; y <= height; y++){
-				if(y != height && solution[x][y]){
-					n++;
-				}else if(n != 0){
-					buffer[nums] = n;
-					nums++;
-					n = 0;
-				}
-			}
-			colHints[x] = Arrays.copyOf(buffer, nums);
-			colJudgement[x] = new Boolean[nums];
-			Arrays.fill(colJudgement[x], Boolean.FALSE);
-			Arrays.fill(buffer, 0);
-			nums = 0;
-		}
+	public long getTileCount(){
+		return state.getTileCount();
 	}
 	
 	/**
 	 * Computes the judgement for the given row and column.
 	 * @param x The column to compute the judgement for.
 	 * @param y The row to compute the judgement for.
-	 * @see #computeJudgement(Boolean[], int[], int, Function)
+	 * @see #computeJudgement(Boolean[], int[], int, IntFunction)
 	 * @see #computeColJudgement(int)
 	 * @see #computeRowJudgement(int)
 	 */
@@ -669,26 +1019,60 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		computeRowJudgement(y);
 	}
 	
+	/**
+	 * Gets the judgement for the given row,
+	 * computing it if it is not known yet.
+	 * @param y The row to get the judgement for.
+	 * @return The judgement for the given row.
+	 * @see #computeRowJudgement(int)
+	 */
+	private Boolean[] getRowJudgement(int y){
+		if(rowJudgement[y] == null){
+			computeRowJudgement(y);
+		}
+		return rowJudgement[y];
+	}
+	
+	/**
+	 * Gets the judgement for the given column,
+	 * computing it if it is not known yet.
+	 * @param x The column to get the judgement for.
+	 * @return The judgement for the given column.
+	 * @see #computeColJudgement(int)
+	 */
+	private Boolean[] getColJudgement(int x){
+		if(colJudgement[x] == null){
+			computeColJudgement(x);
+		}
+		return colJudgement[x];
+	}
+	
 	/**
 	 * Computes the judgement for the given row.
 	 * @param y The row to compute the judgement for.
-	 * @see #computeJudgement(Boolean[], int[], int, Function)
+	 * @see #computeJudgement(Boolean[], int[], int, IntFunction)
 	 * @see #computeColJudgement(int)
 	 * @see #computeJudgement(int, int)
 	 */
 	private void computeRowJudgement(final int y){
-		computeJudgement(rowJudgement[y], rowHints[y], width, x->state[x][y]);
+		if(rowJudgement[y] == null){
+			rowJudgement[y] = new Boolean[puzzle.getRowHints(y).length];
+		}
+		computeJudgement(rowJudgement[y], puzzle.getRowHints(y), width, x->state.get(x, y));
 	}
 	
 	/**
 	 * Computes the judgement for the given column.
 	 * @param x The row to compute the judgement for.
-	 * @see #computeJudgement(Boolean[], int[], int, Function)
+	 * @see #computeJudgement(Boolean[], int[], int, IntFunction)
 	 * @see #computeRowJudgement(int)
 	 * @see #computeJudgement(int, int)
 	 */
 	private void computeColJudgement(final int x){
-		computeJudgement(colJudgement[x], colHints[x], height, y->state[x][y]);
+		if(colJudgement[x] == null){
+			colJudgement[x] = new Boolean[puzzle.getColHints(x).length];
+		}
+		computeJudgement(colJudgement[x], puzzle.getColHints(x), height, y->state.get(x, y));
 	}
 	
 	/**
@@ -717,7 +1101,9 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @see #computeRowJudgement(int)
 	 * @see #computeJudgement(int, int)
 	 */
-	private void computeJudgement(Boolean[] result, int[] hints, int max, Function<Integer, Tile> state){
+	static void computeJudgement(Boolean[] result, int[] hints, int max, IntFunction<Tile> state){
+		long start = Profiler.start();
+		
 		//All are false initially
 		Arrays.fill(result, Boolean.FALSE);
 		
@@ -784,6 +1170,8 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			
 			x += dir;
 		}
+		
+		Profiler.stop(Probe.JUDGEMENT, start);
 	}
 	
 	/**
@@ -798,16 +1186,10 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @see Tile
 	 */
 	private Tile getState(int x, int y){
-		if(lastPress != null && !solved){
-			int mx = Math.min(lastPress.x, lastPress.x + hx);
-			int my = Math.min(lastPress.y, lastPress.y + hy);
-			if(x >= mx && x <= mx + Math.abs(hx) && y >= my && y <= my + Math.abs(hy)){
-				if(state[x][y].canOverride(nextType, testMode, baseType)){
-					return nextType.toSelection();
-				}
-			}
+		if(selection != null && !solved && selection.isChanged(x, y)){
+			return nextType.toSelection();
 		}
-		return state[x][y];
+		return state.get(x, y);
 	}
 	
 	/**
@@ -823,7 +1205,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 * @return The next tile state for the requested tile.
 	 */
 	private Tile nextTileState(int x, int y, Tile base){
-		Tile current = state[x][y];
+		Tile current = state.get(x, y);
 		if(current == Tile.EMPTY){
 			return testMode ? base.toTest() : base;
 		}else if(testMode){
@@ -869,10 +1251,18 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void undo(){
 		if(!undoStack.isEmpty() && !solved){
+			boolean test = testMode;
 			List<StateChange> events = undoStack.pop();
 			events.forEach(StateChange::undo);
 			redoStack.push(events);
-			this.repaint();
+			for(BoardListener listener : listeners){
+				listener.moveUndone(events);
+			}
+			if(test != testMode){
+				this.repaint();
+			}else{
+				repaintChanges(events);
+			}
 		}
 	}
 	
@@ -881,10 +1271,18 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	 */
 	public void redo(){
 		if(!redoStack.isEmpty() && !solved){
+			boolean test = testMode;
 			List<StateChange> events = redoStack.pop();
 			events.forEach(StateChange::apply);
 			undoStack.push(events);
-			this.repaint();
+			for(BoardListener listener : listeners){
+				listener.moveRedone(events);
+			}
+			if(test != testMode){
+				this.repaint();
+			}else{
+				repaintChanges(events);
+			}
 		}
 	}
 	
@@ -894,129 +1292,156 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 	}
 	
 	@Override
-	public void paintComponent(Graphics g1){
-		super.paintComponent(g1);
-		Graphics2D g = (Graphics2D)g1;
-		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-		
-		if(testMode){
-			g.setColor(TEST_MODE_COLOR);
-			g.drawString(" Test mode", 0, 15);
-		}else if(solved){
-			g.setColor(SOLVED_COLOR);
-			g.drawString(" Solved", 0, 15);
+	public void paintComponent(Graphics g){
+		long start = Profiler.start();
+		int w = Math.max(1, this.getWidth());
+		int h = Math.max(1, this.getHeight());
+		if(backbuffer == null || backbuffer.getWidth() != w || backbuffer.getHeight() != h){
+			GraphicsConfiguration gc = this.getGraphicsConfiguration();
+			backbuffer = gc == null ? new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB) : gc.createCompatibleImage(w, h, Transparency.OPAQUE);
+			bufferZoom = Double.NaN;
 		}
 		
-		FontMetrics fm = g.getFontMetrics();
-		int filled = getTileCount(Tile.FILL);
-		int tryFill = getTileCount(Tile.TRY_FILL);
-		int crossed = getTileCount(Tile.CROSS);
-		int tryCross = getTileCount(Tile.TRY_CROSS);
+		Graphics2D buffer = backbuffer.createGraphics();
+		buffer.setFont(g.getFont());
+		if(scrolled != null){
+			for(Rectangle region : scrolled){
+				paintBuffer(buffer, region);
+			}
+			scrolled = null;
+		}else{
+			int ox = (int)Math.floor(getOriginX());
+			int oy = (int)Math.floor(getOriginY());
+			Rectangle clip = g.getClipBounds();
+			if(clip == null || ox != bufferX || oy != bufferY || zoom != bufferZoom){
+				//the backbuffer only ever holds a single view of the board
+				clip = new Rectangle(0, 0, w, h);
+			}
+			paintBuffer(buffer, clip);
+			bufferX = ox;
+			bufferY = oy;
+			bufferZoom = zoom;
+		}
+		buffer.dispose();
 		
-		g.setColor(Color.BLACK);
-		String line = " Filled: " + filled;
-		g.drawString(line, 0, 30);
-		if(testMode){
-			g.setColor(TEST_MODE_COLOR);
-			g.drawString(" (+" + tryFill + ")", fm.stringWidth(line), 30);
+		g.drawImage(backbuffer, 0, 0, null);
+		Profiler.stop(Probe.PAINT, start);
+	}
+	
+	/**
+	 * Paints a region of the board to the backbuffer.
+	 * @param buffer The graphics context of the backbuffer.
+	 * @param region The region to paint.
+	 */
+	private void paintBuffer(Graphics2D buffer, Rectangle region){
+		Graphics2D g = (Graphics2D)buffer.create();
+		g.clip(region);
+		g.setColor(this.getBackground());
+		g.fill(region);
+		paintBoard(g);
+		g.dispose();
+	}
+	
+	/**
+	 * Paints the part of the board within the clip of the given graphics context.
+	 * @param g The graphics context to paint with, this context has to have a clip.
+	 */
+	private void paintBoard(Graphics2D g){
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		
+		//origin at the top left corner of the grid, whole pixels so the cached layers line up
+		int ox = (int)Math.floor(getOriginX());
+		int oy = (int)Math.floor(getOriginY());
+		
+		//visible part of the grid
+		Rectangle clip = g.getClipBounds();
+		int minX = Math.max(0, (int)Math.floor((clip.x - ox) / zoom / SIZE));
+		int minY = Math.max(0, (int)Math.floor((clip.y - oy) / zoom / SIZE));
+		int maxX = Math.min(width - 1, (int)Math.floor((clip.x + clip.width - ox) / zoom / SIZE));
+		int maxY = Math.min(height - 1, (int)Math.floor((clip.y + clip.height - oy) / zoom / SIZE));
+		
+		//grid lines and settled tiles, or an overview of the tiles when zoomed out
+		boolean overview = SIZE * zoom < LOD_THRESHOLD;
+		if(overview){
+			int level = getOverviewLevel();
+			if(level != overviewLevel){
+				overviewLayer.clear();
+				overviewLevel = level;
+			}
+			overviewLayer.paint(g, ox, oy, zoom / Math.scalb(1.0D, level), this.getGraphicsConfiguration());
+		}else{
+			if(layerZoom != zoom){
+				boardLayer.clear();
+				rowStrips.clear();
+				colStrips.clear();
+				layerZoom = zoom;
+			}
+			boardLayer.paint(g, ox, oy, this.getGraphicsConfiguration());
 		}
 		
-		g.setColor(Color.BLACK);
-		line = " Crossed: " + crossed;
-		g.drawString(line, 0, 45);
+		//statistics, drawn over the layer as it is opaque
 		if(testMode){
 			g.setColor(TEST_MODE_COLOR);
-			g.drawString(" (+" + tryCross + ")", fm.stringWidth(line), 45);
+			g.drawString(" Test mode", 0, 15);
+		}else if(solved){
+			g.setColor(SOLVED_COLOR);
+			g.drawString(" Solved", 0, 15);
 		}
 		
-		g.setColor(Color.BLACK);
-		line = String.format(" Done: %1$.2f%%", (100.0D * (filled + crossed)) / getTileCount());
-		g.drawString(line, 0, 60);
-		if(testMode){
-			g.setColor(TEST_MODE_COLOR);
-			g.drawString(String.format(" (+%1$.2f%%)", (100.0D * (tryFill + tryCross)) / getTileCount()), fm.stringWidth(line), 60);
+		FontMetrics fm = g.getFontMetrics();
+		String[] stats = getStatsText();
+		for(int i = 0; i < stats.length; i += 2){
+			int y = 30 + 15 * (i / 2);
+			g.setColor(Color.BLACK);
+			g.drawString(stats[i], 0, y);
+			if(stats[i + 1] != null){
+				g.setColor(TEST_MODE_COLOR);
+				g.drawString(stats[i + 1], fm.stringWidth(stats[i]), y);
+			}
 		}
 		
-		g.setColor(Color.BLACK);
-		line = " Moves: " + undoStack.size();
-		g.drawString(line, 0, 75);
+		String[] timings = showTimings ? getTimingsText() : new String[0];
+		g.setColor(Color.DARK_GRAY);
+		for(int i = 0; i < timings.length; i++){
+			g.drawString(timings[i], 0, 90 + 15 * i);
+		}
+		statsBounds = getStatsBounds(fm, stats, timings);
 		
-		//origin at the top left corner of the grid
-		double ox = (this.getWidth() - width * SIZE) / 2.0D + dx;
-		double oy = (this.getHeight() - height * SIZE) / 2.0D + dy;
+		if(overview){
+			paintOverviewOverlay(g, ox, oy);
+			return;
+		}
+		
+		AffineTransform transform = g.getTransform();
 		g.translate(ox, oy);
-		g.scale(zoom, zoom);
-		ox /= zoom;
-		oy /= zoom;
 		
-		//grid
-		g.setColor(Color.GRAY);
-		for(int x = 0; x <= width; x++){
-			g.fillRect(x * SIZE - 1, -1, 2, height * SIZE + 2);
-		}
-		for(int y = 0; y <= height; y++){
-			g.fillRect(-1, y * SIZE - 1, width * SIZE + 2, 2);
+		//preview of the selected area, drawn over the settled tiles it replaces
+		if(lastPress != null){
+			SpriteAtlas sprites = getAtlas();
+			int selMaxX = Math.min(maxX, Math.max(lastPress.x, lastPress.x + hx));
+			int selMaxY = Math.min(maxY, Math.max(lastPress.y, lastPress.y + hy));
+			for(int x = Math.max(minX, Math.min(lastPress.x, lastPress.x + hx)); x <= selMaxX; x++){
+				for(int y = Math.max(minY, Math.min(lastPress.y, lastPress.y + hy)); y <= selMaxY; y++){
+					Tile tile = getState(x, y);
+					if(tile != state.get(x, y)){
+						g.setColor(this.getBackground());
+						g.fill(new Rectangle2D.Double((x * SIZE + 1) * zoom, (y * SIZE + 1) * zoom, (SIZE - 2) * zoom, (SIZE - 2) * zoom));
+						sprites.drawTile(g, tile == Tile.SEL_EMPTY ? state.get(x, y).toSelection() : tile, (int)Math.floor(x * SIZE * zoom), (int)Math.floor(y * SIZE * zoom));
+					}
+				}
+			}
 		}
 		
-		g.setColor(Color.BLACK);
-		for(int x = 0; x <= width; x += 5){
-			g.fillRect(x * SIZE - 1, -1, 2, height * SIZE + 2);
-		}
-		for(int y = 0; y <= height; y += 5){
-			g.fillRect(-1, y * SIZE - 1, width * SIZE + 2, 2);
-		}
+		g.scale(zoom, zoom);
 		
-		//cell status
-		for(int x = 0; x < width; x++){
-			for(int y = 0; y < height; y++){
-				Tile currentState = getState(x, y);
-				Composite comp = g.getComposite();
-				if(currentState == Tile.SEL_EMPTY){
-					g.setComposite(FADE_COMPOSITE);
-					currentState = state[x][y];
-				}
-				
-				switch(currentState){
-				case SEL_FILL:
-					g.setComposite(FADE_COMPOSITE);
-					//$FALL-THROUGH$
-				case FILL:
-					g.setColor(Color.BLACK);
-					g.fillRect(x * SIZE + 5, y * SIZE + 5, SIZE - 10, SIZE - 10);
-					break;
-				case SEL_CROSS:
-					g.setComposite(FADE_COMPOSITE);
-					//$FALL-THROUGH$
-				case CROSS:
-					g.setColor(Color.BLACK);
-					g.drawLine(x * SIZE + 5, y * SIZE + 5, x * SIZE + SIZE - 5, y * SIZE + SIZE - 5);
-					g.drawLine(x * SIZE + SIZE - 5, y * SIZE + 5, x * SIZE + 5, y * SIZE + SIZE - 5);
-					break;
-				case SEL_TRY_FILL:
-					g.setComposite(FADE_COMPOSITE);
-					//$FALL-THROUGH$
-				case TRY_FILL:
-					g.setColor(Color.BLUE);
-					g.fillRect(x * SIZE + 5, y * SIZE + 5, SIZE - 10, SIZE - 10);
-					break;
-				case SEL_TRY_CROSS:
-					g.setComposite(FADE_COMPOSITE);
-					//$FALL-THROUGH$
-				case TRY_CROSS:
-					g.setColor(Color.BLUE);
-					g.drawLine(x * SIZE + 5, y * SIZE + 5, x * SIZE + SIZE - 5, y * SIZE + SIZE - 5);
-					g.drawLine(x * SIZE + SIZE - 5, y * SIZE + 5, x * SIZE + 5, y * SIZE + SIZE - 5);
-					break;
-				default:
-					break;
-				}
-				
-				g.setComposite(comp);
-				
-				if(reveal && solution[x][y]){
-					g.setColor(Color.RED);
-					g.fillRect(x * SIZE + 15, y * SIZE + 15, 20, 20);
+		if(reveal){
+			g.setColor(Color.RED);
+			for(int x = minX; x <= maxX; x++){
+				for(int y = minY; y <= maxY; y++){
+					if(puzzle.isFilled(x, y)){
+						g.fillRect(x * SIZE + 15, y * SIZE + 15, 20, 20);
+					}
 				}
 			}
 		}
@@ -1035,46 +1460,821 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			g.drawRect(x * SIZE + 1, y * SIZE + 1, SIZE - 3, SIZE - 3);
 		}
 		
-		g.setFont(NUMBERS);
-		g.setColor(Color.BLACK);
+		g.setTransform(transform);
 		
-		//row numbers
-		for(int y = 0; y < height; y++){
-			Boolean[] found = rowJudgement[y];
-			int offset = -10;
-			int s = -20 * rowHints[y].length;
-			if(ox < -s){
-				offset -= ox + s;
+		//row numbers, anchored to the grid unless that would move them off screen
+		for(int y = minY; y <= maxY; y++){
+			int count = getRowHintCount(y);
+			double anchor = ox;
+			double length = HintStrip.SPACING * count * zoom;
+			if(anchor < length){
+				anchor = length;
 				g.setColor(BACKDROP);
-				g.fillRect(offset + s, y * SIZE + 15, -s + 10, SIZE - 30);
+				g.fill(new Rectangle2D.Double(-10 * zoom, oy + (y * SIZE + 15) * zoom, length + 10 * zoom, (SIZE - 30) * zoom));
 			}
-			for(int i = rowHints[y].length - 1; i >= 0; i--){
-				g.setColor(solved ? SOLVED_COLOR : (found[i] == null ? MISTAKE_COLOR : (found[i] ? Color.GRAY : Color.BLACK)));
-				String str = String.valueOf(rowHints[y][i]);
-				g.drawString(str, offset - (g.getFontMetrics().stringWidth(str) / 2), y * SIZE + (SIZE + g.getFontMetrics().getAscent() - g.getFontMetrics().getDescent()) / 2);
-				offset -= 20;
+			if(anchor + 10 * zoom < clip.x){
+				continue;
+			}
+			
+			int from = Math.max(0, (int)Math.ceil(count - 1 + (-anchor / zoom - 10) / HintStrip.SPACING));
+			int to = Math.min(count, (int)Math.floor(count - 1 + ((this.getWidth() - anchor) / zoom + 30) / HintStrip.SPACING) + 1);
+			if(from < to){
+				getHintStrip(rowStrips, y, from, to, true).draw(g, anchor, oy + y * SIZE * zoom, zoom);
 			}
 		}
 		
-		//column numbers
-		for(int x = 0; x < width; x++){
-			Boolean[] found = colJudgement[x];
-			int offset = -5;
-			int s = -20 * colHints[x].length;
-			if(oy < -s){
-				offset -= oy + s;
+		//column numbers, anchored to the grid unless that would move them off screen
+		for(int x = minX; x <= maxX; x++){
+			int count = getColHintCount(x);
+			double anchor = oy;
+			double length = HintStrip.SPACING * count * zoom;
+			if(anchor < length){
+				anchor = length;
 				g.setColor(BACKDROP);
-				g.fillRect(x * SIZE + 15, offset + s, SIZE - 30, -s + 5);
+				g.fill(new Rectangle2D.Double(ox + (x * SIZE + 15) * zoom, -5 * zoom, (SIZE - 30) * zoom, length + 5 * zoom));
 			}
-			for(int i = colHints[x].length - 1; i >= 0; i--){
-				g.setColor(solved ? SOLVED_COLOR : (found[i] == null ? MISTAKE_COLOR : (found[i] ? Color.GRAY : Color.BLACK)));
-				String str = String.valueOf(colHints[x][i]);
-				g.drawString(str, x * SIZE + (SIZE - g.getFontMetrics().stringWidth(str)) / 2, offset);
-				offset -= 20;
+			if(anchor + 10 * zoom < clip.y){
+				continue;
+			}
+			
+			int from = Math.max(0, (int)Math.ceil(count - 1 + (-anchor / zoom - 15) / HintStrip.SPACING));
+			int to = Math.min(count, (int)Math.floor(count - 1 + ((this.getHeight() - anchor) / zoom + 25) / HintStrip.SPACING) + 1);
+			if(from < to){
+				getHintStrip(colStrips, x, from, to, false).draw(g, anchor, ox + x * SIZE * zoom, zoom);
 			}
 		}
 	}
-
+	
+	/**
+	 * Renders a region of the cached board layer. This layer has the
+	 * grid lines and settled tiles on the background color, the graphics
+	 * context passed is translated to the grid origin but not scaled.
+	 * @param g The graphics context to render with.
+	 * @param region The region to render in pixels relative to the grid origin.
+	 * @see #boardLayer
+	 */
+	private void paintBoardRegion(Graphics2D g, Rectangle region){
+		g.setColor(this.getBackground());
+		g.fill(region);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		double cell = SIZE * zoom;
+		int minX = Math.max(0, (int)Math.floor(region.x / cell) - 1);
+		int minY = Math.max(0, (int)Math.floor(region.y / cell) - 1);
+		int maxX = Math.min(width - 1, (int)Math.floor((region.x + region.width) / cell) + 1);
+		int maxY = Math.min(height - 1, (int)Math.floor((region.y + region.height) / cell) + 1);
+		if(minX > maxX || minY > maxY){
+			return;
+		}
+		
+		//cell status, drawn before the grid lines that overlap the sprites
+		SpriteAtlas sprites = getAtlas();
+		for(int x = minX; x <= maxX; x++){
+			int px = (int)Math.floor(x * cell);
+			for(int y = minY; y <= maxY; y++){
+				sprites.drawTile(g, state.get(x, y), px, (int)Math.floor(y * cell));
+			}
+		}
+		
+		g.scale(zoom, zoom);
+		
+		//grid
+		int top = minY * SIZE - 1;
+		int left = minX * SIZE - 1;
+		int gridWidth = (maxX - minX + 1) * SIZE + 2;
+		int gridHeight = (maxY - minY + 1) * SIZE + 2;
+		
+		g.setColor(Color.GRAY);
+		for(int x = minX; x <= maxX + 1; x++){
+			g.fillRect(x * SIZE - 1, top, 2, gridHeight);
+		}
+		for(int y = minY; y <= maxY + 1; y++){
+			g.fillRect(left, y * SIZE - 1, gridWidth, 2);
+		}
+		
+		g.setColor(Color.BLACK);
+		for(int x = ((minX + 4) / 5) * 5; x <= maxX + 1; x += 5){
+			g.fillRect(x * SIZE - 1, top, 2, gridHeight);
+		}
+		for(int y = ((minY + 4) / 5) * 5; y <= maxY + 1; y += 5){
+			g.fillRect(left, y * SIZE - 1, gridWidth, 2);
+		}
+	}
+	
+	/**
+	 * Paints the board outline, selected area and cursor over the
+	 * overview of the board. Individual tiles are too small to show
+	 * a preview of the selection, so the selected area is shaded instead.
+	 * @param g The graphics context to paint with.
+	 * @param ox The on screen x-coordinate of the grid origin.
+	 * @param oy The on screen y-coordinate of the grid origin.
+	 */
+	private void paintOverviewOverlay(Graphics2D g, int ox, int oy){
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		double cell = SIZE * zoom;
+		
+		//outline of the board as empty tiles are not visible without grid lines
+		g.setColor(Color.GRAY);
+		g.drawRect(ox - 1, oy - 1, (int)Math.ceil(width * cell) + 1, (int)Math.ceil(height * cell) + 1);
+		
+		if(lastPress != null){
+			int mx = Math.min(lastPress.x, lastPress.x + hx);
+			int my = Math.min(lastPress.y, lastPress.y + hy);
+			int left = (int)Math.floor(ox + mx * cell);
+			int top = (int)Math.floor(oy + my * cell);
+			g.setColor(testMode ? FADE_TEST_COLOR : FADE_COLOR);
+			g.fillRect(left, top, Math.max(1, (int)Math.ceil(ox + (mx + Math.abs(hx) + 1) * cell) - left), Math.max(1, (int)Math.ceil(oy + (my + Math.abs(hy) + 1) * cell) - top));
+		}
+		
+		if(x != -1){
+			g.setColor(Color.RED);
+			int size = (int)Math.ceil(cell) + 1;
+			g.drawRect((int)Math.floor(ox + x * cell) - 1, (int)Math.floor(oy + y * cell) - 1, size, size);
+		}
+	}
+	
+	/**
+	 * Renders a region of the cached overview layer. Every pixel of the
+	 * overview shows the average of the tiles it covers, only the major
+	 * grid lines are drawn and only if they are far enough apart.
+	 * @param g The graphics context to render with.
+	 * @param region The region to render in pixels relative to the grid origin.
+	 * @see #overviewLayer
+	 */
+	private void paintOverviewRegion(Graphics2D g, Rectangle region){
+		double cell = SIZE * Math.scalb(1.0D, overviewLevel);
+		int background = this.getBackground().getRGB();
+		BufferedImage img = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+		int[] counts = new int[Tile.values().length];
+		
+		int lastY = Integer.MIN_VALUE;
+		for(int py = 0; py < region.height; py++){
+			int minY = (int)Math.floor((region.y + py) / cell);
+			int maxY = Math.min(height, Math.max(minY + 1, (int)Math.floor((region.y + py + 1) / cell)));
+			
+			//pixel rows covering the same tiles are identical
+			if(minY == lastY){
+				System.arraycopy(pixels, (py - 1) * region.width, pixels, py * region.width, region.width);
+				continue;
+			}
+			lastY = minY;
+			
+			int lastX = Integer.MIN_VALUE;
+			int color = background;
+			for(int px = 0; px < region.width; px++){
+				int minX = (int)Math.floor((region.x + px) / cell);
+				if(minX != lastX){
+					lastX = minX;
+					if(minX < 0 || minX >= width || minY < 0 || minY >= height){
+						color = background;
+					}else{
+						int maxX = Math.min(width, Math.max(minX + 1, (int)Math.floor((region.x + px + 1) / cell)));
+						Arrays.fill(counts, 0);
+						state.countTiles(minX, minY, maxX - minX, maxY - minY, counts);
+						color = getOverviewColor(counts, (maxX - minX) * (maxY - minY), background);
+					}
+				}
+				pixels[py * region.width + px] = color;
+			}
+		}
+		
+		g.drawImage(img, region.x, region.y, null);
+		
+		//major grid lines
+		if(cell * 5 >= 2 * LOD_THRESHOLD){
+			g.setColor(Color.BLACK);
+			int top = Math.max(region.y, 0);
+			int bottom = Math.min(region.y + region.height, (int)Math.ceil(height * cell));
+			int left = Math.max(region.x, 0);
+			int right = Math.min(region.x + region.width, (int)Math.ceil(width * cell));
+			for(int x = Math.max(0, (int)Math.floor(region.x / cell / 5)) * 5; x <= width && x * cell < region.x + region.width; x += 5){
+				g.fillRect((int)Math.floor(x * cell), top, 1, bottom - top);
+			}
+			for(int y = Math.max(0, (int)Math.floor(region.y / cell / 5)) * 5; y <= height && y * cell < region.y + region.height; y += 5){
+				g.fillRect(left, (int)Math.floor(y * cell), right - left, 1);
+			}
+		}
+	}
+	
+	/**
+	 * Computes the color for a pixel of the board overview.
+	 * @param counts The number of tiles of each type covered
+	 *        by the pixel, indexed by tile ordinal.
+	 * @param total The total number of tiles covered by the pixel.
+	 * @param background The background color as an RGB value.
+	 * @return The color for the pixel as an RGB value.
+	 */
+	static int getOverviewColor(int[] counts, int total, int background){
+		double fill = counts[Tile.FILL.ordinal()] / (double)total;
+		double tryFill = counts[Tile.TRY_FILL.ordinal()] / (double)total;
+		double cross = 0.2D * counts[Tile.CROSS.ordinal()] / total;
+		double tryCross = 0.2D * counts[Tile.TRY_CROSS.ordinal()] / total;
+		double keep = 1.0D - fill - tryFill - cross - tryCross;
+		
+		int r = (int)Math.round(((background >> 16) & 0xFF) * keep);
+		int g = (int)Math.round(((background >> 8) & 0xFF) * keep);
+		int b = (int)Math.round((background & 0xFF) * keep + 255 * (tryFill + tryCross));
+		return (r << 16) | (g << 8) | b;
+	}
+	
+	/**
+	 * Gets the level of detail the overview layer should be rendered
+	 * at for the current zoom level. The overview is rendered at the
+	 * smallest power of two zoom level that is not below the current
+	 * zoom level, so small zoom changes can reuse the rendered layer.
+	 * @return The base two logarithm of the zoom level to render
+	 *         the overview layer at.
+	 */
+	private int getOverviewLevel(){
+		return Math.getExponent(zoom) + (zoom == Math.scalb(1.0D, Math.getExponent(zoom)) ? 0 : 1);
+	}
+	
+	/**
+	 * Gets the smallest zoom level that can be used for this board.
+	 * This is the zoom level at which the board covers about half
+	 * the visible area, but never more than 0.1.
+	 * @return The minimum zoom level.
+	 */
+	public double getMinZoom(){
+		double fit = Math.min(Math.max(1, this.getWidth()) / ((double)width * SIZE), Math.max(1, this.getHeight()) / ((double)height * SIZE));
+		return Math.min(0.1D, fit / 2.0D);
+	}
+	
+	/**
+	 * Gets a strip with at least the given range of hints for
+	 * a line, rendering a new strip if the cached strip for the
+	 * line does not have all the hints. New strips get some hints
+	 * beyond the requested range so small view changes can reuse them.
+	 * @param cache The cache with strips for the lines.
+	 * @param line The index of the line.
+	 * @param from Index of the first required hint.
+	 * @param to Index one past the last required hint.
+	 * @param row True if the line is a row, false if it is a column.
+	 * @return The strip with hints for the line.
+	 */
+	private HintStrip getHintStrip(StripCache cache, int line, int from, int to, boolean row){
+		HintStrip strip = cache.get(line);
+		if(strip == null || !strip.covers(from, to)){
+			if(strip != null){
+				strip.flush();
+			}
+			
+			int[] hints = row ? puzzle.getRowHints(line) : puzzle.getColHints(line);
+			Boolean[] judgement = row ? getRowJudgement(line) : getColJudgement(line);
+			int extra = to - from;
+			strip = new HintStrip(hints, Math.max(0, from - extra), Math.min(hints.length, to + extra), row, SIZE, zoom, getAtlas(), i->getHintColor(judgement, i), this.getGraphicsConfiguration());
+			cache.put(line, strip);
+		}
+		return strip;
+	}
+	
+	/**
+	 * Updates the cached layers after the given tile changed.
+	 * @param x The x-coordinate of the tile.
+	 * @param y The y-coordinate of the tile.
+	 */
+	private void tileChanged(int x, int y){
+		computeJudgement(x, y);
+		if(selection != null){
+			selection.tileChanged(x, y);
+		}
+		rowStrips.remove(y);
+		colStrips.remove(x);
+		int left = (int)Math.floor((x * SIZE - 1) * zoom) - 1;
+		int top = (int)Math.floor((y * SIZE - 1) * zoom) - 1;
+		int size = (int)Math.ceil((SIZE + 2) * zoom) + 3;
+		boardLayer.invalidate(new Rectangle(left, top, size, size));
+		
+		double cell = SIZE * Math.scalb(1.0D, overviewLevel);
+		left = (int)Math.floor(x * cell);
+		top = (int)Math.floor(y * cell);
+		overviewLayer.invalidate(new Rectangle(left, top, Math.max(1, (int)Math.ceil((x + 1) * cell) - left), Math.max(1, (int)Math.ceil((y + 1) * cell) - top)));
+	}
+	
+	/**
+	 * Discards all cached layers.
+	 */
+	private void clearLayers(){
+		boardLayer.clear();
+		overviewLayer.clear();
+		rowStrips.clear();
+		colStrips.clear();
+	}
+	
+	/**
+	 * Gets the on screen x-coordinate of the top left corner of the grid.
+	 * @return The on screen x-coordinate of the grid origin.
+	 */
+	private double getOriginX(){
+		return (this.getWidth() - width * SIZE) / 2.0D + dx;
+	}
+	
+	/**
+	 * Gets the on screen y-coordinate of the top left corner of the grid.
+	 * @return The on screen y-coordinate of the grid origin.
+	 */
+	private double getOriginY(){
+		return (this.getHeight() - height * SIZE) / 2.0D + dy;
+	}
+	
+	/**
+	 * Moves the keyboard cursor to the given cell and repaints
+	 * the old and new cursor location. If the cursor is not
+	 * shown yet it is shown at its last location instead.
+	 * @param nx The x-coordinate of the cell to move to.
+	 * @param ny The y-coordinate of the cell to move to.
+	 */
+	private void moveCursor(int nx, int ny){
+		if(x == -1){
+			x = 0;
+		}else{
+			repaintRegion(getGridRegion(x, y, x, y));
+			x = Math.max(0, Math.min(width - 1, nx));
+			y = Math.max(0, Math.min(height - 1, ny));
+		}
+		repaintRegion(getGridRegion(x, y, x, y));
+	}
+	
+	/**
+	 * Repaints the parts of the board affected by the given
+	 * changes. These are the changed tiles, the hints for
+	 * their rows and columns and the tile statistics.
+	 * @param changes The changes to repaint, this list may
+	 *        contain <code>null</code> entries.
+	 */
+	private void repaintChanges(List<StateChange> changes){
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = -1;
+		int maxY = -1;
+		for(StateChange change : changes){
+			if(change != null){
+				minX = Math.min(minX, change.x);
+				minY = Math.min(minY, change.y);
+				maxX = Math.max(maxX, change.x);
+				maxY = Math.max(maxY, change.y);
+			}
+		}
+		
+		if(maxX != -1){
+			repaintRegion(getGridRegion(minX, minY, maxX, maxY));
+			repaintRegion(getRowHintRegion(minY, maxY));
+			repaintRegion(getColHintRegion(minX, maxX));
+		}
+		
+		//the statistics never grow beyond their widest form
+		repaintRegion(getStatsLimit().union(statsBounds));
+	}
+	
+	/**
+	 * Gets the bounds of the tile statistics at their widest, with
+	 * every tile counted as both a real and a test tile and the
+	 * largest possible number of moves. These bounds do not depend
+	 * on the state of the board, so moves do not have to format
+	 * the statistics to find out what to repaint.
+	 * @return The bounds of the tile statistics at their widest.
+	 * @see #getStatsText()
+	 */
+	private Rectangle getStatsLimit(){
+		if(statsLimit == null){
+			FontMetrics fm = this.getFontMetrics(this.getFont());
+			String total = String.valueOf(getTileCount());
+			statsLimit = getStatsBounds(fm, new String[]{
+				" Filled: " + total,
+				" (+" + total + ")",
+				" Crossed: " + total,
+				" (+" + total + ")",
+				String.format(" Done: %1$.2f%%", 100.0D),
+				String.format(" (+%1$.2f%%)", 100.0D),
+				" Moves: " + Integer.MAX_VALUE,
+				null
+			}, new String[0]);
+		}
+		return statsLimit;
+	}
+	
+	/**
+	 * Gets the tile statistics shown in the top left corner of the
+	 * board. Each line consists of two entries, the text of the line
+	 * and the test mode text that follows it or <code>null</code>.
+	 * @return The lines with tile statistics.
+	 * @see #getStatsBounds(FontMetrics, String[], String[])
+	 */
+	private String[] getStatsText(){
+		long filled = getTileCount(Tile.FILL);
+		long tryFill = getTileCount(Tile.TRY_FILL);
+		long crossed = getTileCount(Tile.CROSS);
+		long tryCross = getTileCount(Tile.TRY_CROSS);
+		return new String[]{
+			" Filled: " + filled,
+			testMode ? " (+" + tryFill + ")" : null,
+			" Crossed: " + crossed,
+			testMode ? " (+" + tryCross + ")" : null,
+			String.format(" Done: %1$.2f%%", (100.0D * (filled + crossed)) / getTileCount()),
+			testMode ? String.format(" (+%1$.2f%%)", (100.0D * (tryFill + tryCross)) / getTileCount()) : null,
+			" Moves: " + undoStack.size(),
+			null
+		};
+	}
+	
+	/**
+	 * Gets the recorded latencies shown below the tile statistics.
+	 * @return The lines with recorded latencies.
+	 * @see #setTimingsVisible(boolean)
+	 */
+	private String[] getTimingsText(){
+		Probe[] probes = Probe.values();
+		String[] lines = new String[probes.length + 1];
+		lines[0] = " Latency (p50 / p99):";
+		for(int i = 0; i < probes.length; i++){
+			LatencyHistogram latencies = Profiler.getHistogram(probes[i]);
+			lines[i + 1] = String.format(" %s: %.2f / %.2f ms", probes[i].getName(), latencies.getPercentile(0.5D) / 1e6D, latencies.getPercentile(0.99D) / 1e6D);
+		}
+		return lines;
+	}
+	
+	/**
+	 * Computes the on screen region covered by the given statistics
+	 * when drawn in the top left corner of the board.
+	 * @param fm The metrics of the font the statistics are drawn with.
+	 * @param stats The tile statistics as given by {@link #getStatsText()}.
+	 * @param timings The latency lines below the statistics, if any.
+	 * @return The region covered by the statistics.
+	 */
+	private Rectangle getStatsBounds(FontMetrics fm, String[] stats, String[] timings){
+		int right = fm.stringWidth(" Test mode");
+		for(int i = 0; i < stats.length; i += 2){
+			right = Math.max(right, fm.stringWidth(stats[i + 1] == null ? stats[i] : stats[i] + stats[i + 1]));
+		}
+		
+		int bottom = 15 * (stats.length / 2 + 1);
+		for(String line : timings){
+			right = Math.max(right, fm.stringWidth(line));
+			bottom += 15;
+		}
+		return new Rectangle(0, 0, right + 1, bottom + fm.getDescent() + 1);
+	}
+	
+	/**
+	 * Gets the on screen region covered by the given
+	 * range of cells including the surrounding grid lines.
+	 * @param minX The first column of the range.
+	 * @param minY The first row of the range.
+	 * @param maxX The last column of the range.
+	 * @param maxY The last row of the range.
+	 * @return The on screen region covered by the cells.
+	 */
+	private Rectangle getGridRegion(int minX, int minY, int maxX, int maxY){
+		double ox = getOriginX();
+		double oy = getOriginY();
+		double cell = SIZE * zoom;
+		int margin = (int)Math.ceil(zoom) + 1;
+		int left = (int)Math.floor(ox + minX * cell) - margin;
+		int top = (int)Math.floor(oy + minY * cell) - margin;
+		return new Rectangle(left, top, (int)Math.ceil(ox + (maxX + 1) * cell) + margin - left, (int)Math.ceil(oy + (maxY + 1) * cell) + margin - top);
+	}
+	
+	/**
+	 * Gets the on screen region covered by the hints of the
+	 * given rows, including hints that float over the grid.
+	 * @param minY The first row.
+	 * @param maxY The last row.
+	 * @return The on screen region covered by the row hints.
+	 */
+	private Rectangle getRowHintRegion(int minY, int maxY){
+		double cell = SIZE * zoom;
+		double oy = getOriginY();
+		minY = Math.max(minY, (int)Math.floor(-oy / cell));
+		maxY = Math.min(maxY, (int)Math.floor((this.getHeight() - oy) / cell));
+		int hints = 0;
+		for(int y = minY; y <= maxY; y++){
+			hints = Math.max(hints, getRowHintCount(y));
+		}
+		
+		Rectangle rows = getGridRegion(0, minY, 0, maxY);
+		return new Rectangle(0, rows.y, (int)Math.ceil(Math.max(getOriginX(), HintStrip.SPACING * hints * zoom) + 10 * zoom) + 1, rows.height);
+	}
+	
+	/**
+	 * Gets the on screen region covered by the hints of the
+	 * given columns, including hints that float over the grid.
+	 * @param minX The first column.
+	 * @param maxX The last column.
+	 * @return The on screen region covered by the column hints.
+	 */
+	private Rectangle getColHintRegion(int minX, int maxX){
+		double cell = SIZE * zoom;
+		double ox = getOriginX();
+		minX = Math.max(minX, (int)Math.floor(-ox / cell));
+		maxX = Math.min(maxX, (int)Math.floor((this.getWidth() - ox) / cell));
+		int hints = 0;
+		for(int x = minX; x <= maxX; x++){
+			hints = Math.max(hints, getColHintCount(x));
+		}
+		
+		Rectangle cols = getGridRegion(minX, 0, maxX, 0);
+		return new Rectangle(cols.x, 0, cols.width, (int)Math.ceil(Math.max(getOriginY(), HintStrip.SPACING * hints * zoom) + 10 * zoom) + 1);
+	}
+	
+	/**
+	 * Gets the on screen region covered by the currently
+	 * selected area and the label with its dimensions.
+	 * @return The region covered by the selected area or
+	 *         <code>null</code> if no area is selected.
+	 */
+	private Rectangle getSelectionRegion(){
+		if(lastPress == null){
+			return null;
+		}
+		
+		int mx = Math.min(lastPress.x, lastPress.x + hx);
+		int my = Math.min(lastPress.y, lastPress.y + hy);
+		return getGridRegion(mx, my, mx + Math.abs(hx), my + Math.abs(hy)).union(getGridRegion(mx, my, mx + 2, my));
+	}
+	
+	/**
+	 * Gets the tiles in the currently selected area.
+	 * @return The selected tiles or <code>null</code>
+	 *         if no area is being selected.
+	 */
+	private Rectangle getSelectionTiles(){
+		if(lastPress == null){
+			return null;
+		}
+		return new Rectangle(Math.min(lastPress.x, lastPress.x + hx), Math.min(lastPress.y, lastPress.y + hy), Math.abs(hx) + 1, Math.abs(hy) + 1);
+	}
+	
+	/**
+	 * Marks the given region of the board as in need of a repaint.
+	 * All regions marked before the next frame is rendered are
+	 * painted together, overlapping regions are merged if that does
+	 * not increase the painted area but unlike {@link #repaint(Rectangle)}
+	 * regions far apart are not combined in a single large bounding box.
+	 * @param region The region to repaint.
+	 */
+	private void repaintRegion(Rectangle region){
+		region = region.intersection(new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+		if(region.isEmpty()){
+			return;
+		}
+		
+		frames.request();
+		for(int i = 0; i < dirtyRegions.size(); i++){
+			Rectangle other = dirtyRegions.get(i);
+			if(other.intersects(region)){
+				Rectangle union = region.union(other);
+				if((long)union.width * union.height <= (long)region.width * region.height + (long)other.width * other.height){
+					dirtyRegions.remove(i);
+					region = union;
+					i = -1;
+				}
+			}
+		}
+		dirtyRegions.add(region);
+	}
+	
+	/**
+	 * Marks the parts of the board that change when the selected
+	 * area is resized as in need of a repaint. These are the tiles
+	 * that enter or leave the selection and the size label.
+	 * @param from The selected tiles before the resize.
+	 * @param to The selected tiles after the resize.
+	 * @see #getSelectionTiles()
+	 */
+	private void repaintSelectionChange(Rectangle from, Rectangle to){
+		repaintDifference(from, to);
+		repaintDifference(to, from);
+		repaintRegion(getGridRegion(from.x, from.y, from.x + 2, from.y));
+		repaintRegion(getGridRegion(to.x, to.y, to.x + 2, to.y));
+	}
+	
+	/**
+	 * Marks the tiles in the first area that are not
+	 * in the second area as in need of a repaint.
+	 * @param a The area of tiles to repaint.
+	 * @param b The area of tiles to exclude.
+	 */
+	private void repaintDifference(Rectangle a, Rectangle b){
+		Rectangle common = a.intersection(b);
+		if(common.isEmpty()){
+			repaintRegion(getGridRegion(a.x, a.y, a.x + a.width - 1, a.y + a.height - 1));
+			return;
+		}
+		
+		if(common.y > a.y){
+			repaintRegion(getGridRegion(a.x, a.y, a.x + a.width - 1, common.y - 1));
+		}
+		if(common.y + common.height < a.y + a.height){
+			repaintRegion(getGridRegion(a.x, common.y + common.height, a.x + a.width - 1, a.y + a.height - 1));
+		}
+		if(common.x > a.x){
+			repaintRegion(getGridRegion(a.x, common.y, common.x - 1, common.y + common.height - 1));
+		}
+		if(common.x + common.width < a.x + a.width){
+			repaintRegion(getGridRegion(common.x + common.width, common.y, a.x + a.width - 1, common.y + common.height - 1));
+		}
+	}
+	
+	/**
+	 * Paints all the regions of the board that were marked dirty
+	 * and notifies listeners if the view was moved.
+	 * @see #repaintRegion(Rectangle)
+	 */
+	private void paintDirtyRegions(){
+		if(viewMoved){
+			viewMoved = false;
+			fireViewChanged();
+			if(scrollBuffer()){
+				return;
+			}
+			dirtyRegions.clear();
+			dirtyRegions.add(new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+		}
+		
+		for(Rectangle region : dirtyRegions){
+			this.paintImmediately(region);
+		}
+		dirtyRegions.clear();
+	}
+	
+	/**
+	 * Attempts to paint a moved view by shifting the contents of the
+	 * backbuffer and only painting the parts of the board that were
+	 * exposed by the move. Parts that do not move with the grid, such
+	 * as the statistics and hints pinned to the edge, are painted again
+	 * at both their old and new location. This is only possible if the
+	 * view was translated by whole pixels and nothing else changed.
+	 * @return True if the board was painted, false if the
+	 *         entire board still has to be painted.
+	 */
+	private boolean scrollBuffer(){
+		int w = this.getWidth();
+		int h = this.getHeight();
+		int ox = (int)Math.floor(getOriginX());
+		int oy = (int)Math.floor(getOriginY());
+		int sx = ox - bufferX;
+		int sy = oy - bufferY;
+		if(backbuffer == null || !this.isShowing() || !dirtyRegions.isEmpty() || zoom != bufferZoom || backbuffer.getWidth() != w || backbuffer.getHeight() != h || Math.abs(sx) >= w || Math.abs(sy) >= h){
+			return false;
+		}
+		
+		Rectangle bounds = new Rectangle(0, 0, w, h);
+		Graphics2D g = backbuffer.createGraphics();
+		g.copyArea(0, 0, w, h, sx, sy);
+		g.dispose();
+		bufferX = ox;
+		bufferY = oy;
+		
+		//newly exposed strips
+		List<Rectangle> regions = new ArrayList<Rectangle>();
+		if(sx != 0){
+			regions.add(new Rectangle(sx > 0 ? 0 : w + sx, 0, Math.abs(sx), h));
+		}
+		if(sy != 0){
+			regions.add(new Rectangle(0, sy > 0 ? 0 : h + sy, w, Math.abs(sy)));
+		}
+		
+		//statistics at their old and new location
+		regions.add(statsBounds);
+		Rectangle stats = new Rectangle(statsBounds);
+		stats.translate(sx, sy);
+		regions.add(stats);
+		
+		//hints pinned to the left or top edge, at their old and new location
+		if(SIZE * zoom >= LOD_THRESHOLD){
+			double cell = SIZE * zoom;
+			int hints = 0;
+			for(int y = Math.max(0, (int)Math.floor(-Math.max(oy, oy - sy) / cell)); y < height && y * cell + Math.min(oy, oy - sy) < h; y++){
+				hints = Math.max(hints, getRowHintCount(y));
+			}
+			double length = HintStrip.SPACING * hints * zoom;
+			if(Math.min(ox, ox - sx) < length){
+				regions.add(new Rectangle(0, 0, (int)Math.ceil(length + 10 * zoom) + 1 + Math.max(0, sx), h));
+			}
+			
+			hints = 0;
+			for(int x = Math.max(0, (int)Math.floor(-Math.max(ox, ox - sx) / cell)); x < width && x * cell + Math.min(ox, ox - sx) < w; x++){
+				hints = Math.max(hints, getColHintCount(x));
+			}
+			length = HintStrip.SPACING * hints * zoom;
+			if(Math.min(oy, oy - sy) < length){
+				regions.add(new Rectangle(0, 0, w, (int)Math.ceil(length + 10 * zoom) + 1 + Math.max(0, sy)));
+			}
+		}
+		
+		//skip regions that are empty or covered by another region
+		regions.replaceAll(bounds::intersection);
+		for(int i = regions.size() - 1; i >= 0; i--){
+			Rectangle region = regions.get(i);
+			if(region.isEmpty() || regions.stream().anyMatch(other->other != region && other.contains(region))){
+				regions.remove(i);
+			}
+		}
+		
+		scrolled = regions;
+		this.paintImmediately(0, 0, w, h);
+		scrolled = null;
+		return true;
+	}
+	
+	/**
+	 * Paints a single tile with its cell at the origin of the
+	 * given graphics context, used to render the tile sprites.
+	 * Area selection tiles are painted as a faded version of
+	 * the tile they will transition to.
+	 * @param g The graphics context to paint with.
+	 * @param tile The tile to paint.
+	 * @see SpriteAtlas
+	 */
+	private static void paintTile(Graphics2D g, Tile tile){
+		boolean fade = false;
+		switch(tile){
+		case SEL_FILL:
+			fade = true;
+			//$FALL-THROUGH$
+		case FILL:
+			g.setColor(fade ? FADE_COLOR : Color.BLACK);
+			g.fillRect(5, 5, SIZE - 10, SIZE - 10);
+			break;
+		case SEL_CROSS:
+			fade = true;
+			//$FALL-THROUGH$
+		case CROSS:
+			g.setColor(fade ? FADE_COLOR : Color.BLACK);
+			g.drawLine(5, 5, SIZE - 5, SIZE - 5);
+			g.drawLine(SIZE - 5, 5, 5, SIZE - 5);
+			break;
+		case SEL_TRY_FILL:
+			fade = true;
+			//$FALL-THROUGH$
+		case TRY_FILL:
+			g.setColor(fade ? FADE_TEST_COLOR : Color.BLUE);
+			g.fillRect(5, 5, SIZE - 10, SIZE - 10);
+			break;
+		case SEL_TRY_CROSS:
+			fade = true;
+			//$FALL-THROUGH$
+		case TRY_CROSS:
+			g.setColor(fade ? FADE_TEST_COLOR : Color.BLUE);
+			g.drawLine(5, 5, SIZE - 5, SIZE - 5);
+			g.drawLine(SIZE - 5, 5, 5, SIZE - 5);
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Gets the sprite atlas for the current zoom level,
+	 * rendering a new atlas if the zoom bucket changed.
+	 * @return The sprite atlas for the current zoom level.
+	 */
+	private SpriteAtlas getAtlas(){
+		int bucket = Math.max(1, (int)Math.round(SIZE * zoom));
+		if(atlas == null || atlas.getBucket() != bucket){
+			if(atlas != null){
+				atlas.flush();
+			}
+			atlas = new SpriteAtlas(bucket, SIZE, Board::paintTile, this.getBackground(), NUMBERS, this.getGraphicsConfiguration());
+		}
+		return atlas;
+	}
+	
+	/**
+	 * Gets the number of hints for the given row.
+	 * @param y The row to get the number of hints for.
+	 * @return The number of hints for the row.
+	 */
+	private int getRowHintCount(int y){
+		if(rowHintCounts[y] == 0){
+			rowHintCounts[y] = puzzle.getRowHints(y).length + 1;
+		}
+		return rowHintCounts[y] - 1;
+	}
+	
+	/**
+	 * Gets the number of hints for the given column.
+	 * @param x The column to get the number of hints for.
+	 * @return The number of hints for the column.
+	 */
+	private int getColHintCount(int x){
+		if(colHintCounts[x] == 0){
+			colHintCounts[x] = puzzle.getColHints(x).length + 1;
+		}
+		return colHintCounts[x] - 1;
+	}
+	
+	/**
+	 * Gets the color to draw a hint number with.
+	 * @param judgement The judgement for the line the hint is on.
+	 * @param i The index of the hint on the line.
+	 * @return The color to draw the hint with.
+	 */
+	private Color getHintColor(Boolean[] judgement, int i){
+		return solved ? SOLVED_COLOR : (judgement[i] == null ? MISTAKE_COLOR : (judgement[i] ? Color.GRAY : Color.BLACK));
+	}
+	
 	@Override
 	public void mouseClicked(MouseEvent e){		
 	}
@@ -1085,7 +2285,7 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		if(!e.isControlDown()){
 			lastPress = new Point(toGridX(last.x), toGridY(last.y));
 			if(isWithinGridBounds(lastPress)){
-				baseType = state[lastPress.x][lastPress.y];
+				baseType = state.get(lastPress.x, lastPress.y);
 				switch(e.getButton()){
 				case MouseEvent.BUTTON1:
 					nextType = nextTileState(lastPress.x, lastPress.y, Tile.FILL);
@@ -1096,8 +2296,9 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 				default:
 					baseType = null;
 					lastPress = null;
-					break;
+					return;
 				}
+				selection = new SelectionOverlay(state, lastPress.x, lastPress.y, nextType, baseType, testMode);
 			}else{
 				lastPress = null;
 			}
@@ -1112,23 +2313,27 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			List<StateChange> changes = new ArrayList<StateChange>();
 			for(int x = mx; x <= mx + Math.abs(hx); x++){
 				for(int y = my; y <= my + Math.abs(hy); y++){
-					if(state[x][y].canOverride(nextType, testMode, baseType)){
+					if(selection.isChanged(x, y)){
 						changes.add(applyStateChange(x, y, testMode ? nextType.toTest() : nextType));
 					}
 				}
 			}
 			if(!changes.isEmpty()){
-				undoStack.push(changes);
+				pushMove(changes);
 			}
 			nextType = null;
 			baseType = null;
 		}
 		
-		this.repaint();
+		Rectangle region = getSelectionRegion();
 		lastPress = null;
+		selection = null;
 		last = null;
 		hx = 0;
 		hy = 0;
+		if(region != null){
+			repaintRegion(region);
+		}
 	}
 
 	@Override
@@ -1154,36 +2359,16 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			setNextState(x, y, Tile.CROSS);
 			break;
 		case KeyEvent.VK_W:
-			if(x == -1){
-				x = 0;
-			}else if(y > 0){
-				y--;
-			}
-			this.repaint();
+			moveCursor(x, y - 1);
 			break;
 		case KeyEvent.VK_S:
-			if(x == -1){
-				x = 0;
-			}else if(y < height - 1){
-				y++;
-			}
-			this.repaint();
+			moveCursor(x, y + 1);
 			break;
 		case KeyEvent.VK_D:
-			if(x == -1){
-				x = 0;
-			}else if(x < width - 1){
-				x++;
-			}
-			this.repaint();
+			moveCursor(x + 1, y);
 			break;
 		case KeyEvent.VK_A:
-			if(x == -1){
-				x = 0;
-			}else if(x > 0){
-				x--;
-			}
-			this.repaint();
+			moveCursor(x - 1, y);
 			break;
 		case KeyEvent.VK_T:
 			enterTestMode();
@@ -1242,13 +2427,16 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 			}
 			dx += to.x - last.x;
 			dy += to.y - last.y;
-		}else if(lastPress != null){
+			markViewMoved();
+		}else if(lastPress != null && (hx != tx - lastPress.x || hy != ty - lastPress.y)){
+			Rectangle from = getSelectionTiles();
 			hx = tx - lastPress.x;
 			hy = ty - lastPress.y;
+			selection.resize(hx, hy);
+			repaintSelectionChange(from, getSelectionTiles());
 		}
 		
 		last = to;
-		this.repaint();
 	}
 
 	@Override
@@ -1257,34 +2445,34 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 
 	@Override
 	public void mouseWheelMoved(MouseWheelEvent e){
-		changeZoom(Math.max(zoom * (e.getWheelRotation() == -1 ? 1.1D : 0.9), 0.1D));
+		changeZoom(Math.max(zoom * (e.getWheelRotation() == -1 ? 1.1D : 0.9), getMinZoom()));
 	}
 	
 	/**
 	 * Event describing a state change of a single tile.
 	 * @author Roan
 	 */
-	private final class StateChange{
+	public final class StateChange{
 		/**
 		 * The x-coordinate that changed.
 		 */
-		private final int x;
+		final int x;
 		/**
 		 * The y-coordinate that changed.
 		 */
-		private final int y;
+		final int y;
 		/**
 		 * The previous state of the tile.
 		 */
-		private Tile old;
+		final Tile old;
 		/**
 		 * The new state of the tile.
 		 */
-		private Tile next;
+		final Tile next;
 		/**
 		 * True if test mode was enabled during this change.
 		 */
-		private boolean test;
+		final boolean test;
 		
 		/**
 		 * Constructs a new change event with the
@@ -1308,8 +2496,8 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		 */
 		private void undo(){
 			testMode = test;
-			state[x][y] = old;
-			computeJudgement(x, y);
+			state.set(x, y, old);
+			tileChanged(x, y);
 		}
 		
 		/**
@@ -1317,8 +2505,60 @@ public class Board extends JPanel implements KeyListener, MouseListener, MouseMo
 		 */
 		private void apply(){
 			testMode = test;
-			state[x][y] = next;
-			computeJudgement(x, y);
+			state.set(x, y, next);
+			tileChanged(x, y);
+		}
+	}
+	
+	/**
+	 * Cache of rendered hint strips for rows or columns
+	 * indexed by line that is limited to the most
+	 * recently used {@value #MAX_STRIPS} strips.
+	 * @author Roan
+	 */
+	private static final class StripCache extends LinkedHashMap<Integer, HintStrip>{
+		/**
+		 * Serial ID.
+		 */
+		private static final long serialVersionUID = -2379823170651245981L;
+		/**
+		 * Maximum number of strips to keep.
+		 */
+		private static final int MAX_STRIPS = 512;
+		
+		/**
+		 * Constructs a new empty strip cache.
+		 */
+		private StripCache(){
+			super(64, 0.75F, true);
+		}
+		
+		/**
+		 * Removes and releases the strip for the given line.
+		 * @param line The line to remove the strip for.
+		 */
+		private void remove(int line){
+			HintStrip strip = super.remove(line);
+			if(strip != null){
+				strip.flush();
+			}
+		}
+		
+		@Override
+		public void clear(){
+			for(HintStrip strip : values()){
+				strip.flush();
+			}
+			super.clear();
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Entry<Integer, HintStrip> eldest){
+			if(size() > MAX_STRIPS){
+				eldest.getValue().flush();
+				return true;
+			}
+			return false;
 		}
 	}
 }
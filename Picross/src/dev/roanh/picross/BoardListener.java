@@ -0,0 +1,79 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.List;
+
+import dev.roanh.picross.Board.StateChange;
+
+/**
+ * Listener that is notified of every change to the
+ * state of a board. All methods are invoked on the
+ * thread that changed the board, normally the EDT.
+ * @author Roan
+ * @see Board#addBoardListener(BoardListener)
+ */
+public abstract interface BoardListener{
+	
+	/**
+	 * Called when a new move was made and pushed
+	 * on the undo stack of the board.
+	 * @param changes The changes that make up the move,
+	 *        this list may contain <code>null</code> entries.
+	 */
+	public default void moveMade(List<StateChange> changes){
+	}
+	
+	/**
+	 * Called when a move was undone.
+	 * @param changes The changes that were reverted.
+	 */
+	public default void moveUndone(List<StateChange> changes){
+	}
+	
+	/**
+	 * Called when a move was redone.
+	 * @param changes The changes that were applied again.
+	 */
+	public default void moveRedone(List<StateChange> changes){
+	}
+	
+	/**
+	 * Called when test mode was entered or left. When test mode is
+	 * left the changes made to keep or revert the test mode tiles
+	 * are reported as a move before this method is called.
+	 * @param testMode True if test mode is now enabled.
+	 */
+	public default void testModeChanged(boolean testMode){
+	}
+	
+	/**
+	 * Called when the board was reset to its initial state.
+	 */
+	public default void boardReset(){
+	}
+	
+	/**
+	 * Called when the visible part of the board changed
+	 * because the view was moved or zoomed.
+	 * @see Board#getVisibleTiles()
+	 */
+	public default void viewChanged(){
+	}
+}
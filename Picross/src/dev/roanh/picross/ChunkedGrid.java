@@ -0,0 +1,314 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import static dev.roanh.picross.ChunkedPuzzle.CHUNK_SHIFT;
+import static dev.roanh.picross.ChunkedPuzzle.CHUNK_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Grid for very large boards that stores its state in square
+ * chunks. Chunks are only created once a tile in them is changed,
+ * tiles in chunks that do not exist are {@link Tile#EMPTY}. When
+ * too many chunks are in memory the least recently used chunk is
+ * evicted. Evicted chunks that were modified are first written
+ * to a spill file from which they are read again when accessed.
+ * @author Roan
+ * @see Grid
+ * @see ChunkedPuzzle
+ */
+public class ChunkedGrid implements Grid{
+	/**
+	 * Maximum number of chunks to keep in memory.
+	 */
+	private static final int MAX_CHUNKS = 4096;
+	/**
+	 * Size in bytes of a single chunk in the spill file.
+	 */
+	private static final int CHUNK_BYTES = 3 * CHUNK_SIZE * Long.BYTES;
+	/**
+	 * Number of columns in the grid.
+	 */
+	private final int width;
+	/**
+	 * Number of rows in the grid.
+	 */
+	private final int height;
+	/**
+	 * Number of tiles of each type indexed by tile ordinal.
+	 */
+	private final long[] counts = new long[Tile.values().length];
+	/**
+	 * Chunks that are currently in memory in access order.
+	 */
+	private final LinkedHashMap<Long, Chunk> chunks = new LinkedHashMap<Long, Chunk>(256, 0.75F, true){
+		/**
+		 * Serial ID.
+		 */
+		private static final long serialVersionUID = 7406914389128413546L;
+		
+		@Override
+		protected boolean removeEldestEntry(Entry<Long, Chunk> eldest){
+			if(size() > MAX_CHUNKS){
+				evict(eldest.getKey(), eldest.getValue());
+				return true;
+			}else{
+				return false;
+			}
+		}
+	};
+	/**
+	 * Offsets in the spill file of all chunks that were ever spilled.
+	 */
+	private final Map<Long, Long> spilled = new HashMap<Long, Long>();
+	/**
+	 * Spill file channel or <code>null</code> if nothing was spilled yet.
+	 */
+	private FileChannel spill = null;
+	/**
+	 * Buffer used to transfer chunks to and from the spill file.
+	 */
+	private final ByteBuffer transfer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+	
+	/**
+	 * Constructs a new empty chunked grid with the given size.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 */
+	public ChunkedGrid(int width, int height){
+		this.width = width;
+		this.height = height;
+		counts[Tile.EMPTY.ordinal()] = getTileCount();
+	}
+	
+	/**
+	 * Gets the chunk with the given key, reading it from the
+	 * spill file if it was evicted before.
+	 * @param key The key of the chunk.
+	 * @param create Whether to create the chunk if it does not exist.
+	 * @return The requested chunk or <code>null</code> if it does not
+	 *         exist and should not be created.
+	 */
+	private Chunk getChunk(long key, boolean create){
+		Chunk chunk = chunks.get(key);
+		if(chunk == null){
+			Long offset = spilled.get(key);
+			if(offset != null){
+				chunk = load(offset);
+			}else if(create){
+				chunk = new Chunk();
+			}else{
+				return null;
+			}
+			chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+	
+	/**
+	 * Evicts the given chunk, writing it to the spill file if it
+	 * was modified since it was last read from the spill file.
+	 * @param key The key of the chunk.
+	 * @param chunk The chunk to evict.
+	 * @throws UncheckedIOException When an IOException occurs.
+	 */
+	private void evict(long key, Chunk chunk){
+		if(!chunk.dirty){
+			return;
+		}
+		
+		try{
+			if(spill == null){
+				File file = File.createTempFile("picross", ".chunks");
+				file.deleteOnExit();
+				spill = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			
+			Long offset = spilled.get(key);
+			if(offset == null){
+				offset = (long)spilled.size() * CHUNK_BYTES;
+				spilled.put(key, offset);
+			}
+			
+			transfer.clear();
+			transfer.asLongBuffer().put(chunk.fill).put(chunk.cross).put(chunk.test);
+			long pos = offset;
+			while(transfer.hasRemaining()){
+				pos += spill.write(transfer, pos);
+			}
+			chunk.dirty = false;
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Reads a chunk from the spill file.
+	 * @param offset The offset of the chunk in the spill file.
+	 * @return The chunk that was read.
+	 * @throws UncheckedIOException When an IOException occurs.
+	 */
+	private Chunk load(long offset){
+		try{
+			transfer.clear();
+			long pos = offset;
+			while(transfer.hasRemaining()){
+				pos += spill.read(transfer, pos);
+			}
+			transfer.flip();
+			Chunk chunk = new Chunk();
+			transfer.asLongBuffer().get(chunk.fill).get(chunk.cross).get(chunk.test);
+			return chunk;
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public int getWidth(){
+		return width;
+	}
+	
+	@Override
+	public int getHeight(){
+		return height;
+	}
+	
+	@Override
+	public Tile get(int x, int y){
+		Chunk chunk = getChunk(ChunkedPuzzle.chunkKey(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT), false);
+		return chunk == null ? Tile.EMPTY : chunk.get(x & (CHUNK_SIZE - 1), y & (CHUNK_SIZE - 1));
+	}
+	
+	@Override
+	public void set(int x, int y, Tile tile){
+		Chunk chunk = getChunk(ChunkedPuzzle.chunkKey(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT), true);
+		int lx = x & (CHUNK_SIZE - 1);
+		int ly = y & (CHUNK_SIZE - 1);
+		counts[chunk.get(lx, ly).ordinal()]--;
+		counts[tile.ordinal()]++;
+		
+		int bits = tile.toBits();
+		long mask = 1L << lx;
+		chunk.fill[ly] = (bits & Tile.BIT_FILL) != 0 ? (chunk.fill[ly] | mask) : (chunk.fill[ly] & ~mask);
+		chunk.cross[ly] = (bits & Tile.BIT_CROSS) != 0 ? (chunk.cross[ly] | mask) : (chunk.cross[ly] & ~mask);
+		chunk.test[ly] = (bits & Tile.BIT_TEST) != 0 ? (chunk.test[ly] | mask) : (chunk.test[ly] & ~mask);
+		chunk.dirty = true;
+	}
+	
+	@Override
+	public long getTileCount(Tile type){
+		return counts[type.ordinal()];
+	}
+	
+	@Override
+	public void countTiles(int x, int y, int w, int h, int[] counts){
+		int found = 0;
+		for(int cy = y >> CHUNK_SHIFT; cy <= (y + h - 1) >> CHUNK_SHIFT; cy++){
+			int minY = Math.max(y, cy << CHUNK_SHIFT) & (CHUNK_SIZE - 1);
+			int maxY = (Math.min(y + h, (cy + 1) << CHUNK_SHIFT) - 1) & (CHUNK_SIZE - 1);
+			for(int cx = x >> CHUNK_SHIFT; cx <= (x + w - 1) >> CHUNK_SHIFT; cx++){
+				Chunk chunk = getChunk(ChunkedPuzzle.chunkKey(cx, cy), false);
+				if(chunk != null){
+					int minX = Math.max(x, cx << CHUNK_SHIFT) & (CHUNK_SIZE - 1);
+					int maxX = (Math.min(x + w, (cx + 1) << CHUNK_SHIFT) - 1) & (CHUNK_SIZE - 1);
+					long mask = (-1L << minX) & (-1L >>> (63 - maxX));
+					for(int ly = minY; ly <= maxY; ly++){
+						long f = chunk.fill[ly];
+						long c = chunk.cross[ly];
+						long t = chunk.test[ly];
+						int fill = Long.bitCount(f & ~t & mask);
+						int tryFill = Long.bitCount(f & t & mask);
+						int cross = Long.bitCount(c & ~f & ~t & mask);
+						int tryCross = Long.bitCount(c & ~f & t & mask);
+						counts[Tile.FILL.ordinal()] += fill;
+						counts[Tile.TRY_FILL.ordinal()] += tryFill;
+						counts[Tile.CROSS.ordinal()] += cross;
+						counts[Tile.TRY_CROSS.ordinal()] += tryCross;
+						found += fill + tryFill + cross + tryCross;
+					}
+				}
+			}
+		}
+		counts[Tile.EMPTY.ordinal()] += w * h - found;
+	}
+	
+	@Override
+	public void clear(){
+		chunks.clear();
+		spilled.clear();
+		
+		//none of the spilled chunks are used anymore
+		if(spill != null){
+			try{
+				spill.truncate(0L);
+			}catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+		for(int i = 0; i < counts.length; i++){
+			counts[i] = 0;
+		}
+		counts[Tile.EMPTY.ordinal()] = getTileCount();
+	}
+	
+	/**
+	 * Square section of the grid state, each
+	 * word in the bitplanes is a single row.
+	 * @author Roan
+	 */
+	private static final class Chunk{
+		/**
+		 * Bitplane with all filled tiles.
+		 */
+		private final long[] fill = new long[CHUNK_SIZE];
+		/**
+		 * Bitplane with all crossed tiles.
+		 */
+		private final long[] cross = new long[CHUNK_SIZE];
+		/**
+		 * Bitplane with all test mode tiles.
+		 */
+		private final long[] test = new long[CHUNK_SIZE];
+		/**
+		 * True if this chunk was modified since it was last spilled.
+		 */
+		private boolean dirty = false;
+		
+		/**
+		 * Gets the tile at the given coordinates within this chunk.
+		 * @param x The x-coordinate within the chunk.
+		 * @param y The y-coordinate within the chunk.
+		 * @return The tile at the given coordinates.
+		 */
+		private Tile get(int x, int y){
+			return Tile.fromBits((int)(((fill[y] >>> x) & 1L) | (((cross[y] >>> x) & 1L) << 1) | (((test[y] >>> x) & 1L) << 2)));
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+
+/**
+ * Puzzle for very large boards that generates its solution
+ * lazily in square chunks. Each chunk is generated from the
+ * seed independently of all other chunks the first time it
+ * is accessed and chunks that have not been used recently are
+ * evicted, since they can always be generated again. The hints
+ * for a line are computed from the chunks the line passes
+ * through and stitched together at the chunk borders.
+ * <p>
+ * Note that the solution for a seed differs from the solution
+ * a {@link PackedPuzzle} would generate for the same seed, as
+ * the tiles are distributed over each chunk separately. Seeds
+ * are therefore marked as chunked, seeds from before chunked
+ * generation are still generated as a {@link PackedPuzzle}.
+ * @author Roan
+ * @see Puzzle
+ * @see ChunkedGrid
+ */
+public class ChunkedPuzzle implements Puzzle{
+	/**
+	 * Width and height of a chunk in tiles. Equal to the number
+	 * of bits in a long so a single chunk line fits in one word.
+	 */
+	public static final int CHUNK_SIZE = 64;
+	/**
+	 * Number of bits to shift a coordinate by to find its chunk.
+	 */
+	public static final int CHUNK_SHIFT = 6;
+	/**
+	 * Maximum number of chunks to keep in memory.
+	 */
+	private static final int MAX_CHUNKS = 4096;
+	/**
+	 * The seed the chunks are generated from.
+	 */
+	private final Seed seed;
+	/**
+	 * Number of columns in the puzzle.
+	 */
+	private final int width;
+	/**
+	 * Number of rows in the puzzle.
+	 */
+	private final int height;
+	/**
+	 * Chunks that are currently in memory in access order.
+	 */
+	private final LinkedHashMap<Long, Chunk> chunks = new LinkedHashMap<Long, Chunk>(256, 0.75F, true){
+		/**
+		 * Serial ID.
+		 */
+		private static final long serialVersionUID = -2838924187235283962L;
+		
+		@Override
+		protected boolean removeEldestEntry(Entry<Long, Chunk> eldest){
+			return size() > MAX_CHUNKS;
+		}
+	};
+	/**
+	 * Recently computed row hints.
+	 */
+	private final HintCache rowHints = new HintCache();
+	/**
+	 * Recently computed column hints.
+	 */
+	private final HintCache colHints = new HintCache();
+	/**
+	 * Builder used to stitch hints together.
+	 */
+	private final HintBuilder builder = new HintBuilder();
+	
+	/**
+	 * Constructs a new chunked puzzle for the given seed.
+	 * @param seed The seed to generate chunks from.
+	 */
+	public ChunkedPuzzle(Seed seed){
+		this.seed = seed;
+		width = seed.width;
+		height = seed.height;
+	}
+	
+	/**
+	 * Computes the key of the chunk with the given chunk coordinates.
+	 * @param cx The chunk x-coordinate.
+	 * @param cy The chunk y-coordinate.
+	 * @return The key for the chunk.
+	 */
+	public static long chunkKey(int cx, int cy){
+		return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Gets the chunk at the given chunk coordinates, generating
+	 * it from the seed if it is not in memory.
+	 * @param cx The chunk x-coordinate.
+	 * @param cy The chunk y-coordinate.
+	 * @return The requested chunk.
+	 */
+	private Chunk getChunk(int cx, int cy){
+		Long key = chunkKey(cx, cy);
+		Chunk chunk = chunks.get(key);
+		if(chunk == null){
+			chunk = new Chunk(cx, cy);
+			chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+	
+	/**
+	 * Stitches the hints for a single line together from
+	 * the chunks the line passes through.
+	 * @param length The length of the line.
+	 * @param row True if the line is a row, false if it is a column.
+	 * @param line The index of the line.
+	 * @return The hints for the line.
+	 */
+	private int[] stitch(int length, boolean row, int line){
+		for(int c = 0; c << CHUNK_SHIFT < length; c++){
+			Chunk chunk = row ? getChunk(c, line >> CHUNK_SHIFT) : getChunk(line >> CHUNK_SHIFT, c);
+			long word = row ? chunk.rows[line & (CHUNK_SIZE - 1)] : chunk.cols[line & (CHUNK_SIZE - 1)];
+			builder.append(word, Math.min(CHUNK_SIZE, length - (c << CHUNK_SHIFT)));
+		}
+		return builder.finish();
+	}
+	
+	/**
+	 * Gets the solution for a single row of a chunk.
+	 * @param cx The chunk x-coordinate.
+	 * @param y The row to get the solution for.
+	 * @return The solution for the row where the lowest
+	 *         bit corresponds to the leftmost tile.
+	 */
+	public long getRowBits(int cx, int y){
+		return getChunk(cx, y >> CHUNK_SHIFT).rows[y & (CHUNK_SIZE - 1)];
+	}
+	
+	@Override
+	public int getWidth(){
+		return width;
+	}
+	
+	@Override
+	public int getHeight(){
+		return height;
+	}
+	
+	@Override
+	public boolean isFilled(int x, int y){
+		return (getChunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT).rows[y & (CHUNK_SIZE - 1)] & (1L << x)) != 0;
+	}
+	
+	@Override
+	public int[] getRowHints(int y){
+		int[] hints = rowHints.get(y);
+		if(hints == null){
+			hints = stitch(width, true, y);
+			rowHints.put(y, hints);
+		}
+		return hints;
+	}
+	
+	@Override
+	public int[] getColHints(int x){
+		int[] hints = colHints.get(x);
+		if(hints == null){
+			hints = stitch(height, false, x);
+			colHints.put(x, hints);
+		}
+		return hints;
+	}
+	
+	/**
+	 * Square section of the solution.
+	 * @author Roan
+	 */
+	private final class Chunk{
+		/**
+		 * The solution for each row in this chunk, the
+		 * lowest bit corresponds to the leftmost tile.
+		 */
+		private final long[] rows = new long[CHUNK_SIZE];
+		/**
+		 * The solution for each column in this chunk, the
+		 * lowest bit corresponds to the topmost tile.
+		 */
+		private final long[] cols = new long[CHUNK_SIZE];
+		
+		/**
+		 * Generates the chunk at the given chunk coordinates.
+		 * @param cx The chunk x-coordinate.
+		 * @param cy The chunk y-coordinate.
+		 */
+		private Chunk(int cx, int cy){
+			int w = Math.min(CHUNK_SIZE, width - (cx << CHUNK_SHIFT));
+			int h = Math.min(CHUNK_SIZE, height - (cy << CHUNK_SHIFT));
+			Random random = new Random(seed.seed ^ (cx * 0x9E3779B97F4A7C15L) ^ (cy * 0xC2B2AE3D27D4EB4FL));
+			for(int n = 0; n < seed.density * (w * h); n++){
+				int x = random.nextInt(w);
+				int y = random.nextInt(h);
+				rows[y] |= 1L << x;
+				cols[x] |= 1L << y;
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent filter that rejects puzzles that were seen before by
+ * their {@link Fingerprint}. While items are streamed in a Bloom
+ * filter decides which fingerprints were certainly not seen yet,
+ * such items are accepted right away. Items that might have been
+ * seen before are held back and checked against the exact set of
+ * accepted fingerprints once all items are in. No unseen item is
+ * ever rejected and only a small fraction of the items has to be
+ * held back. This class is thread safe.
+ * @author Roan
+ * @param <T> The type of the filtered items.
+ */
+public final class DedupFilter<T>{
+	/**
+	 * Number of bits in the Bloom filter per expected item.
+	 */
+	private static final int BITS_PER_ITEM = 10;
+	/**
+	 * Number of bits set in the Bloom filter per item.
+	 */
+	private static final int HASHES = 7;
+	/**
+	 * Number of locks that serialise offers of the same fingerprint.
+	 */
+	private static final int LOCKS = 64;
+	/**
+	 * The bits of the Bloom filter.
+	 */
+	private final AtomicLongArray bits;
+	/**
+	 * Mask to reduce a hash to a bit index in the Bloom filter.
+	 */
+	private final long mask;
+	/**
+	 * Locks such that two offers of the same fingerprint are never
+	 * both accepted, the lock used depends on the fingerprint.
+	 */
+	private final Object[] locks = new Object[LOCKS];
+	/**
+	 * The fingerprints of all accepted items.
+	 */
+	private final List<Fingerprint> accepted = new ArrayList<Fingerprint>();
+	/**
+	 * Items that might have been seen before with their fingerprints.
+	 */
+	private final List<Held<T>> held = new ArrayList<Held<T>>();
+	
+	/**
+	 * Constructs a new empty filter.
+	 * @param expected The expected number of fingerprints, including
+	 *        any fingerprints that are marked as seen up front.
+	 */
+	public DedupFilter(long expected){
+		long size = Long.highestOneBit(Math.max(64L, expected * BITS_PER_ITEM - 1) << 1);
+		bits = new AtomicLongArray((int)Math.min(1L << 30, size >>> 6));
+		mask = bits.length() * 64L - 1;
+		for(int i = 0; i < LOCKS; i++){
+			locks[i] = new Object();
+		}
+	}
+	
+	/**
+	 * Marks the given fingerprint as seen without accepting an item
+	 * for it, used for fingerprints of items that are already stored.
+	 * Those have to be reported by the predicate passed to
+	 * {@link #finish(Predicate)} as well.
+	 * @param fingerprint The fingerprint to mark as seen.
+	 */
+	public void markSeen(Fingerprint fingerprint){
+		setBits(fingerprint);
+	}
+	
+	/**
+	 * Offers an item to the filter.
+	 * @param fingerprint The fingerprint of the item.
+	 * @param item The item to offer.
+	 * @return True if the item was certainly not seen before and is
+	 *         accepted, false if the item is held back until {@link
+	 *         #finish(Predicate)} decides whether it was seen before.
+	 */
+	public boolean offer(Fingerprint fingerprint, T item){
+		synchronized(locks[(int)(fingerprint.getLow() & (LOCKS - 1))]){
+			if(setBits(fingerprint)){
+				synchronized(accepted){
+					accepted.add(fingerprint);
+				}
+				return true;
+			}
+		}
+		
+		synchronized(held){
+			held.add(new Held<T>(fingerprint, item));
+		}
+		return false;
+	}
+	
+	/**
+	 * Decides for all items that were held back whether they were seen
+	 * before, using the exact set of all accepted fingerprints. Held back
+	 * items that were not seen before are accepted, only the first of
+	 * several held back items with the same fingerprint is accepted.
+	 * @param stored Predicate that tests whether a fingerprint
+	 *        belongs to an item that was already stored.
+	 * @return The held back items that are accepted.
+	 */
+	public List<T> finish(Predicate<Fingerprint> stored){
+		Set<Fingerprint> exact;
+		synchronized(accepted){
+			exact = new HashSet<Fingerprint>(accepted);
+		}
+		
+		List<T> items = new ArrayList<T>();
+		synchronized(held){
+			for(Held<T> entry : held){
+				if(!stored.test(entry.fingerprint) && exact.add(entry.fingerprint)){
+					items.add(entry.item);
+				}
+			}
+			held.clear();
+		}
+		
+		synchronized(accepted){
+			accepted.clear();
+			accepted.addAll(exact);
+		}
+		return items;
+	}
+	
+	/**
+	 * Sets the Bloom filter bits of the given fingerprint.
+	 * @param fingerprint The fingerprint to set the bits of.
+	 * @return True if at least one bit was not set before.
+	 */
+	private boolean setBits(Fingerprint fingerprint){
+		boolean changed = false;
+		long hash = fingerprint.getLow();
+		for(int i = 0; i < HASHES; i++){
+			long bit = hash & mask;
+			int word = (int)(bit >>> 6);
+			long flag = 1L << bit;
+			long value;
+			while(((value = bits.get(word)) & flag) == 0){
+				if(bits.compareAndSet(word, value, value | flag)){
+					changed = true;
+					break;
+				}
+			}
+			hash += fingerprint.getHigh();
+		}
+		return changed;
+	}
+	
+	/**
+	 * An item that was held back with its fingerprint.
+	 * @author Roan
+	 * @param <T> The type of the item.
+	 */
+	private static final class Held<T>{
+		/**
+		 * The fingerprint of the item.
+		 */
+		private final Fingerprint fingerprint;
+		/**
+		 * The item that was held back.
+		 */
+		private final T item;
+		
+		/**
+		 * Constructs a new held back item.
+		 * @param fingerprint The fingerprint of the item.
+		 * @param item The item that was held back.
+		 */
+		private Held(Fingerprint fingerprint, T item){
+			this.fingerprint = fingerprint;
+			this.item = item;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+/**
+ * Difficulty tiers of puzzles as graded by the {@link Solver}.
+ * The difficulty depends on how much reasoning is required
+ * to solve a puzzle, not on its size.
+ * @author Roan
+ */
+public enum Difficulty{
+	/**
+	 * Puzzles that can be solved one line at a time
+	 * while revisiting only few lines.
+	 */
+	EASY("Easy"),
+	/**
+	 * Puzzles that can be solved one line at a time, but
+	 * where many lines have to be revisited.
+	 */
+	MEDIUM("Medium"),
+	/**
+	 * Puzzles that require trying out a single tile to find
+	 * out that it leads to a contradiction.
+	 */
+	HARD("Hard"),
+	/**
+	 * Puzzles that require reasoning several tiles ahead.
+	 */
+	EXPERT("Expert");
+	
+	/**
+	 * The display name of the difficulty.
+	 */
+	private final String name;
+	
+	/**
+	 * Constructs a new difficulty with the given name.
+	 * @param name The display name of the difficulty.
+	 */
+	private Difficulty(String name){
+		this.name = name;
+	}
+	
+	/**
+	 * Gets the display name of this difficulty.
+	 * @return The display name of this difficulty.
+	 */
+	public String getName(){
+		return name;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.function.IntFunction;
+
+/**
+ * Canonical 128-bit fingerprint of the hints of a puzzle. Mirrored
+ * and rotated variants of a puzzle have the same fingerprint, as
+ * the fingerprint is the smallest hash over the hints of all eight
+ * symmetries of the grid. Since the fingerprint only depends on the
+ * hints, puzzles with different solutions but the same hints also
+ * have the same fingerprint. The hash is MurmurHash3 (x64, 128-bit)
+ * over the size of the grid followed by the length and hints of
+ * every row and then every column.
+ * @author Roan
+ * @see DedupFilter
+ */
+public final class Fingerprint implements Comparable<Fingerprint>{
+	/**
+	 * First MurmurHash3 multiplication constant.
+	 */
+	private static final long C1 = 0x87C37B91114253D5L;
+	/**
+	 * Second MurmurHash3 multiplication constant.
+	 */
+	private static final long C2 = 0x4CF5AD432745937FL;
+	/**
+	 * The high 64 bits of the fingerprint.
+	 */
+	private final long high;
+	/**
+	 * The low 64 bits of the fingerprint.
+	 */
+	private final long low;
+	
+	/**
+	 * Constructs a new fingerprint with the given bits.
+	 * @param high The high 64 bits of the fingerprint.
+	 * @param low The low 64 bits of the fingerprint.
+	 */
+	public Fingerprint(long high, long low){
+		this.high = high;
+		this.low = low;
+	}
+	
+	/**
+	 * Computes the fingerprint of the given hints.
+	 * @param hints The hints to compute the fingerprint of.
+	 * @return The canonical fingerprint of the hints.
+	 */
+	public static Fingerprint of(HintSet hints){
+		Fingerprint min = null;
+		for(int symmetry = 0; symmetry < 8; symmetry++){
+			boolean transpose = (symmetry & 1) != 0;
+			boolean flipX = (symmetry & 2) != 0;
+			boolean flipY = (symmetry & 4) != 0;
+			
+			//rows of the flipped grid are reversed by a horizontal flip and reordered by a vertical flip
+			Hasher hasher = new Hasher();
+			if(transpose){
+				hasher.add(hints.getHeight());
+				hasher.add(hints.getWidth());
+				hasher.addLines(hints::getColHints, hints.getWidth(), flipX, flipY);
+				hasher.addLines(hints::getRowHints, hints.getHeight(), flipY, flipX);
+			}else{
+				hasher.add(hints.getWidth());
+				hasher.add(hints.getHeight());
+				hasher.addLines(hints::getRowHints, hints.getHeight(), flipY, flipX);
+				hasher.addLines(hints::getColHints, hints.getWidth(), flipX, flipY);
+			}
+			
+			Fingerprint fingerprint = hasher.finish();
+			if(min == null || fingerprint.compareTo(min) < 0){
+				min = fingerprint;
+			}
+		}
+		return min;
+	}
+	
+	/**
+	 * Computes the fingerprint of the hints of the given puzzle.
+	 * @param puzzle The puzzle to compute the fingerprint of.
+	 * @return The canonical fingerprint of the puzzle.
+	 */
+	public static Fingerprint of(Puzzle puzzle){
+		return of(new HintSet(null, puzzle));
+	}
+	
+	/**
+	 * Gets the high 64 bits of this fingerprint.
+	 * @return The high 64 bits.
+	 */
+	public long getHigh(){
+		return high;
+	}
+	
+	/**
+	 * Gets the low 64 bits of this fingerprint.
+	 * @return The low 64 bits.
+	 */
+	public long getLow(){
+		return low;
+	}
+	
+	@Override
+	public int compareTo(Fingerprint other){
+		int cmp = Long.compareUnsigned(high, other.high);
+		return cmp != 0 ? cmp : Long.compareUnsigned(low, other.low);
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		return other instanceof Fingerprint && ((Fingerprint)other).high == high && ((Fingerprint)other).low == low;
+	}
+	
+	@Override
+	public int hashCode(){
+		return (int)low;
+	}
+	
+	@Override
+	public String toString(){
+		return String.format("%016x%016x", high, low);
+	}
+	
+	/**
+	 * Streaming MurmurHash3 over a sequence of integers.
+	 * @author Roan
+	 */
+	private static final class Hasher{
+		/**
+		 * The first half of the hash state.
+		 */
+		private long h1 = 0;
+		/**
+		 * The second half of the hash state.
+		 */
+		private long h2 = 0;
+		/**
+		 * The integers of the current block.
+		 */
+		private long block = 0;
+		/**
+		 * The first half of the current block if complete.
+		 */
+		private long k1 = 0;
+		/**
+		 * The number of integers added so far.
+		 */
+		private long count = 0;
+		
+		/**
+		 * Adds the hints of a number of lines to the hash.
+		 * @param lines Function returning the hints of a line.
+		 * @param n The number of lines.
+		 * @param reverseOrder True to add the lines in reverse order.
+		 * @param reverseHints True to reverse the hints of each line.
+		 */
+		private void addLines(IntFunction<int[]> lines, int n, boolean reverseOrder, boolean reverseHints){
+			for(int i = 0; i < n; i++){
+				int[] line = lines.apply(reverseOrder ? n - 1 - i : i);
+				add(line.length);
+				for(int j = 0; j < line.length; j++){
+					add(line[reverseHints ? line.length - 1 - j : j]);
+				}
+			}
+		}
+		
+		/**
+		 * Adds an integer to the hash.
+		 * @param value The integer to add.
+		 */
+		private void add(int value){
+			int slot = (int)(count++ & 3);
+			block |= (value & 0xFFFFFFFFL) << ((slot & 1) * 32);
+			if((slot & 1) == 1){
+				if(slot == 1){
+					k1 = block;
+				}else{
+					mix(k1, block);
+				}
+				block = 0;
+			}
+		}
+		
+		/**
+		 * Mixes a complete 16 byte block into the hash state.
+		 * @param a The first half of the block.
+		 * @param b The second half of the block.
+		 */
+		private void mix(long a, long b){
+			h1 ^= Long.rotateLeft(a * C1, 31) * C2;
+			h1 = Long.rotateLeft(h1, 27) + h2;
+			h1 = h1 * 5 + 0x52DCE729;
+			h2 ^= Long.rotateLeft(b * C2, 33) * C1;
+			h2 = Long.rotateLeft(h2, 31) + h1;
+			h2 = h2 * 5 + 0x38495AB5;
+		}
+		
+		/**
+		 * Finishes the hash.
+		 * @return The resulting fingerprint.
+		 */
+		private Fingerprint finish(){
+			int slot = (int)(count & 3);
+			long a = slot >= 2 ? k1 : block;
+			long b = slot >= 2 ? block : 0;
+			if(slot != 0){
+				h1 ^= Long.rotateLeft(a * C1, 31) * C2;
+				h2 ^= Long.rotateLeft(b * C2, 33) * C1;
+			}
+			
+			long length = count * Integer.BYTES;
+			h1 ^= length;
+			h2 ^= length;
+			h1 += h2;
+			h2 += h1;
+			h1 = fmix(h1);
+			h2 = fmix(h2);
+			h1 += h2;
+			h2 += h1;
+			return new Fingerprint(h1, h2);
+		}
+		
+		/**
+		 * Final avalanche step of MurmurHash3.
+		 * @param k The value to mix.
+		 * @return The mixed value.
+		 */
+		private static long fmix(long k){
+			k ^= k >>> 33;
+			k *= 0xFF51AFD7ED558CCDL;
+			k ^= k >>> 33;
+			k *= 0xC4CEB9FE1A85EC53L;
+			k ^= k >>> 33;
+			return k;
+		}
+	}
+}
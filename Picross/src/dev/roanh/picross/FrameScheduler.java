@@ -0,0 +1,164 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Scheduler that coalesces requests to render a frame such that
+ * at most one frame is rendered per frame budget, which defaults
+ * to the refresh interval of the display. Requests made while a
+ * frame is already pending are merged into that frame and counted
+ * as dropped. All methods have to be called on the EDT and frames
+ * are rendered on the EDT.
+ * @author Roan
+ */
+public final class FrameScheduler{
+	/**
+	 * Refresh rate to assume if the display does not report one.
+	 */
+	private static final int DEFAULT_REFRESH_RATE = 60;
+	/**
+	 * The function that renders a frame.
+	 */
+	private final Runnable frame;
+	/**
+	 * Timer used to delay frames until the frame budget passed.
+	 */
+	private final Timer timer;
+	/**
+	 * Minimum time between the start of two frames in nanoseconds.
+	 */
+	private long budget;
+	/**
+	 * Time the last frame was started at in nanoseconds.
+	 */
+	private long lastFrame;
+	/**
+	 * Whether a frame is currently pending.
+	 */
+	private boolean pending = false;
+	/**
+	 * Number of frames rendered.
+	 */
+	private long frames = 0;
+	/**
+	 * Number of requests that were merged into an already pending frame.
+	 */
+	private long dropped = 0;
+	
+	/**
+	 * Constructs a new frame scheduler with a frame
+	 * budget matching the refresh rate of the display.
+	 * @param frame The function that renders a frame.
+	 */
+	public FrameScheduler(Runnable frame){
+		this.frame = frame;
+		budget = TimeUnit.SECONDS.toNanos(1) / getRefreshRate();
+		lastFrame = System.nanoTime() - budget;
+		timer = new Timer(0, e->renderFrame());
+		timer.setRepeats(false);
+	}
+	
+	/**
+	 * Requests a frame to be rendered. The frame is rendered as soon
+	 * as the frame budget since the last frame passed. If a frame
+	 * is already pending this request is merged into it.
+	 */
+	public void request(){
+		if(pending){
+			dropped++;
+			return;
+		}
+		
+		pending = true;
+		long wait = lastFrame + budget - System.nanoTime();
+		if(wait <= 0){
+			SwingUtilities.invokeLater(this::renderFrame);
+		}else{
+			timer.setInitialDelay((int)Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+			timer.restart();
+		}
+	}
+	
+	/**
+	 * Renders the pending frame if there is one.
+	 */
+	private void renderFrame(){
+		if(pending){
+			pending = false;
+			lastFrame = System.nanoTime();
+			frames++;
+			frame.run();
+		}
+	}
+	
+	/**
+	 * Gets the minimum time between two frames.
+	 * @return The frame budget in nanoseconds.
+	 */
+	public long getFrameBudget(){
+		return budget;
+	}
+	
+	/**
+	 * Sets the minimum time between two frames.
+	 * @param budget The new frame budget in nanoseconds.
+	 */
+	public void setFrameBudget(long budget){
+		this.budget = Math.max(0, budget);
+	}
+	
+	/**
+	 * Gets the number of frames rendered so far.
+	 * @return The number of rendered frames.
+	 */
+	public long getFrameCount(){
+		return frames;
+	}
+	
+	/**
+	 * Gets the number of frame requests that were merged
+	 * into an already pending frame and thus did not
+	 * result in a frame of their own.
+	 * @return The number of dropped requests.
+	 */
+	public long getDroppedCount(){
+		return dropped;
+	}
+	
+	/**
+	 * Gets the refresh rate of the default screen.
+	 * @return The refresh rate in hertz.
+	 */
+	private static int getRefreshRate(){
+		if(!GraphicsEnvironment.isHeadless()){
+			DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+			if(mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN){
+				return mode.getRefreshRate();
+			}
+		}
+		return DEFAULT_REFRESH_RATE;
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+/**
+ * Interface for the mutable part of a game, that
+ * is the current state of every grid cell. Only
+ * tiles that have a packed form can be stored.
+ * @author Roan
+ * @see Puzzle
+ * @see Tile#toBits()
+ * @see PackedGrid
+ * @see ChunkedGrid
+ */
+public interface Grid{
+	
+	/**
+	 * Gets the number of columns in this grid.
+	 * @return The number of columns.
+	 */
+	public abstract int getWidth();
+	
+	/**
+	 * Gets the number of rows in this grid.
+	 * @return The number of rows.
+	 */
+	public abstract int getHeight();
+	
+	/**
+	 * Gets the state of the tile at the given coordinates.
+	 * @param x The x-coordinate of the tile.
+	 * @param y The y-coordinate of the tile.
+	 * @return The state of the tile.
+	 */
+	public abstract Tile get(int x, int y);
+	
+	/**
+	 * Sets the state of the tile at the given coordinates.
+	 * @param x The x-coordinate of the tile.
+	 * @param y The y-coordinate of the tile.
+	 * @param tile The new state of the tile.
+	 */
+	public abstract void set(int x, int y, Tile tile);
+	
+	/**
+	 * Gets the total number of tiles in
+	 * this grid of the given type.
+	 * @param type The type of tile to count.
+	 * @return The number of tiles of the given type.
+	 */
+	public abstract long getTileCount(Tile type);
+	
+	/**
+	 * Counts the tiles of each type in the given area of this grid.
+	 * @param x The x-coordinate of the top left tile of the area.
+	 * @param y The y-coordinate of the top left tile of the area.
+	 * @param w The width of the area.
+	 * @param h The height of the area.
+	 * @param counts The array indexed by tile ordinal to add the counts to.
+	 */
+	public default void countTiles(int x, int y, int w, int h, int[] counts){
+		for(int dy = 0; dy < h; dy++){
+			for(int dx = 0; dx < w; dx++){
+				counts[get(x + dx, y + dy).ordinal()]++;
+			}
+		}
+	}
+	
+	/**
+	 * Resets every tile in this grid to {@link Tile#EMPTY}.
+	 */
+	public abstract void clear();
+	
+	/**
+	 * Gets the total number of tiles in this grid.
+	 * @return The total number of tiles in this grid.
+	 */
+	public default long getTileCount(){
+		return (long)getWidth() * getHeight();
+	}
+}
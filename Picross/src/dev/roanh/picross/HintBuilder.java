@@ -0,0 +1,97 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Arrays;
+
+/**
+ * Computes the hint numbers for a line from the solution of
+ * the line given as a sequence of words of up to 64 tiles.
+ * Runs of filled tiles that cross word borders are joined.
+ * @author Roan
+ */
+public final class HintBuilder{
+	/**
+	 * Buffer holding the hints found so far.
+	 */
+	private int[] buffer = new int[64];
+	/**
+	 * Number of hints in the buffer.
+	 */
+	private int nums = 0;
+	/**
+	 * Length of the run that is still open at the end of the last word.
+	 */
+	private int open = 0;
+	
+	/**
+	 * Appends the next section of the line.
+	 * @param word The solution for the next section of the line,
+	 *        the lowest bit corresponds to the first tile. Bits
+	 *        beyond the given length must not be set.
+	 * @param length The number of tiles in the section.
+	 */
+	public void append(long word, int length){
+		//a run from the previous word ends at the border
+		if((word & 1L) == 0 && open != 0){
+			add(open);
+			open = 0;
+		}
+		
+		int start = 0;
+		while(word != 0){
+			int skip = Long.numberOfTrailingZeros(word);
+			start += skip;
+			word >>>= skip;
+			int run = word == -1L ? 64 - start : Long.numberOfTrailingZeros(~word);
+			open += run;
+			start += run;
+			word = run == 64 ? 0L : word >>> run;
+			if(start < length){
+				add(open);
+				open = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Finishes the current line and resets this builder.
+	 * @return The hints for the line.
+	 */
+	public int[] finish(){
+		if(open != 0){
+			add(open);
+			open = 0;
+		}
+		int[] hints = Arrays.copyOf(buffer, nums);
+		nums = 0;
+		return hints;
+	}
+	
+	/**
+	 * Adds a hint to the buffer, growing it if required.
+	 * @param hint The hint to add.
+	 */
+	private void add(int hint){
+		if(nums == buffer.length){
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		buffer[nums++] = hint;
+	}
+}
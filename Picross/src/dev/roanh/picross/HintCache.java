@@ -0,0 +1,50 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * Bounded cache of recently computed line hints for
+ * puzzles that compute their hints on demand.
+ * @author Roan
+ */
+public final class HintCache extends LinkedHashMap<Integer, int[]>{
+	/**
+	 * Serial ID.
+	 */
+	private static final long serialVersionUID = 3527806150749236146L;
+	/**
+	 * Maximum number of lines to keep in the cache.
+	 */
+	private static final int MAX_LINES = 4096;
+	
+	/**
+	 * Constructs a new empty hint cache.
+	 */
+	public HintCache(){
+		super(256, 0.75F, true);
+	}
+	
+	@Override
+	protected boolean removeEldestEntry(Entry<Integer, int[]> eldest){
+		return size() > MAX_LINES;
+	}
+}
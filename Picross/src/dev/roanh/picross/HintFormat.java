@@ -0,0 +1,421 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming parsers for puzzle collections in community formats.
+ * Puzzles are passed on one at a time as soon as they are read,
+ * such that large collections never have to be held in memory.
+ * The following formats are supported:
+ * <ul>
+ * <li><b>webpbn XML</b> (<code>.xml</code>, <code>.pbn</code>): a puzzle
+ * set with one or more black and white puzzles, each with a
+ * <code>clues</code> element for the rows and one for the columns
+ * with a <code>line</code> per row or column and a <code>count</code>
+ * per hint.</li>
+ * <li><b>non</b> (<code>.non</code>): key value lines where the
+ * <code>width</code> and <code>height</code> come before the
+ * <code>rows</code> and <code>columns</code> keywords, which are
+ * followed by one line per row or column with comma separated
+ * hints. An empty line or <code>0</code> is an empty line.</li>
+ * <li><b>CWD</b> (<code>.cwd</code>, <code>.cwc</code>): the number of
+ * rows and columns followed by one line per row and then one line per
+ * column with space separated hints, blank lines are ignored and an
+ * empty line is written as <code>0</code>.</li>
+ * </ul>
+ * @author Roan
+ * @see HintSet
+ */
+public final class HintFormat{
+	/**
+	 * Factory for the XML readers of webpbn files.
+	 */
+	private static final XMLInputFactory XML_FACTORY = createFactory();
+	
+	/**
+	 * Prevent instantiation.
+	 */
+	private HintFormat(){
+	}
+	
+	/**
+	 * Checks if the given file has the extension of a supported format.
+	 * @param file The file to check.
+	 * @return True if the file can be read by {@link #read(Path, Consumer)}.
+	 */
+	public static boolean isSupported(Path file){
+		switch(getExtension(file)){
+		case "xml":
+		case "pbn":
+		case "non":
+		case "cwd":
+		case "cwc":
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Reads all puzzles in the given file, the format
+	 * is determined from the file extension.
+	 * @param file The file to read.
+	 * @param consumer The consumer to pass each puzzle to.
+	 * @throws IOException When an IOException occurs, the format is
+	 *         not supported or the file is not a valid puzzle file.
+	 */
+	public static void read(Path file, Consumer<HintSet> consumer) throws IOException{
+		String name = file.getFileName().toString();
+		try(InputStream in = Files.newInputStream(file)){
+			switch(getExtension(file)){
+			case "xml":
+			case "pbn":
+				readWebpbn(in, name, consumer);
+				break;
+			case "non":
+				readNon(in, name, consumer);
+				break;
+			case "cwd":
+			case "cwc":
+				readCwd(in, name, consumer);
+				break;
+			default:
+				throw new IOException("Unsupported puzzle format: " + name);
+			}
+		}
+	}
+	
+	/**
+	 * Reads all black and white puzzles in a webpbn XML puzzle set.
+	 * @param in The stream to read from.
+	 * @param name The name of the puzzle set, puzzles without
+	 *        a title are named after the set.
+	 * @param consumer The consumer to pass each puzzle to.
+	 * @throws IOException When an IOException occurs or the
+	 *         stream does not contain a valid puzzle set.
+	 */
+	public static void readWebpbn(InputStream in, String name, Consumer<HintSet> consumer) throws IOException{
+		XMLStreamReader reader = null;
+		try{
+			reader = XML_FACTORY.createXMLStreamReader(in);
+			int index = 0;
+			String title = null;
+			List<int[]> rows = null;
+			List<int[]> cols = null;
+			List<int[]> clues = null;
+			List<Integer> line = null;
+			while(reader.hasNext()){
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT){
+					switch(reader.getLocalName()){
+					case "puzzle":
+						title = null;
+						rows = null;
+						cols = null;
+						String type = reader.getAttributeValue(null, "type");
+						if(type != null && !type.equals("grid")){
+							throw new IOException("Unsupported puzzle type: " + type);
+						}
+						break;
+					case "title":
+						title = reader.getElementText().trim();
+						break;
+					case "color":
+						String color = reader.getAttributeValue(null, "name");
+						if(color != null && !color.equals("black") && !color.equals("white")){
+							throw new IOException("Only black and white puzzles are supported");
+						}
+						break;
+					case "clues":
+						clues = new ArrayList<int[]>();
+						if("rows".equals(reader.getAttributeValue(null, "type"))){
+							rows = clues;
+						}else{
+							cols = clues;
+						}
+						break;
+					case "line":
+						line = new ArrayList<Integer>();
+						break;
+					case "count":
+						if(line == null){
+							throw new IOException("Hint outside of a line");
+						}
+						line.add(parseHint(reader.getElementText()));
+						break;
+					default:
+						break;
+					}
+				}else if(event == XMLStreamConstants.END_ELEMENT){
+					switch(reader.getLocalName()){
+					case "line":
+						if(clues == null){
+							throw new IOException("Line outside of a clue set");
+						}
+						clues.add(line.stream().mapToInt(Integer::intValue).toArray());
+						line = null;
+						break;
+					case "clues":
+						clues = null;
+						break;
+					case "puzzle":
+						if(rows == null || cols == null){
+							throw new IOException("Puzzle is missing its row or column hints");
+						}
+						index++;
+						consumer.accept(create(title == null || title.isEmpty() ? (name + " #" + index) : title, rows, cols));
+						break;
+					default:
+						break;
+					}
+				}
+			}
+		}catch(XMLStreamException e){
+			throw new IOException("Invalid puzzle set: " + e.getMessage(), e);
+		}finally{
+			if(reader != null){
+				try{
+					reader.close();
+				}catch(XMLStreamException e){
+					//pity
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads a puzzle in the non format.
+	 * @param in The stream to read from.
+	 * @param name The name to use if the puzzle has no title.
+	 * @param consumer The consumer to pass the puzzle to.
+	 * @throws IOException When an IOException occurs or the
+	 *         stream does not contain a valid puzzle.
+	 */
+	public static void readNon(InputStream in, String name, Consumer<HintSet> consumer) throws IOException{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String title = null;
+		int width = -1;
+		int height = -1;
+		List<int[]> rows = null;
+		List<int[]> cols = null;
+		String line;
+		while((line = reader.readLine()) != null){
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#")){
+				continue;
+			}
+			
+			String[] args = line.split("\\s+", 2);
+			switch(args[0].toLowerCase(Locale.ROOT)){
+			case "title":
+				title = args.length > 1 ? args[1].replace("\"", "").trim() : null;
+				break;
+			case "width":
+				width = parseSize(args);
+				break;
+			case "height":
+				height = parseSize(args);
+				break;
+			case "rows":
+				rows = readLines(reader, height, ",");
+				break;
+			case "columns":
+				cols = readLines(reader, width, ",");
+				break;
+			default:
+				//other keys such as the author or goal are not needed
+				break;
+			}
+		}
+		
+		if(rows == null || cols == null){
+			throw new IOException("Puzzle is missing its row or column hints");
+		}
+		consumer.accept(create(title == null || title.isEmpty() ? name : title, rows, cols));
+	}
+	
+	/**
+	 * Reads a puzzle in the CWD format.
+	 * @param in The stream to read from.
+	 * @param name The name of the puzzle.
+	 * @param consumer The consumer to pass the puzzle to.
+	 * @throws IOException When an IOException occurs or the
+	 *         stream does not contain a valid puzzle.
+	 */
+	public static void readCwd(InputStream in, String name, Consumer<HintSet> consumer) throws IOException{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		int[] size = new int[2];
+		int found = 0;
+		while(found < size.length){
+			String line = reader.readLine();
+			if(line == null){
+				throw new IOException("Puzzle is missing its size");
+			}
+			
+			for(String num : line.trim().split("\\s+")){
+				if(!num.isEmpty()){
+					if(found == size.length){
+						throw new IOException("Invalid puzzle size: " + line);
+					}
+					size[found++] = parseSize(new String[]{"size", num});
+				}
+			}
+		}
+		
+		List<int[]> rows = readLines(reader, size[0], null);
+		List<int[]> cols = readLines(reader, size[1], null);
+		consumer.accept(create(name, rows, cols));
+	}
+	
+	/**
+	 * Reads the hints for the given number of lines, one line of text
+	 * per line of the puzzle. For the non format every line is read and
+	 * an empty line has no hints, otherwise blank lines are skipped.
+	 * @param reader The reader to read from.
+	 * @param count The number of lines to read.
+	 * @param separator The separator between hints or <code>null</code>
+	 *        for whitespace separated hints in the CWD format.
+	 * @return The hints for each line.
+	 * @throws IOException When an IOException occurs, the number of
+	 *         lines is not known or the lines are not valid.
+	 */
+	private static List<int[]> readLines(BufferedReader reader, int count, String separator) throws IOException{
+		if(count < 0){
+			throw new IOException("The size of the puzzle has to be given before its hints");
+		}
+		
+		List<int[]> lines = new ArrayList<int[]>(count);
+		while(lines.size() < count){
+			String line = reader.readLine();
+			if(line == null){
+				throw new IOException("Expected " + count + " lines of hints but found " + lines.size());
+			}
+			
+			line = line.trim();
+			if(line.isEmpty() && separator == null){
+				continue;
+			}
+			
+			String[] nums = line.isEmpty() ? new String[0] : line.split(separator == null ? "\\s+" : "\\s*" + separator + "\\s*");
+			int[] hints = new int[nums.length];
+			int n = 0;
+			for(String num : nums){
+				int hint = parseHint(num);
+				if(hint != 0){
+					hints[n++] = hint;
+				}
+			}
+			lines.add(n == hints.length ? hints : Arrays.copyOf(hints, n));
+		}
+		return lines;
+	}
+	
+	/**
+	 * Parses a single hint, a hint of zero marks an empty line.
+	 * @param num The hint to parse.
+	 * @return The parsed hint.
+	 * @throws IOException When the hint is not a valid number.
+	 */
+	private static int parseHint(String num) throws IOException{
+		try{
+			int hint = Integer.parseInt(num.trim());
+			if(hint < 0){
+				throw new IOException("Invalid hint: " + num);
+			}
+			return hint;
+		}catch(NumberFormatException e){
+			throw new IOException("Invalid hint: " + num);
+		}
+	}
+	
+	/**
+	 * Parses the width or height of a puzzle.
+	 * @param args The key followed by its value.
+	 * @return The parsed size.
+	 * @throws IOException When the size is not a valid positive number.
+	 */
+	private static int parseSize(String[] args) throws IOException{
+		try{
+			int size = Integer.parseInt(args[1].trim());
+			if(size > 0){
+				return size;
+			}
+		}catch(NumberFormatException | ArrayIndexOutOfBoundsException e){
+			//handled below
+		}
+		throw new IOException("Invalid " + args[0] + ": " + (args.length > 1 ? args[1] : ""));
+	}
+	
+	/**
+	 * Creates a set of hints from the parsed lines.
+	 * @param name The name of the puzzle.
+	 * @param rows The hints for each row.
+	 * @param cols The hints for each column.
+	 * @return The created set of hints.
+	 * @throws IOException When the hints are not valid.
+	 */
+	private static HintSet create(String name, List<int[]> rows, List<int[]> cols) throws IOException{
+		try{
+			return new HintSet(name, rows.toArray(new int[rows.size()][]), cols.toArray(new int[cols.size()][]));
+		}catch(IllegalArgumentException e){
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Gets the lower case extension of the given file.
+	 * @param file The file to get the extension of.
+	 * @return The extension or an empty string if there is none.
+	 */
+	private static String getExtension(Path file){
+		String name = file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return dot == -1 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Creates the factory for XML readers, with external
+	 * entities disabled as puzzle files are not trusted.
+	 * @return The XML reader factory.
+	 */
+	private static XMLInputFactory createFactory(){
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+}
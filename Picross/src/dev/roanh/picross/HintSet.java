@@ -0,0 +1,161 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Arrays;
+
+/**
+ * The hints of a puzzle without its solution, for example
+ * as read from a puzzle collection. The hints are stored in
+ * the same form as the hints of a {@link Puzzle}, an empty
+ * line has no hints.
+ * @author Roan
+ * @see HintFormat
+ * @see Solver
+ */
+public final class HintSet{
+	/**
+	 * The name of the puzzle.
+	 */
+	private final String name;
+	/**
+	 * The hints for each row.
+	 */
+	private final int[][] rowHints;
+	/**
+	 * The hints for each column.
+	 */
+	private final int[][] colHints;
+	
+	/**
+	 * Constructs a new set of hints.
+	 * @param name The name of the puzzle.
+	 * @param rowHints The hints for each row, the arrays
+	 *        must not be modified after this call.
+	 * @param colHints The hints for each column, the arrays
+	 *        must not be modified after this call.
+	 * @throws IllegalArgumentException When the puzzle has no
+	 *         rows or columns or when a hint is not positive.
+	 */
+	public HintSet(String name, int[][] rowHints, int[][] colHints) throws IllegalArgumentException{
+		if(rowHints.length == 0 || colHints.length == 0){
+			throw new IllegalArgumentException("Puzzle has no rows or columns");
+		}
+		
+		for(int[][] lines : new int[][][]{rowHints, colHints}){
+			for(int[] line : lines){
+				for(int hint : line){
+					if(hint <= 0){
+						throw new IllegalArgumentException("Invalid hint: " + hint);
+					}
+				}
+			}
+		}
+		
+		this.name = name;
+		this.rowHints = rowHints;
+		this.colHints = colHints;
+	}
+	
+	/**
+	 * Constructs a new set of hints with the hints of the given puzzle.
+	 * @param name The name of the puzzle.
+	 * @param puzzle The puzzle to copy the hints of.
+	 */
+	public HintSet(String name, Puzzle puzzle){
+		this.name = name;
+		rowHints = new int[puzzle.getHeight()][];
+		colHints = new int[puzzle.getWidth()][];
+		for(int y = 0; y < rowHints.length; y++){
+			rowHints[y] = puzzle.getRowHints(y);
+		}
+		for(int x = 0; x < colHints.length; x++){
+			colHints[x] = puzzle.getColHints(x);
+		}
+	}
+	
+	/**
+	 * Gets the name of the puzzle.
+	 * @return The name of the puzzle.
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * Gets the number of columns in the puzzle.
+	 * @return The number of columns.
+	 */
+	public int getWidth(){
+		return colHints.length;
+	}
+	
+	/**
+	 * Gets the number of rows in the puzzle.
+	 * @return The number of rows.
+	 */
+	public int getHeight(){
+		return rowHints.length;
+	}
+	
+	/**
+	 * Gets the hint numbers for the given row.
+	 * @param y The row to get the hints for.
+	 * @return The hint numbers for the given row,
+	 *         the returned array should not be modified.
+	 */
+	public int[] getRowHints(int y){
+		return rowHints[y];
+	}
+	
+	/**
+	 * Gets the hint numbers for the given column.
+	 * @param x The column to get the hints for.
+	 * @return The hint numbers for the given column,
+	 *         the returned array should not be modified.
+	 */
+	public int[] getColHints(int x){
+		return colHints[x];
+	}
+	
+	/**
+	 * Checks if the given puzzle has exactly these hints.
+	 * @param puzzle The puzzle to compare with.
+	 * @return True if the puzzle has the same hints.
+	 */
+	public boolean matches(Puzzle puzzle){
+		if(puzzle.getWidth() != getWidth() || puzzle.getHeight() != getHeight()){
+			return false;
+		}
+		
+		for(int y = 0; y < rowHints.length; y++){
+			if(!Arrays.equals(rowHints[y], puzzle.getRowHints(y))){
+				return false;
+			}
+		}
+		
+		for(int x = 0; x < colHints.length; x++){
+			if(!Arrays.equals(colHints[x], puzzle.getColHints(x))){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
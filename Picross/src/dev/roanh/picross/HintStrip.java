@@ -0,0 +1,154 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.function.IntFunction;
+
+/**
+ * Offscreen image with a range of the hint numbers of a
+ * single row or column. Hints are spaced {@value #SPACING}
+ * units apart, with the last hint of a line closest to the
+ * grid. The anchor of a strip is the point {@value #SPACING}
+ * units past the last hint, so the last hint is centred 10
+ * units before the anchor for rows and has its baseline 5
+ * units before the anchor for columns.
+ * @author Roan
+ */
+public final class HintStrip{
+	/**
+	 * Distance in units between two consecutive hints.
+	 */
+	public static final int SPACING = 20;
+	/**
+	 * Space in units kept around the hints in the strip.
+	 */
+	private static final int MARGIN = 20;
+	/**
+	 * The rendered image of the hints.
+	 */
+	private final BufferedImage image;
+	/**
+	 * Index of the first hint in the strip.
+	 */
+	private final int from;
+	/**
+	 * Index one past the last hint in the strip.
+	 */
+	private final int to;
+	/**
+	 * Whether this strip is for a row.
+	 */
+	private final boolean row;
+	/**
+	 * The number of hints on the line.
+	 */
+	private final int length;
+	
+	/**
+	 * Renders a new strip with a range of the given hints.
+	 * @param hints The hints for the line.
+	 * @param from Index of the first hint to render.
+	 * @param to Index one past the last hint to render.
+	 * @param row True if the hints are for a row, false for a column.
+	 * @param size The size of a grid cell in units.
+	 * @param zoom The number of pixels per unit.
+	 * @param atlas The atlas with the glyphs to render the hints with.
+	 * @param color Function giving the color for the hint with the given index.
+	 * @param gc The graphics configuration to create the
+	 *        image for or <code>null</code> if not known.
+	 */
+	public HintStrip(int[] hints, int from, int to, boolean row, int size, double zoom, SpriteAtlas atlas, IntFunction<Color> color, GraphicsConfiguration gc){
+		this.from = from;
+		this.to = to;
+		this.row = row;
+		this.length = hints.length;
+		
+		int along = (int)Math.ceil((SPACING * (to - from - 1) + 2 * MARGIN) * zoom) + 1;
+		int across = (int)Math.ceil(size * zoom) + 1;
+		int w = row ? along : across;
+		int h = row ? across : along;
+		image = gc == null ? new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB) : gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+		
+		Graphics2D g = image.createGraphics();
+		int rowBaseline = (int)Math.round(((size + atlas.getAscent() - atlas.getDescent()) / 2) * zoom);
+		for(int i = from; i < to; i++){
+			double pos = (MARGIN + SPACING * (i - from)) * zoom;
+			if(row){
+				atlas.drawNumber(g, hints[i], color.apply(i), pos, rowBaseline);
+			}else{
+				atlas.drawNumber(g, hints[i], color.apply(i), (size * zoom) / 2.0D, (int)Math.round(pos));
+			}
+		}
+		g.dispose();
+	}
+	
+	/**
+	 * Checks if this strip contains all hints in the given range.
+	 * @param min Index of the first hint that is required.
+	 * @param max Index one past the last hint that is required.
+	 * @return True if this strip contains all the hints.
+	 */
+	public boolean covers(int min, int max){
+		return from <= min && max <= to;
+	}
+	
+	/**
+	 * Draws this strip.
+	 * @param g The graphics context to draw with, this
+	 *        context should not be scaled.
+	 * @param anchor The on screen position of the strip anchor
+	 *        along the line, the x-coordinate for rows and the
+	 *        y-coordinate for columns.
+	 * @param start The on screen position of the start of the
+	 *        line, the y-coordinate of the top of a row or the
+	 *        x-coordinate of the left side of a column.
+	 * @param zoom The number of pixels per unit.
+	 */
+	public void draw(Graphics2D g, double anchor, double start, double zoom){
+		int pos = (int)Math.round(anchor + zoom * (offset(from, length) - (row ? 10 : 5) - MARGIN));
+		if(row){
+			g.drawImage(image, pos, (int)Math.round(start), null);
+		}else{
+			g.drawImage(image, (int)Math.round(start), pos, null);
+		}
+	}
+	
+	/**
+	 * Releases the resources held by this strip.
+	 */
+	public void flush(){
+		image.flush();
+	}
+	
+	/**
+	 * Computes the position of the hint with the given index relative
+	 * to the position of the last hint on the line, in units.
+	 * @param i The index of the hint.
+	 * @param length The number of hints on the line.
+	 * @return The position of the hint relative to the last hint.
+	 */
+	public static int offset(int i, int length){
+		return -SPACING * (length - 1 - i);
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Converts images to custom puzzles. Images are decoded with
+ * source subsampling such that only a few source pixels per
+ * tile are ever decoded, the full resolution raster is never
+ * held in memory. The decoded pixels are then averaged per tile
+ * in parallel row bands and thresholded or dithered straight
+ * into the packed solution of the puzzle. Dark tiles are filled.
+ * @author Roan
+ * @see Seed#Seed(int, int, BitPlane)
+ */
+public final class ImageImport{
+	/**
+	 * Minimum number of decoded pixels per tile on each axis.
+	 */
+	private static final int OVERSAMPLE = 4;
+	/**
+	 * Number of tile rows per band that is processed as one task.
+	 */
+	private static final int BAND_HEIGHT = 16;
+	/**
+	 * Ordered dithering thresholds, an 8x8 Bayer matrix.
+	 */
+	private static final int[] BAYER = {
+		 0, 32,  8, 40,  2, 34, 10, 42,
+		48, 16, 56, 24, 50, 18, 58, 26,
+		12, 44,  4, 36, 14, 46,  6, 38,
+		60, 28, 52, 20, 62, 30, 54, 22,
+		 3, 35, 11, 43,  1, 33,  9, 41,
+		51, 19, 59, 27, 49, 17, 57, 25,
+		15, 47,  7, 39, 13, 45,  5, 37,
+		63, 31, 55, 23, 61, 29, 53, 21
+	};
+	
+	/**
+	 * Prevent instantiation.
+	 */
+	private ImageImport(){
+	}
+	
+	/**
+	 * Reads the size of the given image without decoding it.
+	 * @param file The image file.
+	 * @return The width and height of the image in pixels.
+	 * @throws IOException When an IOException occurs or the
+	 *         image format is not supported.
+	 */
+	public static Dimension readSize(File file) throws IOException{
+		try(ImageInputStream in = ImageIO.createImageInputStream(file)){
+			ImageReader reader = getReader(in);
+			try{
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			}finally{
+				reader.dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Converts the given image to a custom puzzle. The threshold
+	 * between filled and empty tiles is chosen automatically from
+	 * the brightness of the tiles using Otsu's method.
+	 * @param file The image file to convert.
+	 * @param width The number of columns of the puzzle.
+	 * @param height The number of rows of the puzzle.
+	 * @param dither True to use ordered dithering to approximate
+	 *        shades of gray, false to only apply the threshold.
+	 * @return The seed of the custom puzzle.
+	 * @throws IOException When an IOException occurs or the
+	 *         image format is not supported.
+	 * @throws IllegalArgumentException When the puzzle size is not
+	 *         positive or more than {@value Seed#MAX_CUSTOM_SIZE} tiles.
+	 */
+	public static Seed convert(File file, int width, int height, boolean dither) throws IOException, IllegalArgumentException{
+		if(width <= 0 || height <= 0 || (long)width * height > Seed.MAX_CUSTOM_SIZE){
+			throw new IllegalArgumentException("Invalid puzzle size: " + width + "x" + height);
+		}
+		
+		BufferedImage img;
+		try(ImageInputStream in = ImageIO.createImageInputStream(file)){
+			ImageReader reader = getReader(in);
+			try{
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(
+					Math.max(1, reader.getWidth(0) / (width * OVERSAMPLE)),
+					Math.max(1, reader.getHeight(0) / (height * OVERSAMPLE)),
+					0,
+					0
+				);
+				img = reader.read(0, param);
+			}finally{
+				reader.dispose();
+			}
+		}
+		
+		return new Seed(width, height, convert(img, width, height, dither));
+	}
+	
+	/**
+	 * Converts the given image to the solution of a puzzle.
+	 * @param img The image to convert.
+	 * @param width The number of columns of the puzzle.
+	 * @param height The number of rows of the puzzle.
+	 * @param dither True to use ordered dithering to approximate
+	 *        shades of gray, false to only apply the threshold.
+	 * @return The solution of the puzzle in row major order.
+	 * @see #convert(File, int, int, boolean)
+	 */
+	public static BitPlane convert(BufferedImage img, int width, int height, boolean dither){
+		byte[] tiles = new byte[Math.multiplyExact(width, height)];
+		int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+		int[] histogram = IntStream.range(0, bands).parallel().mapToObj(band->{
+			return averageBand(img, tiles, width, height, band * BAND_HEIGHT, Math.min(height, (band + 1) * BAND_HEIGHT));
+		}).reduce(new int[256], (a, b)->{
+			int[] sum = new int[256];
+			for(int i = 0; i < sum.length; i++){
+				sum[i] = a[i] + b[i];
+			}
+			return sum;
+		});
+		
+		int threshold = computeThreshold(histogram, tiles.length);
+		int[] limits = new int[BAYER.length];
+		for(int i = 0; i < limits.length; i++){
+			if(dither){
+				//spread the matrix over the full range with its middle at the threshold
+				double level = (BAYER[i] + 0.5D) / BAYER.length;
+				limits[i] = (int)Math.round(level < 0.5D ? level * 2.0D * threshold : threshold + (level - 0.5D) * 2.0D * (256 - threshold));
+			}else{
+				limits[i] = threshold;
+			}
+		}
+		
+		BitPlane solution = new BitPlane(tiles.length);
+		long[] words = solution.words();
+		
+		//words are filled in independently as bands may share a word
+		IntStream.range(0, words.length).parallel().forEach(word->{
+			int from = word << 6;
+			int to = Math.min(tiles.length, from + 64);
+			long bits = 0;
+			for(int i = from; i < to; i++){
+				int limit = limits[((i / width) & 7) * 8 + ((i % width) & 7)];
+				if((tiles[i] & 0xFF) < limit){
+					bits |= 1L << (i - from);
+				}
+			}
+			words[word] = bits;
+		});
+		
+		return solution;
+	}
+	
+	/**
+	 * Computes the average brightness of all tiles in a band
+	 * of rows by averaging the brightness of the pixels covered
+	 * by each tile. Transparent pixels count as white.
+	 * @param img The image to average.
+	 * @param tiles The array to store the brightness
+	 *        of each tile in, in row major order.
+	 * @param width The number of columns of the puzzle.
+	 * @param height The number of rows of the puzzle.
+	 * @param fromY The first row of the band, inclusive.
+	 * @param toY The last row of the band, exclusive.
+	 * @return A histogram of the brightness of the tiles in the band.
+	 */
+	private static int[] averageBand(BufferedImage img, byte[] tiles, int width, int height, int fromY, int toY){
+		int iw = img.getWidth();
+		int ih = img.getHeight();
+		int[] histogram = new int[256];
+		int[] pixels = new int[iw];
+		long[] sums = new long[width];
+		int[] cols = new int[width + 1];
+		for(int x = 0; x <= width; x++){
+			cols[x] = (int)((long)x * iw / width);
+		}
+		
+		for(int y = fromY; y < toY; y++){
+			int y0 = (int)((long)y * ih / height);
+			int y1 = Math.max(y0 + 1, (int)((long)(y + 1) * ih / height));
+			for(int py = y0; py < y1; py++){
+				img.getRGB(0, py, iw, 1, pixels, 0, iw);
+				for(int x = 0; x < width; x++){
+					int x1 = Math.max(cols[x] + 1, cols[x + 1]);
+					long sum = 0;
+					for(int px = cols[x]; px < x1; px++){
+						sum += luminance(pixels[px]);
+					}
+					sums[x] += sum;
+				}
+			}
+			
+			for(int x = 0; x < width; x++){
+				long count = (long)(y1 - y0) * Math.max(1, cols[x + 1] - cols[x]);
+				int value = (int)(sums[x] / count);
+				tiles[y * width + x] = (byte)value;
+				histogram[value]++;
+				sums[x] = 0;
+			}
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * Computes the brightness of a pixel blended over white.
+	 * @param argb The colour of the pixel.
+	 * @return The brightness of the pixel from 0 to 255.
+	 */
+	private static int luminance(int argb){
+		int alpha = argb >>> 24;
+		int luma = (((argb >> 16) & 0xFF) * 77 + ((argb >> 8) & 0xFF) * 150 + (argb & 0xFF) * 29) >> 8;
+		return (luma * alpha + 255 * (255 - alpha)) / 255;
+	}
+	
+	/**
+	 * Computes the threshold that best separates the dark from
+	 * the light tiles using Otsu's method, tiles darker than the
+	 * threshold are filled.
+	 * @param histogram The histogram of the brightness of the tiles.
+	 * @param total The total number of tiles.
+	 * @return The brightness threshold from 1 to 255.
+	 */
+	private static int computeThreshold(int[] histogram, long total){
+		double sum = 0.0D;
+		for(int i = 0; i < histogram.length; i++){
+			sum += (double)i * histogram[i];
+		}
+		
+		double best = -1.0D;
+		int threshold = 128;
+		long dark = 0;
+		double darkSum = 0.0D;
+		for(int i = 0; i < histogram.length - 1; i++){
+			dark += histogram[i];
+			darkSum += (double)i * histogram[i];
+			long light = total - dark;
+			if(dark == 0 || light == 0){
+				continue;
+			}
+			
+			double diff = darkSum / dark - (sum - darkSum) / light;
+			double variance = (double)dark * light * diff * diff;
+			if(variance > best){
+				best = variance;
+				threshold = i + 1;
+			}
+		}
+		
+		return threshold;
+	}
+	
+	/**
+	 * Gets an image reader for the given image.
+	 * @param in The image input stream to read, can be
+	 *        <code>null</code> if the file could not be opened.
+	 * @return An image reader with its input set to the given stream.
+	 * @throws IOException When the image format is not supported.
+	 */
+	private static ImageReader getReader(ImageInputStream in) throws IOException{
+		if(in == null){
+			throw new IOException("Cannot read the image file");
+		}
+		
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+		if(!readers.hasNext()){
+			throw new IOException("Unsupported image format");
+		}
+		
+		ImageReader reader = readers.next();
+		reader.setInput(in, true, true);
+		return reader;
+	}
+}
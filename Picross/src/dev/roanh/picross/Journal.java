@@ -0,0 +1,524 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import dev.roanh.picross.Board.StateChange;
+import dev.roanh.picross.SaveFile.Snapshot;
+
+/**
+ * Crash safe append only journal of all the moves made on a board.
+ * Records are created on the thread that changes the board and handed
+ * to a background writer thread, so journalling never blocks the EDT.
+ * Checkpoints only copy the board state on the thread that changes the
+ * board, serializing the copy is also left to the writer thread.
+ * The writer commits all records that are waiting at once with a
+ * single write and sync. Every {@value #CHECKPOINT_INTERVAL} records
+ * a checkpoint of the complete board is written after which a new
+ * journal file is started and the older files are removed. A board
+ * is recovered by loading the newest checkpoint and replaying the
+ * journal that follows it up to the first incomplete record.
+ * @author Roan
+ * @see SaveFile
+ */
+public final class Journal implements BoardListener, Closeable{
+	/**
+	 * Number of records after which a new checkpoint is made.
+	 */
+	private static final int CHECKPOINT_INTERVAL = 1024;
+	/**
+	 * Size of the buffer used to write records.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * Record type for a newly made move.
+	 */
+	private static final byte TYPE_MOVE = 0;
+	/**
+	 * Record type for an undo.
+	 */
+	private static final byte TYPE_UNDO = 1;
+	/**
+	 * Record type for a redo.
+	 */
+	private static final byte TYPE_REDO = 2;
+	/**
+	 * Record type for a board reset.
+	 */
+	private static final byte TYPE_RESET = 3;
+	/**
+	 * Record type for entering test mode.
+	 */
+	private static final byte TYPE_TEST_ON = 4;
+	/**
+	 * Record type for leaving test mode.
+	 */
+	private static final byte TYPE_TEST_OFF = 5;
+	/**
+	 * Queue item that stops the writer thread.
+	 */
+	private static final Object END = new Object();
+	/**
+	 * The writer thread of the most recently started journal.
+	 */
+	private static Thread last = null;
+	/**
+	 * The directory the journal files are stored in.
+	 */
+	private final Path dir;
+	/**
+	 * The board that is journalled.
+	 */
+	private final Board board;
+	/**
+	 * Records and checkpoints waiting to be written.
+	 */
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+	/**
+	 * The thread writing the journal.
+	 */
+	private final Thread writer;
+	/**
+	 * Number of records since the last checkpoint.
+	 */
+	private int records = 0;
+	/**
+	 * The current journal generation.
+	 */
+	private int generation = 0;
+	/**
+	 * The first exception encountered by the writer, once set
+	 * no further records are written.
+	 */
+	private volatile IOException failure = null;
+	
+	/**
+	 * Constructs and starts a new journal for the given board.
+	 * @param dir The directory to store the journal files in.
+	 * @param board The board to journal.
+	 */
+	private Journal(Path dir, Board board){
+		this.dir = dir;
+		this.board = board;
+		queue.add(new Checkpoint(0, SaveFile.snapshot(board)));
+		Thread previous = last;
+		writer = last = new Thread(()->write(previous), "Journal");
+		writer.setDaemon(true);
+		writer.start();
+		board.addBoardListener(this);
+	}
+	
+	/**
+	 * Starts journalling the given board. Any existing
+	 * journal in the given directory is replaced.
+	 * @param dir The directory to store the journal files in.
+	 * @param board The board to journal.
+	 * @return The newly started journal.
+	 */
+	public static Journal start(Path dir, Board board){
+		return new Journal(dir, board);
+	}
+	
+	/**
+	 * Recovers the board stored in the journal in the given directory.
+	 * @param dir The directory with the journal files.
+	 * @return The recovered board or <code>null</code> if there
+	 *         is no journal in the given directory.
+	 * @throws IOException When an IOException occurs or when
+	 *         none of the checkpoints could be read.
+	 */
+	public static Board recover(Path dir) throws IOException{
+		List<Integer> generations = new ArrayList<Integer>();
+		if(Files.isDirectory(dir)){
+			try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, "checkpoint-*.sav")){
+				for(Path file : files){
+					String name = file.getFileName().toString();
+					try{
+						generations.add(Integer.parseInt(name.substring(11, name.length() - 4)));
+					}catch(NumberFormatException e){
+						//not a checkpoint
+					}
+				}
+			}
+		}
+		if(generations.isEmpty()){
+			return null;
+		}
+		
+		generations.sort(null);
+		IOException failure = null;
+		for(int i = generations.size() - 1; i >= 0; i--){
+			Board board;
+			try(InputStream in = Files.newInputStream(checkpointFile(dir, generations.get(i)))){
+				board = SaveFile.read(in);
+			}catch(IOException e){
+				failure = e;
+				continue;
+			}
+			
+			Path journal = journalFile(dir, generations.get(i));
+			if(Files.exists(journal)){
+				replay(board, Files.readAllBytes(journal));
+			}
+			return board;
+		}
+		throw failure;
+	}
+	
+	/**
+	 * Replays all the complete records in the given journal
+	 * data on the given board. Replaying stops at the first
+	 * record that was not completely written.
+	 * @param board The board to replay the journal on.
+	 * @param data The journal data.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void replay(Board board, byte[] data) throws IOException{
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		CRC32 crc = new CRC32();
+		while(buffer.remaining() >= Integer.BYTES){
+			int length = buffer.getInt();
+			if(length <= 0 || length + Integer.BYTES > buffer.remaining()){
+				return;
+			}
+			
+			crc.reset();
+			crc.update(data, buffer.position(), length);
+			if((int)crc.getValue() != buffer.getInt(buffer.position() + length)){
+				return;
+			}
+			
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, buffer.position() + 1, length - 1));
+			switch(data[buffer.position()]){
+			case TYPE_MOVE:
+				board.replayMove(SaveFile.readChanges(in, board));
+				break;
+			case TYPE_UNDO:
+				board.undo();
+				break;
+			case TYPE_REDO:
+				board.redo();
+				break;
+			case TYPE_RESET:
+				board.reset();
+				break;
+			case TYPE_TEST_ON:
+				board.enterTestMode();
+				break;
+			case TYPE_TEST_OFF:
+				board.replayLeaveTestMode();
+				break;
+			default:
+				return;
+			}
+			buffer.position(buffer.position() + length + Integer.BYTES);
+		}
+	}
+	
+	@Override
+	public void moveMade(List<StateChange> changes){
+		append(TYPE_MOVE, changes);
+	}
+	
+	@Override
+	public void moveUndone(List<StateChange> changes){
+		append(TYPE_UNDO, null);
+	}
+	
+	@Override
+	public void moveRedone(List<StateChange> changes){
+		append(TYPE_REDO, null);
+	}
+	
+	@Override
+	public void testModeChanged(boolean testMode){
+		append(testMode ? TYPE_TEST_ON : TYPE_TEST_OFF, null);
+	}
+	
+	@Override
+	public void boardReset(){
+		append(TYPE_RESET, null);
+	}
+	
+	/**
+	 * Appends a new record to the journal and makes a
+	 * checkpoint if enough records were written since
+	 * the last checkpoint.
+	 * @param type The record type.
+	 * @param changes The changes to store in the record
+	 *        or <code>null</code> if the record has no data.
+	 */
+	private void append(byte type, List<StateChange> changes){
+		if(failure != null){
+			return;
+		}
+		
+		try{
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buffer);
+			out.writeInt(0);
+			out.writeByte(type);
+			if(changes != null){
+				SaveFile.writeChanges(out, changes);
+			}
+			out.writeInt(0);
+			
+			ByteBuffer record = ByteBuffer.wrap(buffer.toByteArray());
+			int length = record.capacity() - 2 * Integer.BYTES;
+			CRC32 crc = new CRC32();
+			crc.update(record.array(), Integer.BYTES, length);
+			record.putInt(0, length);
+			record.putInt(Integer.BYTES + length, (int)crc.getValue());
+			queue.add(record);
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+		
+		if(++records >= CHECKPOINT_INTERVAL){
+			records = 0;
+			queue.add(new Checkpoint(++generation, SaveFile.snapshot(board)));
+		}
+	}
+	
+	/**
+	 * Stops journalling the board. Records that were already
+	 * made are still written by the writer thread, this method
+	 * does not wait for this to finish.
+	 * @throws IOException When the writer thread failed earlier.
+	 * @see #await()
+	 */
+	@Override
+	public void close() throws IOException{
+		board.removeBoardListener(this);
+		queue.add(END);
+		if(failure != null){
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Waits for the writer thread to write all the records
+	 * that were made before the journal was closed.
+	 * @throws InterruptedException When the current thread
+	 *         is interrupted while waiting.
+	 * @see #close()
+	 */
+	public void await() throws InterruptedException{
+		writer.join();
+	}
+	
+	/**
+	 * Main loop of the writer thread. Takes all the records that are
+	 * waiting, writes them to the journal and then forces them to disk.
+	 * @param previous The writer thread of the previous journal, which
+	 *        has to finish before this journal can replace its files.
+	 */
+	private void write(Thread previous){
+		List<Object> batch = new ArrayList<Object>();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		FileChannel channel = null;
+		try{
+			if(previous != null){
+				previous.join();
+			}
+			
+			while(true){
+				batch.add(queue.take());
+				queue.drainTo(batch);
+				for(Object item : batch){
+					if(item == END){
+						flush(channel, buffer);
+						return;
+					}else if(item instanceof Checkpoint){
+						flush(channel, buffer);
+						channel = checkpoint((Checkpoint)item, channel);
+					}else{
+						ByteBuffer record = (ByteBuffer)item;
+						if(record.remaining() > buffer.remaining()){
+							flush(channel, buffer);
+						}
+						if(record.remaining() > buffer.remaining()){
+							while(record.hasRemaining()){
+								channel.write(record);
+							}
+						}else{
+							buffer.put(record);
+						}
+					}
+				}
+				batch.clear();
+				flush(channel, buffer);
+			}
+		}catch(IOException e){
+			failure = e;
+		}catch(InterruptedException e){
+			//stop journalling, the records still queued are lost
+			failure = new InterruptedIOException("The journal writer was interrupted");
+			Thread.currentThread().interrupt();
+		}finally{
+			if(channel != null){
+				try{
+					channel.close();
+				}catch(IOException e){
+					//pity
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the buffered records to the given channel
+	 * and forces the written data to disk.
+	 * @param channel The channel to write to.
+	 * @param buffer The buffer with the records to write.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException{
+		if(buffer.position() != 0){
+			buffer.flip();
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+			buffer.clear();
+			channel.force(false);
+		}
+	}
+	
+	/**
+	 * Writes the given checkpoint and starts the journal that follows
+	 * it. Once the checkpoint is safely stored all older files are
+	 * deleted. The very first checkpoint of a journal replaces any
+	 * files left behind by an earlier journal.
+	 * @param checkpoint The checkpoint to write.
+	 * @param channel The channel of the current journal.
+	 * @return The channel of the new journal.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private FileChannel checkpoint(Checkpoint checkpoint, FileChannel channel) throws IOException{
+		if(checkpoint.generation == 0){
+			Files.createDirectories(dir);
+			delete(Integer.MAX_VALUE);
+		}
+		
+		Path tmp = dir.resolve("checkpoint.tmp");
+		try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(out), BUFFER_SIZE);
+			checkpoint.state.write(stream, false);
+			stream.flush();
+			out.force(true);
+		}
+		Files.move(tmp, checkpointFile(dir, checkpoint.generation), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		
+		if(channel != null){
+			channel.close();
+		}
+		channel = FileChannel.open(journalFile(dir, checkpoint.generation), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		delete(checkpoint.generation);
+		return channel;
+	}
+	
+	/**
+	 * Deletes all checkpoints and journals older than the given generation.
+	 * @param generation The generation of the oldest files to keep.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private void delete(int generation) throws IOException{
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, "{checkpoint,journal}-*.{sav,log}")){
+			for(Path file : files){
+				String name = file.getFileName().toString();
+				try{
+					if(Integer.parseInt(name.substring(name.indexOf('-') + 1, name.length() - 4)) < generation){
+						Files.delete(file);
+					}
+				}catch(NumberFormatException e){
+					//not a journal file
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the path of the checkpoint with the given generation.
+	 * @param dir The journal directory.
+	 * @param generation The checkpoint generation.
+	 * @return The path of the checkpoint.
+	 */
+	private static Path checkpointFile(Path dir, int generation){
+		return dir.resolve("checkpoint-" + generation + ".sav");
+	}
+	
+	/**
+	 * Gets the path of the journal with the given generation.
+	 * @param dir The journal directory.
+	 * @param generation The journal generation.
+	 * @return The path of the journal.
+	 */
+	private static Path journalFile(Path dir, int generation){
+		return dir.resolve("journal-" + generation + ".log");
+	}
+	
+	/**
+	 * A checkpoint waiting to be written.
+	 * @author Roan
+	 */
+	private static final class Checkpoint{
+		/**
+		 * The generation of the checkpoint.
+		 */
+		private final int generation;
+		/**
+		 * The copied state of the board.
+		 */
+		private final Snapshot state;
+		
+		/**
+		 * Constructs a new checkpoint.
+		 * @param generation The generation of the checkpoint.
+		 * @param state The copied state of the board.
+		 */
+		private Checkpoint(int generation, Snapshot state){
+			this.generation = generation;
+			this.state = state;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with buckets that grow exponentially in size,
+ * such that every recorded value is off by at most 12.5% while the
+ * histogram has a small fixed size. Values below 16 nanoseconds get a
+ * bucket of their own, every power of two above that is split into
+ * eight equally sized buckets. Recording a value never allocates and
+ * is safe to do from multiple threads at once.
+ * @author Roan
+ */
+public final class LatencyHistogram{
+	/**
+	 * Number of bits used to split a power of two into buckets.
+	 */
+	private static final int SUB_BITS = 3;
+	/**
+	 * Number of buckets per power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	/**
+	 * Values below this limit each have a bucket of their own.
+	 */
+	private static final int LINEAR = SUB_BUCKETS * 2;
+	/**
+	 * Total number of buckets, enough to cover every positive long.
+	 */
+	private static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * SUB_BUCKETS;
+	/**
+	 * Number of recorded values in each bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	/**
+	 * Records a single latency.
+	 * @param nanos The latency in nanoseconds, negative
+	 *        values are recorded as zero.
+	 */
+	public void record(long nanos){
+		counts.incrementAndGet(getBucket(Math.max(0, nanos)));
+	}
+	
+	/**
+	 * Gets the number of recorded latencies.
+	 * @return The number of recorded latencies.
+	 */
+	public long getCount(){
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			total += counts.get(i);
+		}
+		return total;
+	}
+	
+	/**
+	 * Gets a percentile of the recorded latencies. Values
+	 * recorded while this method runs may or may not be included.
+	 * @param p The percentile to get between 0 and 1.
+	 * @return The requested percentile in nanoseconds or
+	 *         0 if no latencies were recorded yet.
+	 */
+	public long getPercentile(double p){
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		
+		long rank = Math.max(1, (long)Math.ceil(p * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += snapshot[i];
+			if(seen >= rank){
+				return getValue(i);
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Removes all recorded latencies.
+	 */
+	public void reset(){
+		for(int i = 0; i < BUCKETS; i++){
+			counts.set(i, 0);
+		}
+	}
+	
+	/**
+	 * Gets the bucket the given value is recorded in.
+	 * @param value The value, not negative.
+	 * @return The index of the bucket for the value.
+	 */
+	private static int getBucket(long value){
+		if(value < LINEAR){
+			return (int)value;
+		}
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exponent - (SUB_BITS + 1)) * SUB_BUCKETS + sub;
+	}
+	
+	/**
+	 * Gets the value in the middle of the given bucket.
+	 * @param bucket The index of the bucket.
+	 * @return A value representative for the bucket.
+	 */
+	private static long getValue(int bucket){
+		if(bucket < LINEAR){
+			return bucket;
+		}
+		
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+		long low = (long)(SUB_BUCKETS + (bucket - LINEAR) % SUB_BUCKETS) << (exponent - SUB_BITS);
+		return low + (1L << (exponent - SUB_BITS - 1));
+	}
+}
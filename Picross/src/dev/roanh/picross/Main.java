@@ -20,6 +20,7 @@ package dev.roanh.picross;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.GridLayout;
 import java.awt.Image;
@@ -28,12 +29,24 @@ import java.awt.datatransfer.StringSelection;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.function.Consumer;
 
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -44,7 +57,9 @@ import javax.swing.JSpinner;
 import javax.swing.JTextField;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import dev.roanh.util.ClickableLink;
 import dev.roanh.util.Dialog;
@@ -72,6 +87,43 @@ public class Main{
 	 * The board that is currently shown.
 	 */
 	private static Board board = null;
+	/**
+	 * Map with an overview of the current board.
+	 */
+	private static final Minimap minimap = new Minimap();
+	/**
+	 * Whether profiler timings are shown on the board.
+	 * @see Profiler
+	 */
+	private static boolean showTimings = false;
+	/**
+	 * Directory the journal of the current game is stored in.
+	 */
+	private static final Path JOURNAL_DIR = Paths.get(System.getProperty("user.home"), ".picross", "journal");
+	/**
+	 * The journal of the current game or <code>null</code>
+	 * if the current game is not journalled.
+	 */
+	private static volatile Journal journal = null;
+	/**
+	 * File the current game is autosaved to.
+	 */
+	private static final Path AUTOSAVE_FILE = Paths.get(System.getProperty("user.home"), ".picross", "autosave.dat");
+	/**
+	 * The autosave of the current game or <code>null</code>
+	 * if the current game is not autosaved.
+	 */
+	private static volatile Autosave autosave = null;
+	/**
+	 * Directory with the local puzzle database new games are drawn from.
+	 */
+	private static final Path DATABASE_DIR = Paths.get(System.getProperty("user.home"), ".picross", "puzzles");
+	/**
+	 * The local puzzle database or <code>null</code> if it was not opened yet.
+	 * @see #openDatabase()
+	 * @see #getDatabase()
+	 */
+	private static volatile PuzzleDatabase database = null;
 	/**
 	 * Field that displays the board seed.
 	 */
@@ -91,6 +143,21 @@ public class Main{
 		if(board != null){
 			long ms = board.getPassedTime();
 			timerField.setText(String.format("Time: %02d:%02d", ms / 60000, (ms % 60000) / 1000));
+			board.repaintTimings();
+		}
+	});
+	/**
+	 * Timer used to periodically autosave the current game.
+	 */
+	private static Timer autosaveTimer = new Timer(30000, e->{
+		if(autosave != null){
+			autosave.save();
+			timerField.setToolTipText(String.format(
+				"Last autosave: %d bytes, %.1f ms on the EDT, %.1f ms until written",
+				autosave.getLastBytesWritten(),
+				autosave.getSnapshotTime() / 1000000.0D,
+				autosave.getLatency() / 1000000.0D
+			));
 		}
 	});
 
@@ -100,6 +167,73 @@ public class Main{
 	 */
 	public static void main(String[] args){
 		showGameGUI();
+		openDatabase();
+		Runtime.getRuntime().addShutdownHook(new Thread(Main::closeJournal, "Journal shutdown"));
+		Runtime.getRuntime().addShutdownHook(new Thread(Main::closeAutosave, "Autosave shutdown"));
+		recoverGame();
+	}
+	
+	/**
+	 * Offers to continue the game stored in the journal if the program
+	 * was not able to finish it last time. The journal is replayed on a
+	 * background thread after which the game is offered on the EDT,
+	 * unless a new game was started in the meantime.
+	 */
+	private static void recoverGame(){
+		Thread thread = new Thread(()->{
+			try{
+				Board previous = Journal.recover(JOURNAL_DIR);
+				if(previous != null && !previous.isSolved()){
+					SwingUtilities.invokeLater(()->{
+						Seed seed = previous.getSeed();
+						if(board == null && Dialog.showSelectDialog(new JLabel("Continue the previous " + seed.width + "x" + seed.height + " game?"))){
+							openGame(previous);
+						}
+					});
+				}
+			}catch(IOException e){
+				SwingUtilities.invokeLater(()->{
+					if(board == null){
+						Dialog.showErrorDialog("Failed to recover the previous game: " + e.getMessage());
+					}
+				});
+			}
+		}, "Recovery");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stops the autosave of the current game and waits for all
+	 * the saves to be written to disk. The final save is taken
+	 * on the EDT when the main window is closed.
+	 */
+	private static void closeAutosave(){
+		Autosave current = autosave;
+		if(current != null){
+			try{
+				current.close();
+				current.await();
+			}catch(IOException | InterruptedException e){
+				//pity
+			}
+		}
+	}
+	
+	/**
+	 * Closes the journal of the current game and waits
+	 * for all the moves made to be written to disk.
+	 */
+	private static void closeJournal(){
+		Journal current = journal;
+		if(current != null){
+			try{
+				current.close();
+				current.await();
+			}catch(IOException | InterruptedException e){
+				//pity
+			}
+		}
 	}
 	
 	/**
@@ -165,8 +299,12 @@ public class Main{
 		
 		JMenu game = new JMenu("Game");
 		JMenuItem fromRandom = new JMenuItem("New game...");
-		//JMenuItem fromImage = new JMenuItem("New game from image...");
+		JMenuItem fromImage = new JMenuItem("New game from image...");
 		JMenuItem fromSeed = new JMenuItem("New game from seed...");
+		JMenuItem fromFile = new JMenuItem("Open board file...");
+		JMenuItem save = new JMenuItem("Save game...");
+		JMenuItem load = new JMenuItem("Load game...");
+		JMenuItem loadAutosave = new JMenuItem("Load autosave");
 		
 		JMenuItem quickA = new JMenuItem("New 10x10 @ 0.8 game");
 		JMenuItem quickB = new JMenuItem("New 15x15 @ 0.8 game");
@@ -192,10 +330,57 @@ public class Main{
 				openGame(seed);
 			}
 		});
+		fromImage.addActionListener(e->{
+			JFileChooser chooser = new JFileChooser();
+			chooser.setFileFilter(new FileNameExtensionFilter("Images", ImageIO.getReaderFileSuffixes()));
+			if(chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION){
+				return;
+			}
+			
+			File file = chooser.getSelectedFile();
+			Dimension size;
+			try{
+				size = ImageImport.readSize(file);
+			}catch(IOException e1){
+				Dialog.showErrorDialog("Failed to read the image: " + e1.getMessage());
+				return;
+			}
+			
+			JPanel form = new JPanel(new BorderLayout());
+			JPanel spinners = new JPanel(new GridLayout(2, 1, 0, 2));
+			JPanel labels = new JPanel(new GridLayout(2, 1, 0, 2));
+			
+			int columns = Math.max(1, Math.min(30, size.width));
+			labels.add(new JLabel("Width: "));
+			JSpinner width = new JSpinner(new SpinnerNumberModel(columns, 1, (int)Seed.MAX_CUSTOM_SIZE, 5));
+			spinners.add(width);
+			
+			labels.add(new JLabel("Height: "));
+			int rows = (int)Math.min(Seed.MAX_CUSTOM_SIZE, Math.max(1L, Math.round((double)columns * size.height / size.width)));
+			JSpinner height = new JSpinner(new SpinnerNumberModel(rows, 1, (int)Seed.MAX_CUSTOM_SIZE, 5));
+			spinners.add(height);
+			
+			JCheckBox dither = new JCheckBox("Dither shades of gray");
+			
+			form.add(labels, BorderLayout.LINE_START);
+			form.add(spinners, BorderLayout.CENTER);
+			form.add(new JLabel("<html>Puzzle size (image is " + size.width + "x" + size.height + ",<br>at most " + Seed.MAX_CUSTOM_SIZE + " tiles): </html>"), BorderLayout.PAGE_START);
+			form.add(dither, BorderLayout.PAGE_END);
+			
+			if(Dialog.showSelectDialog(form)){
+				try{
+					openGame(ImageImport.convert(file, (int)width.getValue(), (int)height.getValue(), dither.isSelected()));
+				}catch(IOException | IllegalArgumentException | ArithmeticException e1){
+					Dialog.showErrorDialog("Failed to convert the image: " + e1.getMessage());
+				}
+			}
+		});
 		fromRandom.addActionListener(e->{
+			PuzzleDatabase db = getDatabase();
+			int rows = db == null ? 3 : 4;
 			JPanel form = new JPanel(new BorderLayout());
-			JPanel spinners = new JPanel(new GridLayout(3, 1, 0, 2));
-			JPanel labels = new JPanel(new GridLayout(3, 1, 0, 2));
+			JPanel spinners = new JPanel(new GridLayout(rows, 1, 0, 2));
+			JPanel labels = new JPanel(new GridLayout(rows, 1, 0, 2));
 			
 			labels.add(new JLabel("Width: "));
 			JSpinner width = new JSpinner(new SpinnerNumberModel(15, 1, Integer.MAX_VALUE, 5));
@@ -209,12 +394,104 @@ public class Main{
 			JSpinner density = new JSpinner(new SpinnerNumberModel(0.8D, 0.0D, 100.0D, 0.1D));
 			spinners.add(density);
 			
+			JComboBox<String> difficulty = new JComboBox<String>();
+			JCheckBox unique = new JCheckBox("Only puzzles with a unique solution", true);
+			JLabel matches = new JLabel();
+			if(db != null){
+				difficulty.addItem("Any");
+				for(Difficulty tier : Difficulty.values()){
+					difficulty.addItem(tier.getName());
+				}
+				labels.add(new JLabel("Difficulty: "));
+				spinners.add(difficulty);
+				
+				//stored puzzles are used as is, the density only applies when none match
+				Runnable update = ()->{
+					int tier = difficulty.getSelectedIndex() - 1;
+					long count = db.count((int)width.getValue(), (int)height.getValue(), tier == -1 ? null : Difficulty.values()[tier], unique.isSelected());
+					difficulty.setEnabled(db.count((int)width.getValue(), (int)height.getValue(), null, unique.isSelected()) != 0);
+					density.setEnabled(count == 0);
+					matches.setText(count == 0 ? "No stored puzzle matches, the difficulty is ignored" : (count + " stored puzzles match"));
+				};
+				width.addChangeListener(c->update.run());
+				height.addChangeListener(c->update.run());
+				difficulty.addActionListener(c->update.run());
+				unique.addActionListener(c->update.run());
+				density.setToolTipText("Only used when there is no stored puzzle with these settings");
+				difficulty.setToolTipText("Only available for sizes with stored puzzles");
+				update.run();
+			}
+			
+			JCheckBox mapped = new JCheckBox("Store the board in a file (for very large boards)");
+			JPanel options = new JPanel(new GridLayout(db == null ? 1 : 3, 1, 0, 0));
+			if(db != null){
+				options.add(matches);
+				options.add(unique);
+			}
+			options.add(mapped);
+			
 			form.add(labels, BorderLayout.LINE_START);
 			form.add(spinners, BorderLayout.CENTER);
 			form.add(new JLabel("Game settings: "), BorderLayout.PAGE_START);
+			form.add(options, BorderLayout.PAGE_END);
 			
 			if(Dialog.showSelectDialog(form)){
-				openGame(new Seed((int)width.getValue(), (int)height.getValue(), (double)density.getValue()));
+				Seed seed = null;
+				if(db != null){
+					//graded puzzles from the database are preferred over generating one
+					try{
+						int tier = difficulty.getSelectedIndex() - 1;
+						seed = db.getRandom((int)width.getValue(), (int)height.getValue(), tier == -1 ? null : Difficulty.values()[tier], unique.isSelected());
+					}catch(IOException e1){
+						Dialog.showErrorDialog("Failed to read the puzzle database: " + e1.getMessage());
+					}
+				}
+				
+				if(seed == null){
+					seed = new Seed((int)width.getValue(), (int)height.getValue(), (double)density.getValue());
+				}
+				
+				if(mapped.isSelected()){
+					JFileChooser chooser = new JFileChooser();
+					if(chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION){
+						openMappedGame(chooser.getSelectedFile(), seed);
+					}
+				}else{
+					openGame(seed);
+				}
+			}
+		});
+		save.addActionListener(boardAction(b->{
+			JFileChooser chooser = new JFileChooser();
+			if(chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION){
+				try(OutputStream out = Files.newOutputStream(chooser.getSelectedFile().toPath())){
+					SaveFile.write(b, out, true);
+				}catch(IOException e1){
+					Dialog.showErrorDialog("Failed to save the game: " + e1.getMessage());
+				}
+			}
+		}));
+		load.addActionListener(e->{
+			JFileChooser chooser = new JFileChooser();
+			if(chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION){
+				try(InputStream in = Files.newInputStream(chooser.getSelectedFile().toPath())){
+					openGame(SaveFile.read(in));
+				}catch(IOException e1){
+					Dialog.showErrorDialog("Failed to load the game: " + e1.getMessage());
+				}
+			}
+		});
+		loadAutosave.addActionListener(e->{
+			try{
+				openGame(Autosave.load(AUTOSAVE_FILE));
+			}catch(IOException e1){
+				Dialog.showErrorDialog("Failed to load the autosave: " + e1.getMessage());
+			}
+		});
+		fromFile.addActionListener(e->{
+			JFileChooser chooser = new JFileChooser();
+			if(chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION){
+				openMappedGame(chooser.getSelectedFile(), null);
 			}
 		});
 		
@@ -237,8 +514,13 @@ public class Main{
 		mistakes.addActionListener(boardAction(Board::clearMistakes));
 		
 		game.add(fromRandom);
-		//game.add(fromImage);
+		game.add(fromImage);
 		game.add(fromSeed);
+		game.add(fromFile);
+		game.addSeparator();
+		game.add(save);
+		game.add(load);
+		game.add(loadAutosave);
 		game.addSeparator();
 		game.add(quickA);
 		game.add(quickB);
@@ -275,7 +557,7 @@ public class Main{
 		zoomIn.addActionListener(boardAction(b->b.changeZoom(b.getZoom() * 1.25D)));
 
 		JMenuItem zoomOut = new JMenuItem("Zoom out");
-		zoomOut.addActionListener(boardAction(b->b.changeZoom(Math.max(0.1D, b.getZoom() * 0.75D))));
+		zoomOut.addActionListener(boardAction(b->b.changeZoom(Math.max(b.getMinZoom(), b.getZoom() * 0.75D))));
 
 		JMenuItem zoomReset = new JMenuItem("Reset zoom");
 		zoomReset.addActionListener(boardAction(b->b.changeZoom(1.0D)));
@@ -295,6 +577,21 @@ public class Main{
 		JMenuItem moveReset = new JMenuItem("Reset translations");
 		moveReset.addActionListener(boardAction(Board::resetTranslation));
 		
+		JCheckBoxMenuItem showMinimap = new JCheckBoxMenuItem("Show minimap", true);
+		showMinimap.addActionListener(e->{
+			minimap.setVisible(showMinimap.isSelected());
+			gameContainer.revalidate();
+		});
+		
+		JCheckBoxMenuItem timings = new JCheckBoxMenuItem("Show timings", false);
+		timings.addActionListener(e->{
+			showTimings = timings.isSelected();
+			Profiler.setEnabled(showTimings || Boolean.getBoolean(Profiler.PROPERTY));
+			if(board != null){
+				board.setTimingsVisible(showTimings);
+			}
+		});
+		
 		view.add(zoomIn);
 		view.add(zoomOut);
 		view.add(zoomReset);
@@ -304,6 +601,9 @@ public class Main{
 		view.add(moveLeft);
 		view.add(moveRight);
 		view.add(moveReset);
+		view.addSeparator();
+		view.add(showMinimap);
+		view.add(timings);
 		
 		bar.add(game);
 		bar.add(view);
@@ -335,6 +635,21 @@ public class Main{
 		frame.setSize(1000, 800);
 		frame.setLocationRelativeTo(null);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.addWindowListener(new WindowAdapter(){
+			
+			@Override
+			public void windowClosing(WindowEvent e){
+				//take the final snapshot on the EDT, the shutdown hook waits for it
+				Autosave current = autosave;
+				if(current != null){
+					try{
+						current.close();
+					}catch(IOException e1){
+						//pity
+					}
+				}
+			}
+		});
 		frame.setVisible(true);
 	}
 	
@@ -352,19 +667,105 @@ public class Main{
 		};
 	}
 	
+	/**
+	 * Opens the local puzzle database if there is one on a background
+	 * thread. Opening may have to rebuild the index of the database,
+	 * which for a large database takes far too long for the EDT.
+	 * @see #DATABASE_DIR
+	 */
+	private static void openDatabase(){
+		if(Files.exists(DATABASE_DIR.resolve(PuzzleDatabase.DATA_FILE))){
+			Thread thread = new Thread(()->{
+				try{
+					database = PuzzleDatabase.open(DATABASE_DIR);
+				}catch(IOException e){
+					SwingUtilities.invokeLater(()->Dialog.showErrorDialog("Failed to open the puzzle database: " + e.getMessage()));
+				}
+			}, "Database");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Gets the local puzzle database if it finished opening.
+	 * @return The puzzle database or <code>null</code> if there is
+	 *         no database with puzzles or it is not open (yet).
+	 * @see #openDatabase()
+	 */
+	private static PuzzleDatabase getDatabase(){
+		PuzzleDatabase db = database;
+		return db != null && db.size() > 0 ? db : null;
+	}
+	
 	/**
 	 * Opens a game with the given seed.
 	 * @param seed The seed to generate the board with.
 	 */
 	private static void openGame(Seed seed){
+		openGame(new Board(seed));
+	}
+	
+	/**
+	 * Opens a game stored in a memory mapped board file.
+	 * @param file The board file to open or create.
+	 * @param seed The seed to create a new board file for
+	 *        or <code>null</code> to open an existing file.
+	 * @see MappedGrid
+	 */
+	private static void openMappedGame(File file, Seed seed){
+		try{
+			MappedGrid grid = seed == null ? MappedGrid.open(file.toPath()) : MappedGrid.create(file.toPath(), seed);
+			openGame(new Board(grid.getSeed(), grid.getPuzzle(), grid));
+		}catch(IOException e){
+			Dialog.showErrorDialog("Failed to open the board file: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Opens the given game board.
+	 * @param next The board to open.
+	 */
+	private static void openGame(Board next){
+		if(board != null){
+			try{
+				board.close();
+			}catch(IOException e){
+				//pity
+			}
+		}
+		if(journal != null){
+			try{
+				journal.close();
+			}catch(IOException e){
+				//pity
+			}
+		}
+		if(autosave != null){
+			try{
+				autosave.close();
+			}catch(IOException e){
+				//pity
+			}
+		}
+		
+		//mapped boards are stored in their own file and chunked boards are too large to checkpoint
+		journal = next.getGrid() instanceof PackedGrid ? Journal.start(JOURNAL_DIR, next) : null;
+		autosave = next.getGrid() instanceof PackedGrid ? new Autosave(AUTOSAVE_FILE, next) : null;
+		
+		Seed seed = next.getSeed();
 		gameContainer.removeAll();
-		gameContainer.add(board = new Board(seed));
+		gameContainer.add(board = next);
+		board.setTimingsVisible(showTimings);
+		gameContainer.add(minimap, BorderLayout.LINE_END);
+		minimap.setBoard(next);
 		gameContainer.revalidate();
 		gameContainer.repaint();
 		seedField.setText(" Seed: " + board.getSeed());
 		infoField.setText("Type: " + seed.width + "x" + seed.height + " @ " + seed.density);
 		timerField.setText("Time: 00:00");
 		timer.restart();
+		autosaveTimer.restart();
 	}
 	
 	/**
@@ -0,0 +1,489 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Grid that keeps the solution and the state of every tile
+ * in bitplanes in a memory mapped file instead of on the heap.
+ * Paging is left to the operating system and since the file
+ * always reflects the current state of the game it doubles as
+ * a save file that can be opened again at any time.
+ * <p>
+ * The file starts with a header holding the seed and the tile
+ * counts, followed by the solution, fill, cross and test bitplanes.
+ * @author Roan
+ * @see Grid
+ * @see #getPuzzle()
+ */
+public class MappedGrid implements Grid, Closeable{
+	/**
+	 * Magic number identifying a mapped grid file.
+	 */
+	private static final int MAGIC = 0x5043524D;
+	/**
+	 * Version of the mapped grid file format.
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * Size in bytes of the file header.
+	 */
+	private static final int HEADER_SIZE = 128;
+	/**
+	 * Offset in the header of the tile counts.
+	 */
+	private static final int COUNTS_OFFSET = 32;
+	/**
+	 * Offset in the header of the flags.
+	 */
+	private static final int FLAGS_OFFSET = 96;
+	/**
+	 * Flag indicating that the file holds a custom puzzle.
+	 * @see Seed#isCustom()
+	 */
+	private static final int FLAG_CUSTOM = 1;
+	/**
+	 * Flag indicating that the solution was generated in chunks.
+	 * @see Seed#isChunked()
+	 */
+	private static final int FLAG_CHUNKED = 2;
+	/**
+	 * Number of bits to shift a byte offset by to find its segment.
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+	/**
+	 * Index of the solution bitplane.
+	 */
+	private static final int SOLUTION = 0;
+	/**
+	 * Index of the filled tile bitplane.
+	 */
+	private static final int FILL = 1;
+	/**
+	 * Index of the crossed tile bitplane.
+	 */
+	private static final int CROSS = 2;
+	/**
+	 * Index of the test mode tile bitplane.
+	 */
+	private static final int TEST = 3;
+	/**
+	 * The channel for the mapped file.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The mapped segments of the file, each segment
+	 * except the last is exactly 2<sup>30</sup> bytes.
+	 */
+	private final MappedByteBuffer[] segments;
+	/**
+	 * The seed the puzzle in this file was generated from.
+	 */
+	private final Seed seed;
+	/**
+	 * Number of columns in the grid.
+	 */
+	private final int width;
+	/**
+	 * Number of rows in the grid.
+	 */
+	private final int height;
+	/**
+	 * Number of words in a single bitplane.
+	 */
+	private final long words;
+	/**
+	 * Number of tiles of each type indexed by tile ordinal.
+	 */
+	private final long[] counts = new long[Tile.values().length];
+	/**
+	 * View of the solution stored in this file.
+	 */
+	private final Puzzle puzzle;
+	
+	/**
+	 * Maps the given file.
+	 * @param channel The channel for the file.
+	 * @param seed The seed the puzzle was generated from.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private MappedGrid(FileChannel channel, Seed seed) throws IOException{
+		this.channel = channel;
+		this.seed = seed;
+		width = seed.width;
+		height = seed.height;
+		words = BitPlane.wordCount((long)width * height);
+		
+		long size = getFileSize(width, height);
+		segments = new MappedByteBuffer[(int)(((size - 1) >>> SEGMENT_SHIFT) + 1)];
+		for(int i = 0; i < segments.length; i++){
+			long start = (long)i << SEGMENT_SHIFT;
+			segments[i] = channel.map(MapMode.READ_WRITE, start, Math.min(1L << SEGMENT_SHIFT, size - start));
+		}
+		puzzle = new MappedPuzzle();
+	}
+	
+	/**
+	 * Creates a new mapped grid file for the given seed,
+	 * any existing file at the given path is replaced.
+	 * @param file The file to store the grid in.
+	 * @param seed The seed to generate the puzzle from.
+	 * @return The newly created mapped grid.
+	 * @throws IOException When an IOException occurs.
+	 */
+	public static MappedGrid create(Path file, Seed seed) throws IOException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			return initialise(new MappedGrid(channel, seed));
+		}catch(IOException | RuntimeException e){
+			closeOnFailure(channel, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Writes the header and solution of a newly created mapped grid.
+	 * @param grid The grid to initialise.
+	 * @return The given grid.
+	 */
+	private static MappedGrid initialise(MappedGrid grid){
+		Seed seed = grid.seed;
+		
+		MappedByteBuffer header = grid.segments[0];
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(8, seed.width);
+		header.putInt(12, seed.height);
+		header.putLong(16, seed.seed);
+		header.putDouble(24, seed.density);
+		header.putInt(FLAGS_OFFSET, seed.isCustom() ? FLAG_CUSTOM : (seed.isChunked() ? FLAG_CHUNKED : 0));
+		grid.counts[Tile.EMPTY.ordinal()] = grid.getTileCount();
+		grid.writeCount(Tile.EMPTY);
+		
+		if(seed.isCustom()){
+			long[] solution = seed.getSolution().words();
+			for(int i = 0; i < solution.length; i++){
+				grid.setWord(SOLUTION, i, solution[i]);
+			}
+		}else if(seed.isChunked()){
+			ChunkedPuzzle source = new ChunkedPuzzle(seed);
+			for(int y = 0; y < seed.height; y++){
+				for(int cx = 0; cx << ChunkedPuzzle.CHUNK_SHIFT < seed.width; cx++){
+					grid.orBits(SOLUTION, (long)y * seed.width + (cx << ChunkedPuzzle.CHUNK_SHIFT), source.getRowBits(cx, y));
+				}
+			}
+		}else{
+			long[] solution = PackedPuzzle.generate(seed).words();
+			for(int i = 0; i < solution.length; i++){
+				grid.setWord(SOLUTION, i, solution[i]);
+			}
+		}
+		
+		return grid;
+	}
+	
+	/**
+	 * Opens an existing mapped grid file.
+	 * @param file The file to open.
+	 * @return The mapped grid stored in the file.
+	 * @throws IOException When an IOException occurs or
+	 *         when the file is not a mapped grid file.
+	 */
+	public static MappedGrid open(Path file) throws IOException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			if(channel.size() < HEADER_SIZE){
+				throw new IOException("Not a supported board file");
+			}
+			
+			MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION){
+				throw new IOException("Not a supported board file");
+			}
+			
+			int width = header.getInt(8);
+			int height = header.getInt(12);
+			if(width <= 0 || height <= 0){
+				throw new IOException("Invalid board size in board file");
+			}
+			
+			//mapping read write would silently extend a truncated file
+			if(channel.size() != getFileSize(width, height)){
+				throw new IOException("Board file is truncated");
+			}
+			
+			Seed seed;
+			try{
+				if((header.getInt(FLAGS_OFFSET) & FLAG_CUSTOM) != 0){
+					//custom puzzles need their solution in memory to be shared by seed
+					BitPlane solution = new BitPlane((long)width * height);
+					channel.map(MapMode.READ_ONLY, HEADER_SIZE, solution.words().length * (long)Long.BYTES).asLongBuffer().get(solution.words());
+					seed = new Seed(width, height, solution);
+				}else{
+					seed = new Seed(header.getLong(16), width, height, header.getDouble(24), (header.getInt(FLAGS_OFFSET) & FLAG_CHUNKED) != 0);
+				}
+			}catch(IllegalArgumentException e){
+				throw new IOException("Invalid seed in board file");
+			}
+			
+			MappedGrid grid = new MappedGrid(channel, seed);
+			for(int i = 0; i < grid.counts.length; i++){
+				grid.counts[i] = header.getLong(COUNTS_OFFSET + i * Long.BYTES);
+			}
+			return grid;
+		}catch(IOException | RuntimeException e){
+			closeOnFailure(channel, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Computes the size of a mapped grid file for a
+	 * board with the given dimensions.
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 * @return The size of the file in bytes.
+	 */
+	private static long getFileSize(int width, int height){
+		return HEADER_SIZE + 4 * BitPlane.wordCount((long)width * height) * Long.BYTES;
+	}
+	
+	/**
+	 * Closes the channel of a mapped grid file that could not be
+	 * opened or created. Exceptions while closing are added to the
+	 * exception that caused the failure.
+	 * @param channel The channel to close.
+	 * @param cause The exception that caused the failure.
+	 */
+	private static void closeOnFailure(FileChannel channel, Exception cause){
+		try{
+			channel.close();
+		}catch(IOException e){
+			cause.addSuppressed(e);
+		}
+	}
+	
+	/**
+	 * Gets the seed the puzzle in this file was generated from.
+	 * @return The seed of the puzzle.
+	 */
+	public Seed getSeed(){
+		return seed;
+	}
+	
+	/**
+	 * Gets a view of the puzzle stored in this file. Hints
+	 * are computed on demand from the mapped solution.
+	 * @return The puzzle stored in this file.
+	 */
+	public Puzzle getPuzzle(){
+		return puzzle;
+	}
+	
+	/**
+	 * Forces all changes to be written to the file.
+	 */
+	public void force(){
+		for(MappedByteBuffer segment : segments){
+			segment.force();
+		}
+	}
+	
+	/**
+	 * Reads a word from one of the bitplanes.
+	 * @param plane The bitplane to read from.
+	 * @param word The index of the word in the plane.
+	 * @return The word that was read.
+	 */
+	private long getWord(int plane, long word){
+		long offset = HEADER_SIZE + (plane * words + word) * Long.BYTES;
+		return segments[(int)(offset >>> SEGMENT_SHIFT)].getLong((int)(offset & ((1L << SEGMENT_SHIFT) - 1)));
+	}
+	
+	/**
+	 * Writes a word to one of the bitplanes.
+	 * @param plane The bitplane to write to.
+	 * @param word The index of the word in the plane.
+	 * @param value The new value of the word.
+	 */
+	private void setWord(int plane, long word, long value){
+		long offset = HEADER_SIZE + (plane * words + word) * Long.BYTES;
+		segments[(int)(offset >>> SEGMENT_SHIFT)].putLong((int)(offset & ((1L << SEGMENT_SHIFT) - 1)), value);
+	}
+	
+	/**
+	 * Sets the bits of the given word at an arbitrary
+	 * bit offset in one of the bitplanes.
+	 * @param plane The bitplane to write to.
+	 * @param index The bit index of the lowest bit of the word.
+	 * @param bits The bits to set.
+	 */
+	private void orBits(int plane, long index, long bits){
+		long word = index >>> 6;
+		int shift = (int)(index & 63);
+		setWord(plane, word, getWord(plane, word) | (bits << shift));
+		if(shift != 0 && (bits >>> (64 - shift)) != 0){
+			setWord(plane, word + 1, getWord(plane, word + 1) | (bits >>> (64 - shift)));
+		}
+	}
+	
+	/**
+	 * Gets a single bit from one of the bitplanes.
+	 * @param plane The bitplane to read from.
+	 * @param index The index of the bit.
+	 * @return True if the bit is set.
+	 */
+	private boolean getBit(int plane, long index){
+		return (getWord(plane, index >>> 6) & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Sets a single bit in one of the bitplanes.
+	 * @param plane The bitplane to write to.
+	 * @param index The index of the bit.
+	 * @param value The new value of the bit.
+	 */
+	private void setBit(int plane, long index, boolean value){
+		long word = getWord(plane, index >>> 6);
+		setWord(plane, index >>> 6, value ? (word | (1L << index)) : (word & ~(1L << index)));
+	}
+	
+	/**
+	 * Writes the tile count for the given tile type to the header.
+	 * @param type The tile type to write the count for.
+	 */
+	private void writeCount(Tile type){
+		segments[0].putLong(COUNTS_OFFSET + type.ordinal() * Long.BYTES, counts[type.ordinal()]);
+	}
+	
+	@Override
+	public int getWidth(){
+		return width;
+	}
+	
+	@Override
+	public int getHeight(){
+		return height;
+	}
+	
+	@Override
+	public Tile get(int x, int y){
+		long idx = (long)y * width + x;
+		return Tile.fromBits((getBit(FILL, idx) ? Tile.BIT_FILL : 0) | (getBit(CROSS, idx) ? Tile.BIT_CROSS : 0) | (getBit(TEST, idx) ? Tile.BIT_TEST : 0));
+	}
+	
+	@Override
+	public void set(int x, int y, Tile tile){
+		long idx = (long)y * width + x;
+		Tile old = get(x, y);
+		int bits = tile.toBits();
+		setBit(FILL, idx, (bits & Tile.BIT_FILL) != 0);
+		setBit(CROSS, idx, (bits & Tile.BIT_CROSS) != 0);
+		setBit(TEST, idx, (bits & Tile.BIT_TEST) != 0);
+		counts[old.ordinal()]--;
+		counts[tile.ordinal()]++;
+		writeCount(old);
+		writeCount(tile);
+	}
+	
+	@Override
+	public long getTileCount(Tile type){
+		return counts[type.ordinal()];
+	}
+	
+	@Override
+	public void clear(){
+		for(int plane = FILL; plane <= TEST; plane++){
+			for(long word = 0; word < words; word++){
+				setWord(plane, word, 0L);
+			}
+		}
+		for(Tile type : Tile.values()){
+			counts[type.ordinal()] = type == Tile.EMPTY ? getTileCount() : 0L;
+			writeCount(type);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException{
+		force();
+		channel.close();
+	}
+	
+	/**
+	 * Puzzle view of the solution bitplane.
+	 * @author Roan
+	 */
+	private final class MappedPuzzle implements Puzzle{
+		/**
+		 * Recently computed row hints.
+		 */
+		private final HintCache rowHints = new HintCache();
+		/**
+		 * Recently computed column hints.
+		 */
+		private final HintCache colHints = new HintCache();
+		/**
+		 * Scratch buffer used to compute hints.
+		 */
+		private final int[] buffer = new int[Math.max(width, height) / 2 + 1];
+		
+		@Override
+		public int getWidth(){
+			return width;
+		}
+		
+		@Override
+		public int getHeight(){
+			return height;
+		}
+		
+		@Override
+		public boolean isFilled(int x, int y){
+			return getBit(SOLUTION, (long)y * width + x);
+		}
+		
+		@Override
+		public int[] getRowHints(int y){
+			int[] hints = rowHints.get(y);
+			if(hints == null){
+				hints = PackedPuzzle.computeHints(buffer, width, x->isFilled(x, y));
+				rowHints.put(y, hints);
+			}
+			return hints;
+		}
+		
+		@Override
+		public int[] getColHints(int x){
+			int[] hints = colHints.get(x);
+			if(hints == null){
+				hints = PackedPuzzle.computeHints(buffer, height, y->isFilled(x, y));
+				colHints.put(x, hints);
+			}
+			return hints;
+		}
+	}
+}
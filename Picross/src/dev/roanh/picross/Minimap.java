@@ -0,0 +1,301 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.swing.JPanel;
+
+import dev.roanh.picross.Board.StateChange;
+
+/**
+ * Panel that shows an overview of the entire board together
+ * with the part of the board that is currently visible. Every
+ * pixel of the map covers a square block of one or more tiles,
+ * blocks are chosen such that the map never exceeds a fixed size
+ * regardless of the size of the board. After the map is built
+ * only the pixels covering tiles that changed are computed again.
+ * Clicking or dragging on the map moves the view of the board.
+ * @author Roan
+ */
+public class Minimap extends JPanel implements BoardListener{
+	/**
+	 * Serial ID.
+	 */
+	private static final long serialVersionUID = -2208475601842913350L;
+	/**
+	 * Maximum width and height of the map in pixels.
+	 */
+	private static final int MAX_SIZE = 200;
+	/**
+	 * Space around the map in pixels.
+	 */
+	private static final int MARGIN = 5;
+	/**
+	 * Color used to outline the visible part of the board.
+	 */
+	private static final Color VIEW_COLOR = Color.RED;
+	/**
+	 * Listener that repaints the map when the board is resized.
+	 */
+	private final ComponentListener resizeListener = new ComponentAdapter(){
+		
+		@Override
+		public void componentResized(ComponentEvent e){
+			repaint();
+		}
+	};
+	/**
+	 * The board shown on the map or <code>null</code>.
+	 */
+	private Board board = null;
+	/**
+	 * The rendered map or <code>null</code> if the
+	 * map has to be built again.
+	 */
+	private BufferedImage image = null;
+	/**
+	 * Width and height of the block of tiles covered by a single pixel.
+	 */
+	private int block = 1;
+	/**
+	 * Pixels of the map that cover tiles that changed since the map was
+	 * last painted, indexed by <code>y * image width + x</code>.
+	 */
+	private final BitSet stale = new BitSet();
+	
+	/**
+	 * Constructs a new empty minimap.
+	 */
+	public Minimap(){
+		this.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+		MouseAdapter mouse = new MouseAdapter(){
+			
+			@Override
+			public void mousePressed(MouseEvent e){
+				moveView(e.getX(), e.getY());
+			}
+			
+			@Override
+			public void mouseDragged(MouseEvent e){
+				moveView(e.getX(), e.getY());
+			}
+		};
+		this.addMouseListener(mouse);
+		this.addMouseMotionListener(mouse);
+	}
+	
+	/**
+	 * Sets the board to show on this map.
+	 * @param next The board to show or <code>null</code>
+	 *        to stop showing the current board.
+	 */
+	public void setBoard(Board next){
+		if(board != null){
+			board.removeBoardListener(this);
+			board.removeComponentListener(resizeListener);
+		}
+		board = next;
+		image = null;
+		stale.clear();
+		if(board != null){
+			board.addBoardListener(this);
+			board.addComponentListener(resizeListener);
+			Grid grid = board.getGrid();
+			block = Math.max(1, (Math.max(grid.getWidth(), grid.getHeight()) + MAX_SIZE - 1) / MAX_SIZE);
+		}
+		this.repaint();
+	}
+	
+	/**
+	 * Moves the view of the board such that the tile at the
+	 * given point of the map is in the center of the view.
+	 * @param x The x-coordinate on the map.
+	 * @param y The y-coordinate on the map.
+	 */
+	private void moveView(int x, int y){
+		if(board != null){
+			Rectangle bounds = getMapBounds();
+			double scale = bounds.width / (double)board.getGrid().getWidth();
+			board.centerView((x - bounds.x) / scale, (y - bounds.y) / scale);
+		}
+	}
+	
+	/**
+	 * Gets the area of this panel the map is drawn in. The map
+	 * is scaled to fit the panel while preserving its aspect ratio.
+	 * @return The bounds of the map on this panel.
+	 */
+	private Rectangle getMapBounds(){
+		Grid grid = board.getGrid();
+		double scale = Math.min(
+			Math.max(1, this.getWidth() - 2 * MARGIN) / (double)grid.getWidth(),
+			Math.max(1, this.getHeight() - 2 * MARGIN) / (double)grid.getHeight()
+		);
+		int w = Math.max(1, (int)Math.round(grid.getWidth() * scale));
+		int h = Math.max(1, (int)Math.round(grid.getHeight() * scale));
+		return new Rectangle((this.getWidth() - w) / 2, (this.getHeight() - h) / 2, w, h);
+	}
+	
+	/**
+	 * Builds the entire map for the current board.
+	 */
+	private void buildMap(){
+		Grid grid = board.getGrid();
+		int w = (grid.getWidth() + block - 1) / block;
+		int h = (grid.getHeight() + block - 1) / block;
+		if(image == null || image.getWidth() != w || image.getHeight() != h){
+			image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		}
+		
+		int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		int[] counts = new int[Tile.values().length];
+		int background = board.getBackground().getRGB();
+		for(int py = 0; py < h; py++){
+			for(int px = 0; px < w; px++){
+				pixels[py * w + px] = computePixel(grid, px, py, counts, background);
+			}
+		}
+		stale.clear();
+	}
+	
+	/**
+	 * Computes the color of a single pixel of the map.
+	 * @param grid The grid of the board.
+	 * @param px The x-coordinate of the pixel.
+	 * @param py The y-coordinate of the pixel.
+	 * @param counts Scratch array to count tiles in,
+	 *        with one entry for every tile type.
+	 * @param background The background color as an RGB value.
+	 * @return The color of the pixel as an RGB value.
+	 */
+	private int computePixel(Grid grid, int px, int py, int[] counts, int background){
+		int x = px * block;
+		int y = py * block;
+		int w = Math.min(block, grid.getWidth() - x);
+		int h = Math.min(block, grid.getHeight() - y);
+		Arrays.fill(counts, 0);
+		grid.countTiles(x, y, w, h, counts);
+		return Board.getOverviewColor(counts, w * h, background);
+	}
+	
+	/**
+	 * Marks the pixels covering the given changes as stale
+	 * and schedules a repaint of the map.
+	 * @param changes The tile changes, entries can be <code>null</code>.
+	 */
+	private void markChanged(List<StateChange> changes){
+		if(image != null){
+			int w = image.getWidth();
+			for(StateChange change : changes){
+				if(change != null){
+					stale.set((change.y / block) * w + change.x / block);
+				}
+			}
+			this.repaint();
+		}
+	}
+	
+	@Override
+	public Dimension getPreferredSize(){
+		return new Dimension(MAX_SIZE + 2 * MARGIN, MAX_SIZE + 2 * MARGIN);
+	}
+	
+	@Override
+	public void paintComponent(Graphics g1){
+		super.paintComponent(g1);
+		if(board == null){
+			return;
+		}
+		
+		Graphics2D g = (Graphics2D)g1;
+		if(image == null){
+			buildMap();
+		}else if(!stale.isEmpty()){
+			Grid grid = board.getGrid();
+			int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+			int[] counts = new int[Tile.values().length];
+			int background = board.getBackground().getRGB();
+			int w = image.getWidth();
+			for(int i = stale.nextSetBit(0); i >= 0; i = stale.nextSetBit(i + 1)){
+				pixels[i] = computePixel(grid, i % w, i / w, counts, background);
+			}
+			stale.clear();
+		}
+		
+		Rectangle bounds = getMapBounds();
+		g.drawImage(image, bounds.x, bounds.y, bounds.width, bounds.height, null);
+		g.setColor(Color.GRAY);
+		g.drawRect(bounds.x - 1, bounds.y - 1, bounds.width + 1, bounds.height + 1);
+		
+		//visible part of the board
+		Rectangle2D view = board.getVisibleTiles();
+		double scale = bounds.width / (double)board.getGrid().getWidth();
+		int left = (int)Math.floor(bounds.x + view.getX() * scale);
+		int top = (int)Math.floor(bounds.y + view.getY() * scale);
+		int right = (int)Math.ceil(bounds.x + view.getMaxX() * scale);
+		int bottom = (int)Math.ceil(bounds.y + view.getMaxY() * scale);
+		g.setClip(bounds.x - 1, bounds.y - 1, bounds.width + 2, bounds.height + 2);
+		g.setColor(VIEW_COLOR);
+		g.drawRect(left, top, Math.max(1, right - left - 1), Math.max(1, bottom - top - 1));
+	}
+	
+	@Override
+	public void moveMade(List<StateChange> changes){
+		markChanged(changes);
+	}
+	
+	@Override
+	public void moveUndone(List<StateChange> changes){
+		markChanged(changes);
+	}
+	
+	@Override
+	public void moveRedone(List<StateChange> changes){
+		markChanged(changes);
+	}
+	
+	@Override
+	public void boardReset(){
+		image = null;
+		stale.clear();
+		this.repaint();
+	}
+	
+	@Override
+	public void viewChanged(){
+		this.repaint();
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Arrays;
+
+/**
+ * Grid that keeps the state of every tile in memory
+ * as three bitplanes, one for each bit of the packed
+ * form of a tile.
+ * @author Roan
+ * @see Grid
+ * @see Tile#toBits()
+ */
+public class PackedGrid implements Grid{
+	/**
+	 * Number of tiles in a page of the grid, as a power of two.
+	 */
+	public static final int PAGE_SHIFT = 12;
+	/**
+	 * Number of bitplane words in a page of the grid.
+	 */
+	public static final int PAGE_WORDS = (1 << PAGE_SHIFT) / Long.SIZE;
+	/**
+	 * Number of columns in the grid.
+	 */
+	private final int width;
+	/**
+	 * Number of rows in the grid.
+	 */
+	private final int height;
+	/**
+	 * Bitplane with all filled tiles.
+	 */
+	private final BitPlane fill;
+	/**
+	 * Bitplane with all crossed tiles.
+	 */
+	private final BitPlane cross;
+	/**
+	 * Bitplane with all test mode tiles.
+	 */
+	private final BitPlane test;
+	/**
+	 * Number of tiles of each type indexed by tile ordinal.
+	 */
+	private final long[] counts = new long[Tile.values().length];
+	/**
+	 * Bitset of pages that changed since the dirty pages were last taken.
+	 * @see #takeDirtyPages()
+	 */
+	private final long[] dirty;
+	
+	/**
+	 * Constructs a new empty grid with the given size.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 */
+	public PackedGrid(int width, int height){
+		this.width = width;
+		this.height = height;
+		long size = (long)width * height;
+		fill = new BitPlane(size);
+		cross = new BitPlane(size);
+		test = new BitPlane(size);
+		counts[Tile.EMPTY.ordinal()] = size;
+		dirty = new long[(int)BitPlane.wordCount(getPageCount())];
+	}
+	
+	/**
+	 * Gets the number of pages in this grid. Each
+	 * page consists of {@value #PAGE_WORDS} words
+	 * of each bitplane, except for the last page
+	 * which may be shorter.
+	 * @return The number of pages in this grid.
+	 */
+	public int getPageCount(){
+		return (fill.words().length + PAGE_WORDS - 1) / PAGE_WORDS;
+	}
+	
+	/**
+	 * Gets the pages that changed since the last time this
+	 * method was called and marks all pages as clean.
+	 * @return A bitset with the pages that changed.
+	 * @see #getPageCount()
+	 */
+	public long[] takeDirtyPages(){
+		long[] pages = dirty.clone();
+		Arrays.fill(dirty, 0L);
+		return pages;
+	}
+	
+	/**
+	 * Gets the bitplane with all filled tiles.
+	 * @return The bitplane with all filled tiles.
+	 */
+	public BitPlane getFillPlane(){
+		return fill;
+	}
+	
+	/**
+	 * Gets the bitplane with all crossed tiles.
+	 * @return The bitplane with all crossed tiles.
+	 */
+	public BitPlane getCrossPlane(){
+		return cross;
+	}
+	
+	/**
+	 * Gets the bitplane with all test mode tiles.
+	 * @return The bitplane with all test mode tiles.
+	 */
+	public BitPlane getTestPlane(){
+		return test;
+	}
+	
+	@Override
+	public int getWidth(){
+		return width;
+	}
+	
+	@Override
+	public int getHeight(){
+		return height;
+	}
+	
+	@Override
+	public Tile get(int x, int y){
+		long idx = (long)y * width + x;
+		return Tile.fromBits((fill.get(idx) ? Tile.BIT_FILL : 0) | (cross.get(idx) ? Tile.BIT_CROSS : 0) | (test.get(idx) ? Tile.BIT_TEST : 0));
+	}
+	
+	@Override
+	public void set(int x, int y, Tile tile){
+		long idx = (long)y * width + x;
+		int bits = tile.toBits();
+		counts[get(x, y).ordinal()]--;
+		counts[tile.ordinal()]++;
+		fill.set(idx, (bits & Tile.BIT_FILL) != 0);
+		cross.set(idx, (bits & Tile.BIT_CROSS) != 0);
+		test.set(idx, (bits & Tile.BIT_TEST) != 0);
+		int page = (int)(idx >>> PAGE_SHIFT);
+		dirty[page >>> 6] |= 1L << page;
+	}
+	
+	@Override
+	public long getTileCount(Tile type){
+		return counts[type.ordinal()];
+	}
+	
+	@Override
+	public void countTiles(int x, int y, int w, int h, int[] counts){
+		long[] f = fill.words();
+		long[] c = cross.words();
+		long[] t = test.words();
+		int found = 0;
+		for(int row = y; row < y + h; row++){
+			long from = (long)row * width + x;
+			long to = from + w;
+			for(long i = from >>> 6; i <= (to - 1) >>> 6; i++){
+				long mask = -1L;
+				if(i == from >>> 6){
+					mask &= -1L << from;
+				}
+				if(i == (to - 1) >>> 6){
+					mask &= -1L >>> -to;
+				}
+				
+				int idx = (int)i;
+				int fill = Long.bitCount(f[idx] & ~t[idx] & mask);
+				int tryFill = Long.bitCount(f[idx] & t[idx] & mask);
+				int cross = Long.bitCount(c[idx] & ~f[idx] & ~t[idx] & mask);
+				int tryCross = Long.bitCount(c[idx] & ~f[idx] & t[idx] & mask);
+				counts[Tile.FILL.ordinal()] += fill;
+				counts[Tile.TRY_FILL.ordinal()] += tryFill;
+				counts[Tile.CROSS.ordinal()] += cross;
+				counts[Tile.TRY_CROSS.ordinal()] += tryCross;
+				found += fill + tryFill + cross + tryCross;
+			}
+		}
+		counts[Tile.EMPTY.ordinal()] += w * h - found;
+	}
+	
+	@Override
+	public void clear(){
+		fill.clear();
+		cross.clear();
+		test.clear();
+		recount();
+	}
+	
+	/**
+	 * Recomputes the tile counts from the bitplanes, this
+	 * is required after the planes were changed directly.
+	 * All pages are marked as changed.
+	 */
+	public void recount(){
+		Arrays.fill(dirty, -1L);
+		for(int i = 0; i < counts.length; i++){
+			counts[i] = 0;
+		}
+		long[] f = fill.words();
+		long[] c = cross.words();
+		long[] t = test.words();
+		for(int i = 0; i < f.length; i++){
+			counts[Tile.FILL.ordinal()] += Long.bitCount(f[i] & ~t[i]);
+			counts[Tile.TRY_FILL.ordinal()] += Long.bitCount(f[i] & t[i]);
+			counts[Tile.CROSS.ordinal()] += Long.bitCount(c[i] & ~f[i] & ~t[i]);
+			counts[Tile.TRY_CROSS.ordinal()] += Long.bitCount(c[i] & ~f[i] & t[i]);
+		}
+		counts[Tile.EMPTY.ordinal()] = getTileCount() - counts[Tile.FILL.ordinal()] - counts[Tile.TRY_FILL.ordinal()] - counts[Tile.CROSS.ordinal()] - counts[Tile.TRY_CROSS.ordinal()];
+	}
+}
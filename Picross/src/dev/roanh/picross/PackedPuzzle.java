@@ -0,0 +1,282 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Puzzle that keeps its entire solution in memory as a
+ * single bitplane and computes all hints up front.
+ * @author Roan
+ * @see Puzzle
+ */
+public class PackedPuzzle implements Puzzle{
+	/**
+	 * Number of columns in the puzzle.
+	 */
+	private final int width;
+	/**
+	 * Number of rows in the puzzle.
+	 */
+	private final int height;
+	/**
+	 * Solution this puzzle is based on.
+	 */
+	private final BitPlane solution;
+	/**
+	 * Hint numbers for each row.
+	 */
+	private final int[][] rowHints;
+	/**
+	 * Hint numbers for each column.
+	 */
+	private final int[][] colHints;
+	
+	/**
+	 * Constructs a new puzzle with a random
+	 * solution generated from the given seed.
+	 * @param seed The seed to generate the solution from.
+	 * @see #generate(Seed)
+	 */
+	public PackedPuzzle(Seed seed){
+		this(seed.width, seed.height, generate(seed));
+	}
+	
+	/**
+	 * Constructs a new puzzle for the given solution.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 * @param solution The solution for the puzzle in row major order.
+	 */
+	public PackedPuzzle(int width, int height, BitPlane solution){
+		this.width = width;
+		this.height = height;
+		this.solution = solution;
+		rowHints = new int[height][];
+		colHints = new int[width][];
+		
+		computeRowHints();
+		computeColHints();
+	}
+	
+	/**
+	 * Computes the hint numbers for every row.
+	 */
+	private void computeRowHints(){
+		HintBuilder builder = new HintBuilder();
+		for(int y = 0; y < height; y++){
+			rowHints[y] = computeHints(builder, solution, (long)y * width, width);
+		}
+	}
+	
+	/**
+	 * Computes the hint numbers for every column. To be able to process
+	 * columns a word at a time the solution is first transposed to a
+	 * column major bitplane in blocks of 64 by 64 tiles.
+	 */
+	private void computeColHints(){
+		BitPlane transposed = new BitPlane(solution.size());
+		long[] block = new long[64];
+		for(int by = 0; by < height; by += 64){
+			int bh = Math.min(64, height - by);
+			for(int bx = 0; bx < width; bx += 64){
+				int bw = Math.min(64, width - bx);
+				long mask = bw == 64 ? -1L : ((1L << bw) - 1);
+				for(int i = 0; i < 64; i++){
+					block[i] = i < bh ? (solution.getWord((long)(by + i) * width + bx) & mask) : 0L;
+				}
+				
+				transpose(block);
+				for(int i = 0; i < bw; i++){
+					transposed.orWord((long)(bx + i) * height + by, block[i]);
+				}
+			}
+		}
+		
+		HintBuilder builder = new HintBuilder();
+		for(int x = 0; x < width; x++){
+			colHints[x] = computeHints(builder, transposed, (long)x * height, height);
+		}
+	}
+	
+	/**
+	 * Computes the hints for a line that is stored consecutively in the given bitplane.
+	 * @param builder The builder to compute the hints with.
+	 * @param plane The bitplane holding the line.
+	 * @param start The index of the first tile of the line in the plane.
+	 * @param length The length of the line.
+	 * @return The hints for the line.
+	 */
+	private static int[] computeHints(HintBuilder builder, BitPlane plane, long start, int length){
+		for(int i = 0; i < length; i += 64){
+			int len = Math.min(64, length - i);
+			long word = plane.getWord(start + i);
+			builder.append(len == 64 ? word : (word & ((1L << len) - 1)), len);
+		}
+		return builder.finish();
+	}
+	
+	/**
+	 * Transposes the given 64 by 64 bit matrix in place, where bit
+	 * <code>c</code> of word <code>r</code> is the entry at row
+	 * <code>r</code> and column <code>c</code>.
+	 * @param block The matrix to transpose.
+	 */
+	private static void transpose(long[] block){
+		long mask = 0x00000000FFFFFFFFL;
+		for(int j = 32; j != 0; j >>= 1, mask ^= (mask << j)){
+			for(int k = 0; k < 64; k = ((k | j) + 1) & ~j){
+				long t = ((block[k] >>> j) ^ block[k | j]) & mask;
+				block[k | j] ^= t;
+				block[k] ^= t << j;
+			}
+		}
+	}
+	
+	/**
+	 * Generates a random solution from the given seed. The
+	 * total number of tiles filled is based on the density
+	 * of the seed, filling a tile more than once is possible.
+	 * @param seed The seed to generate the solution from.
+	 * @return The generated solution in row major order.
+	 */
+	public static BitPlane generate(Seed seed){
+		LegacyRandom random = new LegacyRandom(seed.seed);
+		BitPlane solution = new BitPlane((long)seed.width * seed.height);
+		for(int n = 0; n < seed.density * ((long)seed.width * seed.height); n++){
+			int x = random.nextInt(seed.width);
+			solution.set((long)random.nextInt(seed.height) * seed.width + x, true);
+		}
+		return solution;
+	}
+	
+	/**
+	 * Computes the hint numbers for a single line.
+	 * @param buffer A scratch buffer large enough to
+	 *        hold all the hints for the line.
+	 * @param length The length of the line.
+	 * @param filled Function that reports whether the
+	 *        tile at an index on the line is filled.
+	 * @return The hint numbers for the line.
+	 */
+	public static int[] computeHints(int[] buffer, int length, IntPredicate filled){
+		int nums = 0;
+		int n = 0;
+		for(int i = 0; i <= length; i++){
+			if(i != length && filled.test(i)){
+				n++;
+			}else if(n != 0){
+				buffer[nums] = n;
+				nums++;
+				n = 0;
+			}
+		}
+		return Arrays.copyOf(buffer, nums);
+	}
+	
+	/**
+	 * Gets the solution bitplane of this puzzle.
+	 * @return The solution in row major order.
+	 */
+	public BitPlane getSolution(){
+		return solution;
+	}
+	
+	@Override
+	public int getWidth(){
+		return width;
+	}
+	
+	@Override
+	public int getHeight(){
+		return height;
+	}
+	
+	@Override
+	public boolean isFilled(int x, int y){
+		return solution.get((long)y * width + x);
+	}
+	
+	@Override
+	public int[] getRowHints(int y){
+		return rowHints[y];
+	}
+	
+	@Override
+	public int[] getColHints(int x){
+		return colHints[x];
+	}
+	
+	/**
+	 * Single threaded reimplementation of the linear congruential
+	 * generator specified for {@link java.util.Random}. Generates
+	 * exactly the same sequence for the same seed, but without the
+	 * atomic updates that dominate the cost of generating a board.
+	 * @author Roan
+	 */
+	private static final class LegacyRandom{
+		/**
+		 * Multiplier of the generator.
+		 */
+		private static final long MULTIPLIER = 0x5DEECE66DL;
+		/**
+		 * Mask for the 48 bits of generator state.
+		 */
+		private static final long MASK = (1L << 48) - 1;
+		/**
+		 * Current state of the generator.
+		 */
+		private long state;
+		
+		/**
+		 * Constructs a new generator with the given seed.
+		 * @param seed The seed for the generator.
+		 */
+		private LegacyRandom(long seed){
+			state = (seed ^ MULTIPLIER) & MASK;
+		}
+		
+		/**
+		 * Generates the next random integer in the range
+		 * <code>[0, bound)</code> exactly like {@link java.util.Random#nextInt(int)}.
+		 * @param bound The exclusive upper bound.
+		 * @return The next random integer.
+		 */
+		private int nextInt(int bound){
+			int r = next();
+			int m = bound - 1;
+			if((bound & m) == 0){
+				return (int)((bound * (long)r) >> 31);
+			}else{
+				for(int u = r; u - (r = u % bound) + m < 0; u = next());
+				return r;
+			}
+		}
+		
+		/**
+		 * Generates the next 31 random bits.
+		 * @return The next 31 random bits.
+		 */
+		private int next(){
+			state = (state * MULTIPLIER + 0xBL) & MASK;
+			return (int)(state >>> 17);
+		}
+	}
+}
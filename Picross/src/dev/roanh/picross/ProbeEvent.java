@@ -0,0 +1,67 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for a single measurement taken by the
+ * {@link Profiler}. The measured latency is stored as a field
+ * as the measurement is already over when the event is created.
+ * @author Roan
+ * @see Profiler
+ */
+@Name("dev.roanh.picross.Probe")
+@Label("Picross Probe")
+@Category("Picross")
+@Description("Time spent in an instrumented part of the game")
+@StackTrace(false)
+final class ProbeEvent extends Event{
+	/**
+	 * The name of the part of the game that was measured.
+	 */
+	@Label("Probe")
+	String probe;
+	/**
+	 * The time spent in the measured part of the game.
+	 */
+	@Label("Latency")
+	@Timespan(Timespan.NANOSECONDS)
+	long latency;
+	
+	/**
+	 * Commits a new event if probe events are being recorded.
+	 * @param probe The name of the part of the game that was measured.
+	 * @param latency The measured latency in nanoseconds.
+	 */
+	static void emit(String probe, long latency){
+		ProbeEvent event = new ProbeEvent();
+		if(event.isEnabled()){
+			event.probe = probe;
+			event.latency = latency;
+			event.commit();
+		}
+	}
+}
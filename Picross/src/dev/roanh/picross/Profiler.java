@@ -0,0 +1,185 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Lightweight instrumentation for the parts of the game that are
+ * most likely to make a large board feel slow. Every measurement
+ * is recorded in a latency histogram for its probe and emitted as
+ * a flight recorder event if the flight recorder is available.
+ * Profiling is disabled by default and can be switched on and off
+ * at runtime, or enabled at startup with the {@value #PROPERTY}
+ * system property. While disabled a probe costs a single read of
+ * a volatile field.
+ * @author Roan
+ * @see ProbeEvent
+ */
+public final class Profiler{
+	/**
+	 * System property that enables profiling at startup.
+	 */
+	public static final String PROPERTY = "picross.profile";
+	/**
+	 * Value returned by {@link #start()} while profiling is disabled.
+	 */
+	private static final long DISABLED = Long.MIN_VALUE;
+	/**
+	 * Whether the flight recorder API is available in this JVM.
+	 */
+	private static final boolean JFR = isFlightRecorderAvailable();
+	/**
+	 * Recorded latencies for each probe.
+	 */
+	private static final Map<Probe, LatencyHistogram> histograms = new EnumMap<Probe, LatencyHistogram>(Probe.class);
+	/**
+	 * Whether profiling is currently enabled.
+	 */
+	private static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+	
+	static{
+		for(Probe probe : Probe.values()){
+			histograms.put(probe, new LatencyHistogram());
+		}
+	}
+	
+	/**
+	 * Prevent instantiation.
+	 */
+	private Profiler(){
+	}
+	
+	/**
+	 * Starts a measurement.
+	 * @return The start time of the measurement to pass to
+	 *         {@link #stop(Probe, long)} when it ends.
+	 */
+	public static long start(){
+		return enabled ? System.nanoTime() : DISABLED;
+	}
+	
+	/**
+	 * Ends a measurement and records its latency.
+	 * @param probe The probe the measurement was taken for.
+	 * @param start The start time of the measurement
+	 *        as returned by {@link #start()}.
+	 */
+	public static void stop(Probe probe, long start){
+		if(start != DISABLED){
+			long latency = System.nanoTime() - start;
+			histograms.get(probe).record(latency);
+			if(JFR){
+				ProbeEvent.emit(probe.getName(), latency);
+			}
+		}
+	}
+	
+	/**
+	 * Checks if profiling is currently enabled.
+	 * @return True if profiling is enabled.
+	 */
+	public static boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * Enables or disables profiling. When profiling is
+	 * enabled all previously recorded latencies are removed.
+	 * @param enabled True to enable profiling.
+	 */
+	public static void setEnabled(boolean enabled){
+		if(enabled && !Profiler.enabled){
+			histograms.values().forEach(LatencyHistogram::reset);
+		}
+		Profiler.enabled = enabled;
+	}
+	
+	/**
+	 * Gets the recorded latencies for the given probe.
+	 * @param probe The probe to get the latencies for.
+	 * @return The recorded latencies for the probe.
+	 */
+	public static LatencyHistogram getHistogram(Probe probe){
+		return histograms.get(probe);
+	}
+	
+	/**
+	 * Checks if the flight recorder API is available, it was
+	 * only added in later updates of Java 8.
+	 * @return True if flight recorder events can be emitted.
+	 */
+	private static boolean isFlightRecorderAvailable(){
+		try{
+			Class.forName("jdk.jfr.Event");
+			return true;
+		}catch(ClassNotFoundException | LinkageError e){
+			return false;
+		}
+	}
+	
+	/**
+	 * The parts of the game that are measured.
+	 * @author Roan
+	 */
+	public enum Probe{
+		/**
+		 * Changing the state of a single tile.
+		 */
+		STATE_CHANGE("State change"),
+		/**
+		 * Judging which hints of a row or column are satisfied.
+		 */
+		JUDGEMENT("Judgement"),
+		/**
+		 * Checking if the board is solved.
+		 */
+		SOLUTION_CHECK("Solution"),
+		/**
+		 * Painting the board.
+		 */
+		PAINT("Paint"),
+		/**
+		 * Generating the puzzle for a new board.
+		 */
+		GENERATION("Generation");
+		
+		/**
+		 * The display name of the probe.
+		 */
+		private final String name;
+		
+		/**
+		 * Constructs a new probe with the given name.
+		 * @param name The display name of the probe.
+		 */
+		private Probe(String name){
+			this.name = name;
+		}
+		
+		/**
+		 * Gets the display name of this probe.
+		 * @return The display name of this probe.
+		 */
+		public String getName(){
+			return name;
+		}
+	}
+}
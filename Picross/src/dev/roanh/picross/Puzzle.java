@@ -0,0 +1,68 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+/**
+ * Interface for the immutable part of a puzzle, that
+ * is the solution it was generated from and the hint
+ * numbers for each row and column.
+ * @author Roan
+ * @see Grid
+ * @see PackedPuzzle
+ * @see ChunkedPuzzle
+ */
+public interface Puzzle{
+	
+	/**
+	 * Gets the number of columns in this puzzle.
+	 * @return The number of columns.
+	 */
+	public abstract int getWidth();
+	
+	/**
+	 * Gets the number of rows in this puzzle.
+	 * @return The number of rows.
+	 */
+	public abstract int getHeight();
+	
+	/**
+	 * Checks if the tile at the given coordinates
+	 * is filled in the solution of this puzzle.
+	 * @param x The x-coordinate of the tile.
+	 * @param y The y-coordinate of the tile.
+	 * @return True if the tile is filled in the solution.
+	 */
+	public abstract boolean isFilled(int x, int y);
+	
+	/**
+	 * Gets the hint numbers for the given row.
+	 * @param y The row to get the hints for.
+	 * @return The hint numbers for the given row,
+	 *         the returned array should not be modified.
+	 */
+	public abstract int[] getRowHints(int y);
+	
+	/**
+	 * Gets the hint numbers for the given column.
+	 * @param x The column to get the hints for.
+	 * @return The hint numbers for the given column,
+	 *         the returned array should not be modified.
+	 */
+	public abstract int[] getColHints(int x);
+}
@@ -0,0 +1,186 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of generated puzzles by the seed they were
+ * generated from. Cached puzzles are immutable and shared by
+ * every board opened for the same seed, boards themselves only
+ * hold the game state. The cache is bounded by the estimated
+ * memory used by the puzzles in it and evicts the least recently
+ * used puzzles first. This class is thread safe.
+ * @author Roan
+ */
+public final class PuzzleCache{
+	/**
+	 * Estimated overhead of an array object in bytes.
+	 */
+	private static final long ARRAY_OVERHEAD = 16;
+	/**
+	 * The function used to generate puzzles that are not cached.
+	 */
+	private final Function<Seed, Puzzle> generator;
+	/**
+	 * Maximum estimated memory used by all cached puzzles in bytes.
+	 */
+	private final long capacity;
+	/**
+	 * Cached puzzles in least recently used order.
+	 */
+	private final LinkedHashMap<Seed, Entry<Puzzle, Long>> puzzles = new LinkedHashMap<Seed, Entry<Puzzle, Long>>(16, 0.75F, true);
+	/**
+	 * Estimated memory used by all cached puzzles in bytes.
+	 */
+	private long weight = 0;
+	/**
+	 * Number of requests served from the cache.
+	 */
+	private long hits = 0;
+	/**
+	 * Number of requests that had to generate a puzzle.
+	 */
+	private long misses = 0;
+	
+	/**
+	 * Constructs a new empty puzzle cache.
+	 * @param capacity The maximum estimated memory
+	 *        used by all cached puzzles in bytes.
+	 * @param generator The function used to generate
+	 *        puzzles that are not in the cache, the
+	 *        generated puzzles have to be immutable.
+	 */
+	public PuzzleCache(long capacity, Function<Seed, Puzzle> generator){
+		this.capacity = capacity;
+		this.generator = generator;
+	}
+	
+	/**
+	 * Gets the puzzle for the given seed, generating it
+	 * if it is not in the cache. Puzzles are generated
+	 * outside of the cache lock such that other threads
+	 * can still open cached puzzles in the meantime.
+	 * @param seed The seed to get the puzzle for.
+	 * @return The puzzle for the given seed.
+	 */
+	public Puzzle get(Seed seed){
+		synchronized(this){
+			Entry<Puzzle, Long> entry = puzzles.get(seed);
+			if(entry != null){
+				hits++;
+				return entry.getKey();
+			}
+			misses++;
+		}
+		
+		Puzzle puzzle = generator.apply(seed);
+		long size = estimateSize(puzzle);
+		if(size > capacity){
+			return puzzle;
+		}
+		
+		synchronized(this){
+			//another thread may have generated the same puzzle
+			Entry<Puzzle, Long> entry = puzzles.get(seed);
+			if(entry != null){
+				return entry.getKey();
+			}
+			
+			puzzles.put(seed, new SimpleImmutableEntry<Puzzle, Long>(puzzle, size));
+			weight += size;
+			Iterator<Entry<Puzzle, Long>> iter = puzzles.values().iterator();
+			while(weight > capacity){
+				weight -= iter.next().getValue();
+				iter.remove();
+			}
+			return puzzle;
+		}
+	}
+	
+	/**
+	 * Removes all puzzles from the cache.
+	 */
+	public synchronized void clear(){
+		puzzles.clear();
+		weight = 0;
+	}
+	
+	/**
+	 * Gets the number of puzzles in the cache.
+	 * @return The number of cached puzzles.
+	 */
+	public synchronized int size(){
+		return puzzles.size();
+	}
+	
+	/**
+	 * Gets the estimated memory used by all cached puzzles.
+	 * @return The estimated memory used in bytes.
+	 */
+	public synchronized long getWeight(){
+		return weight;
+	}
+	
+	/**
+	 * Gets the maximum estimated memory the cached puzzles can use.
+	 * @return The capacity of this cache in bytes.
+	 */
+	public long getCapacity(){
+		return capacity;
+	}
+	
+	/**
+	 * Gets the number of requests that were served from the cache.
+	 * @return The number of cache hits.
+	 */
+	public synchronized long getHitCount(){
+		return hits;
+	}
+	
+	/**
+	 * Gets the number of requests that had to generate a puzzle.
+	 * @return The number of cache misses.
+	 */
+	public synchronized long getMissCount(){
+		return misses;
+	}
+	
+	/**
+	 * Estimates the memory used by the given puzzle, which
+	 * is dominated by its solution and its hint arrays.
+	 * @param puzzle The puzzle to estimate the size of.
+	 * @return The estimated memory used in bytes.
+	 */
+	public static long estimateSize(Puzzle puzzle){
+		long size = ARRAY_OVERHEAD + BitPlane.wordCount((long)puzzle.getWidth() * puzzle.getHeight()) * Long.BYTES;
+		size += 2 * (ARRAY_OVERHEAD + (puzzle.getWidth() + puzzle.getHeight()) * (long)Integer.BYTES);
+		for(int y = 0; y < puzzle.getHeight(); y++){
+			size += ARRAY_OVERHEAD + puzzle.getRowHints(y).length * (long)Integer.BYTES;
+		}
+		for(int x = 0; x < puzzle.getWidth(); x++){
+			size += ARRAY_OVERHEAD + puzzle.getColHints(x).length * (long)Integer.BYTES;
+		}
+		return size;
+	}
+}
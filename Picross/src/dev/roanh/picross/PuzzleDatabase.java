@@ -0,0 +1,960 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local store of graded puzzles that can hand out a random puzzle
+ * of a given size, difficulty and uniqueness with a constant amount
+ * of I/O. Puzzles are stored in an append-only data file as their
+ * seed together with their grade, which is compact for generated
+ * puzzles and uses the {@link SeedFormat} for custom puzzles.
+ * <p>
+ * A memory mapped index groups the offsets of all records in the
+ * data file by their key, the size, difficulty and uniqueness of
+ * the puzzle. The index starts with a header holding the length
+ * of the data file it covers, followed by a table with the first
+ * offset and number of offsets for each key, the offsets themselves
+ * and finally the sorted {@link Fingerprint}s of all puzzles, which
+ * are used to reject puzzles that are already in the database. The
+ * key table is small and kept in memory, such that finding a
+ * random puzzle takes one read from the mapped offsets
+ * and one read from the data file. The index is rebuilt whenever
+ * puzzles are added and when it does not cover the entire data
+ * file, for example after a crash while adding puzzles.
+ * <p>
+ * Each rebuild writes a new generation of the index to its own file,
+ * after which a small pointer file is replaced to point at the new
+ * generation. Index files are thus never replaced while they are
+ * still mapped, which is not possible on all platforms. Generations
+ * that are no longer used are deleted once they are no longer mapped.
+ * @author Roan
+ * @see BulkLoader
+ */
+public final class PuzzleDatabase implements Closeable{
+	/**
+	 * Name of the data file in the database directory.
+	 */
+	public static final String DATA_FILE = "puzzles.dat";
+	/**
+	 * Name of the file in the database directory that holds
+	 * the generation of the current index file.
+	 */
+	public static final String INDEX_FILE = "puzzles.idx";
+	/**
+	 * Pattern matching the names of the index files of all generations.
+	 */
+	private static final String INDEX_FILES = "puzzles.*.idx";
+	/**
+	 * Magic number identifying a puzzle data file.
+	 */
+	private static final int DATA_MAGIC = 0x50435244;
+	/**
+	 * Magic number identifying a puzzle index file.
+	 */
+	private static final int INDEX_MAGIC = 0x50435249;
+	/**
+	 * Magic number identifying an index pointer file.
+	 */
+	private static final int POINTER_MAGIC = 0x50435250;
+	/**
+	 * Version of the data file format.
+	 */
+	private static final int DATA_VERSION = 1;
+	/**
+	 * Version of the index file format.
+	 */
+	private static final int INDEX_VERSION = 2;
+	/**
+	 * Size in bytes of the data file header.
+	 */
+	private static final int DATA_HEADER_SIZE = 8;
+	/**
+	 * Size in bytes of the index file header.
+	 */
+	private static final int INDEX_HEADER_SIZE = 32;
+	/**
+	 * Size in bytes of a single entry in the key table of the index.
+	 */
+	private static final int KEY_SIZE = 24;
+	/**
+	 * Size in bytes of a single fingerprint in the index.
+	 */
+	private static final int FINGERPRINT_SIZE = 2 * Long.BYTES;
+	/**
+	 * Size in bytes of the record header, the record length
+	 * followed by the width, height, difficulty and uniqueness.
+	 */
+	private static final int RECORD_HEADER_SIZE = 14;
+	/**
+	 * Largest width or height of a puzzle in the database.
+	 */
+	public static final int MAX_SIZE = 0xFFFF;
+	/**
+	 * Binary logarithm of the size in bytes of the
+	 * segments the sections of the index are mapped in.
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+	/**
+	 * The directory with the database files.
+	 */
+	private final Path dir;
+	/**
+	 * The channel to read records from the data file with.
+	 */
+	private final FileChannel data;
+	/**
+	 * The current index of the data file.
+	 */
+	private volatile Index index;
+	
+	/**
+	 * Constructs a new puzzle database.
+	 * @param dir The directory with the database files.
+	 * @param data The channel to read records with.
+	 * @param index The index of the data file.
+	 */
+	private PuzzleDatabase(Path dir, FileChannel data, Index index){
+		this.dir = dir;
+		this.data = data;
+		this.index = index;
+	}
+	
+	/**
+	 * Opens the puzzle database in the given directory, creating an
+	 * empty database if it does not exist yet. If the index does not
+	 * cover all records in the data file then it is rebuilt and any
+	 * partially written record at the end of the data file is removed.
+	 * @param dir The directory with the database files.
+	 * @return The opened database.
+	 * @throws IOException When an IOException occurs or the
+	 *         files are not puzzle database files.
+	 */
+	public static PuzzleDatabase open(Path dir) throws IOException{
+		Files.createDirectories(dir);
+		FileChannel data = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			if(data.size() == 0){
+				ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+				header.putInt(DATA_MAGIC);
+				header.putInt(DATA_VERSION);
+				header.flip();
+				writeFully(data, header, 0);
+			}else{
+				ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+				readFully(data, header, 0);
+				if(header.getInt(0) != DATA_MAGIC || header.getInt(4) != DATA_VERSION){
+					throw new IOException("Not a supported puzzle data file");
+				}
+			}
+			
+			int generation = Index.readGeneration(dir);
+			Index index = generation < 0 ? null : Index.read(Index.getFile(dir, generation), generation);
+			if(index == null || index.dataLength != data.size()){
+				List<long[]> entries = new ArrayList<long[]>();
+				long start = DATA_HEADER_SIZE;
+				if(index != null && index.dataLength < data.size()){
+					start = index.dataLength;
+				}else{
+					index = null;
+				}
+				
+				long end = scan(data, start, entries);
+				if(end != data.size()){
+					data.truncate(end);
+				}
+				index = Index.write(dir, index, entries, end);
+			}
+			Index.deleteUnused(dir, index.generation);
+			
+			return new PuzzleDatabase(dir, data, index);
+		}catch(IOException | RuntimeException e){
+			data.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Gets a random puzzle with the given properties.
+	 * @param width The number of columns of the puzzle.
+	 * @param height The number of rows of the puzzle.
+	 * @param difficulty The difficulty of the puzzle
+	 *        or <code>null</code> for any difficulty.
+	 * @param unique True to only consider puzzles with a unique
+	 *        solution, false to consider all puzzles.
+	 * @return The seed of a random matching puzzle or
+	 *         <code>null</code> if there is no such puzzle.
+	 * @throws IOException When an IOException occurs.
+	 */
+	public Seed getRandom(int width, int height, Difficulty difficulty, boolean unique) throws IOException{
+		Index current = index;
+		long[][] ranges = current.find(width, height, difficulty, unique);
+		long total = 0;
+		for(long[] range : ranges){
+			total += range[1];
+		}
+		
+		if(total == 0){
+			return null;
+		}
+		
+		long pick = ThreadLocalRandom.current().nextLong(total);
+		for(long[] range : ranges){
+			if(pick < range[1]){
+				return readSeed(data, current.getOffset(range[0] + pick));
+			}
+			pick -= range[1];
+		}
+		return null;
+	}
+	
+	/**
+	 * Counts the puzzles with the given properties.
+	 * @param width The number of columns of the puzzle.
+	 * @param height The number of rows of the puzzle.
+	 * @param difficulty The difficulty of the puzzle
+	 *        or <code>null</code> for any difficulty.
+	 * @param unique True to only count puzzles with a unique
+	 *        solution, false to count all puzzles.
+	 * @return The number of matching puzzles.
+	 */
+	public long count(int width, int height, Difficulty difficulty, boolean unique){
+		long total = 0;
+		for(long[] range : index.find(width, height, difficulty, unique)){
+			total += range[1];
+		}
+		return total;
+	}
+	
+	/**
+	 * Gets the total number of puzzles in this database.
+	 * @return The number of puzzles.
+	 */
+	public long size(){
+		return index.size;
+	}
+	
+	/**
+	 * Starts adding puzzles to this database. Only one bulk
+	 * loader should be active at a time. Added puzzles become
+	 * available once the loader is closed.
+	 * @param expected The expected number of puzzles to add.
+	 * @return The bulk loader to add puzzles with.
+	 * @throws IOException When an IOException occurs.
+	 */
+	public BulkLoader bulkLoad(long expected) throws IOException{
+		return new BulkLoader(expected);
+	}
+	
+	/**
+	 * Checks if a puzzle with the given fingerprint is in this database.
+	 * @param fingerprint The fingerprint to look for.
+	 * @return True if a puzzle with the given fingerprint is stored.
+	 */
+	public boolean contains(Fingerprint fingerprint){
+		return index.contains(fingerprint);
+	}
+	
+	@Override
+	public void close() throws IOException{
+		data.close();
+	}
+	
+	/**
+	 * Reads the seed of the record at the given offset.
+	 * @param data The data file channel.
+	 * @param offset The offset of the record in the data file.
+	 * @return The seed stored in the record.
+	 * @throws IOException When an IOException occurs or the record is corrupt.
+	 */
+	private static Seed readSeed(FileChannel data, long offset) throws IOException{
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		readFully(data, header, offset);
+		ByteBuffer seed = ByteBuffer.allocate(header.getInt(0) - (RECORD_HEADER_SIZE - Integer.BYTES));
+		readFully(data, seed, offset + RECORD_HEADER_SIZE);
+		try{
+			return new Seed(new String(seed.array(), StandardCharsets.US_ASCII));
+		}catch(IllegalArgumentException e){
+			throw new IOException("Corrupt puzzle record at offset " + offset);
+		}
+	}
+	
+	/**
+	 * Reads all complete records in the data file from the given offset
+	 * onwards and adds their keys, offsets and fingerprints to the given
+	 * list. The fingerprints are not stored in the data file and have to
+	 * be computed from the puzzles again, which is slow but only happens
+	 * when the index has to be recovered.
+	 * @param data The data file channel.
+	 * @param offset The offset of the first record to read.
+	 * @param entries The list to add the entry of each record to.
+	 * @return The offset directly after the last complete record.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static long scan(FileChannel data, long offset, List<long[]> entries) throws IOException{
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		long size = data.size();
+		while(offset + RECORD_HEADER_SIZE <= size){
+			header.clear();
+			readFully(data, header, offset);
+			long end = offset + Integer.BYTES + header.getInt(0);
+			if(header.getInt(0) < RECORD_HEADER_SIZE - Integer.BYTES || end > size){
+				break;
+			}
+			
+			Seed seed;
+			try{
+				seed = readSeed(data, offset);
+			}catch(IOException e){
+				break;
+			}
+			
+			Fingerprint fingerprint = Fingerprint.of(Board.generatePuzzle(seed));
+			entries.add(new long[]{toKey(header.getInt(4), header.getInt(8), header.get(12), header.get(13) != 0), offset, fingerprint.getHigh(), fingerprint.getLow()});
+			offset = end;
+		}
+		return offset;
+	}
+	
+	/**
+	 * Packs the properties of a puzzle into a single key.
+	 * @param width The number of columns of the puzzle.
+	 * @param height The number of rows of the puzzle.
+	 * @param difficulty The ordinal of the difficulty of the puzzle.
+	 * @param unique True if the puzzle has a unique solution.
+	 * @return The key for the given properties.
+	 */
+	private static long toKey(int width, int height, int difficulty, boolean unique){
+		return ((long)width << 40) | ((long)height << 16) | (difficulty << 1) | (unique ? 1 : 0);
+	}
+	
+	/**
+	 * Reads from the given channel until the buffer is full.
+	 * @param channel The channel to read from.
+	 * @param buffer The buffer to read into.
+	 * @param position The position in the channel to start reading at.
+	 * @throws IOException When an IOException occurs or when
+	 *         the end of the channel is reached.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position + buffer.position());
+			if(read == -1){
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+	}
+	
+	/**
+	 * Writes the entire buffer to the given channel.
+	 * @param channel The channel to write to.
+	 * @param buffer The buffer to write.
+	 * @param position The position in the channel to start writing at.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining()){
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+	
+	/**
+	 * Adds puzzles to the end of the data file of the database and
+	 * rebuilds the index once done. Puzzles can be added from any
+	 * number of threads at the same time.
+	 * @author Roan
+	 */
+	public final class BulkLoader implements Closeable{
+		/**
+		 * The entry of every puzzle added so far, each entry holds the
+		 * key, offset and the high and low bits of the fingerprint.
+		 */
+		private final List<long[]> entries = new ArrayList<long[]>();
+		/**
+		 * Filter that rejects puzzles that are already in the
+		 * database or that were added before to this loader.
+		 */
+		private final DedupFilter<Pending> filter;
+		/**
+		 * The number of puzzles that were held back by the filter.
+		 */
+		private final AtomicLong held = new AtomicLong();
+		/**
+		 * The number of puzzles rejected as duplicates.
+		 */
+		private long rejected = 0;
+		/**
+		 * The offset in the data file to write the next record at.
+		 */
+		private long end;
+		
+		/**
+		 * Constructs a new bulk loader.
+		 * @param expected The expected number of puzzles to add.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private BulkLoader(long expected) throws IOException{
+			end = data.size();
+			filter = new DedupFilter<Pending>(index.size + expected);
+			for(long i = 0; i < index.size; i++){
+				filter.markSeen(index.getFingerprint(i));
+			}
+		}
+		
+		/**
+		 * Adds a puzzle to the database unless a puzzle
+		 * with the same hints was already added.
+		 * @param seed The seed of the puzzle.
+		 * @param difficulty The difficulty of the puzzle.
+		 * @param unique True if the puzzle has a unique solution.
+		 * @throws IOException When an IOException occurs.
+		 * @throws IllegalArgumentException When the puzzle is
+		 *         wider or higher than {@value PuzzleDatabase#MAX_SIZE}.
+		 * @see #add(Seed, Fingerprint, Difficulty, boolean)
+		 */
+		public void add(Seed seed, Difficulty difficulty, boolean unique) throws IOException, IllegalArgumentException{
+			add(seed, Fingerprint.of(Board.generatePuzzle(seed)), difficulty, unique);
+		}
+		
+		/**
+		 * Adds a puzzle to the database unless a puzzle with the same
+		 * hints was already added. Puzzles that might be duplicates are
+		 * only written once the loader is closed and it is known for
+		 * certain that they are not.
+		 * @param seed The seed of the puzzle.
+		 * @param fingerprint The fingerprint of the puzzle.
+		 * @param difficulty The difficulty of the puzzle.
+		 * @param unique True if the puzzle has a unique solution.
+		 * @throws IOException When an IOException occurs.
+		 * @throws IllegalArgumentException When the puzzle is
+		 *         wider or higher than {@value PuzzleDatabase#MAX_SIZE}.
+		 */
+		public void add(Seed seed, Fingerprint fingerprint, Difficulty difficulty, boolean unique) throws IOException, IllegalArgumentException{
+			if(seed.width > MAX_SIZE || seed.height > MAX_SIZE){
+				throw new IllegalArgumentException("Puzzle too large for the database: " + seed.width + "x" + seed.height);
+			}
+			
+			Pending pending = new Pending(seed, fingerprint, difficulty, unique);
+			if(filter.offer(fingerprint, pending)){
+				write(pending);
+			}else{
+				held.incrementAndGet();
+			}
+		}
+		
+		/**
+		 * Gets the number of puzzles that were rejected because a puzzle
+		 * with the same hints was already added. This count is only
+		 * complete once the loader is closed.
+		 * @return The number of rejected duplicate puzzles.
+		 */
+		public synchronized long getRejectedCount(){
+			return rejected;
+		}
+		
+		/**
+		 * Writes the record of a puzzle to the data file.
+		 * @param pending The puzzle to write.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private void write(Pending pending) throws IOException{
+			Seed seed = pending.seed;
+			byte[] str = seed.toString().getBytes(StandardCharsets.US_ASCII);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + str.length);
+			record.putInt(RECORD_HEADER_SIZE - Integer.BYTES + str.length);
+			record.putInt(seed.width);
+			record.putInt(seed.height);
+			record.put((byte)pending.difficulty.ordinal());
+			record.put((byte)(pending.unique ? 1 : 0));
+			record.put(str);
+			record.flip();
+			
+			long offset;
+			synchronized(this){
+				offset = end;
+				end += record.remaining();
+				long key = toKey(seed.width, seed.height, pending.difficulty.ordinal(), pending.unique);
+				entries.add(new long[]{key, offset, pending.fingerprint.getHigh(), pending.fingerprint.getLow()});
+			}
+			writeFully(data, record, offset);
+		}
+		
+		/**
+		 * Writes all added puzzles that are not duplicates to
+		 * disk and rebuilds the index such that they become available.
+		 * @throws IOException When an IOException occurs.
+		 */
+		@Override
+		public synchronized void close() throws IOException{
+			List<Pending> accepted = filter.finish(index::contains);
+			for(Pending pending : accepted){
+				write(pending);
+			}
+			rejected += held.getAndSet(0) - accepted.size();
+			
+			data.force(false);
+			index = Index.write(dir, index, entries, end);
+			entries.clear();
+			Index.deleteUnused(dir, index.generation);
+		}
+	}
+	
+	/**
+	 * A puzzle waiting to be written to the data file.
+	 * @author Roan
+	 */
+	private static final class Pending{
+		/**
+		 * The seed of the puzzle.
+		 */
+		private final Seed seed;
+		/**
+		 * The fingerprint of the puzzle.
+		 */
+		private final Fingerprint fingerprint;
+		/**
+		 * The difficulty of the puzzle.
+		 */
+		private final Difficulty difficulty;
+		/**
+		 * True if the puzzle has a unique solution.
+		 */
+		private final boolean unique;
+		
+		/**
+		 * Constructs a new pending puzzle.
+		 * @param seed The seed of the puzzle.
+		 * @param fingerprint The fingerprint of the puzzle.
+		 * @param difficulty The difficulty of the puzzle.
+		 * @param unique True if the puzzle has a unique solution.
+		 */
+		private Pending(Seed seed, Fingerprint fingerprint, Difficulty difficulty, boolean unique){
+			this.seed = seed;
+			this.fingerprint = fingerprint;
+			this.difficulty = difficulty;
+			this.unique = unique;
+		}
+	}
+	
+	/**
+	 * Memory mapped index of the data file.
+	 * @author Roan
+	 */
+	private static final class Index{
+		/**
+		 * The generation of the file this index is stored in.
+		 */
+		private final int generation;
+		/**
+		 * The length of the data file covered by this index.
+		 */
+		private final long dataLength;
+		/**
+		 * The first offset and number of offsets for each key.
+		 */
+		private final Map<Long, long[]> keys;
+		/**
+		 * The mapped segments with all the record offsets.
+		 */
+		private final MappedByteBuffer[] segments;
+		/**
+		 * The mapped segments with the sorted fingerprints of all records.
+		 */
+		private final MappedByteBuffer[] fingerprints;
+		/**
+		 * The total number of records.
+		 */
+		private final long size;
+		
+		/**
+		 * Constructs a new index.
+		 * @param generation The generation of the file this index is stored in.
+		 * @param dataLength The length of the data file covered by this index.
+		 * @param keys The first offset and number of offsets for each key.
+		 * @param segments The mapped segments with all the record offsets.
+		 * @param fingerprints The mapped segments with the sorted fingerprints.
+		 * @param size The total number of records.
+		 */
+		private Index(int generation, long dataLength, Map<Long, long[]> keys, MappedByteBuffer[] segments, MappedByteBuffer[] fingerprints, long size){
+			this.generation = generation;
+			this.dataLength = dataLength;
+			this.keys = keys;
+			this.segments = segments;
+			this.fingerprints = fingerprints;
+			this.size = size;
+		}
+		
+		/**
+		 * Finds the ranges of offsets of records with the given properties.
+		 * @param width The number of columns of the puzzle.
+		 * @param height The number of rows of the puzzle.
+		 * @param difficulty The difficulty of the puzzle
+		 *        or <code>null</code> for any difficulty.
+		 * @param unique True to only consider puzzles with a unique
+		 *        solution, false to consider all puzzles.
+		 * @return The first offset and number of offsets for each matching key.
+		 */
+		private long[][] find(int width, int height, Difficulty difficulty, boolean unique){
+			List<long[]> ranges = new ArrayList<long[]>();
+			if(width > MAX_SIZE || height > MAX_SIZE){
+				return new long[0][];
+			}
+			
+			for(Difficulty tier : Difficulty.values()){
+				if(difficulty == null || difficulty == tier){
+					for(boolean flag : unique ? new boolean[]{true} : new boolean[]{true, false}){
+						long[] range = keys.get(toKey(width, height, tier.ordinal(), flag));
+						if(range != null){
+							ranges.add(range);
+						}
+					}
+				}
+			}
+			return ranges.toArray(new long[ranges.size()][]);
+		}
+		
+		/**
+		 * Gets a record offset from the index.
+		 * @param index The index of the offset.
+		 * @return The offset of the record in the data file.
+		 */
+		private long getOffset(long index){
+			long pos = index * Long.BYTES;
+			return segments[(int)(pos >>> SEGMENT_SHIFT)].getLong((int)(pos & ((1L << SEGMENT_SHIFT) - 1)));
+		}
+		
+		/**
+		 * Gets a fingerprint from the sorted fingerprints in the index.
+		 * @param index The index of the fingerprint.
+		 * @return The fingerprint.
+		 */
+		private Fingerprint getFingerprint(long index){
+			long pos = index * FINGERPRINT_SIZE;
+			MappedByteBuffer segment = fingerprints[(int)(pos >>> SEGMENT_SHIFT)];
+			int off = (int)(pos & ((1L << SEGMENT_SHIFT) - 1));
+			return new Fingerprint(segment.getLong(off), segment.getLong(off + Long.BYTES));
+		}
+		
+		/**
+		 * Checks if a record with the given fingerprint is in the index.
+		 * @param fingerprint The fingerprint to look for.
+		 * @return True if a record with the given fingerprint exists.
+		 */
+		private boolean contains(Fingerprint fingerprint){
+			long low = 0;
+			long high = size - 1;
+			while(low <= high){
+				long mid = (low + high) >>> 1;
+				int cmp = getFingerprint(mid).compareTo(fingerprint);
+				if(cmp < 0){
+					low = mid + 1;
+				}else if(cmp > 0){
+					high = mid - 1;
+				}else{
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * Maps a section of an index file in segments.
+		 * @param channel The index file channel.
+		 * @param mode The mode to map the segments with.
+		 * @param base The offset of the section in the file.
+		 * @param length The length of the section.
+		 * @return The mapped segments.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private static MappedByteBuffer[] map(FileChannel channel, MapMode mode, long base, long length) throws IOException{
+			MappedByteBuffer[] segments = new MappedByteBuffer[(int)((length + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT)];
+			for(int i = 0; i < segments.length; i++){
+				long offset = (long)i << SEGMENT_SHIFT;
+				segments[i] = channel.map(mode, base + offset, Math.min(1L << SEGMENT_SHIFT, length - offset));
+			}
+			return segments;
+		}
+		
+		/**
+		 * Gets the index file of the given generation.
+		 * @param dir The directory with the database files.
+		 * @param generation The generation of the index.
+		 * @return The index file of the given generation.
+		 */
+		private static Path getFile(Path dir, int generation){
+			return dir.resolve("puzzles." + generation + ".idx");
+		}
+		
+		/**
+		 * Reads the generation of the current index from the pointer file.
+		 * @param dir The directory with the database files.
+		 * @return The generation of the current index or -1 if the
+		 *         pointer file does not exist or is not valid.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private static int readGeneration(Path dir) throws IOException{
+			Path file = dir.resolve(INDEX_FILE);
+			if(!Files.exists(file)){
+				return -1;
+			}
+			
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+				if(channel.size() != 2 * Integer.BYTES){
+					return -1;
+				}
+				
+				ByteBuffer pointer = ByteBuffer.allocate(2 * Integer.BYTES);
+				readFully(channel, pointer, 0);
+				return pointer.getInt(0) == POINTER_MAGIC ? pointer.getInt(4) : -1;
+			}
+		}
+		
+		/**
+		 * Replaces the pointer file such that it points
+		 * at the index file of the given generation.
+		 * @param dir The directory with the database files.
+		 * @param generation The generation of the current index.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private static void writeGeneration(Path dir, int generation) throws IOException{
+			Path file = dir.resolve(INDEX_FILE);
+			Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+			try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+				ByteBuffer pointer = ByteBuffer.allocate(2 * Integer.BYTES);
+				pointer.putInt(POINTER_MAGIC);
+				pointer.putInt(generation);
+				pointer.flip();
+				writeFully(channel, pointer, 0);
+				channel.force(true);
+			}
+			
+			//the pointer file is never mapped so it can always be replaced
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		
+		/**
+		 * Deletes the index files of all generations other than the given
+		 * generation. Files that are still mapped cannot be deleted on
+		 * all platforms, these are deleted the next time instead.
+		 * @param dir The directory with the database files.
+		 * @param generation The generation of the current index.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private static void deleteUnused(Path dir, int generation) throws IOException{
+			Path current = getFile(dir, generation);
+			try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, INDEX_FILES)){
+				for(Path file : files){
+					if(!file.equals(current)){
+						try{
+							Files.deleteIfExists(file);
+						}catch(IOException e){
+							//pity
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Reads the index in the given file.
+		 * @param file The index file to read.
+		 * @param generation The generation of the index file.
+		 * @return The read index or <code>null</code> if the
+		 *         file does not exist or is not a valid index.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private static Index read(Path file, int generation) throws IOException{
+			if(!Files.exists(file)){
+				return null;
+			}
+			
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+				long fileSize = channel.size();
+				if(fileSize < INDEX_HEADER_SIZE){
+					return null;
+				}
+				
+				ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+				readFully(channel, header, 0);
+				if(header.getInt(0) != INDEX_MAGIC || header.getInt(4) != INDEX_VERSION){
+					return null;
+				}
+				
+				long dataLength = header.getLong(8);
+				int keyCount = header.getInt(16);
+				long size = header.getLong(24);
+				long base = INDEX_HEADER_SIZE + (long)keyCount * KEY_SIZE;
+				if(keyCount < 0 || size < 0 || base + size * (Long.BYTES + FINGERPRINT_SIZE) != fileSize){
+					return null;
+				}
+				
+				ByteBuffer table = ByteBuffer.allocate(keyCount * KEY_SIZE);
+				readFully(channel, table, INDEX_HEADER_SIZE);
+				Map<Long, long[]> keys = new HashMap<Long, long[]>();
+				for(int i = 0; i < keyCount; i++){
+					keys.put(table.getLong(), new long[]{table.getLong(), table.getLong()});
+				}
+				
+				//mappings stay valid after the channel is closed
+				MappedByteBuffer[] segments = map(channel, MapMode.READ_ONLY, base, size * Long.BYTES);
+				MappedByteBuffer[] fingerprints = map(channel, MapMode.READ_ONLY, base + size * Long.BYTES, size * FINGERPRINT_SIZE);
+				return new Index(generation, dataLength, keys, segments, fingerprints, size);
+			}
+		}
+		
+		/**
+		 * Writes a new index with all records in the given index and
+		 * the given new records. The new index is written to the file
+		 * of the next generation, which becomes the current index once
+		 * it is completely written. The file of the old index is left
+		 * untouched since it may still be mapped.
+		 * @param dir The directory with the database files.
+		 * @param old The current index or <code>null</code> if there is none.
+		 * @param added The key, offset and fingerprint of each new record.
+		 * @param dataLength The length of the data file covered by the new index.
+		 * @return The new index.
+		 * @throws IOException When an IOException occurs.
+		 */
+		private static Index write(Path dir, Index old, List<long[]> added, long dataLength) throws IOException{
+			//count the records for each key to find where their offsets start
+			Map<Long, long[]> counts = new HashMap<Long, long[]>();
+			if(old != null){
+				for(Map.Entry<Long, long[]> entry : old.keys.entrySet()){
+					counts.put(entry.getKey(), new long[]{0, entry.getValue()[1]});
+				}
+			}
+			for(long[] entry : added){
+				counts.computeIfAbsent(entry[0], k->new long[2])[1]++;
+			}
+			
+			long[] sorted = counts.keySet().stream().mapToLong(Long::longValue).toArray();
+			Arrays.sort(sorted);
+			long size = 0;
+			for(long key : sorted){
+				long[] range = counts.get(key);
+				range[0] = size;
+				size += range[1];
+			}
+			
+			int generation = Math.max(old == null ? -1 : old.generation, readGeneration(dir)) + 1;
+			Path file = getFile(dir, generation);
+			long base = INDEX_HEADER_SIZE + (long)sorted.length * KEY_SIZE;
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+				ByteBuffer header = ByteBuffer.allocate((int)base);
+				header.putInt(INDEX_MAGIC);
+				header.putInt(INDEX_VERSION);
+				header.putLong(dataLength);
+				header.putInt(sorted.length);
+				header.putInt(0);
+				header.putLong(size);
+				for(long key : sorted){
+					long[] range = counts.get(key);
+					header.putLong(key);
+					header.putLong(range[0]);
+					header.putLong(range[1]);
+				}
+				header.flip();
+				writeFully(channel, header, 0);
+				
+				//the offsets of each key start with those of old records
+				Map<Long, Integer> slots = new HashMap<Long, Integer>();
+				long[] next = new long[sorted.length];
+				for(int i = 0; i < sorted.length; i++){
+					slots.put(sorted[i], i);
+					long[] range = old == null ? null : old.keys.get(sorted[i]);
+					next[i] = counts.get(sorted[i])[0] + (range == null ? 0 : range[1]);
+				}
+				
+				long length = size * Long.BYTES;
+				for(long offset = 0; offset < length; offset += 1L << SEGMENT_SHIFT){
+					MappedByteBuffer segment = channel.map(MapMode.READ_WRITE, base + offset, Math.min(1L << SEGMENT_SHIFT, length - offset));
+					long first = offset / Long.BYTES;
+					long last = first + segment.capacity() / Long.BYTES;
+					if(old != null){
+						for(Map.Entry<Long, long[]> entry : old.keys.entrySet()){
+							long to = counts.get(entry.getKey())[0];
+							long from = entry.getValue()[0];
+							for(long i = Math.max(to, first); i < Math.min(to + entry.getValue()[1], last); i++){
+								segment.putLong((int)((i - first) * Long.BYTES), old.getOffset(from + i - to));
+							}
+						}
+					}
+					
+					long[] fill = next.clone();
+					for(long[] entry : added){
+						long pos = fill[slots.get(entry[0])]++;
+						if(pos >= first && pos < last){
+							segment.putLong((int)((pos - first) * Long.BYTES), entry[1]);
+						}
+					}
+					segment.force();
+				}
+				
+				//merge the sorted old fingerprints with the new ones
+				Fingerprint[] fresh = new Fingerprint[added.size()];
+				for(int i = 0; i < fresh.length; i++){
+					fresh[i] = new Fingerprint(added.get(i)[2], added.get(i)[3]);
+				}
+				Arrays.sort(fresh);
+				
+				long oldSize = old == null ? 0 : old.size;
+				long i = 0;
+				int j = 0;
+				for(MappedByteBuffer segment : map(channel, MapMode.READ_WRITE, base + length, size * FINGERPRINT_SIZE)){
+					while(segment.hasRemaining()){
+						Fingerprint fingerprint;
+						if(j == fresh.length || (i < oldSize && old.getFingerprint(i).compareTo(fresh[j]) <= 0)){
+							fingerprint = old.getFingerprint(i++);
+						}else{
+							fingerprint = fresh[j++];
+						}
+						segment.putLong(fingerprint.getHigh());
+						segment.putLong(fingerprint.getLow());
+					}
+					segment.force();
+				}
+				channel.force(true);
+			}
+			
+			writeGeneration(dir, generation);
+			return read(file, generation);
+		}
+	}
+}
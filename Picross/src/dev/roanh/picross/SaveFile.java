@@ -0,0 +1,649 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import dev.roanh.picross.Board.StateChange;
+
+/**
+ * Compact binary format for saved games. A save starts with
+ * an uncompressed header holding the seed, the board size, the
+ * elapsed time and a set of flags. This is followed by the tile
+ * state at 2 bits per tile, the test mode bitplane if there are
+ * any test mode tiles and finally the undo and redo history. All
+ * data after the header can optionally be Deflate compressed.
+ * @author Roan
+ * @see Board
+ */
+public final class SaveFile{
+	/**
+	 * Magic number identifying a save file.
+	 */
+	private static final int MAGIC = 0x50435253;
+	/**
+	 * Version of the save file format, version 1 stored
+	 * the seed as modified UTF-8 limiting its length.
+	 */
+	private static final int VERSION = 2;
+	/**
+	 * Flag indicating that the data after the header is compressed.
+	 */
+	private static final int FLAG_COMPRESSED = 1;
+	/**
+	 * Flag indicating that the save contains a test mode bitplane.
+	 */
+	private static final int FLAG_TEST_PLANE = 2;
+	/**
+	 * Flag indicating that the board was in test mode.
+	 */
+	private static final int FLAG_TEST_MODE = 4;
+	/**
+	 * Size of the buffers used for reading and writing.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	/**
+	 * Prevent instantiation.
+	 */
+	private SaveFile(){
+	}
+	
+	/**
+	 * Writes the given board to the given stream. The stream is not closed.
+	 * @param board The board to save.
+	 * @param out The stream to write to.
+	 * @param compress Whether to compress the saved data.
+	 * @throws IOException When an IOException occurs.
+	 */
+	public static void write(Board board, OutputStream out, boolean compress) throws IOException{
+		Grid grid = board.getGrid();
+		write(out, compress, board.getSeed(), grid, hasTests(grid), board.isTestMode(), board.getPassedTime(), board.getUndoStack(), board.getRedoStack());
+	}
+	
+	/**
+	 * Writes a save with the given content to the given stream.
+	 * @param out The stream to write to.
+	 * @param compress Whether to compress the saved data.
+	 * @param seed The seed of the board.
+	 * @param grid The tile state of the board.
+	 * @param tests Whether to also write the test mode bitplane.
+	 * @param testMode Whether the board is in test mode.
+	 * @param passedTime The time spent on the board.
+	 * @param undo The undo history of the board.
+	 * @param redo The redo history of the board.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void write(OutputStream out, boolean compress, Seed seed, Grid grid, boolean tests, boolean testMode, long passedTime, Deque<List<StateChange>> undo, Deque<List<StateChange>> redo) throws IOException{
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(MAGIC);
+		header.writeByte(VERSION);
+		header.writeByte((compress ? FLAG_COMPRESSED : 0) | (tests ? FLAG_TEST_PLANE : 0) | (testMode ? FLAG_TEST_MODE : 0));
+		writeSeed(header, seed);
+		header.writeInt(grid.getWidth());
+		header.writeInt(grid.getHeight());
+		header.writeLong(passedTime);
+		header.flush();
+		
+		Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+		try{
+			DeflaterOutputStream deflate = compress ? new DeflaterOutputStream(out, deflater, BUFFER_SIZE) : null;
+			DataOutputStream data = new DataOutputStream(new BufferedOutputStream(compress ? deflate : out, BUFFER_SIZE));
+			writeState(data, grid, tests);
+			writeHistory(data, undo);
+			writeHistory(data, redo);
+			data.flush();
+			if(compress){
+				deflate.finish();
+			}
+		}finally{
+			if(deflater != null){
+				deflater.end();
+			}
+		}
+	}
+	
+	/**
+	 * Copies the state of the given board such that it can be saved
+	 * later from any thread while the board keeps changing. This only
+	 * copies the tile words and the references to the moves in the
+	 * history, which is much cheaper than writing the save.
+	 * @param board The board to copy.
+	 * @return The copied state of the board.
+	 * @see Snapshot#write(OutputStream, boolean)
+	 */
+	static Snapshot snapshot(Board board){
+		return new Snapshot(board);
+	}
+	
+	/**
+	 * Checks if the given grid has any test mode tiles.
+	 * @param grid The grid to check.
+	 * @return True if the grid has test mode tiles.
+	 */
+	private static boolean hasTests(Grid grid){
+		return grid.getTileCount(Tile.TRY_FILL) + grid.getTileCount(Tile.TRY_CROSS) != 0;
+	}
+	
+	/**
+	 * Reads a saved board from the given stream. The stream is not closed.
+	 * @param in The stream to read from.
+	 * @return The board that was read.
+	 * @throws IOException When an IOException occurs or when
+	 *         the stream does not contain a valid save.
+	 */
+	public static Board read(InputStream in) throws IOException{
+		DataInputStream header = new DataInputStream(in);
+		if(header.readInt() != MAGIC){
+			throw new IOException("Not a supported save file");
+		}
+		int version = header.readUnsignedByte();
+		if(version != 1 && version != VERSION){
+			throw new IOException("Not a supported save file");
+		}
+		int flags = header.readUnsignedByte();
+		
+		Seed seed;
+		try{
+			seed = version == 1 ? new Seed(header.readUTF()) : readSeed(header);
+		}catch(IllegalArgumentException e){
+			throw new IOException("Invalid seed in save file");
+		}
+		if(header.readInt() != seed.width || header.readInt() != seed.height){
+			throw new IOException("Board size does not match the seed");
+		}
+		long passed = header.readLong();
+		
+		Inflater inflater = (flags & FLAG_COMPRESSED) != 0 ? new Inflater() : null;
+		try{
+			DataInputStream data = new DataInputStream(new BufferedInputStream(inflater != null ? new InflaterInputStream(in, inflater, BUFFER_SIZE) : in, BUFFER_SIZE));
+			Grid grid = Board.createGrid(seed);
+			readState(data, grid, (flags & FLAG_TEST_PLANE) != 0);
+			
+			Board board = new Board(seed, Board.createPuzzle(seed), grid);
+			board.setPassedTime(passed);
+			readHistory(data, board, board.getUndoStack());
+			readHistory(data, board, board.getRedoStack());
+			if((flags & FLAG_TEST_MODE) != 0){
+				board.enterTestMode();
+			}
+			return board;
+		}finally{
+			if(inflater != null){
+				inflater.end();
+			}
+		}
+	}
+	
+	/**
+	 * Writes a seed in its string form prefixed by its length, unlike
+	 * {@link DataOutput#writeUTF(String)} this works for seeds of any length.
+	 * @param out The output to write to.
+	 * @param seed The seed to write.
+	 * @throws IOException When an IOException occurs.
+	 * @see #readSeed(DataInput)
+	 */
+	static void writeSeed(DataOutput out, Seed seed) throws IOException{
+		byte[] data = seed.toString().getBytes(StandardCharsets.US_ASCII);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+	
+	/**
+	 * Reads a seed written by {@link #writeSeed(DataOutput, Seed)}.
+	 * @param in The input to read from.
+	 * @return The seed that was read.
+	 * @throws IOException When an IOException occurs or when
+	 *         the length of the seed is not valid.
+	 * @throws IllegalArgumentException When the seed is not valid.
+	 */
+	static Seed readSeed(DataInput in) throws IOException, IllegalArgumentException{
+		int length = in.readInt();
+		if(length < 0 || length > SeedFormat.MAX_LENGTH){
+			throw new IOException("Invalid seed length");
+		}
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return new Seed(new String(data, StandardCharsets.US_ASCII));
+	}
+	
+	/**
+	 * Writes the tile state of the given grid at 2 bits per tile. Each
+	 * written long holds 32 tiles in row major order, the even bit of
+	 * a tile is set if the tile is filled and the odd bit if it is crossed.
+	 * @param out The output to write to.
+	 * @param grid The grid to write.
+	 * @param tests Whether to also write the test mode bitplane.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void writeState(DataOutput out, Grid grid, boolean tests) throws IOException{
+		if(grid instanceof PackedGrid){
+			PackedGrid packed = (PackedGrid)grid;
+			long[] fill = packed.getFillPlane().words();
+			long[] cross = packed.getCrossPlane().words();
+			for(int i = 0; i < fill.length; i++){
+				out.writeLong(spread(fill[i]) | (spread(cross[i]) << 1));
+				out.writeLong(spread(fill[i] >>> 32) | (spread(cross[i] >>> 32) << 1));
+			}
+			if(tests){
+				for(long word : packed.getTestPlane().words()){
+					out.writeLong(word);
+				}
+			}
+		}else{
+			writeCells(out, grid, false);
+			if(tests){
+				writeCells(out, grid, true);
+			}
+		}
+	}
+	
+	/**
+	 * Writes either the 2 bit tile state or the test mode bitplane
+	 * for a grid that does not expose its bitplanes directly.
+	 * @param out The output to write to.
+	 * @param grid The grid to write.
+	 * @param tests True to write the test mode bitplane.
+	 * @throws IOException When an IOException occurs.
+	 * @see #writeState(DataOutput, Grid, boolean)
+	 */
+	private static void writeCells(DataOutput out, Grid grid, boolean tests) throws IOException{
+		int bitsPerTile = tests ? 1 : 2;
+		long word = 0;
+		int shift = 0;
+		long written = 0;
+		for(int y = 0; y < grid.getHeight(); y++){
+			for(int x = 0; x < grid.getWidth(); x++){
+				int bits = grid.get(x, y).toBits();
+				if(tests){
+					word |= (long)(bits >>> 2) << shift;
+				}else{
+					word |= (long)(bits & (Tile.BIT_FILL | Tile.BIT_CROSS)) << shift;
+				}
+				
+				shift += bitsPerTile;
+				if(shift == 64){
+					out.writeLong(word);
+					written++;
+					word = 0;
+					shift = 0;
+				}
+			}
+		}
+		
+		if(shift != 0){
+			out.writeLong(word);
+			written++;
+		}
+		
+		//pad to the same length as the packed form
+		for(long words = BitPlane.wordCount(grid.getTileCount()) * bitsPerTile; written < words; written++){
+			out.writeLong(0L);
+		}
+	}
+	
+	/**
+	 * Reads the tile state written by {@link #writeState(DataOutput, Grid, boolean)}
+	 * directly into the given empty grid.
+	 * @param in The input to read from.
+	 * @param grid The grid to read into.
+	 * @param tests Whether a test mode bitplane is present.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void readState(DataInput in, Grid grid, boolean tests) throws IOException{
+		if(grid instanceof PackedGrid){
+			PackedGrid packed = (PackedGrid)grid;
+			long[] fill = packed.getFillPlane().words();
+			long[] cross = packed.getCrossPlane().words();
+			for(int i = 0; i < fill.length; i++){
+				long lo = in.readLong();
+				long hi = in.readLong();
+				fill[i] = compact(lo) | (compact(hi) << 32);
+				cross[i] = compact(lo >>> 1) | (compact(hi >>> 1) << 32);
+			}
+			if(tests){
+				long[] test = packed.getTestPlane().words();
+				for(int i = 0; i < test.length; i++){
+					test[i] = in.readLong();
+				}
+			}
+			packed.recount();
+		}else{
+			readCells(in, grid, false);
+			if(tests){
+				readCells(in, grid, true);
+			}
+		}
+	}
+	
+	/**
+	 * Reads either the 2 bit tile state or the test mode bitplane
+	 * into a grid that does not expose its bitplanes directly.
+	 * @param in The input to read from.
+	 * @param grid The grid to read into.
+	 * @param tests True to read the test mode bitplane.
+	 * @throws IOException When an IOException occurs.
+	 * @see #readState(DataInput, Grid, boolean)
+	 */
+	private static void readCells(DataInput in, Grid grid, boolean tests) throws IOException{
+		int bitsPerTile = tests ? 1 : 2;
+		long word = 0;
+		int shift = 64;
+		long read = 0;
+		for(int y = 0; y < grid.getHeight(); y++){
+			for(int x = 0; x < grid.getWidth(); x++){
+				if(shift == 64){
+					word = in.readLong();
+					read++;
+					shift = 0;
+				}
+				
+				if(tests){
+					if(((word >>> shift) & 1L) != 0){
+						grid.set(x, y, grid.get(x, y).toTest());
+					}
+				}else{
+					int bits = (int)((word >>> shift) & 3L);
+					if(bits != 0){
+						grid.set(x, y, Tile.fromBits(bits));
+					}
+				}
+				shift += bitsPerTile;
+			}
+		}
+		
+		for(long words = BitPlane.wordCount(grid.getTileCount()) * bitsPerTile; read < words; read++){
+			in.readLong();
+		}
+	}
+	
+	/**
+	 * Writes a history stack starting with the oldest move.
+	 * @param out The output to write to.
+	 * @param stack The stack to write.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void writeHistory(DataOutput out, Deque<List<StateChange>> stack) throws IOException{
+		writeVarInt(out, stack.size());
+		Iterator<List<StateChange>> iter = stack.descendingIterator();
+		while(iter.hasNext()){
+			writeChanges(out, iter.next());
+		}
+	}
+	
+	/**
+	 * Reads a history stack written by {@link #writeHistory(DataOutput, Deque)}.
+	 * @param in The input to read from.
+	 * @param board The board the history belongs to.
+	 * @param stack The stack to push the read moves on.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static void readHistory(DataInput in, Board board, Deque<List<StateChange>> stack) throws IOException{
+		int moves = readVarInt(in);
+		for(int i = 0; i < moves; i++){
+			stack.push(readChanges(in, board));
+		}
+	}
+	
+	/**
+	 * Writes a single batch of state changes. Coordinates are
+	 * written as deltas to the previous change in the batch.
+	 * @param out The output to write to.
+	 * @param changes The changes to write, <code>null</code>
+	 *        entries are skipped.
+	 * @throws IOException When an IOException occurs.
+	 */
+	static void writeChanges(DataOutput out, List<StateChange> changes) throws IOException{
+		int n = 0;
+		for(StateChange change : changes){
+			if(change != null){
+				n++;
+			}
+		}
+		
+		writeVarInt(out, n);
+		int lx = 0;
+		int ly = 0;
+		for(StateChange change : changes){
+			if(change != null){
+				writeVarInt(out, zigzag(change.x - lx));
+				writeVarInt(out, zigzag(change.y - ly));
+				out.writeByte(change.old.toBits() | (change.next.toBits() << 3) | (change.test ? 64 : 0));
+				lx = change.x;
+				ly = change.y;
+			}
+		}
+	}
+	
+	/**
+	 * Reads a single batch of state changes written by
+	 * {@link #writeChanges(DataOutput, List)}.
+	 * @param in The input to read from.
+	 * @param board The board the changes belong to.
+	 * @return The changes that were read.
+	 * @throws IOException When an IOException occurs or when
+	 *         the changes do not fit on the given board.
+	 */
+	static List<StateChange> readChanges(DataInput in, Board board) throws IOException{
+		Seed seed = board.getSeed();
+		int n = readVarInt(in);
+		if(n < 0 || n > (long)seed.width * seed.height){
+			throw new IOException("Invalid number of changes");
+		}
+		
+		//the count is not trusted until the changes were read
+		List<StateChange> changes = new ArrayList<StateChange>(Math.min(n, BUFFER_SIZE));
+		int x = 0;
+		int y = 0;
+		for(int i = 0; i < n; i++){
+			x += unzigzag(readVarInt(in));
+			y += unzigzag(readVarInt(in));
+			if(x < 0 || x >= seed.width || y < 0 || y >= seed.height){
+				throw new IOException("Change outside of the board");
+			}
+			int bits = in.readUnsignedByte();
+			changes.add(board.createStateChange(x, y, Tile.fromBits(bits & 7), Tile.fromBits((bits >>> 3) & 7), (bits & 64) != 0));
+		}
+		return changes;
+	}
+	
+	/**
+	 * Writes a non-negative integer using 7 bits per byte.
+	 * @param out The output to write to.
+	 * @param value The value to write.
+	 * @throws IOException When an IOException occurs.
+	 */
+	static void writeVarInt(DataOutput out, int value) throws IOException{
+		while((value & ~0x7F) != 0){
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	/**
+	 * Reads an integer written by {@link #writeVarInt(DataOutput, int)}.
+	 * @param in The input to read from.
+	 * @return The value that was read.
+	 * @throws IOException When an IOException occurs.
+	 */
+	static int readVarInt(DataInput in) throws IOException{
+		int value = 0;
+		for(int shift = 0; shift < 35; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0){
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+	
+	/**
+	 * Maps signed integers to unsigned integers so that
+	 * values close to zero have a short encoding.
+	 * @param value The value to encode.
+	 * @return The encoded value.
+	 */
+	private static int zigzag(int value){
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	/**
+	 * Reverses {@link #zigzag(int)}.
+	 * @param value The value to decode.
+	 * @return The decoded value.
+	 */
+	private static int unzigzag(int value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Spreads the lower 32 bits of the given value
+	 * over the even bits of the result.
+	 * @param value The value to spread.
+	 * @return The spread value.
+	 */
+	private static long spread(long value){
+		value &= 0xFFFFFFFFL;
+		value = (value | (value << 16)) & 0x0000FFFF0000FFFFL;
+		value = (value | (value << 8)) & 0x00FF00FF00FF00FFL;
+		value = (value | (value << 4)) & 0x0F0F0F0F0F0F0F0FL;
+		value = (value | (value << 2)) & 0x3333333333333333L;
+		return (value | (value << 1)) & 0x5555555555555555L;
+	}
+	
+	/**
+	 * Reverses {@link #spread(long)}, collecting the even
+	 * bits of the given value in the lower 32 bits.
+	 * @param value The value to compact.
+	 * @return The compacted value.
+	 */
+	private static long compact(long value){
+		value &= 0x5555555555555555L;
+		value = (value | (value >>> 1)) & 0x3333333333333333L;
+		value = (value | (value >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+		value = (value | (value >>> 4)) & 0x00FF00FF00FF00FFL;
+		value = (value | (value >>> 8)) & 0x0000FFFF0000FFFFL;
+		return (value | (value >>> 16)) & 0xFFFFFFFFL;
+	}
+	
+	/**
+	 * Copy of the state of a board at some point in time.
+	 * @author Roan
+	 * @see SaveFile#snapshot(Board)
+	 */
+	static final class Snapshot{
+		/**
+		 * The seed of the board.
+		 */
+		private final Seed seed;
+		/**
+		 * Copy of the tile state of the board.
+		 */
+		private final Grid grid;
+		/**
+		 * Whether the board had any test mode tiles.
+		 */
+		private final boolean tests;
+		/**
+		 * Whether the board was in test mode.
+		 */
+		private final boolean testMode;
+		/**
+		 * The time spent on the board.
+		 */
+		private final long passedTime;
+		/**
+		 * Copy of the undo history, moves are never modified.
+		 */
+		private final Deque<List<StateChange>> undo;
+		/**
+		 * Copy of the redo history, moves are never modified.
+		 */
+		private final Deque<List<StateChange>> redo;
+		
+		/**
+		 * Copies the state of the given board.
+		 * @param board The board to copy.
+		 */
+		private Snapshot(Board board){
+			Grid state = board.getGrid();
+			seed = board.getSeed();
+			tests = hasTests(state);
+			testMode = board.isTestMode();
+			passedTime = board.getPassedTime();
+			undo = new ArrayDeque<List<StateChange>>(board.getUndoStack());
+			redo = new ArrayDeque<List<StateChange>>(board.getRedoStack());
+			
+			PackedGrid copy = new PackedGrid(state.getWidth(), state.getHeight());
+			if(state instanceof PackedGrid){
+				PackedGrid packed = (PackedGrid)state;
+				copyWords(packed.getFillPlane(), copy.getFillPlane());
+				copyWords(packed.getCrossPlane(), copy.getCrossPlane());
+				copyWords(packed.getTestPlane(), copy.getTestPlane());
+			}else{
+				for(int y = 0; y < state.getHeight(); y++){
+					for(int x = 0; x < state.getWidth(); x++){
+						copy.set(x, y, state.get(x, y));
+					}
+				}
+			}
+			grid = copy;
+		}
+		
+		/**
+		 * Writes this snapshot as a save to the given stream. The stream is not closed.
+		 * @param out The stream to write to.
+		 * @param compress Whether to compress the saved data.
+		 * @throws IOException When an IOException occurs.
+		 * @see SaveFile#write(Board, OutputStream, boolean)
+		 */
+		void write(OutputStream out, boolean compress) throws IOException{
+			SaveFile.write(out, compress, seed, grid, tests, testMode, passedTime, undo, redo);
+		}
+		
+		/**
+		 * Copies all words of a bitplane to a bitplane of the same size.
+		 * @param from The bitplane to copy from.
+		 * @param to The bitplane to copy to.
+		 */
+		private static void copyWords(BitPlane from, BitPlane to){
+			System.arraycopy(from.words(), 0, to.words(), 0, from.words().length);
+		}
+	}
+}
@@ -21,14 +21,37 @@ package dev.roanh.picross;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class that holds all the information required
- * to define a specific game board.
+ * to define a specific game board. Most boards are
+ * generated at random from a random number generator
+ * seed, but custom puzzles carry their solution instead.
+ * Random seeds use the original 24 byte Base64 form,
+ * custom puzzles use the versioned {@link SeedFormat}.
+ * <p>
+ * Random seeds for boards with more than {@link Board#CHUNKED_THRESHOLD}
+ * tiles generate their solution in chunks, which gives a different
+ * solution than the original generator. These seeds are marked as
+ * chunked by a generator version byte after the original 24 bytes.
+ * Seeds without this byte always use the original generator, such
+ * that large seeds from before chunked generation keep their puzzle.
  * @author Roan
  */
 public class Seed{
+	/**
+	 * Largest number of tiles of a custom puzzle, the solution of a
+	 * custom puzzle is held in memory and larger puzzles cannot be.
+	 * @see Board#CHUNKED_THRESHOLD
+	 */
+	public static final long MAX_CUSTOM_SIZE = Board.CHUNKED_THRESHOLD;
+	/**
+	 * Generator version byte of seeds that are generated in chunks.
+	 * @see ChunkedPuzzle
+	 */
+	private static final byte CHUNKED_VERSION = 1;
 	/**
 	 * The seed for the random number generator.
 	 */
@@ -45,6 +68,20 @@ public class Seed{
 	 * The tile density of the board.
 	 */
 	public final double density;
+	/**
+	 * The solution of a custom puzzle or <code>null</code>
+	 * if the board is generated from the random seed.
+	 */
+	private final BitPlane solution;
+	/**
+	 * True if the solution is generated in chunks.
+	 */
+	private final boolean chunked;
+	/**
+	 * Cached hash code of this seed or 0 if not computed yet,
+	 * hashing the solution of a custom puzzle is not free.
+	 */
+	private int hash = 0;
 	
 	/**
 	 * Constructs a new seed with the given
@@ -61,17 +98,60 @@ public class Seed{
 	/**
 	 * Constructs a new seed with the given
 	 * width, height, density and random number
-	 * generator seed.
+	 * generator seed. Seeds for boards with more than
+	 * {@link Board#CHUNKED_THRESHOLD} tiles are chunked.
 	 * @param seed The seed for the random number generator.
 	 * @param width The number of columns.
 	 * @param height The number of rows.
 	 * @param density The density of the board.
 	 */
 	public Seed(long seed, int width, int height, double density){
+		this(seed, width, height, density, (long)width * height > Board.CHUNKED_THRESHOLD);
+	}
+	
+	/**
+	 * Constructs a new seed with the given width, height,
+	 * density, random number generator seed and generator.
+	 * @param seed The seed for the random number generator.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 * @param density The density of the board.
+	 * @param chunked True if the solution is generated in chunks.
+	 */
+	Seed(long seed, int width, int height, double density, boolean chunked){
 		this.seed = seed;
 		this.width = width;
 		this.height = height;
 		this.density = density;
+		this.chunked = chunked;
+		solution = null;
+	}
+	
+	/**
+	 * Constructs a new seed for a custom puzzle
+	 * with the given solution.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 * @param solution The solution of the puzzle in row
+	 *        major order, this plane must not be modified
+	 *        after it is passed to this constructor.
+	 * @throws IllegalArgumentException When the size of
+	 *         the solution does not match the board size or
+	 *         exceeds {@value #MAX_CUSTOM_SIZE} tiles.
+	 */
+	public Seed(int width, int height, BitPlane solution) throws IllegalArgumentException{
+		if((long)width * height > MAX_CUSTOM_SIZE){
+			throw new IllegalArgumentException("Custom puzzle too large: " + width + "x" + height);
+		}
+		if(solution.size() != (long)width * height){
+			throw new IllegalArgumentException("Solution size does not match the board size");
+		}
+		seed = 0;
+		this.width = width;
+		this.height = height;
+		this.solution = solution;
+		chunked = false;
+		density = solution.cardinality() / (double)solution.size();
 	}
 	
 	/**
@@ -80,6 +160,18 @@ public class Seed{
 	 * @throws IllegalArgumentException If the given seed is not valid.
 	 */
 	public Seed(String data){
+		if(data.startsWith(SeedFormat.PREFIX)){
+			Seed custom = SeedFormat.decode(data);
+			seed = custom.seed;
+			width = custom.width;
+			height = custom.height;
+			density = custom.density;
+			solution = custom.solution;
+			chunked = false;
+			return;
+		}
+		
+		solution = null;
 		try{
 			byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
 			ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
@@ -90,18 +182,84 @@ public class Seed{
 			width = buffer.getInt();		
 			height = buffer.getInt();
 			density = buffer.getDouble();
+			chunked = buffer.hasRemaining();
+			if(chunked && (buffer.get() != CHUNKED_VERSION || buffer.hasRemaining())){
+				throw new IllegalArgumentException("Unknown generator version");
+			}
 		}catch(Exception e){
 			throw new IllegalArgumentException("Invalid seed");
 		}
 	}
 	
+	/**
+	 * Checks if this seed describes a custom puzzle
+	 * instead of a randomly generated board.
+	 * @return True if this is the seed of a custom puzzle.
+	 * @see #getSolution()
+	 */
+	public boolean isCustom(){
+		return solution != null;
+	}
+	
+	/**
+	 * Checks if the solution for this seed is generated in
+	 * chunks instead of with the original generator.
+	 * @return True if the solution for this seed is chunked.
+	 * @see ChunkedPuzzle
+	 */
+	public boolean isChunked(){
+		return chunked;
+	}
+	
+	/**
+	 * Gets the solution of the custom puzzle for this seed.
+	 * The returned plane must not be modified.
+	 * @return The solution in row major order or <code>null</code>
+	 *         if this seed is not for a custom puzzle.
+	 * @see #isCustom()
+	 */
+	public BitPlane getSolution(){
+		return solution;
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if(other instanceof Seed){
+			Seed s = (Seed)other;
+			return seed == s.seed && width == s.width && height == s.height && Double.compare(density, s.density) == 0 && chunked == s.chunked && Objects.equals(solution, s.solution);
+		}
+		return false;
+	}
+	
+	@Override
+	public int hashCode(){
+		int h = hash;
+		if(h == 0){
+			h = Long.hashCode(seed);
+			h = 31 * h + width;
+			h = 31 * h + height;
+			h = 31 * h + Double.hashCode(density);
+			h = 31 * h + Objects.hashCode(solution);
+			h = 31 * h + Boolean.hashCode(chunked);
+			hash = h;
+		}
+		return h;
+	}
+	
 	@Override
 	public String toString(){
-		ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + 4 + 8);
+		if(solution != null){
+			return SeedFormat.encode(width, height, solution);
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + 4 + 8 + (chunked ? 1 : 0));
 		buffer.putLong(seed);
 		buffer.putInt(width);
 		buffer.putInt(height);
 		buffer.putDouble(density);
+		if(chunked){
+			buffer.put(CHUNKED_VERSION);
+		}
 		buffer.flip();
 		return new String(Base64.getEncoder().encode(buffer).array(), StandardCharsets.UTF_8);
 	}
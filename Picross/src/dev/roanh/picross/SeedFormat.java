@@ -0,0 +1,348 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact string format for seeds of custom puzzles that carry
+ * their solution instead of being generated at random. The string
+ * form is the format version followed by a dot and the URL-safe
+ * Base64 encoding of the following data:
+ * <ol>
+ * <li>The width and height of the puzzle as varints.</li>
+ * <li>A byte with flags, indicating whether the body is Deflate compressed.</li>
+ * <li>The CRC32 checksum of the uncompressed body.</li>
+ * <li>The body, the solution in row major order as the lengths of
+ * alternating runs of empty and filled tiles, each length a varint.
+ * The first run is empty and may have a length of zero.</li>
+ * </ol>
+ * Varints store 7 bits per byte starting with the lowest bits, the
+ * highest bit of a byte is set if more bytes follow. Seeds in this
+ * format are decoded straight from the string into the solution
+ * bitplane without first decoding the entire string.
+ * @author Roan
+ * @see Seed
+ */
+final class SeedFormat{
+	/**
+	 * Prefix of seeds in this format.
+	 */
+	static final String PREFIX = "2.";
+	/**
+	 * Upper bound on the length of seeds in this format, reached when
+	 * the solution of the largest custom puzzle alternates every tile.
+	 */
+	static final int MAX_LENGTH = PREFIX.length() + (int)(4 * ((Seed.MAX_CUSTOM_SIZE + 16 + 2) / 3));
+	/**
+	 * Flag indicating that the body is Deflate compressed.
+	 */
+	private static final int FLAG_COMPRESSED = 1;
+	/**
+	 * Size of the buffers used for decoding.
+	 */
+	private static final int BUFFER_SIZE = 1 << 12;
+	
+	/**
+	 * Prevent instantiation.
+	 */
+	private SeedFormat(){
+	}
+	
+	/**
+	 * Encodes the given custom puzzle. The body is compressed
+	 * if that makes the encoded seed shorter.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 * @param solution The solution in row major order.
+	 * @return The encoded seed.
+	 */
+	static String encode(int width, int height, BitPlane solution){
+		try{
+			ByteArrayOutputStream runs = new ByteArrayOutputStream();
+			long pos = 0;
+			boolean filled = false;
+			while(pos < solution.size()){
+				long end = filled ? solution.nextClearBit(pos) : solution.nextSetBit(pos);
+				writeVarint(runs, end - pos);
+				pos = end;
+				filled = !filled;
+			}
+			byte[] body = runs.toByteArray();
+			
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			byte[] compressed = deflate(body);
+			boolean compress = compressed.length < body.length;
+			
+			ByteArrayOutputStream data = new ByteArrayOutputStream((compress ? compressed.length : body.length) + 16);
+			writeVarint(data, width);
+			writeVarint(data, height);
+			data.write(compress ? FLAG_COMPRESSED : 0);
+			long checksum = crc.getValue();
+			for(int shift = 24; shift >= 0; shift -= 8){
+				data.write((int)(checksum >>> shift));
+			}
+			data.write(compress ? compressed : body);
+			return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(data.toByteArray());
+		}catch(IOException e){
+			//cannot happen for in memory streams
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Decodes a custom puzzle seed.
+	 * @param data The seed to decode, starting with {@link #PREFIX}.
+	 * @return The decoded seed.
+	 * @throws IllegalArgumentException When the given seed is not valid.
+	 */
+	static Seed decode(String data) throws IllegalArgumentException{
+		Inflater inflater = null;
+		try{
+			InputStream in = new BufferedInputStream(Base64.getUrlDecoder().wrap(new StringInputStream(data, PREFIX.length())), BUFFER_SIZE);
+			int width = (int)readVarint(in, Integer.MAX_VALUE);
+			int height = (int)readVarint(in, Integer.MAX_VALUE);
+			if(width == 0 || height == 0){
+				throw new IOException("Empty puzzle");
+			}
+			if((long)width * height > Seed.MAX_CUSTOM_SIZE){
+				throw new IOException("Puzzle too large");
+			}
+			int flags = readByte(in);
+			long checksum = 0;
+			for(int i = 0; i < 4; i++){
+				checksum = (checksum << 8) | readByte(in);
+			}
+			
+			if((flags & FLAG_COMPRESSED) != 0){
+				inflater = new Inflater();
+			}
+			BodyInputStream body = new BodyInputStream(inflater == null ? in : new InflaterInputStream(in, inflater, BUFFER_SIZE));
+			
+			long size = (long)width * height;
+			BitPlane solution = new BitPlane(size);
+			long pos = 0;
+			boolean filled = false;
+			while(pos < size){
+				long run = readVarint(body, size - pos);
+				if(filled){
+					solution.set(pos, pos + run);
+				}
+				pos += run;
+				filled = !filled;
+			}
+			
+			if(body.read() != -1 || (inflater != null && (inflater.getRemaining() != 0 || in.read() != -1))){
+				throw new IOException("Trailing data after the solution");
+			}
+			if(body.getChecksum() != checksum){
+				throw new IOException("Checksum mismatch");
+			}
+			return new Seed(width, height, solution);
+		}catch(IOException | RuntimeException e){
+			throw new IllegalArgumentException("Invalid seed", e);
+		}finally{
+			if(inflater != null){
+				inflater.end();
+			}
+		}
+	}
+	
+	/**
+	 * Compresses the given data.
+	 * @param data The data to compress.
+	 * @return The compressed data.
+	 * @throws IOException When an IOException occurs.
+	 */
+	private static byte[] deflate(byte[] data) throws IOException{
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+			try(DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)){
+				deflate.write(data);
+			}
+			return out.toByteArray();
+		}finally{
+			deflater.end();
+		}
+	}
+	
+	/**
+	 * Writes a non negative number as a varint.
+	 * @param out The stream to write to.
+	 * @param value The number to write.
+	 */
+	private static void writeVarint(OutputStream out, long value){
+		try{
+			while((value & ~0x7FL) != 0){
+				out.write((int)((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			out.write((int)value);
+		}catch(IOException e){
+			//cannot happen for in memory streams
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Reads a varint.
+	 * @param in The stream to read from.
+	 * @param max The largest valid value.
+	 * @return The number that was read.
+	 * @throws IOException When an IOException occurs, the
+	 *         stream ends or when the number is out of range.
+	 */
+	private static long readVarint(InputStream in, long max) throws IOException{
+		long value = 0;
+		for(int shift = 0; shift < 63; shift += 7){
+			int b = readByte(in);
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0){
+				if(value > max){
+					throw new IOException("Varint out of range");
+				}
+				return value;
+			}
+		}
+		throw new IOException("Varint too long");
+	}
+	
+	/**
+	 * Reads a single byte.
+	 * @param in The stream to read from.
+	 * @return The byte that was read.
+	 * @throws IOException When an IOException occurs.
+	 * @throws EOFException When the stream ended.
+	 */
+	private static int readByte(InputStream in) throws IOException, EOFException{
+		int b = in.read();
+		if(b == -1){
+			throw new EOFException();
+		}
+		return b;
+	}
+	
+	/**
+	 * Input stream that reads the body of a seed in blocks
+	 * and computes the checksum of the data read.
+	 * @author Roan
+	 */
+	private static final class BodyInputStream extends InputStream{
+		/**
+		 * The stream to read the body from.
+		 */
+		private final InputStream in;
+		/**
+		 * Checksum of all the data read so far.
+		 */
+		private final CRC32 crc = new CRC32();
+		/**
+		 * Buffer with the current block of data.
+		 */
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		/**
+		 * Index of the next byte to read from the buffer.
+		 */
+		private int pos = 0;
+		/**
+		 * Number of bytes in the buffer.
+		 */
+		private int length = 0;
+		
+		/**
+		 * Constructs a new body stream.
+		 * @param in The stream to read the body from.
+		 */
+		private BodyInputStream(InputStream in){
+			this.in = in;
+		}
+		
+		/**
+		 * Gets the checksum of all the data read so far.
+		 * @return The CRC32 checksum of the data read.
+		 */
+		private long getChecksum(){
+			return crc.getValue();
+		}
+		
+		@Override
+		public int read() throws IOException{
+			if(pos == length){
+				length = Math.max(0, in.read(buffer));
+				pos = 0;
+				if(length == 0){
+					return -1;
+				}
+				crc.update(buffer, 0, length);
+			}
+			return buffer[pos++] & 0xFF;
+		}
+	}
+	
+	/**
+	 * Input stream that reads the characters of a string as
+	 * bytes, such that a Base64 string can be decoded without
+	 * first copying it to a byte array.
+	 * @author Roan
+	 */
+	private static final class StringInputStream extends InputStream{
+		/**
+		 * The string to read from.
+		 */
+		private final String data;
+		/**
+		 * Index of the next character to read.
+		 */
+		private int pos;
+		
+		/**
+		 * Constructs a new stream for the given string.
+		 * @param data The string to read from.
+		 * @param offset The index of the first character to read.
+		 */
+		private StringInputStream(String data, int offset){
+			this.data = data;
+			pos = offset;
+		}
+		
+		@Override
+		public int read(){
+			if(pos == data.length()){
+				return -1;
+			}
+			
+			//characters outside ASCII are never valid Base64
+			char c = data.charAt(pos++);
+			return c < 0x80 ? c : 0xFF;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Overlay with the tiles that would change if the area that is
+ * currently being selected with the mouse were to be applied.
+ * The selected area is a rectangle with the tile the selection
+ * was started from as one of its corners. Whether a tile would
+ * change is stored relative to this anchor tile, such that when
+ * the selection is resized only the rows and columns that enter
+ * the selection have to be computed.
+ * @author Roan
+ */
+public final class SelectionOverlay{
+	/**
+	 * The grid the selection was made on.
+	 */
+	private final Grid grid;
+	/**
+	 * The x-coordinate of the tile the selection was started from.
+	 */
+	private final int anchorX;
+	/**
+	 * The y-coordinate of the tile the selection was started from.
+	 */
+	private final int anchorY;
+	/**
+	 * The tile type the selection places.
+	 */
+	private final Tile next;
+	/**
+	 * The tile type of the tile the selection was started from.
+	 */
+	private final Tile base;
+	/**
+	 * Whether test mode was enabled when the selection was started.
+	 */
+	private final boolean test;
+	/**
+	 * Whether each tile in the selection would change, indexed by
+	 * the distance to the anchor row and then the anchor column.
+	 */
+	private final List<BitSet> rows = new ArrayList<BitSet>();
+	/**
+	 * Additional tiles selected on the x-axis, negative if the
+	 * selection extends to the left of the anchor.
+	 */
+	private int hx = 0;
+	/**
+	 * Additional tiles selected on the y-axis, negative if the
+	 * selection extends above the anchor.
+	 */
+	private int hy = 0;
+	
+	/**
+	 * Constructs a new overlay for a selection that
+	 * only contains the given anchor tile.
+	 * @param grid The grid the selection is made on.
+	 * @param x The x-coordinate of the anchor tile.
+	 * @param y The y-coordinate of the anchor tile.
+	 * @param next The tile type to place.
+	 * @param base The tile type of the anchor tile.
+	 * @param test Whether test mode is enabled.
+	 */
+	public SelectionOverlay(Grid grid, int x, int y, Tile next, Tile base, boolean test){
+		this.grid = grid;
+		this.next = next;
+		this.base = base;
+		this.test = test;
+		anchorX = x;
+		anchorY = y;
+		rows.add(new BitSet());
+		compute(0, 1, 0, 1);
+	}
+	
+	/**
+	 * Resizes the selection, only computing the tiles that
+	 * were not part of the selection before. If the selection
+	 * flips to the other side of the anchor on an axis then
+	 * all tiles except those in the anchor row or column are
+	 * new to the selection.
+	 * @param nhx The new number of additional tiles
+	 *        selected on the x-axis.
+	 * @param nhy The new number of additional tiles
+	 *        selected on the y-axis.
+	 */
+	public void resize(int nhx, int nhy){
+		//number of columns and rows that remain in the selection
+		int cols = Math.min(Math.abs(hx), Math.abs(nhx)) + 1;
+		int height = Math.min(Math.abs(hy), Math.abs(nhy)) + 1;
+		if(Integer.signum(hx) * Integer.signum(nhx) < 0){
+			cols = 1;
+		}
+		if(Integer.signum(hy) * Integer.signum(nhy) < 0){
+			height = 1;
+		}
+		
+		hx = nhx;
+		hy = nhy;
+		int width = Math.abs(hx) + 1;
+		while(rows.size() < Math.abs(hy) + 1){
+			rows.add(new BitSet());
+		}
+		
+		compute(cols, width, 0, height);
+		compute(0, width, height, Math.abs(hy) + 1);
+	}
+	
+	/**
+	 * Computes whether the tiles in the given range of
+	 * distances from the anchor tile would change.
+	 * @param fromX The first column distance, inclusive.
+	 * @param toX The last column distance, exclusive.
+	 * @param fromY The first row distance, inclusive.
+	 * @param toY The last row distance, exclusive.
+	 */
+	private void compute(int fromX, int toX, int fromY, int toY){
+		int sx = hx < 0 ? -1 : 1;
+		int sy = hy < 0 ? -1 : 1;
+		for(int dy = fromY; dy < toY; dy++){
+			BitSet row = rows.get(dy);
+			int y = anchorY + sy * dy;
+			for(int dx = fromX; dx < toX; dx++){
+				row.set(dx, grid.get(anchorX + sx * dx, y).canOverride(next, test, base));
+			}
+		}
+	}
+	
+	/**
+	 * Updates the overlay after the state of a tile changed.
+	 * @param x The x-coordinate of the tile that changed.
+	 * @param y The y-coordinate of the tile that changed.
+	 */
+	public void tileChanged(int x, int y){
+		if(contains(x, y)){
+			rows.get(Math.abs(y - anchorY)).set(Math.abs(x - anchorX), grid.get(x, y).canOverride(next, test, base));
+		}
+	}
+	
+	/**
+	 * Checks if the given tile is part of the selection.
+	 * @param x The x-coordinate of the tile.
+	 * @param y The y-coordinate of the tile.
+	 * @return True if the tile is selected.
+	 */
+	public boolean contains(int x, int y){
+		return x >= getMinX() && x <= getMaxX() && y >= getMinY() && y <= getMaxY();
+	}
+	
+	/**
+	 * Checks if the given tile would change if the selection
+	 * were applied. Tiles outside the selection never change.
+	 * @param x The x-coordinate of the tile.
+	 * @param y The y-coordinate of the tile.
+	 * @return True if the tile is selected and would change.
+	 */
+	public boolean isChanged(int x, int y){
+		return contains(x, y) && rows.get(Math.abs(y - anchorY)).get(Math.abs(x - anchorX));
+	}
+	
+	/**
+	 * Gets the x-coordinate of the leftmost selected column.
+	 * @return The smallest selected x-coordinate.
+	 */
+	public int getMinX(){
+		return Math.min(anchorX, anchorX + hx);
+	}
+	
+	/**
+	 * Gets the x-coordinate of the rightmost selected column.
+	 * @return The largest selected x-coordinate.
+	 */
+	public int getMaxX(){
+		return Math.max(anchorX, anchorX + hx);
+	}
+	
+	/**
+	 * Gets the y-coordinate of the topmost selected row.
+	 * @return The smallest selected y-coordinate.
+	 */
+	public int getMinY(){
+		return Math.min(anchorY, anchorY + hy);
+	}
+	
+	/**
+	 * Gets the y-coordinate of the bottommost selected row.
+	 * @return The largest selected y-coordinate.
+	 */
+	public int getMaxY(){
+		return Math.max(anchorY, anchorY + hy);
+	}
+}
@@ -0,0 +1,610 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.util.Arrays;
+
+/**
+ * Solver that finds the solutions of a puzzle from its hints
+ * and grades how difficult the puzzle is. Lines are solved one
+ * at a time by finding the tiles that are filled or empty in all
+ * placements of the hints that agree with the known tiles, until
+ * no line changes anymore. When this gets stuck every unknown tile
+ * is tried out to see if one of its states leads to a contradiction.
+ * If that does not help either a tile is guessed and the search
+ * continues for both of its states. The search stops once a second
+ * solution is found, since that is enough to know that the puzzle
+ * is not unique. A solver instance is not thread safe, but separate
+ * instances can run in parallel.
+ * @author Roan
+ * @see HintSet
+ */
+public final class Solver{
+	/**
+	 * Default maximum number of steps before the solver gives up,
+	 * a step is the placement of one hint at one position on a line.
+	 */
+	public static final long DEFAULT_MAX_STEPS = 200_000_000L;
+	/**
+	 * Maximum number of times each line is solved on average for
+	 * a puzzle that does not require guessing to still be easy.
+	 */
+	private static final double EASY_WORK = 2.0D;
+	/**
+	 * State of a tile that is not known yet.
+	 */
+	private static final byte UNKNOWN = 0;
+	/**
+	 * State of a tile that is known to be filled.
+	 */
+	private static final byte FILLED = 1;
+	/**
+	 * State of a tile that is known to be empty.
+	 */
+	private static final byte EMPTY = 2;
+	/**
+	 * The hints of the puzzle to solve.
+	 */
+	private final HintSet hints;
+	/**
+	 * The number of columns in the puzzle.
+	 */
+	private final int width;
+	/**
+	 * The number of rows in the puzzle.
+	 */
+	private final int height;
+	/**
+	 * The maximum number of steps before the solver gives up.
+	 */
+	private final long maxSteps;
+	/**
+	 * Queue of lines that have to be solved again, rows are
+	 * stored as their index and columns as the height plus
+	 * their index.
+	 */
+	private final int[] queue;
+	/**
+	 * Whether each line is currently in the queue.
+	 */
+	private final boolean[] queued;
+	/**
+	 * Index of the head of the queue.
+	 */
+	private int head;
+	/**
+	 * Number of lines in the queue.
+	 */
+	private int queueSize;
+	/**
+	 * Scratch buffer with the states of the tiles on a line.
+	 */
+	private final byte[] line;
+	/**
+	 * Scratch buffer with the number of empty tiles before each tile.
+	 */
+	private final int[] empty;
+	/**
+	 * Scratch buffer with the number of placements covering each tile.
+	 */
+	private final int[] cover;
+	/**
+	 * Scratch table of which prefixes of a line can hold which
+	 * number of hints, see {@link #solveLine(int, int[])}.
+	 */
+	private boolean[] prefix;
+	/**
+	 * Scratch table of which suffixes of a line can hold which
+	 * number of hints, see {@link #solveLine(int, int[])}.
+	 */
+	private boolean[] suffix;
+	/**
+	 * The first solution found.
+	 */
+	private byte[] solution = null;
+	/**
+	 * The number of solutions found so far.
+	 */
+	private int solutions = 0;
+	/**
+	 * The number of lines solved so far.
+	 */
+	private long work = 0;
+	/**
+	 * The number of steps taken so far.
+	 */
+	private long steps = 0;
+	/**
+	 * The number of guesses made so far.
+	 */
+	private long guesses = 0;
+	/**
+	 * The largest number of nested guesses made so far.
+	 */
+	private int maxDepth = 0;
+	/**
+	 * Whether a tile had to be tried out to find a contradiction.
+	 */
+	private boolean probed = false;
+	/**
+	 * Whether the solver gave up because it solved too many lines.
+	 */
+	private boolean aborted = false;
+	/**
+	 * The tiles that became known while trying out a tile,
+	 * such that they can be reset to unknown afterwards.
+	 */
+	private final int[] trail;
+	/**
+	 * The number of tiles on the trail.
+	 */
+	private int trailSize = 0;
+	
+	/**
+	 * Constructs a new solver for the given hints.
+	 * @param hints The hints of the puzzle to solve.
+	 * @param maxSteps The maximum number of steps before giving up.
+	 */
+	private Solver(HintSet hints, long maxSteps){
+		this.hints = hints;
+		this.maxSteps = maxSteps;
+		width = hints.getWidth();
+		height = hints.getHeight();
+		queue = new int[width + height];
+		queued = new boolean[width + height];
+		trail = new int[width * height];
+		
+		int length = Math.max(width, height);
+		line = new byte[length];
+		empty = new int[length + 1];
+		cover = new int[length + 1];
+		prefix = new boolean[0];
+		suffix = new boolean[0];
+	}
+	
+	/**
+	 * Solves the puzzle with the given hints, giving up after
+	 * {@value #DEFAULT_MAX_STEPS} steps.
+	 * @param hints The hints of the puzzle to solve.
+	 * @return The result of solving the puzzle.
+	 */
+	public static Result solve(HintSet hints){
+		return solve(hints, DEFAULT_MAX_STEPS);
+	}
+	
+	/**
+	 * Solves the puzzle with the given hints.
+	 * @param hints The hints of the puzzle to solve.
+	 * @param maxSteps The maximum number of steps before giving up,
+	 *        a step is the placement of one hint at one position.
+	 * @return The result of solving the puzzle.
+	 */
+	public static Result solve(HintSet hints, long maxSteps){
+		Solver solver = new Solver(hints, maxSteps);
+		for(int i = 0; i < solver.queue.length; i++){
+			solver.enqueue(i);
+		}
+		solver.search(new byte[Math.multiplyExact(solver.width, solver.height)], 0);
+		return solver.createResult();
+	}
+	
+	/**
+	 * Creates the result from the current state of the search.
+	 * @return The result of solving the puzzle.
+	 */
+	private Result createResult(){
+		Status status;
+		if(solutions > 1){
+			status = Status.MULTIPLE;
+		}else if(aborted){
+			status = Status.UNDECIDED;
+		}else{
+			status = solutions == 0 ? Status.UNSOLVABLE : Status.UNIQUE;
+		}
+		
+		BitPlane plane = null;
+		if(solution != null){
+			plane = new BitPlane(solution.length);
+			for(int i = 0; i < solution.length; i++){
+				if(solution[i] == FILLED){
+					plane.set(i, true);
+				}
+			}
+		}
+		
+		Difficulty difficulty;
+		if(maxDepth > 0){
+			difficulty = Difficulty.EXPERT;
+		}else if(probed){
+			difficulty = Difficulty.HARD;
+		}else{
+			difficulty = work <= EASY_WORK * queue.length ? Difficulty.EASY : Difficulty.MEDIUM;
+		}
+		
+		return new Result(status, plane, difficulty, guesses);
+	}
+	
+	/**
+	 * Solves lines and tries out tiles until nothing changes anymore
+	 * and then guesses a tile to continue the search. The tile that
+	 * is guessed is the tile for which trying out either state made
+	 * the most other tiles known.
+	 * @param cells The state of all tiles in row major order, the
+	 *        lines that have to be solved have to be queued.
+	 * @param depth The number of guesses that lead to this state.
+	 */
+	private void search(byte[] cells, int depth){
+		if(!propagate(cells, false)){
+			return;
+		}
+		
+		int tile = probe(cells);
+		if(tile == -1){
+			return;
+		}else if(tile == cells.length){
+			solutions++;
+			if(solution == null){
+				solution = cells;
+			}
+			return;
+		}
+		
+		maxDepth = Math.max(maxDepth, depth + 1);
+		for(byte state : new byte[]{FILLED, EMPTY}){
+			if(solutions > 1 || aborted){
+				return;
+			}
+			
+			guesses++;
+			byte[] next = state == EMPTY ? cells : cells.clone();
+			next[tile] = state;
+			enqueueTile(tile);
+			search(next, depth + 1);
+		}
+	}
+	
+	/**
+	 * Tries out both states of every unknown tile, if one of them
+	 * leads to a contradiction then the tile has the other state.
+	 * This repeats until no more tiles can be found this way.
+	 * @param cells The state of all tiles in row major order.
+	 * @return The unknown tile for which trying out either state made
+	 *         the most other tiles known, the number of tiles if all
+	 *         tiles are known or -1 if the puzzle turned out to be
+	 *         unsolvable or the solver gave up.
+	 */
+	private int probe(byte[] cells){
+		int best = cells.length;
+		boolean changed = true;
+		while(changed){
+			changed = false;
+			best = cells.length;
+			int bestScore = -1;
+			for(int i = 0; i < cells.length; i++){
+				if(cells[i] != UNKNOWN){
+					continue;
+				}
+				
+				if(steps > maxSteps){
+					aborted = true;
+					return -1;
+				}
+				
+				int score = Integer.MAX_VALUE;
+				for(byte state : new byte[]{FILLED, EMPTY}){
+					cells[i] = state;
+					enqueueTile(i);
+					boolean valid = propagate(cells, true);
+					score = Math.min(score, trailSize);
+					
+					//undo the attempt
+					cells[i] = UNKNOWN;
+					while(trailSize > 0){
+						cells[trail[--trailSize]] = UNKNOWN;
+					}
+					
+					if(!valid){
+						probed = true;
+						changed = true;
+						cells[i] = state == FILLED ? EMPTY : FILLED;
+						enqueueTile(i);
+						if(!propagate(cells, false)){
+							return -1;
+						}
+						break;
+					}
+				}
+				
+				if(cells[i] == UNKNOWN && score > bestScore){
+					bestScore = score;
+					best = i;
+				}
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Solves all queued lines until no line changes anymore.
+	 * @param cells The state of all tiles in row major order.
+	 * @param record True to record all tiles that become known
+	 *        on the trail such that they can be reset later.
+	 * @return False if a line turned out to be unsolvable.
+	 */
+	private boolean propagate(byte[] cells, boolean record){
+		while(queueSize > 0){
+			int index = queue[head];
+			head = (head + 1) % queue.length;
+			queueSize--;
+			queued[index] = false;
+			work++;
+			
+			boolean row = index < height;
+			int n = row ? width : height;
+			int start = row ? index * width : index - height;
+			int step = row ? 1 : width;
+			for(int i = 0; i < n; i++){
+				line[i] = cells[start + i * step];
+			}
+			
+			if(!solveLine(n, row ? hints.getRowHints(index) : hints.getColHints(index - height))){
+				while(queueSize > 0){
+					queued[queue[head]] = false;
+					head = (head + 1) % queue.length;
+					queueSize--;
+				}
+				return false;
+			}
+			
+			for(int i = 0; i < n; i++){
+				int cell = start + i * step;
+				if(cells[cell] != line[i]){
+					cells[cell] = line[i];
+					enqueue(row ? height + i : i);
+					if(record){
+						trail[trailSize++] = cell;
+					}
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Solves a single line by finding the tiles that are filled or
+	 * empty in every placement of the hints on the line that agrees
+	 * with the tiles that are already known. The first table holds
+	 * whether the first <code>i</code> tiles can hold the first
+	 * <code>j</code> hints and the second table whether the tiles
+	 * from <code>i</code> onwards can hold the hints from <code>j</code>
+	 * onwards, a hint can then be placed anywhere that is allowed by
+	 * the tiles before and after it.
+	 * @param n The length of the line.
+	 * @param hints The hints for the line.
+	 * @return False if the hints cannot be placed on the line.
+	 */
+	private boolean solveLine(int n, int[] hints){
+		int k = hints.length;
+		int stride = k + 1;
+		steps += (long)n * stride;
+		int size = (n + 2) * stride;
+		if(prefix.length < size){
+			prefix = new boolean[size];
+			suffix = new boolean[size];
+		}
+		
+		empty[0] = 0;
+		for(int i = 0; i < n; i++){
+			empty[i + 1] = empty[i] + (line[i] == EMPTY ? 1 : 0);
+		}
+		
+		prefix[0] = true;
+		for(int j = 1; j <= k; j++){
+			prefix[j] = false;
+		}
+		for(int i = 1; i <= n; i++){
+			for(int j = 0; j <= k; j++){
+				boolean valid = line[i - 1] != FILLED && prefix[(i - 1) * stride + j];
+				if(!valid && j > 0){
+					int start = i - hints[j - 1];
+					if(start >= 0 && empty[i] == empty[start]){
+						valid = start == 0 ? j == 1 : (line[start - 1] != FILLED && prefix[(start - 1) * stride + j - 1]);
+					}
+				}
+				prefix[i * stride + j] = valid;
+			}
+		}
+		
+		if(!prefix[n * stride + k]){
+			return false;
+		}
+		
+		for(int j = 0; j <= k; j++){
+			suffix[n * stride + j] = j == k;
+		}
+		for(int i = n - 1; i >= 0; i--){
+			for(int j = k; j >= 0; j--){
+				boolean valid = line[i] != FILLED && suffix[(i + 1) * stride + j];
+				if(!valid && j < k){
+					int end = i + hints[j];
+					if(end <= n && empty[end] == empty[i]){
+						valid = end == n ? j + 1 == k : (line[end] != FILLED && suffix[(end + 1) * stride + j + 1]);
+					}
+				}
+				suffix[i * stride + j] = valid;
+			}
+		}
+		
+		//count the placements of hints covering each tile
+		Arrays.fill(cover, 0, n + 1, 0);
+		for(int j = 0; j < k; j++){
+			int length = hints[j];
+			for(int start = 0; start + length <= n; start++){
+				int end = start + length;
+				if(empty[end] == empty[start]
+					&& (start == 0 ? j == 0 : (line[start - 1] != FILLED && prefix[(start - 1) * stride + j]))
+					&& (end == n ? j == k - 1 : (line[end] != FILLED && suffix[(end + 1) * stride + j + 1]))
+				){
+					cover[start]++;
+					cover[end]--;
+				}
+			}
+		}
+		
+		int covered = 0;
+		for(int i = 0; i < n; i++){
+			covered += cover[i];
+			boolean canFill = covered > 0;
+			boolean canEmpty = false;
+			if(line[i] != FILLED){
+				for(int j = 0; j <= k && !canEmpty; j++){
+					canEmpty = prefix[i * stride + j] && suffix[(i + 1) * stride + j];
+				}
+			}
+			
+			if(canFill && !canEmpty){
+				line[i] = FILLED;
+			}else if(canEmpty && !canFill){
+				line[i] = EMPTY;
+			}else if(!canFill){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Adds the row and column of the given tile to the queue of lines to solve.
+	 * @param tile The index of the tile in row major order.
+	 */
+	private void enqueueTile(int tile){
+		enqueue(tile / width);
+		enqueue(height + tile % width);
+	}
+	
+	/**
+	 * Adds a line to the queue of lines to solve if it is not queued yet.
+	 * @param index The index of the line, rows are indexed by their
+	 *        index and columns by the height plus their index.
+	 */
+	private void enqueue(int index){
+		if(!queued[index]){
+			queued[index] = true;
+			queue[(head + queueSize) % queue.length] = index;
+			queueSize++;
+		}
+	}
+	
+	/**
+	 * The outcome of solving a puzzle.
+	 * @author Roan
+	 */
+	public enum Status{
+		/**
+		 * The puzzle has exactly one solution.
+		 */
+		UNIQUE,
+		/**
+		 * The puzzle has more than one solution.
+		 */
+		MULTIPLE,
+		/**
+		 * The puzzle has no solution.
+		 */
+		UNSOLVABLE,
+		/**
+		 * The solver gave up before it could decide
+		 * whether the puzzle has a unique solution.
+		 */
+		UNDECIDED
+	}
+	
+	/**
+	 * The result of solving a puzzle.
+	 * @author Roan
+	 */
+	public static final class Result{
+		/**
+		 * The outcome of solving the puzzle.
+		 */
+		private final Status status;
+		/**
+		 * The first solution found or <code>null</code> if none was found.
+		 */
+		private final BitPlane solution;
+		/**
+		 * The difficulty of the puzzle.
+		 */
+		private final Difficulty difficulty;
+		/**
+		 * The number of guesses the solver made.
+		 */
+		private final long guesses;
+		
+		/**
+		 * Constructs a new result.
+		 * @param status The outcome of solving the puzzle.
+		 * @param solution The first solution found or
+		 *        <code>null</code> if none was found.
+		 * @param difficulty The difficulty of the puzzle.
+		 * @param guesses The number of guesses the solver made.
+		 */
+		private Result(Status status, BitPlane solution, Difficulty difficulty, long guesses){
+			this.status = status;
+			this.solution = solution;
+			this.difficulty = difficulty;
+			this.guesses = guesses;
+		}
+		
+		/**
+		 * Gets the outcome of solving the puzzle.
+		 * @return The outcome of solving the puzzle.
+		 */
+		public Status getStatus(){
+			return status;
+		}
+		
+		/**
+		 * Gets the first solution that was found.
+		 * @return The solution in row major order or
+		 *         <code>null</code> if none was found.
+		 */
+		public BitPlane getSolution(){
+			return solution;
+		}
+		
+		/**
+		 * Gets the difficulty of the puzzle, which
+		 * is only meaningful for unique puzzles.
+		 * @return The difficulty of the puzzle.
+		 */
+		public Difficulty getDifficulty(){
+			return difficulty;
+		}
+		
+		/**
+		 * Gets the number of guesses the solver made.
+		 * @return The number of guesses made.
+		 */
+		public long getGuesses(){
+			return guesses;
+		}
+	}
+}
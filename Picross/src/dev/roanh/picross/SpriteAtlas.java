@@ -0,0 +1,275 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Atlas of pre-rendered sprites for a single zoom bucket. The atlas
+ * has a sprite for every tile state that is visible and a glyph for
+ * every digit in each color hint numbers are drawn in. Tiles and hint
+ * numbers can then be drawn with a few image blits instead of shapes
+ * and text. A zoom bucket is the size of a grid cell in whole pixels.
+ * Sprites for settled tiles are opaque and include the background so
+ * they can be copied as is, sprites for area selection tiles and the
+ * digit glyphs are translucent.
+ * @author Roan
+ */
+public final class SpriteAtlas{
+	/**
+	 * Space in units around the tile shapes that is not part of the sprite.
+	 */
+	private static final int INSET = 2;
+	/**
+	 * The size of a grid cell in pixels.
+	 */
+	private final int bucket;
+	/**
+	 * The number of pixels per unit for the sprites.
+	 */
+	private final double scale;
+	/**
+	 * The font the digit glyphs are rendered with.
+	 */
+	private final Font font;
+	/**
+	 * The graphics configuration to create images for
+	 * or <code>null</code> if not known.
+	 */
+	private final GraphicsConfiguration gc;
+	/**
+	 * Sprites indexed by tile ordinal, <code>null</code>
+	 * for tiles that do not show anything.
+	 */
+	private final BufferedImage[] tiles = new BufferedImage[Tile.values().length];
+	/**
+	 * Offset in pixels from the cell origin to the tile sprites.
+	 */
+	private final int tileOffset;
+	/**
+	 * Digit glyphs for each of the colors used so far.
+	 */
+	private final Map<Color, BufferedImage[]> digits = new HashMap<Color, BufferedImage[]>();
+	/**
+	 * Width in pixels of a single digit.
+	 */
+	private final double advance;
+	/**
+	 * Ascent of the font in units.
+	 */
+	private final int ascent;
+	/**
+	 * Descent of the font in units.
+	 */
+	private final int descent;
+	/**
+	 * Row in the digit glyphs that is the baseline of the text.
+	 */
+	private final int baseline;
+	
+	/**
+	 * Constructs and renders a new atlas.
+	 * @param bucket The size of a grid cell in pixels.
+	 * @param size The size of a grid cell in units.
+	 * @param painter Function that paints a tile with its cell at the
+	 *        origin of the given graphics context, in units.
+	 * @param background The background color for settled tiles.
+	 * @param font The font to render hint numbers with.
+	 * @param gc The graphics configuration to create images
+	 *        for or <code>null</code> if not known.
+	 */
+	public SpriteAtlas(int bucket, int size, BiConsumer<Graphics2D, Tile> painter, Color background, Font font, GraphicsConfiguration gc){
+		this.bucket = bucket;
+		this.scale = (double)bucket / size;
+		this.font = font;
+		this.gc = gc;
+		tileOffset = (int)Math.round(INSET * scale) - 1;
+		
+		int dim = (int)Math.ceil((size - 2 * INSET) * scale) + 2;
+		for(Tile tile : Tile.values()){
+			if(tile != Tile.EMPTY && tile != Tile.SEL_EMPTY){
+				boolean opaque = tile.isReal() || tile.isTest();
+				BufferedImage img = createImage(dim, dim, opaque);
+				Graphics2D g = createGraphics(img);
+				if(opaque){
+					g.setColor(background);
+					g.fillRect(0, 0, dim, dim);
+				}
+				g.translate(1, 1);
+				g.scale(scale, scale);
+				g.translate(-INSET, -INSET);
+				painter.accept(g, tile);
+				g.dispose();
+				tiles[tile.ordinal()] = img;
+			}
+		}
+		
+		BufferedImage img = createImage(1, 1, false);
+		Graphics2D g = img.createGraphics();
+		FontMetrics fm = g.getFontMetrics(font);
+		advance = fm.charWidth('0') * scale;
+		ascent = fm.getAscent();
+		descent = fm.getDescent();
+		baseline = (int)Math.ceil(ascent * scale) + 1;
+		g.dispose();
+	}
+	
+	/**
+	 * Gets the zoom bucket this atlas was rendered for.
+	 * @return The size of a grid cell in pixels.
+	 */
+	public int getBucket(){
+		return bucket;
+	}
+	
+	/**
+	 * Gets the ascent of the hint number font.
+	 * @return The ascent of the font in units.
+	 */
+	public int getAscent(){
+		return ascent;
+	}
+	
+	/**
+	 * Gets the descent of the hint number font.
+	 * @return The descent of the font in units.
+	 */
+	public int getDescent(){
+		return descent;
+	}
+	
+	/**
+	 * Draws the sprite for the given tile. Sprites for settled
+	 * tiles extend slightly past the cell interior and should
+	 * be drawn before the grid lines.
+	 * @param g The graphics context to draw with, this
+	 *        context should not be scaled.
+	 * @param tile The tile to draw.
+	 * @param px The x-coordinate in pixels of the cell origin.
+	 * @param py The y-coordinate in pixels of the cell origin.
+	 */
+	public void drawTile(Graphics2D g, Tile tile, int px, int py){
+		BufferedImage img = tiles[tile.ordinal()];
+		if(img != null){
+			g.drawImage(img, px + tileOffset, py + tileOffset, null);
+		}
+	}
+	
+	/**
+	 * Draws a number centred on the given position.
+	 * @param g The graphics context to draw with, this
+	 *        context should not be scaled.
+	 * @param value The number to draw, not negative.
+	 * @param color The color to draw the number in.
+	 * @param cx The x-coordinate in pixels of the centre of the number.
+	 * @param y The y-coordinate in pixels of the baseline of the number.
+	 */
+	public void drawNumber(Graphics2D g, int value, Color color, double cx, int y){
+		BufferedImage[] glyphs = digits.get(color);
+		if(glyphs == null){
+			glyphs = renderDigits(color);
+			digits.put(color, glyphs);
+		}
+		
+		int len = value < 10 ? 1 : (int)Math.log10(value) + 1;
+		double x = cx + advance * len / 2.0D;
+		do{
+			x -= advance;
+			g.drawImage(glyphs[value % 10], (int)Math.round(x) - 1, y - baseline, null);
+			value /= 10;
+		}while(value != 0);
+	}
+	
+	/**
+	 * Releases the resources held by this atlas.
+	 */
+	public void flush(){
+		for(BufferedImage img : tiles){
+			if(img != null){
+				img.flush();
+			}
+		}
+		for(BufferedImage[] glyphs : digits.values()){
+			for(BufferedImage img : glyphs){
+				img.flush();
+			}
+		}
+		digits.clear();
+	}
+	
+	/**
+	 * Renders the glyphs for all digits in the given color.
+	 * @param color The color to render the digits in.
+	 * @return The rendered digits indexed by value.
+	 */
+	private BufferedImage[] renderDigits(Color color){
+		BufferedImage[] glyphs = new BufferedImage[10];
+		int w = (int)Math.ceil(advance) + 2;
+		int h = baseline + (int)Math.ceil(descent * scale) + 1;
+		for(int i = 0; i < 10; i++){
+			glyphs[i] = createImage(w, h, false);
+			Graphics2D g = createGraphics(glyphs[i]);
+			g.translate(1, baseline);
+			g.scale(scale, scale);
+			g.setFont(font);
+			g.setColor(color);
+			g.drawString(String.valueOf(i), 0, 0);
+			g.dispose();
+		}
+		return glyphs;
+	}
+	
+	/**
+	 * Creates a new image.
+	 * @param w The width of the image.
+	 * @param h The height of the image.
+	 * @param opaque True to create an opaque image,
+	 *        false to create a translucent image.
+	 * @return The new image.
+	 */
+	private BufferedImage createImage(int w, int h, boolean opaque){
+		if(gc == null){
+			return new BufferedImage(w, h, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		}else{
+			return gc.createCompatibleImage(w, h, opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+		}
+	}
+	
+	/**
+	 * Creates an antialiased graphics context for the given image.
+	 * @param img The image to draw on.
+	 * @return The graphics context.
+	 */
+	private static Graphics2D createGraphics(BufferedImage img){
+		Graphics2D g = img.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		return g;
+	}
+}
@@ -69,6 +69,64 @@ public enum Tile{
 	 */
 	SEL_TRY_FILL;
 	
+	/**
+	 * Bit set in the packed form of a tile if the tile is filled.
+	 * @see #toBits()
+	 */
+	public static final int BIT_FILL = 1;
+	/**
+	 * Bit set in the packed form of a tile if the tile is crossed.
+	 * @see #toBits()
+	 */
+	public static final int BIT_CROSS = 2;
+	/**
+	 * Bit set in the packed form of a tile if the tile is a test mode tile.
+	 * @see #toBits()
+	 */
+	public static final int BIT_TEST = 4;
+	
+	/**
+	 * Converts this tile to its packed bit form as used by
+	 * the bitplane based grids. Only tiles that can actually
+	 * be stored in a grid have a packed form.
+	 * @return The packed form of this tile.
+	 * @throws IllegalStateException When this tile is an
+	 *         area selection tile.
+	 * @see #fromBits(int)
+	 */
+	public int toBits(){
+		switch(this){
+		case EMPTY:
+			return 0;
+		case CROSS:
+			return BIT_CROSS;
+		case FILL:
+			return BIT_FILL;
+		case TRY_CROSS:
+			return BIT_CROSS | BIT_TEST;
+		case TRY_FILL:
+			return BIT_FILL | BIT_TEST;
+		default:
+			throw new IllegalStateException("Selection tiles cannot be stored");
+		}
+	}
+	
+	/**
+	 * Converts the given packed bit form back to a tile.
+	 * @param bits The packed bits of the tile.
+	 * @return The tile corresponding to the given bits.
+	 * @see #toBits()
+	 */
+	public static Tile fromBits(int bits){
+		if((bits & BIT_FILL) != 0){
+			return (bits & BIT_TEST) == 0 ? FILL : TRY_FILL;
+		}else if((bits & BIT_CROSS) != 0){
+			return (bits & BIT_TEST) == 0 ? CROSS : TRY_CROSS;
+		}else{
+			return EMPTY;
+		}
+	}
+	
 	/**
 	 * Gets the area selection variant of this tile.
 	 * @return The area selection variant of this tile.
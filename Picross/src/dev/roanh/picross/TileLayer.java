@@ -0,0 +1,252 @@
+/*
+ * Picross: A nonogram puzzle program. 
+ * Copyright (C) 2019  Roan Hofland (roan@roanh.dev).  All rights reserved.
+ * GitHub Repository: https://github.com/RoanH/Picross
+ *
+ * Picross is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Picross is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dev.roanh.picross;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+/**
+ * Offscreen cache for a layer of the board that is too large to
+ * keep in a single image. The layer is split in square tiles that
+ * are rendered on demand and kept until they are the least recently
+ * used tile and the cache is full. Regions of the layer that changed
+ * are marked dirty and only those regions are rendered again the next
+ * time a tile is drawn. Tiles are opaque managed images so that they
+ * can be accelerated and drawn with plain copies, which means that the
+ * painter has to fill every region it is asked to render.
+ * @author Roan
+ */
+public final class TileLayer{
+	/**
+	 * Width and height in pixels of a single tile.
+	 */
+	public static final int TILE_SIZE = 256;
+	/**
+	 * Maximum number of tiles to keep in memory.
+	 */
+	private static final int MAX_TILES = 128;
+	/**
+	 * Function that renders a region of the layer. The graphics
+	 * context is translated to the layer origin and clipped to
+	 * the region, which is given in layer coordinates. The
+	 * painter has to fill the entire region.
+	 */
+	private final BiConsumer<Graphics2D, Rectangle> painter;
+	/**
+	 * Tile images that are no longer used and can be reused.
+	 */
+	private final Deque<BufferedImage> spare = new ArrayDeque<BufferedImage>();
+	/**
+	 * Tiles that are currently rendered in access order.
+	 */
+	private final LinkedHashMap<Long, Section> tiles = new LinkedHashMap<Long, Section>(64, 0.75F, true){
+		/**
+		 * Serial ID.
+		 */
+		private static final long serialVersionUID = -4413418127645395203L;
+		
+		@Override
+		protected boolean removeEldestEntry(Entry<Long, Section> eldest){
+			if(size() > MAX_TILES){
+				spare.push(eldest.getValue().image);
+				return true;
+			}
+			return false;
+		}
+	};
+	
+	/**
+	 * Constructs a new empty layer.
+	 * @param painter The function that renders regions of the layer.
+	 *        The graphics context passed to this function is translated
+	 *        to the layer origin and clipped to the region to render.
+	 *        The region is given in layer coordinates and has to be
+	 *        entirely filled by the painter.
+	 */
+	public TileLayer(BiConsumer<Graphics2D, Rectangle> painter){
+		this.painter = painter;
+	}
+	
+	/**
+	 * Draws the part of this layer that is within the clip
+	 * of the given graphics context, rendering any tiles
+	 * that are missing or dirty.
+	 * @param g The graphics context to draw with.
+	 * @param ox The x-coordinate to draw the layer origin at.
+	 * @param oy The y-coordinate to draw the layer origin at.
+	 * @param gc The graphics configuration to create tiles
+	 *        for or <code>null</code> if not known.
+	 */
+	public void paint(Graphics2D g, int ox, int oy, GraphicsConfiguration gc){
+		Rectangle clip = g.getClipBounds();
+		int minX = Math.floorDiv(clip.x - ox, TILE_SIZE);
+		int minY = Math.floorDiv(clip.y - oy, TILE_SIZE);
+		int maxX = Math.floorDiv(clip.x + clip.width - 1 - ox, TILE_SIZE);
+		int maxY = Math.floorDiv(clip.y + clip.height - 1 - oy, TILE_SIZE);
+		for(int tx = minX; tx <= maxX; tx++){
+			for(int ty = minY; ty <= maxY; ty++){
+				g.drawImage(getTile(tx, ty, gc), ox + tx * TILE_SIZE, oy + ty * TILE_SIZE, null);
+			}
+		}
+	}
+	
+	/**
+	 * Draws the part of this layer that is within the clip of the
+	 * given graphics context scaled by the given factor, rendering
+	 * any tiles that are missing or dirty. Tiles are scaled with
+	 * nearest neighbour interpolation.
+	 * @param g The graphics context to draw with.
+	 * @param ox The x-coordinate to draw the layer origin at.
+	 * @param oy The y-coordinate to draw the layer origin at.
+	 * @param scale The factor to scale the layer by.
+	 * @param gc The graphics configuration to create tiles
+	 *        for or <code>null</code> if not known.
+	 */
+	public void paint(Graphics2D g, double ox, double oy, double scale, GraphicsConfiguration gc){
+		Rectangle clip = g.getClipBounds();
+		double size = TILE_SIZE * scale;
+		int minX = (int)Math.floor((clip.x - ox) / size);
+		int minY = (int)Math.floor((clip.y - oy) / size);
+		int maxX = (int)Math.floor((clip.x + clip.width - ox) / size);
+		int maxY = (int)Math.floor((clip.y + clip.height - oy) / size);
+		for(int tx = minX; tx <= maxX; tx++){
+			int left = (int)Math.round(ox + tx * size);
+			int right = (int)Math.round(ox + (tx + 1) * size);
+			for(int ty = minY; ty <= maxY; ty++){
+				int top = (int)Math.round(oy + ty * size);
+				int bottom = (int)Math.round(oy + (ty + 1) * size);
+				g.drawImage(getTile(tx, ty, gc), left, top, right - left, bottom - top, null);
+			}
+		}
+	}
+	
+	/**
+	 * Marks the given region of the layer as dirty.
+	 * @param region The region that changed in layer coordinates.
+	 */
+	public void invalidate(Rectangle region){
+		int minX = Math.floorDiv(region.x, TILE_SIZE);
+		int minY = Math.floorDiv(region.y, TILE_SIZE);
+		int maxX = Math.floorDiv(region.x + region.width - 1, TILE_SIZE);
+		int maxY = Math.floorDiv(region.y + region.height - 1, TILE_SIZE);
+		for(int tx = minX; tx <= maxX; tx++){
+			for(int ty = minY; ty <= maxY; ty++){
+				Section tile = tiles.get(key(tx, ty));
+				if(tile != null){
+					tile.dirty = tile.dirty == null ? new Rectangle(region) : tile.dirty.union(region);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Discards all rendered tiles, for example when the scale of
+	 * the layer changes. The tile images are kept for reuse.
+	 */
+	public void clear(){
+		for(Section tile : tiles.values()){
+			spare.push(tile.image);
+		}
+		tiles.clear();
+	}
+	
+	/**
+	 * Gets the image for the given tile rendering it if
+	 * it is not cached or rendering its dirty region.
+	 * @param tx The x index of the tile.
+	 * @param ty The y index of the tile.
+	 * @param gc The graphics configuration to create the
+	 *        tile for or <code>null</code> if not known.
+	 * @return The up to date image for the tile.
+	 */
+	private BufferedImage getTile(int tx, int ty, GraphicsConfiguration gc){
+		long key = key(tx, ty);
+		Section tile = tiles.get(key);
+		Rectangle bounds = new Rectangle(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+		if(tile == null){
+			BufferedImage img = spare.poll();
+			if(img == null){
+				img = gc == null ? new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB) : gc.createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.OPAQUE);
+			}
+			tile = new Section(img);
+			tiles.put(key, tile);
+			render(tile, bounds, bounds);
+		}else if(tile.dirty != null){
+			render(tile, bounds, tile.dirty.intersection(bounds));
+		}
+		tile.dirty = null;
+		return tile.image;
+	}
+	
+	/**
+	 * Renders a region of the given tile.
+	 * @param tile The tile to render.
+	 * @param bounds The bounds of the tile in layer coordinates.
+	 * @param region The region to render in layer coordinates.
+	 */
+	private void render(Section tile, Rectangle bounds, Rectangle region){
+		Graphics2D g = tile.image.createGraphics();
+		g.translate(-bounds.x, -bounds.y);
+		g.clip(region);
+		painter.accept(g, region);
+		g.dispose();
+	}
+	
+	/**
+	 * Computes the key for the tile with the given index.
+	 * @param tx The x index of the tile.
+	 * @param ty The y index of the tile.
+	 * @return The key for the tile.
+	 */
+	private static long key(int tx, int ty){
+		return ((long)tx << 32) | (ty & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * A single rendered tile of the layer.
+	 * @author Roan
+	 */
+	private static final class Section{
+		/**
+		 * The rendered image of the tile.
+		 */
+		private final BufferedImage image;
+		/**
+		 * The region of the tile that has to be rendered
+		 * again in layer coordinates or <code>null</code>.
+		 */
+		private Rectangle dirty = null;
+		
+		/**
+		 * Constructs a new tile with the given image.
+		 * @param image The image for the tile.
+		 */
+		private Section(BufferedImage image){
+			this.image = image;
+		}
+	}
+}